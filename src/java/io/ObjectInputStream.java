@@ -297,6 +297,8 @@ public class ObjectInputStream
 
     /** wire handle -> obj/exception map */
     private final HandleTable handles;
+    /** classes read as ids instead of descriptors; may be null */
+    private final ObjectStreamRegistry registry;
     /** scratch field for passing handle values up/down call stack */
     private int passHandle = NULL_HANDLE;
     /** flag set when at end of field value block with no TC_ENDBLOCKDATA */
@@ -349,6 +351,47 @@ public class ObjectInputStream
         verifySubclass();
         bin = new BlockDataInputStream(in);
         handles = new HandleTable(10);
+        registry = null;
+        vlist = new ValidationList();
+        serialFilter = ObjectInputFilter.Config.getSerialFilter();
+        enableOverride = false;
+        readStreamHeader();
+        bin.setBlockDataMode(true);
+    }
+
+    /**
+     * Creates an ObjectInputStream that reads from the specified InputStream
+     * a stream written by an ObjectOutputStream with an equivalent registry.
+     * Class ids found in place of class descriptors are resolved to the local
+     * descriptors held by the registry, without calling {@link #resolveClass}
+     * or checking the classes for compatibility; the serialization filter, if
+     * any, is still consulted.  Classes which are not registered are read
+     * from ordinary descriptors.
+     *
+     * <p>As with {@link #ObjectInputStream(InputStream)}, this constructor
+     * reads and verifies the stream header and checks the
+     * "enableSubclassImplementation" SerializablePermission for subclasses
+     * overriding security-sensitive methods.
+     *
+     * @param   in input stream to read from
+     * @param   registry the classes to read as ids
+     * @throws  StreamCorruptedException if the stream header is incorrect
+     * @throws  IOException if an I/O error occurs while reading stream header
+     * @throws  SecurityException if untrusted subclass illegally overrides
+     *          security-sensitive methods
+     * @throws  NullPointerException if <code>in</code> or
+     *          <code>registry</code> is <code>null</code>
+     * @since   1.8
+     * @see     ObjectOutputStream#ObjectOutputStream(OutputStream, ObjectStreamRegistry, boolean)
+     */
+    public ObjectInputStream(InputStream in, ObjectStreamRegistry registry)
+        throws IOException
+    {
+        verifySubclass();
+        this.registry = Objects.requireNonNull(registry);
+        bin = new BlockDataInputStream(in,
+            BlockDataInputStream.LARGE_BLOCK_SIZE);
+        handles = new HandleTable(10);
         vlist = new ValidationList();
         serialFilter = ObjectInputFilter.Config.getSerialFilter();
         enableOverride = false;
@@ -380,6 +423,7 @@ public class ObjectInputStream
         }
         bin = null;
         handles = null;
+        registry = null;
         vlist = null;
         serialFilter = ObjectInputFilter.Config.getSerialFilter();
         enableOverride = true;
@@ -1552,6 +1596,7 @@ public class ObjectInputStream
 
                 case TC_CLASSDESC:
                 case TC_PROXYCLASSDESC:
+                case TC_CLASSID:
                     return readClassDesc(unshared);
 
                 case TC_STRING:
@@ -1745,6 +1790,9 @@ public class ObjectInputStream
             case TC_CLASSDESC:
                 descriptor = readNonProxyDesc(unshared);
                 break;
+            case TC_CLASSID:
+                descriptor = readClassId();
+                break;
             default:
                 throw new StreamCorruptedException(
                     String.format("invalid type code: %02X", tc));
@@ -1755,6 +1803,33 @@ public class ObjectInputStream
         return descriptor;
     }
 
+    /**
+     * Reads in a class id written in place of a class descriptor and returns
+     * the local descriptor registered under it.  Sets passHandle to
+     * NULL_HANDLE, since class ids are not assigned handles.
+     */
+    private ObjectStreamClass readClassId() throws IOException {
+        if (bin.readByte() != TC_CLASSID) {
+            throw new InternalError();
+        }
+        if (registry == null) {
+            throw new StreamCorruptedException(
+                "class id read by stream without registry");
+        }
+        int id = bin.readInt();
+        ObjectStreamClass desc = registry.lookup(id);
+        if (desc == null) {
+            throw new StreamCorruptedException(
+                String.format("invalid class id: %d", id));
+        }
+
+        totalObjectRefs++;
+        filterCheck(desc.forClass(), -1);
+
+        passHandle = NULL_HANDLE;
+        return desc;
+    }
+
     private boolean isCustomSubclass() {
         // Return true if this class is a custom subclass of ObjectInputStream
         return getClass().getClassLoader()
@@ -2717,8 +2792,10 @@ public class ObjectInputStream
     private class BlockDataInputStream
         extends InputStream implements DataInput
     {
-        /** maximum data block length */
+        /** default maximum data block length */
         private static final int MAX_BLOCK_SIZE = 1024;
+        /** buffer length for streams with a class registry */
+        static final int LARGE_BLOCK_SIZE = 8192;
         /** maximum data block header length */
         private static final int MAX_HEADER_SIZE = 5;
         /** (tunable) length of char buffer (for reading strings) */
@@ -2727,12 +2804,15 @@ public class ObjectInputStream
         private static final int HEADER_BLOCKED = -2;
 
         /** buffer for reading general/block data */
-        private final byte[] buf = new byte[MAX_BLOCK_SIZE];
+        private final byte[] buf;
         /** buffer for reading block data headers */
         private final byte[] hbuf = new byte[MAX_HEADER_SIZE];
         /** char buffer for fast string reads */
         private final char[] cbuf = new char[CHAR_BUF_SIZE];
 
+        /** length of buf */
+        private final int blockSize;
+
         /** block data mode */
         private boolean blkmode = false;
 
@@ -2754,7 +2834,17 @@ public class ObjectInputStream
          * Block data mode is turned off by default.
          */
         BlockDataInputStream(InputStream in) {
+            this(in, MAX_BLOCK_SIZE);
+        }
+
+        /**
+         * Creates new BlockDataInputStream on top of given underlying stream,
+         * buffering up to the given number of bytes of block data at once.
+         */
+        BlockDataInputStream(InputStream in, int blockSize) {
             this.in = new PeekInputStream(in);
+            this.blockSize = blockSize;
+            buf = new byte[blockSize];
             din = new DataInputStream(this);
         }
 
@@ -2887,7 +2977,7 @@ public class ObjectInputStream
                     pos = 0;
                     if (unread > 0) {
                         int n =
-                            in.read(buf, 0, Math.min(unread, MAX_BLOCK_SIZE));
+                            in.read(buf, 0, Math.min(unread, blockSize));
                         if (n >= 0) {
                             end = n;
                             unread -= n;
@@ -2994,7 +3084,7 @@ public class ObjectInputStream
                     remain -= nread;
                     pos += nread;
                 } else {
-                    int nread = (int) Math.min(remain, MAX_BLOCK_SIZE);
+                    int nread = (int) Math.min(remain, blockSize);
                     if ((nread = in.read(buf, 0, nread)) < 0) {
                         break;
                     }
@@ -3065,7 +3155,7 @@ public class ObjectInputStream
                 pos += nread;
                 return nread;
             } else if (copy) {
-                int nread = in.read(buf, 0, Math.min(len, MAX_BLOCK_SIZE));
+                int nread = in.read(buf, 0, Math.min(len, blockSize));
                 if (nread > 0) {
                     System.arraycopy(buf, 0, b, off, nread);
                 }
@@ -3237,7 +3327,7 @@ public class ObjectInputStream
             int stop, endoff = off + len;
             while (off < endoff) {
                 if (!blkmode) {
-                    int span = Math.min(endoff - off, MAX_BLOCK_SIZE);
+                    int span = Math.min(endoff - off, blockSize);
                     in.readFully(buf, 0, span);
                     stop = off + span;
                     pos = 0;
@@ -3258,7 +3348,7 @@ public class ObjectInputStream
             int stop, endoff = off + len;
             while (off < endoff) {
                 if (!blkmode) {
-                    int span = Math.min(endoff - off, MAX_BLOCK_SIZE >> 1);
+                    int span = Math.min(endoff - off, blockSize >> 1);
                     in.readFully(buf, 0, span << 1);
                     stop = off + span;
                     pos = 0;
@@ -3280,7 +3370,7 @@ public class ObjectInputStream
             int stop, endoff = off + len;
             while (off < endoff) {
                 if (!blkmode) {
-                    int span = Math.min(endoff - off, MAX_BLOCK_SIZE >> 1);
+                    int span = Math.min(endoff - off, blockSize >> 1);
                     in.readFully(buf, 0, span << 1);
                     stop = off + span;
                     pos = 0;
@@ -3302,7 +3392,7 @@ public class ObjectInputStream
             int stop, endoff = off + len;
             while (off < endoff) {
                 if (!blkmode) {
-                    int span = Math.min(endoff - off, MAX_BLOCK_SIZE >> 2);
+                    int span = Math.min(endoff - off, blockSize >> 2);
                     in.readFully(buf, 0, span << 2);
                     stop = off + span;
                     pos = 0;
@@ -3324,7 +3414,7 @@ public class ObjectInputStream
             int span, endoff = off + len;
             while (off < endoff) {
                 if (!blkmode) {
-                    span = Math.min(endoff - off, MAX_BLOCK_SIZE >> 2);
+                    span = Math.min(endoff - off, blockSize >> 2);
                     in.readFully(buf, 0, span << 2);
                     pos = 0;
                 } else if (end - pos < 4) {
@@ -3344,7 +3434,7 @@ public class ObjectInputStream
             int stop, endoff = off + len;
             while (off < endoff) {
                 if (!blkmode) {
-                    int span = Math.min(endoff - off, MAX_BLOCK_SIZE >> 3);
+                    int span = Math.min(endoff - off, blockSize >> 3);
                     in.readFully(buf, 0, span << 3);
                     stop = off + span;
                     pos = 0;
@@ -3366,7 +3456,7 @@ public class ObjectInputStream
             int span, endoff = off + len;
             while (off < endoff) {
                 if (!blkmode) {
-                    span = Math.min(endoff - off, MAX_BLOCK_SIZE >> 3);
+                    span = Math.min(endoff - off, blockSize >> 3);
                     in.readFully(buf, 0, span << 3);
                     pos = 0;
                 } else if (end - pos < 8) {
@@ -3416,7 +3506,7 @@ public class ObjectInputStream
                             System.arraycopy(buf, pos, buf, 0, avail);
                         }
                         pos = 0;
-                        end = (int) Math.min(MAX_BLOCK_SIZE, utflen);
+                        end = (int) Math.min(blockSize, utflen);
                         in.readFully(buf, avail, end - avail);
                     }
                 }
@@ -179,6 +179,10 @@ public class ObjectOutputStream
     private final HandleTable handles;
     /** obj -> replacement obj map */
     private final ReplaceTable subs;
+    /** classes written as ids instead of descriptors; may be null */
+    private final ObjectStreamRegistry registry;
+    /** if false, objects other than class descriptors are never shared */
+    private final boolean trackIdentity;
     /** stream protocol version */
     private int protocol = PROTOCOL_VERSION_2;
     /** recursion depth */
@@ -242,6 +246,62 @@ public class ObjectOutputStream
         bout = new BlockDataOutputStream(out);
         handles = new HandleTable(10, (float) 3.00);
         subs = new ReplaceTable(10, (float) 3.00);
+        registry = null;
+        trackIdentity = true;
+        enableOverride = false;
+        writeStreamHeader();
+        bout.setBlockDataMode(true);
+        if (extendedDebugInfo) {
+            debugInfoStack = new DebugTraceInfoStack();
+        } else {
+            debugInfoStack = null;
+        }
+    }
+
+    /**
+     * Creates an ObjectOutputStream that writes to the specified OutputStream,
+     * replacing the class descriptors of the classes in the given registry by
+     * their ids.  The stream can only be read by an ObjectInputStream created
+     * with an equivalent registry.  Primitive data is written in blocks of up
+     * to 8192 bytes rather than 1024.
+     *
+     * <p>If <code>trackIdentity</code> is false, every object other than a
+     * class descriptor is written as if by {@link #writeUnshared}: repeated
+     * references to the same object produce repeated copies, and no identity
+     * lookups are made for them.  This is only safe for object
+     * graphs without cycles; a cyclic graph makes the stream recurse until the
+     * stack is exhausted.
+     *
+     * <p>As with {@link #ObjectOutputStream(OutputStream)}, this constructor
+     * writes the stream header and checks the "enableSubclassImplementation"
+     * SerializablePermission for subclasses overriding security-sensitive
+     * methods.
+     *
+     * @param   out output stream to write to
+     * @param   registry the classes to write as ids
+     * @param   trackIdentity whether to preserve shared and cyclic references
+     * @throws  IOException if an I/O error occurs while writing stream header
+     * @throws  SecurityException if untrusted subclass illegally overrides
+     *          security-sensitive methods
+     * @throws  NullPointerException if <code>out</code> or
+     *          <code>registry</code> is <code>null</code>
+     * @since   1.8
+     * @see     ObjectInputStream#ObjectInputStream(InputStream, ObjectStreamRegistry)
+     */
+    public ObjectOutputStream(OutputStream out, ObjectStreamRegistry registry,
+                              boolean trackIdentity)
+        throws IOException
+    {
+        verifySubclass();
+        if (registry == null) {
+            throw new NullPointerException();
+        }
+        bout = new BlockDataOutputStream(out,
+            BlockDataOutputStream.LARGE_BLOCK_SIZE);
+        handles = new HandleTable(10, (float) 3.00);
+        subs = new ReplaceTable(10, (float) 3.00);
+        this.registry = registry;
+        this.trackIdentity = trackIdentity;
         enableOverride = false;
         writeStreamHeader();
         bout.setBlockDataMode(true);
@@ -277,6 +337,8 @@ public class ObjectOutputStream
         bout = null;
         handles = null;
         subs = null;
+        registry = null;
+        trackIdentity = true;
         enableOverride = true;
         debugInfoStack = null;
     }
@@ -1108,12 +1170,15 @@ public class ObjectOutputStream
         boolean oldMode = bout.setBlockDataMode(false);
         depth++;
         try {
+            // without identity tracking, objects are written as unshared
+            boolean untracked = unshared || !trackIdentity;
+
             // handle previously written and non-replaceable objects
             int h;
             if ((obj = subs.lookup(obj)) == null) {
                 writeNull();
                 return;
-            } else if (!unshared && (h = handles.lookup(obj)) != -1) {
+            } else if (!untracked && (h = handles.lookup(obj)) != -1) {
                 writeHandle(h);
                 return;
             } else if (obj instanceof Class) {
@@ -1131,7 +1196,7 @@ public class ObjectOutputStream
             for (;;) {
                 // REMIND: skip this check for strings/arrays?
                 Class<?> repCl;
-                desc = ObjectStreamClass.lookup(cl, true);
+                desc = lookupDesc(cl);
                 if (!desc.hasWriteReplaceMethod() ||
                     (obj = desc.invokeWriteReplace(obj)) == null ||
                     (repCl = obj.getClass()) == cl)
@@ -1144,7 +1209,7 @@ public class ObjectOutputStream
                 Object rep = replaceObject(obj);
                 if (rep != obj && rep != null) {
                     cl = rep.getClass();
-                    desc = ObjectStreamClass.lookup(cl, true);
+                    desc = lookupDesc(cl);
                 }
                 obj = rep;
             }
@@ -1155,7 +1220,7 @@ public class ObjectOutputStream
                 if (obj == null) {
                     writeNull();
                     return;
-                } else if (!unshared && (h = handles.lookup(obj)) != -1) {
+                } else if (!untracked && (h = handles.lookup(obj)) != -1) {
                     writeHandle(h);
                     return;
                 } else if (obj instanceof Class) {
@@ -1169,13 +1234,13 @@ public class ObjectOutputStream
 
             // remaining cases
             if (obj instanceof String) {
-                writeString((String) obj, unshared);
+                writeString((String) obj, untracked);
             } else if (cl.isArray()) {
-                writeArray(obj, desc, unshared);
+                writeArray(obj, desc, untracked);
             } else if (obj instanceof Enum) {
-                writeEnum((Enum<?>) obj, desc, unshared);
+                writeEnum((Enum<?>) obj, desc, untracked);
             } else if (obj instanceof Serializable) {
-                writeOrdinaryObject(obj, desc, unshared);
+                writeOrdinaryObject(obj, desc, untracked);
             } else {
                 if (extendedDebugInfo) {
                     throw new NotSerializableException(
@@ -1190,6 +1255,20 @@ public class ObjectOutputStream
         }
     }
 
+    /**
+     * Returns the local class descriptor for the given class, taking it from
+     * the registry if the class is registered.
+     */
+    private ObjectStreamClass lookupDesc(Class<?> cl) {
+        if (registry != null) {
+            ObjectStreamClass desc = registry.lookup(cl);
+            if (desc != null) {
+                return desc;
+            }
+        }
+        return ObjectStreamClass.lookup(cl, true);
+    }
+
     /**
      * Writes null code to stream.
      */
@@ -1210,7 +1289,7 @@ public class ObjectOutputStream
      */
     private void writeClass(Class<?> cl, boolean unshared) throws IOException {
         bout.writeByte(TC_CLASS);
-        writeClassDesc(ObjectStreamClass.lookup(cl, true), false);
+        writeClassDesc(lookupDesc(cl), false);
         handles.assign(unshared ? null : cl);
     }
 
@@ -1220,9 +1299,13 @@ public class ObjectOutputStream
     private void writeClassDesc(ObjectStreamClass desc, boolean unshared)
         throws IOException
     {
-        int handle;
+        int handle, id;
         if (desc == null) {
             writeNull();
+        } else if (registry != null && protocol == PROTOCOL_VERSION_2 &&
+                   (id = registry.idOf(desc)) != -1)
+        {
+            writeClassId(id);
         } else if (!unshared && (handle = handles.lookup(desc)) != -1) {
             writeHandle(handle);
         } else if (desc.isProxy()) {
@@ -1232,6 +1315,17 @@ public class ObjectOutputStream
         }
     }
 
+    /**
+     * Writes the registry id of a class descriptor to stream in place of the
+     * descriptor itself.  Unlike descriptors, ids are not assigned handles.
+     * Only used with PROTOCOL_VERSION_2, since the reader takes the
+     * block-data flag of externalizable classes from the local descriptor.
+     */
+    private void writeClassId(int id) throws IOException {
+        bout.writeByte(TC_CLASSID);
+        bout.writeInt(id);
+    }
+
     private boolean isCustomSubclass() {
         // Return true if this class is a custom subclass of ObjectOutputStream
         return getClass().getClassLoader()
@@ -1739,20 +1833,25 @@ public class ObjectOutputStream
     private static class BlockDataOutputStream
         extends OutputStream implements DataOutput
     {
-        /** maximum data block length */
+        /** default maximum data block length */
         private static final int MAX_BLOCK_SIZE = 1024;
+        /** maximum data block length for streams with a class registry */
+        static final int LARGE_BLOCK_SIZE = 8192;
         /** maximum data block header length */
         private static final int MAX_HEADER_SIZE = 5;
         /** (tunable) length of char buffer (for writing strings) */
         private static final int CHAR_BUF_SIZE = 256;
 
         /** buffer for writing general/block data */
-        private final byte[] buf = new byte[MAX_BLOCK_SIZE];
+        private final byte[] buf;
         /** buffer for writing block data headers */
         private final byte[] hbuf = new byte[MAX_HEADER_SIZE];
         /** char buffer for fast string writes */
         private final char[] cbuf = new char[CHAR_BUF_SIZE];
 
+        /** maximum data block length */
+        private final int blockSize;
+
         /** block data mode */
         private boolean blkmode = false;
         /** current offset into buf */
@@ -1768,7 +1867,17 @@ public class ObjectOutputStream
          * Block data mode is turned off by default.
          */
         BlockDataOutputStream(OutputStream out) {
+            this(out, MAX_BLOCK_SIZE);
+        }
+
+        /**
+         * Creates new BlockDataOutputStream on top of given underlying stream,
+         * writing data blocks of up to the given length.
+         */
+        BlockDataOutputStream(OutputStream out, int blockSize) {
             this.out = out;
+            this.blockSize = blockSize;
+            buf = new byte[blockSize];
             dout = new DataOutputStream(this);
         }
 
@@ -1804,7 +1913,7 @@ public class ObjectOutputStream
          */
 
         public void write(int b) throws IOException {
-            if (pos >= MAX_BLOCK_SIZE) {
+            if (pos >= blockSize) {
                 drain();
             }
             buf[pos++] = (byte) b;
@@ -1844,17 +1953,17 @@ public class ObjectOutputStream
             }
 
             while (len > 0) {
-                if (pos >= MAX_BLOCK_SIZE) {
+                if (pos >= blockSize) {
                     drain();
                 }
-                if (len >= MAX_BLOCK_SIZE && !copy && pos == 0) {
+                if (len >= blockSize && !copy && pos == 0) {
                     // avoid unnecessary copy
-                    writeBlockHeader(MAX_BLOCK_SIZE);
-                    out.write(b, off, MAX_BLOCK_SIZE);
-                    off += MAX_BLOCK_SIZE;
-                    len -= MAX_BLOCK_SIZE;
+                    writeBlockHeader(blockSize);
+                    out.write(b, off, blockSize);
+                    off += blockSize;
+                    len -= blockSize;
                 } else {
-                    int wlen = Math.min(len, MAX_BLOCK_SIZE - pos);
+                    int wlen = Math.min(len, blockSize - pos);
                     System.arraycopy(b, off, buf, pos, wlen);
                     pos += wlen;
                     off += wlen;
@@ -1904,21 +2013,21 @@ public class ObjectOutputStream
          */
 
         public void writeBoolean(boolean v) throws IOException {
-            if (pos >= MAX_BLOCK_SIZE) {
+            if (pos >= blockSize) {
                 drain();
             }
             Bits.putBoolean(buf, pos++, v);
         }
 
         public void writeByte(int v) throws IOException {
-            if (pos >= MAX_BLOCK_SIZE) {
+            if (pos >= blockSize) {
                 drain();
             }
             buf[pos++] = (byte) v;
         }
 
         public void writeChar(int v) throws IOException {
-            if (pos + 2 <= MAX_BLOCK_SIZE) {
+            if (pos + 2 <= blockSize) {
                 Bits.putChar(buf, pos, (char) v);
                 pos += 2;
             } else {
@@ -1927,7 +2036,7 @@ public class ObjectOutputStream
         }
 
         public void writeShort(int v) throws IOException {
-            if (pos + 2 <= MAX_BLOCK_SIZE) {
+            if (pos + 2 <= blockSize) {
                 Bits.putShort(buf, pos, (short) v);
                 pos += 2;
             } else {
@@ -1936,7 +2045,7 @@ public class ObjectOutputStream
         }
 
         public void writeInt(int v) throws IOException {
-            if (pos + 4 <= MAX_BLOCK_SIZE) {
+            if (pos + 4 <= blockSize) {
                 Bits.putInt(buf, pos, v);
                 pos += 4;
             } else {
@@ -1945,7 +2054,7 @@ public class ObjectOutputStream
         }
 
         public void writeFloat(float v) throws IOException {
-            if (pos + 4 <= MAX_BLOCK_SIZE) {
+            if (pos + 4 <= blockSize) {
                 Bits.putFloat(buf, pos, v);
                 pos += 4;
             } else {
@@ -1954,7 +2063,7 @@ public class ObjectOutputStream
         }
 
         public void writeLong(long v) throws IOException {
-            if (pos + 8 <= MAX_BLOCK_SIZE) {
+            if (pos + 8 <= blockSize) {
                 Bits.putLong(buf, pos, v);
                 pos += 8;
             } else {
@@ -1963,7 +2072,7 @@ public class ObjectOutputStream
         }
 
         public void writeDouble(double v) throws IOException {
-            if (pos + 8 <= MAX_BLOCK_SIZE) {
+            if (pos + 8 <= blockSize) {
                 Bits.putDouble(buf, pos, v);
                 pos += 8;
             } else {
@@ -1981,10 +2090,10 @@ public class ObjectOutputStream
                     csize = Math.min(endoff - off, CHAR_BUF_SIZE);
                     s.getChars(off, off + csize, cbuf, 0);
                 }
-                if (pos >= MAX_BLOCK_SIZE) {
+                if (pos >= blockSize) {
                     drain();
                 }
-                int n = Math.min(csize - cpos, MAX_BLOCK_SIZE - pos);
+                int n = Math.min(csize - cpos, blockSize - pos);
                 int stop = pos + n;
                 while (pos < stop) {
                     buf[pos++] = (byte) cbuf[cpos++];
@@ -2019,10 +2128,10 @@ public class ObjectOutputStream
         void writeBooleans(boolean[] v, int off, int len) throws IOException {
             int endoff = off + len;
             while (off < endoff) {
-                if (pos >= MAX_BLOCK_SIZE) {
+                if (pos >= blockSize) {
                     drain();
                 }
-                int stop = Math.min(endoff, off + (MAX_BLOCK_SIZE - pos));
+                int stop = Math.min(endoff, off + (blockSize - pos));
                 while (off < stop) {
                     Bits.putBoolean(buf, pos++, v[off++]);
                 }
@@ -2030,11 +2139,11 @@ public class ObjectOutputStream
         }
 
         void writeChars(char[] v, int off, int len) throws IOException {
-            int limit = MAX_BLOCK_SIZE - 2;
+            int limit = blockSize - 2;
             int endoff = off + len;
             while (off < endoff) {
                 if (pos <= limit) {
-                    int avail = (MAX_BLOCK_SIZE - pos) >> 1;
+                    int avail = (blockSize - pos) >> 1;
                     int stop = Math.min(endoff, off + avail);
                     while (off < stop) {
                         Bits.putChar(buf, pos, v[off++]);
@@ -2047,11 +2156,11 @@ public class ObjectOutputStream
         }
 
         void writeShorts(short[] v, int off, int len) throws IOException {
-            int limit = MAX_BLOCK_SIZE - 2;
+            int limit = blockSize - 2;
             int endoff = off + len;
             while (off < endoff) {
                 if (pos <= limit) {
-                    int avail = (MAX_BLOCK_SIZE - pos) >> 1;
+                    int avail = (blockSize - pos) >> 1;
                     int stop = Math.min(endoff, off + avail);
                     while (off < stop) {
                         Bits.putShort(buf, pos, v[off++]);
@@ -2064,11 +2173,11 @@ public class ObjectOutputStream
         }
 
         void writeInts(int[] v, int off, int len) throws IOException {
-            int limit = MAX_BLOCK_SIZE - 4;
+            int limit = blockSize - 4;
             int endoff = off + len;
             while (off < endoff) {
                 if (pos <= limit) {
-                    int avail = (MAX_BLOCK_SIZE - pos) >> 2;
+                    int avail = (blockSize - pos) >> 2;
                     int stop = Math.min(endoff, off + avail);
                     while (off < stop) {
                         Bits.putInt(buf, pos, v[off++]);
@@ -2081,11 +2190,11 @@ public class ObjectOutputStream
         }
 
         void writeFloats(float[] v, int off, int len) throws IOException {
-            int limit = MAX_BLOCK_SIZE - 4;
+            int limit = blockSize - 4;
             int endoff = off + len;
             while (off < endoff) {
                 if (pos <= limit) {
-                    int avail = (MAX_BLOCK_SIZE - pos) >> 2;
+                    int avail = (blockSize - pos) >> 2;
                     int chunklen = Math.min(endoff - off, avail);
                     floatsToBytes(v, off, buf, pos, chunklen);
                     off += chunklen;
@@ -2097,11 +2206,11 @@ public class ObjectOutputStream
         }
 
         void writeLongs(long[] v, int off, int len) throws IOException {
-            int limit = MAX_BLOCK_SIZE - 8;
+            int limit = blockSize - 8;
             int endoff = off + len;
             while (off < endoff) {
                 if (pos <= limit) {
-                    int avail = (MAX_BLOCK_SIZE - pos) >> 3;
+                    int avail = (blockSize - pos) >> 3;
                     int stop = Math.min(endoff, off + avail);
                     while (off < stop) {
                         Bits.putLong(buf, pos, v[off++]);
@@ -2114,11 +2223,11 @@ public class ObjectOutputStream
         }
 
         void writeDoubles(double[] v, int off, int len) throws IOException {
-            int limit = MAX_BLOCK_SIZE - 8;
+            int limit = blockSize - 8;
             int endoff = off + len;
             while (off < endoff) {
                 if (pos <= limit) {
-                    int avail = (MAX_BLOCK_SIZE - pos) >> 3;
+                    int avail = (blockSize - pos) >> 3;
                     int chunklen = Math.min(endoff - off, avail);
                     doublesToBytes(v, off, buf, pos, chunklen);
                     off += chunklen;
@@ -2198,7 +2307,7 @@ public class ObjectOutputStream
          * 8-byte length header) of the UTF encoding for the given string.
          */
         private void writeUTFBody(String s) throws IOException {
-            int limit = MAX_BLOCK_SIZE - 3;
+            int limit = blockSize - 3;
             int len = s.length();
             for (int off = 0; off < len; ) {
                 int csize = Math.min(len - off, CHAR_BUF_SIZE);
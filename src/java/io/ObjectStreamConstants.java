@@ -129,10 +129,16 @@ public interface ObjectStreamConstants {
      */
     final static byte TC_ENUM =         (byte)0x7E;
 
+    /**
+     * Class Descriptor replaced by its id in an {@link ObjectStreamRegistry}.
+     * @since 1.8
+     */
+    final static byte TC_CLASSID =      (byte)0x7F;
+
     /**
      * Last tag value.
      */
-    final static byte TC_MAX =          (byte)0x7E;
+    final static byte TC_MAX =          (byte)0x7F;
 
     /**
      * First wire handle to be assigned.
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.io;
+
+import java.lang.reflect.Proxy;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A fixed set of classes that an {@link ObjectOutputStream} and an
+ * {@link ObjectInputStream} agree on in advance.  Each class is identified by
+ * its position in the array given to the constructor, and streams created
+ * with a registry write that id in place of the class descriptor of a
+ * registered class.  The descriptors, and the field reflectors they hold, are
+ * looked up once when the registry is created and shared by every stream
+ * using it.
+ *
+ * <p>A registry is intended for trusted, closed sets of classes exchanged
+ * between peers running the same code: the writer and the reader must be
+ * created with registries listing the same classes in the same order.  For
+ * registered classes no class names, serialVersionUIDs or field descriptions
+ * are written, so {@code annotateClass}, {@code resolveClass} and the
+ * class compatibility checks are bypassed and the local class definitions
+ * are assumed to be identical on both sides.  Classes which are not
+ * registered are written with ordinary descriptors.
+ *
+ * <p>Instances of this class are immutable and may be shared by any number
+ * of streams in any number of threads.
+ *
+ * @see ObjectOutputStream#ObjectOutputStream(OutputStream, ObjectStreamRegistry, boolean)
+ * @see ObjectInputStream#ObjectInputStream(InputStream, ObjectStreamRegistry)
+ * @since 1.8
+ */
+public final class ObjectStreamRegistry {
+
+    /** registered classes, indexed by id */
+    private final Class<?>[] classes;
+    /** local class descriptors, indexed by id */
+    private final ObjectStreamClass[] descs;
+    /** maps registered class -> id */
+    private final Map<Class<?>, Integer> ids;
+
+    /**
+     * Creates a registry assigning each of the given classes its index in
+     * {@code classes} as id.
+     *
+     * @param   classes the classes to register
+     * @throws  IllegalArgumentException if a class is listed more than once,
+     *          is a dynamic proxy class, or is not serializable
+     * @throws  NullPointerException if {@code classes} or any of its
+     *          elements is {@code null}
+     */
+    public ObjectStreamRegistry(Class<?>... classes) {
+        this.classes = classes.clone();
+        descs = new ObjectStreamClass[this.classes.length];
+        ids = new IdentityHashMap<>(this.classes.length);
+        for (int i = 0; i < this.classes.length; i++) {
+            Class<?> cl = this.classes[i];
+            if (Proxy.isProxyClass(cl)) {
+                throw new IllegalArgumentException(
+                    "proxy class: " + cl.getName());
+            }
+            ObjectStreamClass desc = ObjectStreamClass.lookup(cl, false);
+            if (desc == null) {
+                throw new IllegalArgumentException(
+                    "class not serializable: " + cl.getName());
+            }
+            if (ids.put(cl, i) != null) {
+                throw new IllegalArgumentException(
+                    "class registered twice: " + cl.getName());
+            }
+            descs[i] = desc;
+        }
+    }
+
+    /**
+     * Returns the number of registered classes.
+     *
+     * @return  the number of registered classes
+     */
+    public int size() {
+        return classes.length;
+    }
+
+    /**
+     * Returns the id of the given class, or -1 if it is not registered.
+     *
+     * @param   cl the class
+     * @return  the id of {@code cl}, or -1 if it is not registered
+     */
+    public int idOf(Class<?> cl) {
+        Integer id = ids.get(cl);
+        return (id != null) ? id : -1;
+    }
+
+    /**
+     * Returns the class registered under the given id, or {@code null} if
+     * there is no such class.
+     *
+     * @param   id the class id
+     * @return  the class with the given id, or {@code null}
+     */
+    public Class<?> classOf(int id) {
+        return (id >= 0 && id < classes.length) ? classes[id] : null;
+    }
+
+    /**
+     * Returns the id of the given descriptor if it is the local descriptor
+     * held by this registry, or -1 otherwise.
+     */
+    int idOf(ObjectStreamClass desc) {
+        int id = idOf(desc.forClass());
+        return (id != -1 && descs[id] == desc) ? id : -1;
+    }
+
+    /**
+     * Returns the local descriptor of the given class if it is registered,
+     * or null otherwise.
+     */
+    ObjectStreamClass lookup(Class<?> cl) {
+        Integer id = ids.get(cl);
+        return (id != null) ? descs[id] : null;
+    }
+
+    /**
+     * Returns the local descriptor registered under the given id, or null if
+     * there is no such descriptor.
+     */
+    ObjectStreamClass lookup(int id) {
+        return (id >= 0 && id < descs.length) ? descs[id] : null;
+    }
+}
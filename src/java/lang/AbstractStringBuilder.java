@@ -693,7 +693,8 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * @return  a reference to this object.
      */
     public AbstractStringBuilder append(double d) {
-        FloatingDecimal.appendTo(d,this);
+        ensureCapacityInternal(count + DoubleToDecimal.MAX_CHARS);
+        count = DoubleToDecimal.toChars(d, value, count);
         return this;
     }
 
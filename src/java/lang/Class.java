@@ -2418,12 +2418,15 @@ public final class Class<T> implements java.io.Serializable,
         private static final long annotationTypeOffset;
         // offset of Class.annotationData instance field
         private static final long annotationDataOffset;
+        // offset of Class.warmedKinds instance field
+        private static final long warmedKindsOffset;
 
         static {
             Field[] fields = Class.class.getDeclaredFields0(false); // bypass caches
             reflectionDataOffset = objectFieldOffset(fields, "reflectionData");
             annotationTypeOffset = objectFieldOffset(fields, "annotationType");
             annotationDataOffset = objectFieldOffset(fields, "annotationData");
+            warmedKindsOffset = objectFieldOffset(fields, "warmedKinds");
         }
 
         private static long objectFieldOffset(Field[] fields, String fieldName) {
@@ -2451,6 +2454,10 @@ public final class Class<T> implements java.io.Serializable,
                                              AnnotationData newData) {
             return unsafe.compareAndSwapObject(clazz, annotationDataOffset, oldData, newData);
         }
+
+        static boolean casWarmedKinds(Class<?> clazz, int oldKinds, int newKinds) {
+            return unsafe.compareAndSwapInt(clazz, warmedKindsOffset, oldKinds, newKinds);
+        }
     }
 
     /**
@@ -2487,6 +2494,73 @@ public final class Class<T> implements java.io.Serializable,
     // that redefines this class or a superclass.
     private volatile transient int classRedefinedCount = 0;
 
+    // The recorder of computed metadata while a ReflectionSnapshot is
+    // being recorded; null otherwise
+    static volatile ReflectionSnapshot.Recorder snapshotRecorder;
+
+    // Notes the computation of the given kind of metadata for this class
+    private void recordSnapshot(int kind) {
+        ReflectionSnapshot.Recorder r = snapshotRecorder;
+        if (r != null) {
+            r.record(this, kind);
+        }
+    }
+
+    // Kinds of metadata computed by ReflectionSnapshot.warm while a
+    // snapshot is being recorded, and not used since.  These are
+    // recorded on first use instead, so that the snapshot reflects
+    // the order in which the application needs them.
+    private volatile transient int warmedKinds;
+
+    // Notes that the given kind of metadata was computed ahead of use
+    void markWarmed(int kind) {
+        for (int k; ((k = warmedKinds) & kind) == 0; ) {
+            if (Atomic.casWarmedKinds(this, k, k | kind))
+                break;
+        }
+    }
+
+    // Notes a use of the given kind of cached metadata for this class
+    private void useSnapshot(int kind) {
+        if ((warmedKinds & kind) != 0) {
+            for (int k; ((k = warmedKinds) & kind) != 0; ) {
+                if (Atomic.casWarmedKinds(this, k, k & ~kind)) {
+                    recordSnapshot(kind);
+                    break;
+                }
+            }
+        }
+    }
+
+    // Computes and caches the given kinds of metadata, as recorded in a
+    // ReflectionSnapshot
+    void warmReflectionData(int kinds) {
+        if ((kinds & ReflectionSnapshot.DECLARED_FIELDS) != 0)
+            privateGetDeclaredFields(false);
+        if ((kinds & ReflectionSnapshot.DECLARED_PUBLIC_FIELDS) != 0)
+            privateGetDeclaredFields(true);
+        if ((kinds & ReflectionSnapshot.PUBLIC_FIELDS) != 0)
+            privateGetPublicFields(null);
+        if ((kinds & ReflectionSnapshot.DECLARED_METHODS) != 0)
+            privateGetDeclaredMethods(false);
+        if ((kinds & ReflectionSnapshot.DECLARED_PUBLIC_METHODS) != 0)
+            privateGetDeclaredMethods(true);
+        if ((kinds & ReflectionSnapshot.PUBLIC_METHODS) != 0)
+            privateGetPublicMethods();
+        if ((kinds & ReflectionSnapshot.DECLARED_CONSTRUCTORS) != 0)
+            privateGetDeclaredConstructors(false);
+        if ((kinds & ReflectionSnapshot.PUBLIC_CONSTRUCTORS) != 0)
+            privateGetDeclaredConstructors(true);
+        if ((kinds & ReflectionSnapshot.ANNOTATIONS) != 0)
+            annotationData();
+        if ((kinds & ReflectionSnapshot.ANNOTATION_TYPE) != 0 && isAnnotation()) {
+            @SuppressWarnings("unchecked")
+            Class<? extends Annotation> annotationClass =
+                (Class<? extends Annotation>) this;
+            AnnotationType.getInstance(annotationClass);
+        }
+    }
+
     // Lazily create and cache ReflectionData
     private ReflectionData<T> reflectionData() {
         SoftReference<ReflectionData<T>> reflectionData = this.reflectionData;
@@ -2577,10 +2651,16 @@ public final class Class<T> implements java.io.Serializable,
         ReflectionData<T> rd = reflectionData();
         if (rd != null) {
             res = publicOnly ? rd.declaredPublicFields : rd.declaredFields;
-            if (res != null) return res;
+            if (res != null) {
+                useSnapshot(publicOnly ? ReflectionSnapshot.DECLARED_PUBLIC_FIELDS
+                                       : ReflectionSnapshot.DECLARED_FIELDS);
+                return res;
+            }
         }
         // No cached value available; request value from VM
         res = Reflection.filterFields(this, getDeclaredFields0(publicOnly));
+        recordSnapshot(publicOnly ? ReflectionSnapshot.DECLARED_PUBLIC_FIELDS
+                                  : ReflectionSnapshot.DECLARED_FIELDS);
         if (rd != null) {
             if (publicOnly) {
                 rd.declaredPublicFields = res;
@@ -2600,7 +2680,10 @@ public final class Class<T> implements java.io.Serializable,
         ReflectionData<T> rd = reflectionData();
         if (rd != null) {
             res = rd.publicFields;
-            if (res != null) return res;
+            if (res != null) {
+                useSnapshot(ReflectionSnapshot.PUBLIC_FIELDS);
+                return res;
+            }
         }
 
         // No cached value available; compute value recursively.
@@ -2632,6 +2715,7 @@ public final class Class<T> implements java.io.Serializable,
 
         res = new Field[fields.size()];
         fields.toArray(res);
+        recordSnapshot(ReflectionSnapshot.PUBLIC_FIELDS);
         if (rd != null) {
             rd.publicFields = res;
         }
@@ -2660,7 +2744,11 @@ public final class Class<T> implements java.io.Serializable,
         ReflectionData<T> rd = reflectionData();
         if (rd != null) {
             res = publicOnly ? rd.publicConstructors : rd.declaredConstructors;
-            if (res != null) return res;
+            if (res != null) {
+                useSnapshot(publicOnly ? ReflectionSnapshot.PUBLIC_CONSTRUCTORS
+                                       : ReflectionSnapshot.DECLARED_CONSTRUCTORS);
+                return res;
+            }
         }
         // No cached value available; request value from VM
         if (isInterface()) {
@@ -2670,6 +2758,8 @@ public final class Class<T> implements java.io.Serializable,
         } else {
             res = getDeclaredConstructors0(publicOnly);
         }
+        recordSnapshot(publicOnly ? ReflectionSnapshot.PUBLIC_CONSTRUCTORS
+                                  : ReflectionSnapshot.DECLARED_CONSTRUCTORS);
         if (rd != null) {
             if (publicOnly) {
                 rd.publicConstructors = res;
@@ -2695,10 +2785,16 @@ public final class Class<T> implements java.io.Serializable,
         ReflectionData<T> rd = reflectionData();
         if (rd != null) {
             res = publicOnly ? rd.declaredPublicMethods : rd.declaredMethods;
-            if (res != null) return res;
+            if (res != null) {
+                useSnapshot(publicOnly ? ReflectionSnapshot.DECLARED_PUBLIC_METHODS
+                                       : ReflectionSnapshot.DECLARED_METHODS);
+                return res;
+            }
         }
         // No cached value available; request value from VM
         res = Reflection.filterMethods(this, getDeclaredMethods0(publicOnly));
+        recordSnapshot(publicOnly ? ReflectionSnapshot.DECLARED_PUBLIC_METHODS
+                                  : ReflectionSnapshot.DECLARED_METHODS);
         if (rd != null) {
             if (publicOnly) {
                 rd.declaredPublicMethods = res;
@@ -2892,7 +2988,10 @@ public final class Class<T> implements java.io.Serializable,
         ReflectionData<T> rd = reflectionData();
         if (rd != null) {
             res = rd.publicMethods;
-            if (res != null) return res;
+            if (res != null) {
+                useSnapshot(ReflectionSnapshot.PUBLIC_METHODS);
+                return res;
+            }
         }
 
         // No cached value available; compute value recursively.
@@ -2941,6 +3040,7 @@ public final class Class<T> implements java.io.Serializable,
         methods.removeLessSpecifics();
         methods.compactAndTrim();
         res = methods.getArray();
+        recordSnapshot(ReflectionSnapshot.PUBLIC_METHODS);
         if (rd != null) {
             rd.publicMethods = res;
         }
@@ -3504,6 +3604,7 @@ public final class Class<T> implements java.io.Serializable,
             int classRedefinedCount = this.classRedefinedCount;
             if (annotationData != null &&
                 annotationData.redefinedCount == classRedefinedCount) {
+                useSnapshot(ReflectionSnapshot.ANNOTATIONS);
                 return annotationData;
             }
             // null or stale annotationData -> optimistically create new instance
@@ -3519,6 +3620,7 @@ public final class Class<T> implements java.io.Serializable,
     private AnnotationData createAnnotationData(int classRedefinedCount) {
         Map<Class<? extends Annotation>, Annotation> declaredAnnotations =
             AnnotationParser.parseAnnotations(getRawAnnotations(), getConstantPool(), this);
+        recordSnapshot(ReflectionSnapshot.ANNOTATIONS);
         Class<?> superClass = getSuperclass();
         Map<Class<? extends Annotation>, Annotation> annotations = null;
         if (superClass != null) {
@@ -3554,10 +3656,17 @@ public final class Class<T> implements java.io.Serializable,
     private volatile transient AnnotationType annotationType;
 
     boolean casAnnotationType(AnnotationType oldType, AnnotationType newType) {
-        return Atomic.casAnnotationType(this, oldType, newType);
+        if (!Atomic.casAnnotationType(this, oldType, newType))
+            return false;
+        if (oldType == null)
+            recordSnapshot(ReflectionSnapshot.ANNOTATION_TYPE);
+        return true;
     }
 
     AnnotationType getAnnotationType() {
+        AnnotationType annotationType = this.annotationType;
+        if (annotationType != null)
+            useSnapshot(ReflectionSnapshot.ANNOTATION_TYPE);
         return annotationType;
     }
 
@@ -27,6 +27,9 @@ package java.lang;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
@@ -40,6 +43,7 @@ import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.security.ProtectionDomain;
 import java.security.cert.Certificate;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -51,6 +55,10 @@ import java.util.Vector;
 import java.util.Hashtable;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import sun.misc.CompoundEnumeration;
 import sun.misc.Resource;
 import sun.misc.URLClassPath;
@@ -233,12 +241,35 @@ public abstract class ClassLoader {
         }
     }
 
-    // Maps class name to the corresponding lock object when the current
-    // class loader is parallel capable.
+    // Maps class name to a ClassLoadingLock, weakly referring to the
+    // corresponding lock object, when the current class loader is parallel
+    // capable.
     // Note: VM also uses this field to decide if the current class loader
     // is parallel capable and the appropriate lock object for class loading.
     private final ConcurrentHashMap<String, Object> parallelLockMap;
 
+    // Queue of ClassLoadingLocks whose lock objects have been collected,
+    // to be removed from parallelLockMap; null if not parallel capable.
+    private final ReferenceQueue<Object> lockQueue;
+
+    /**
+     * A weak reference to the lock object for loading the class of the
+     * given name.  Lock objects are only needed while some thread is
+     * loading the class, during which time that thread holds the lock
+     * object strongly, so they may be collected, and their entries
+     * removed, once no thread is using them.  This keeps the number of
+     * entries proportional to the number of classes being loaded, rather
+     * than to the number ever requested.
+     */
+    private static final class ClassLoadingLock extends WeakReference<Object> {
+        final String className;
+        ClassLoadingLock(String className, Object lock,
+                         ReferenceQueue<Object> queue) {
+            super(lock, queue);
+            this.className = className;
+        }
+    }
+
     // Hashtable that maps packages to certs
     private final Map <String, Certificate[]> package2certs;
 
@@ -280,6 +311,7 @@ public abstract class ClassLoader {
         this.parent = parent;
         if (ParallelLoaders.isRegistered(this.getClass())) {
             parallelLockMap = new ConcurrentHashMap<>();
+            lockQueue = new ReferenceQueue<>();
             package2certs = new ConcurrentHashMap<>();
             domains =
                 Collections.synchronizedSet(new HashSet<ProtectionDomain>());
@@ -287,6 +319,7 @@ public abstract class ClassLoader {
         } else {
             // no finer-grained lock; lock on the classloader instance
             parallelLockMap = null;
+            lockQueue = null;
             package2certs = new Hashtable<>();
             domains = new HashSet<>();
             assertionLock = this;
@@ -457,15 +490,217 @@ public abstract class ClassLoader {
      * @since  1.7
      */
     protected Object getClassLoadingLock(String className) {
-        Object lock = this;
-        if (parallelLockMap != null) {
+        ConcurrentHashMap<String, Object> map = parallelLockMap;
+        if (map == null) {
+            return this;
+        }
+        expungeClassLoadingLocks(map);
+        for (;;) {
+            ClassLoadingLock ref = (ClassLoadingLock)map.get(className);
+            Object lock;
+            if (ref != null && (lock = ref.get()) != null) {
+                return lock;
+            }
             Object newLock = new Object();
-            lock = parallelLockMap.putIfAbsent(className, newLock);
-            if (lock == null) {
-                lock = newLock;
+            ClassLoadingLock newRef =
+                new ClassLoadingLock(className, newLock, lockQueue);
+            if (ref == null ? map.putIfAbsent(className, newRef) == null
+                            : map.replace(className, ref, newRef)) {
+                return newLock;
+            }
+        }
+    }
+
+    // Removes the entries of collected lock objects from the lock map.
+    private void expungeClassLoadingLocks(ConcurrentHashMap<String, Object> map) {
+        Reference<? extends Object> ref;
+        while ((ref = lockQueue.poll()) != null) {
+            map.remove(((ClassLoadingLock)ref).className, ref);
+        }
+    }
+
+    /**
+     * Loads and links the classes of the given names, using up to the
+     * given number of threads.  This method is intended to reduce the
+     * startup time of applications by loading, ahead of their first use,
+     * classes that are known to be needed, such as those recorded in a
+     * class list during a previous run.  Names may be given in either
+     * binary name form (<tt>java.lang.String</tt>) or internal form
+     * (<tt>java/lang/String</tt>), as found in such class lists.
+     *
+     * <p> Invoking this method behaves exactly as invoking {@link
+     * #preloadClasses(Collection, int, Executor) preloadClasses(classNames,
+     * parallelism, ForkJoinPool.commonPool())}.
+     *
+     * @param  classNames
+     *         The names of the classes to load
+     *
+     * @param  parallelism
+     *         The maximum number of threads to use, including the calling
+     *         thread, for example {@code Runtime.getRuntime().availableProcessors()}
+     *
+     * @return  The number of classes loaded
+     *
+     * @throws  IllegalArgumentException
+     *          If <tt>parallelism</tt> is not positive
+     *
+     * @throws  NullPointerException
+     *          If <tt>classNames</tt> is <tt>null</tt>
+     *
+     * @since  1.8
+     */
+    public int preloadClasses(Collection<String> classNames, int parallelism) {
+        return preloadClasses(classNames, parallelism,
+                              ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads and links the classes of the given names, using the calling
+     * thread and up to <tt>parallelism - 1</tt> tasks run by the given
+     * executor.  Names may be given in either binary name form
+     * (<tt>java.lang.String</tt>) or internal form
+     * (<tt>java/lang/String</tt>).
+     *
+     * <p> Each class is loaded as if by {@link #loadClass(String)
+     * <tt>loadClass</tt>} and then linked, which includes its
+     * verification, but it is not initialized.  Classes that cannot be
+     * found, that fail to load or link with a {@link LinkageError}, or
+     * whose loading is denied with a {@link SecurityException} are
+     * skipped, since a recorded class list may be out of date; their errors
+     * will be reported again if and when the application itself uses them.
+     *
+     * <p> Classes are only loaded concurrently if this class loader is
+     * {@linkplain #registerAsParallelCapable parallel capable}.  Otherwise
+     * the class loader is locked during each class loading operation and
+     * the classes are loaded one at a time by the calling thread.  Tasks
+     * that the executor rejects, or that it has not started by the time the
+     * calling thread runs out of names, load no classes; this method does
+     * not wait for them to start.
+     *
+     * @implNote
+     * {@link #resolveClass <tt>resolveClass</tt>} does not link classes in
+     * the HotSpot virtual machine, so this implementation links each class
+     * by reflecting on its declared constructors, for which the virtual
+     * machine links the class.
+     *
+     * @param  classNames
+     *         The names of the classes to load
+     *
+     * @param  parallelism
+     *         The maximum number of threads to use, including the calling
+     *         thread
+     *
+     * @param  executor
+     *         The executor running the tasks that load classes alongside
+     *         the calling thread
+     *
+     * @return  The number of classes loaded
+     *
+     * @throws  IllegalArgumentException
+     *          If <tt>parallelism</tt> is not positive
+     *
+     * @throws  NullPointerException
+     *          If <tt>classNames</tt> or <tt>executor</tt> is <tt>null</tt>
+     *
+     * @since  1.8
+     */
+    public int preloadClasses(Collection<String> classNames, int parallelism,
+                              Executor executor) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism <= 0");
+        }
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        Preloader preloader =
+            new Preloader(this, classNames.toArray(new String[0]));
+        int n = (parallelLockMap == null) ? 1
+            : Math.min(parallelism, preloader.names.length);
+        for (int i = 1; i < n; i++) {
+            try {
+                executor.execute(preloader);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        preloader.loadAll();
+        preloader.awaitTasks();
+        return preloader.loaded.get();
+    }
+
+    /**
+     * Loads and links a list of classes on behalf of preloadClasses.  The
+     * calling thread runs loadAll directly; executor tasks run it through
+     * run, which tracks them so that the caller can wait for those that
+     * have claimed a name.
+     */
+    private static final class Preloader implements Runnable {
+        final ClassLoader loader;
+        final String[] names;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger loaded = new AtomicInteger();
+        private int active; // guarded by this
+
+        Preloader(ClassLoader loader, String[] names) {
+            this.loader = loader;
+            this.names = names;
+        }
+
+        public void run() {
+            synchronized (this) {
+                active++;
+            }
+            try {
+                loadAll();
+            } finally {
+                synchronized (this) {
+                    if (--active == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+
+        void loadAll() {
+            for (int i; (i = next.getAndIncrement()) < names.length; ) {
+                String name = names[i];
+                if (name == null || name.isEmpty()) {
+                    continue;
+                }
+                final Class<?> c;
+                try {
+                    c = loader.loadClass(name.replace('/', '.'));
+                } catch (ClassNotFoundException | LinkageError |
+                         SecurityException e) {
+                    continue; // skip out-of-date or prohibited entries
+                }
+                loaded.incrementAndGet();
+                try {
+                    AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                        public Void run() {
+                            c.getDeclaredConstructors();
+                            return null;
+                        }
+                    });
+                } catch (LinkageError e) {
+                    // reported again when the application uses the class
+                }
+            }
+        }
+
+        synchronized void awaitTasks() {
+            boolean interrupted = false;
+            while (active > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
         }
-        return lock;
     }
 
     // This method is invoked by the virtual machine to load a class.
@@ -1471,6 +1706,9 @@ public abstract class ClassLoader {
                 }
             }
             sclSet = true;
+            if (scl != null) {
+                ReflectionSnapshot.initialize(scl);
+            }
         }
     }
 
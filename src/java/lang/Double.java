@@ -170,7 +170,7 @@ public final class Double extends Number implements Comparable<Double> {
      * @return 参数的字符串表示形式。
      */
     public static String toString(double d) {
-        return FloatingDecimal.toJavaFormatString(d);
+        return DoubleToDecimal.toString(d);
     }
 
     /**
@@ -451,6 +451,226 @@ public final class Double extends Number implements Comparable<Double> {
         return FloatingDecimal.parseDouble(s);
     }
 
+    /**
+     * 返回一个新的 {@code double} 值，该值被初始化为用 {@code CharSequence} 参数中
+     * 从 {@code beginIndex} 开始、到 {@code endIndex - 1} 结束的字符表示的值，
+     * 所接受的字符与 {@link #parseDouble(String)} 相同。
+     *
+     * <p>对于最多有 15 位有效数字、十进制指数的绝对值不超过 22 的普通十进制表示形式，
+     * 该方法不创建子字符串，而直接用一次精确的乘法或除法计算出正确舍入的结果。
+     * 其他表示形式（例如十六进制、{@code "NaN"}、带有前导或尾随空白的字符串）
+     * 则按照 {@link #parseDouble(String)} 解析。
+     *
+     * @param  s   包含要解析的值的 {@code CharSequence}。
+     * @param  beginIndex   起始索引（包括）。
+     * @param  endIndex     结束索引（不包括）。
+     * @return 由指定范围内的字符表示的 {@code double} 值。
+     * @throws NullPointerException  如果 {@code s} 为 null。
+     * @throws IndexOutOfBoundsException  如果 {@code beginIndex} 为负，
+     *         或者 {@code beginIndex} 大于 {@code endIndex}，
+     *         或者 {@code endIndex} 大于 {@code s.length()}。
+     * @throws NumberFormatException 如果指定范围内的字符不包含可解析的 {@code double} 值。
+     * @since 1.8
+     */
+    public static double parseDouble(CharSequence s, int beginIndex, int endIndex)
+            throws NumberFormatException {
+        if (beginIndex < 0 || beginIndex > endIndex || endIndex > s.length()) {
+            throw new IndexOutOfBoundsException(
+                "beginIndex " + beginIndex + ", endIndex " + endIndex + ", length " + s.length());
+        }
+        int i = beginIndex;
+        boolean negative = false;
+        if (i < endIndex && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+
+        // Significand digits, leading zeroes excluded
+        long significand = 0;
+        int nDigits = 0;
+        int nFractionDigits = 0;
+        boolean sawDigit = false;
+        boolean sawDot = false;
+        for (; i < endIndex; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (sawDot) {
+                    nFractionDigits++;
+                }
+                if (significand != 0 || c != '0') {
+                    if (++nDigits > MAX_EXACT_DIGITS) {
+                        return parseDouble(s.subSequence(beginIndex, endIndex).toString());
+                    }
+                    significand = 10 * significand + (c - '0');
+                }
+            } else if (c == '.' && !sawDot) {
+                sawDot = true;
+            } else {
+                break;
+            }
+        }
+
+        int exponent = 0;
+        if (sawDigit && i < endIndex && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < endIndex && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                negativeExponent = s.charAt(i) == '-';
+                i++;
+            }
+            int start = i;
+            for (; i < endIndex && i - start < 4; i++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                exponent = 10 * exponent + (c - '0');
+            }
+            if (i == start) {
+                i = -1;     // no exponent digits
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+
+        if (sawDigit && i == endIndex) {
+            double v = exactValue(significand, exponent - nFractionDigits);
+            if (v >= 0) {
+                return negative ? -v : v;
+            }
+        }
+        return parseDouble(s.subSequence(beginIndex, endIndex).toString());
+    }
+
+    /**
+     * 返回一个新的 {@code double} 值，该值被初始化为用字节数组中从 {@code offset} 开始的
+     * {@code length} 个 ASCII 字节表示的值，所接受的字符与 {@link #parseDouble(String)} 相同。
+     *
+     * <p>与 {@link #parseDouble(CharSequence, int, int)} 一样，普通十进制表示形式
+     * 无需先将字节解码为字符串即可解析。
+     *
+     * @param  bytes   包含要解析的值的 ASCII 表示形式的字节数组。
+     * @param  offset   要解析的第一个字节的索引。
+     * @param  length   要解析的字节数。
+     * @return 由指定范围内的字节表示的 {@code double} 值。
+     * @throws NullPointerException  如果 {@code bytes} 为 null。
+     * @throws IndexOutOfBoundsException  如果 {@code offset} 或 {@code length} 为负，
+     *         或者 {@code offset + length} 大于 {@code bytes.length}。
+     * @throws NumberFormatException 如果指定范围内的字节不包含可解析的 {@code double} 值。
+     * @since 1.8
+     */
+    public static double parseDouble(byte[] bytes, int offset, int length)
+            throws NumberFormatException {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException(
+                "offset " + offset + ", length " + length + ", array length " + bytes.length);
+        }
+        int i = offset, end = offset + length;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        // Significand digits, leading zeroes excluded
+        long significand = 0;
+        int nDigits = 0;
+        int nFractionDigits = 0;
+        boolean sawDigit = false;
+        boolean sawDot = false;
+        for (; i < end; i++) {
+            byte c = bytes[i];
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (sawDot) {
+                    nFractionDigits++;
+                }
+                if (significand != 0 || c != '0') {
+                    if (++nDigits > MAX_EXACT_DIGITS) {
+                        return parseDouble(asciiString(bytes, offset, length));
+                    }
+                    significand = 10 * significand + (c - '0');
+                }
+            } else if (c == '.' && !sawDot) {
+                sawDot = true;
+            } else {
+                break;
+            }
+        }
+
+        int exponent = 0;
+        if (sawDigit && i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int start = i;
+            for (; i < end && i - start < 4; i++) {
+                byte c = bytes[i];
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                exponent = 10 * exponent + (c - '0');
+            }
+            if (i == start) {
+                i = -1;     // no exponent digits
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+
+        if (sawDigit && i == end) {
+            double v = exactValue(significand, exponent - nFractionDigits);
+            if (v >= 0) {
+                return negative ? -v : v;
+            }
+        }
+        return parseDouble(asciiString(bytes, offset, length));
+    }
+
+    /**
+     * 有效数字的最大位数，低于该位数时有效数字可以精确地表示为 {@code double}。
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /**
+     * 可以精确地表示为 {@code double} 的 10 的幂。
+     */
+    private static final double[] SMALL_10_POW = {
+        1.0e0,  1.0e1,  1.0e2,  1.0e3,  1.0e4,  1.0e5,
+        1.0e6,  1.0e7,  1.0e8,  1.0e9,  1.0e10, 1.0e11,
+        1.0e12, 1.0e13, 1.0e14, 1.0e15, 1.0e16, 1.0e17,
+        1.0e18, 1.0e19, 1.0e20, 1.0e21, 1.0e22
+    };
+
+    /**
+     * 如果 significand 10<sup>e</sup> 可以用一次精确的运算正确舍入，则返回其值，否则返回 -1。
+     * significand 最多有 15 位，因此可以精确地表示为 {@code double}，
+     * 而 10<sup>|e|</sup> 在 |e| &le; 22 时也是如此，所以一次乘法或除法只会舍入一次。
+     */
+    private static double exactValue(long significand, int e) {
+        if (significand == 0) {
+            return 0.0;
+        }
+        if (e >= 0 && e < SMALL_10_POW.length) {
+            return significand * SMALL_10_POW[e];
+        }
+        if (e < 0 && -e < SMALL_10_POW.length) {
+            return significand / SMALL_10_POW[-e];
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String asciiString(byte[] bytes, int offset, int length) {
+        return new String(bytes, 0, offset, length);
+    }
+
     /**
      * 如果指定的数是一个 NaN 值，则返回 {@code true}；否则返回 {@code false}。
      *
@@ -26,6 +26,8 @@
 package java.lang;
 
 import java.lang.annotation.Native;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /**
  * {@code Integer} 类在对象中包装了一个基本类型 {@code int} 的值。
@@ -356,6 +358,94 @@ public final class Integer extends Number implements Comparable<Integer> {
         return new String(buf, true);
     }
 
+    /**
+     * 将指定整数的有符号十进制表示形式写入字符数组中从 {@code offset} 开始的位置，
+     * 而不创建字符串。所写入的字符与 {@link #toString(int)} 返回的字符相同。
+     *
+     * @param   i   要转换的整数。
+     * @param   dst   目标字符数组。
+     * @param   offset   写入第一个字符的索引。
+     * @return  写入的最后一个字符之后的索引。
+     * @throws  NullPointerException  如果 {@code dst} 为 null。
+     * @throws  IndexOutOfBoundsException  如果 {@code offset} 为负，
+     *          或者从 {@code offset} 开始没有足够的空间来容纳所有字符。
+     * @since 1.8
+     */
+    public static int formatTo(int i, char[] dst, int offset) {
+        int size = decimalSize(i);
+        if (offset < 0 || offset > dst.length - size) {
+            throw new IndexOutOfBoundsException(
+                "offset " + offset + ", size " + size + ", array length " + dst.length);
+        }
+        if (i == Integer.MIN_VALUE) {
+            "-2147483648".getChars(0, size, dst, offset);
+        } else {
+            getChars(i, offset + size, dst);
+        }
+        return offset + size;
+    }
+
+    /**
+     * 将指定整数的有符号十进制表示形式以 ASCII 字节写入字节数组中从 {@code offset} 开始的位置，
+     * 而不创建字符串。所写入的字符与 {@link #toString(int)} 返回的字符相同。
+     *
+     * @param   i   要转换的整数。
+     * @param   dst   目标字节数组。
+     * @param   offset   写入第一个字节的索引。
+     * @return  写入的最后一个字节之后的索引。
+     * @throws  NullPointerException  如果 {@code dst} 为 null。
+     * @throws  IndexOutOfBoundsException  如果 {@code offset} 为负，
+     *          或者从 {@code offset} 开始没有足够的空间来容纳所有字节。
+     * @since 1.8
+     */
+    public static int formatTo(int i, byte[] dst, int offset) {
+        int size = decimalSize(i);
+        if (offset < 0 || offset > dst.length - size) {
+            throw new IndexOutOfBoundsException(
+                "offset " + offset + ", size " + size + ", array length " + dst.length);
+        }
+        getBytes(i, offset + size, dst);
+        return offset + size;
+    }
+
+    /**
+     * 将指定整数的有符号十进制表示形式以 ASCII 字节写入缓冲区的当前位置，
+     * 并将位置增加所写入的字节数。所写入的字符与 {@link #toString(int)} 返回的字符相同。
+     *
+     * @param   i   要转换的整数。
+     * @param   dst   目标缓冲区。
+     * @return  目标缓冲区。
+     * @throws  NullPointerException  如果 {@code dst} 为 null。
+     * @throws  BufferOverflowException  如果缓冲区中剩余的空间不足以容纳所有字节；
+     *          此时缓冲区不会被修改。
+     * @throws  java.nio.ReadOnlyBufferException  如果缓冲区是只读的。
+     * @since 1.8
+     */
+    public static ByteBuffer formatTo(int i, ByteBuffer dst) {
+        int size = decimalSize(i);
+        int pos = dst.position();
+        if (dst.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        if (dst.hasArray()) {
+            getBytes(i, dst.arrayOffset() + pos + size, dst.array());
+        } else {
+            // Accumulating negatively handles MIN_VALUE
+            int index = pos + size;
+            int q = (i < 0) ? i : -i;
+            do {
+                int r = q % 10;
+                q /= 10;
+                dst.put(--index, (byte) ('0' - r));
+            } while (q != 0);
+            if (i < 0) {
+                dst.put(--index, (byte) '-');
+            }
+        }
+        dst.position(pos + size);
+        return dst;
+    }
+
     /**
      * 返回参数作为无符号小数值的字符串表示形式。
      *
@@ -412,6 +502,46 @@ public final class Integer extends Number implements Comparable<Integer> {
         }
     }
 
+    /**
+     * 将表示整数i的 ASCII 字节放在字节数组buf中。
+     * 字节从指定索引(独占)的最不重要的数字开始向后放置到缓冲区中，
+     * 并从那里向后工作。
+     *
+     * 与 {@link #getChars(int, int, char[])} 不同，i = Integer.MIN_VALUE 也适用。
+     */
+    static void getBytes(int i, int index, byte[] buf) {
+        int q, r;
+        int charPos = index;
+        boolean negative = i < 0;
+
+        // Accumulating negatively avoids surprises near MIN_VALUE
+        if (!negative) {
+            i = -i;
+        }
+
+        // Generate two digits per iteration
+        while (i <= -100) {
+            q = i / 100;
+            r = (q * 100) - i;
+            i = q;
+            buf[--charPos] = (byte) DigitOnes[r];
+            buf[--charPos] = (byte) DigitTens[r];
+        }
+
+        // We know there are at most two digits left at this point.
+        q = i / 10;
+        r = (q * 10) - i;
+        buf[--charPos] = (byte) ('0' + r);
+
+        // Whatever left is the remaining digit.
+        if (q < 0) {
+            buf[--charPos] = (byte) ('0' - q);
+        }
+        if (negative) {
+            buf[--charPos] = (byte) '-';
+        }
+    }
+
     final static int [] sizeTable = { 9, 99, 999, 9999, 99999, 999999, 9999999,
                                       99999999, 999999999, Integer.MAX_VALUE };
 
@@ -422,6 +552,13 @@ public final class Integer extends Number implements Comparable<Integer> {
                 return i+1;
     }
 
+    // Includes the sign, and also works for MIN_VALUE
+    static int decimalSize(int i) {
+        if (i == Integer.MIN_VALUE)
+            return 11;
+        return (i < 0) ? stringSize(-i) + 1 : stringSize(i);
+    }
+
     /**
      * 使用第二个参数指定的基数，将字符串参数解析为有符号的整数。
      * 除了第一个字符可以是用来表示负值的 ASCII 减号 {@code '-'} ({@code '\u005Cu002D'}) 或
@@ -545,6 +682,225 @@ public final class Integer extends Number implements Comparable<Integer> {
         return parseInt(s,10);
     }
 
+    /**
+     * 使用第四个参数指定的基数，将 {@code CharSequence} 参数中从 {@code beginIndex} 开始、
+     * 到 {@code endIndex - 1} 结束的字符解析为有符号的整数，而不创建子字符串。
+     * 除了不接受 {@code null} 以外，所接受的字符与 {@link #parseInt(String, int)} 相同。
+     *
+     * @param      s   包含要解析的 {@code int} 表示形式的 {@code CharSequence}。
+     * @param      beginIndex   起始索引（包括）。
+     * @param      endIndex     结束索引（不包括）。
+     * @param      radix   解析 {@code s} 时使用的基数。
+     * @return     指定范围内的字符所表示的有符号 {@code int}。
+     * @throws     NullPointerException  如果 {@code s} 为 null。
+     * @throws     IndexOutOfBoundsException  如果 {@code beginIndex} 为负，
+     *             或者 {@code beginIndex} 大于 {@code endIndex}，
+     *             或者 {@code endIndex} 大于 {@code s.length()}。
+     * @throws     NumberFormatException  如果指定范围内的字符不包含可解析的 {@code int}，
+     *             或者 {@code radix} 小于 {@link java.lang.Character#MIN_RADIX}
+     *             或大于 {@link java.lang.Character#MAX_RADIX}。
+     * @since  1.8
+     */
+    public static int parseInt(CharSequence s, int beginIndex, int endIndex, int radix)
+                throws NumberFormatException {
+        if (beginIndex < 0 || beginIndex > endIndex || endIndex > s.length()) {
+            throw new IndexOutOfBoundsException(
+                "beginIndex " + beginIndex + ", endIndex " + endIndex + ", length " + s.length());
+        }
+        checkRadix(radix);
+
+        boolean negative = false;
+        int i = beginIndex;
+        int limit = -Integer.MAX_VALUE;
+
+        if (i < endIndex) {
+            char firstChar = s.charAt(i);
+            if (firstChar < '0') { // Possible leading "+" or "-"
+                if (firstChar == '-') {
+                    negative = true;
+                    limit = Integer.MIN_VALUE;
+                } else if (firstChar != '+') {
+                    throw NumberFormatException.forCharSequence(s, beginIndex, endIndex, i);
+                }
+                i++;
+                if (i == endIndex) { // Cannot have lone "+" or "-"
+                    throw NumberFormatException.forCharSequence(s, beginIndex, endIndex, i);
+                }
+            }
+            int multmin = limit / radix;
+            int result = 0;
+            while (i < endIndex) {
+                // Accumulating negatively avoids surprises near MAX_VALUE
+                int digit = Character.digit(s.charAt(i), radix);
+                if (digit < 0 || result < multmin) {
+                    throw NumberFormatException.forCharSequence(s, beginIndex, endIndex, i);
+                }
+                result *= radix;
+                if (result < limit + digit) {
+                    throw NumberFormatException.forCharSequence(s, beginIndex, endIndex, i);
+                }
+                i++;
+                result -= digit;
+            }
+            return negative ? result : -result;
+        } else {
+            throw NumberFormatException.forInputString("");
+        }
+    }
+
+    /**
+     * 使用第四个参数指定的基数，将字节数组中从 {@code offset} 开始的 {@code length} 个
+     * ASCII 字节解析为有符号的整数，而不先将它们解码为字符串。
+     * 除了只接受 ASCII 数字和字母外，所接受的字符与 {@link #parseInt(String, int)} 相同。
+     *
+     * @param      bytes   包含要解析的 {@code int} 的 ASCII 表示形式的字节数组。
+     * @param      offset   要解析的第一个字节的索引。
+     * @param      length   要解析的字节数。
+     * @param      radix   解析时使用的基数。
+     * @return     指定范围内的字节所表示的有符号 {@code int}。
+     * @throws     NullPointerException  如果 {@code bytes} 为 null。
+     * @throws     IndexOutOfBoundsException  如果 {@code offset} 或 {@code length} 为负，
+     *             或者 {@code offset + length} 大于 {@code bytes.length}。
+     * @throws     NumberFormatException  如果指定范围内的字节不包含可解析的 {@code int}，
+     *             或者 {@code radix} 无效。
+     * @since  1.8
+     */
+    public static int parseInt(byte[] bytes, int offset, int length, int radix)
+                throws NumberFormatException {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException(
+                "offset " + offset + ", length " + length + ", array length " + bytes.length);
+        }
+        checkRadix(radix);
+
+        boolean negative = false;
+        int i = offset, end = offset + length;
+        int limit = -Integer.MAX_VALUE;
+
+        if (i < end) {
+            byte firstByte = bytes[i];
+            if (firstByte < '0') { // Possible leading "+" or "-"
+                if (firstByte == '-') {
+                    negative = true;
+                    limit = Integer.MIN_VALUE;
+                } else if (firstByte != '+') {
+                    throw NumberFormatException.forByteRange(bytes, offset, length, i);
+                }
+                i++;
+                if (i == end) { // Cannot have lone "+" or "-"
+                    throw NumberFormatException.forByteRange(bytes, offset, length, i);
+                }
+            }
+            int multmin = limit / radix;
+            int result = 0;
+            while (i < end) {
+                // Accumulating negatively avoids surprises near MAX_VALUE
+                int digit = Character.digit(bytes[i] & 0x7f, radix);
+                if (digit < 0 || bytes[i] < 0 || result < multmin) {
+                    throw NumberFormatException.forByteRange(bytes, offset, length, i);
+                }
+                result *= radix;
+                if (result < limit + digit) {
+                    throw NumberFormatException.forByteRange(bytes, offset, length, i);
+                }
+                i++;
+                result -= digit;
+            }
+            return negative ? result : -result;
+        } else {
+            throw NumberFormatException.forInputString("");
+        }
+    }
+
+    /**
+     * 使用第二个参数指定的基数，将缓冲区中剩余的 ASCII 字节（从其位置到其限制）解析为有符号的整数。
+     * 缓冲区的位置不会改变。
+     * 所接受的字节与 {@link #parseInt(byte[], int, int, int)} 相同。
+     *
+     * @param      buf   包含要解析的 {@code int} 的 ASCII 表示形式的缓冲区。
+     * @param      radix   解析时使用的基数。
+     * @return     缓冲区中剩余的字节所表示的有符号 {@code int}。
+     * @throws     NullPointerException  如果 {@code buf} 为 null。
+     * @throws     NumberFormatException  如果剩余的字节不包含可解析的 {@code int}，
+     *             或者 {@code radix} 无效。
+     * @since  1.8
+     */
+    public static int parseInt(ByteBuffer buf, int radix) throws NumberFormatException {
+        if (buf.hasArray()) {
+            return parseInt(buf.array(), buf.arrayOffset() + buf.position(),
+                            buf.remaining(), radix);
+        }
+        checkRadix(radix);
+
+        boolean negative = false;
+        int i = buf.position(), end = buf.limit();
+        int limit = -Integer.MAX_VALUE;
+
+        if (i < end) {
+            byte firstByte = buf.get(i);
+            if (firstByte < '0') { // Possible leading "+" or "-"
+                if (firstByte == '-') {
+                    negative = true;
+                    limit = Integer.MIN_VALUE;
+                } else if (firstByte != '+') {
+                    throw forByteBuffer(buf, i);
+                }
+                i++;
+                if (i == end) { // Cannot have lone "+" or "-"
+                    throw forByteBuffer(buf, i);
+                }
+            }
+            int multmin = limit / radix;
+            int result = 0;
+            while (i < end) {
+                // Accumulating negatively avoids surprises near MAX_VALUE
+                byte b = buf.get(i);
+                int digit = Character.digit(b & 0x7f, radix);
+                if (digit < 0 || b < 0 || result < multmin) {
+                    throw forByteBuffer(buf, i);
+                }
+                result *= radix;
+                if (result < limit + digit) {
+                    throw forByteBuffer(buf, i);
+                }
+                i++;
+                result -= digit;
+            }
+            return negative ? result : -result;
+        } else {
+            throw NumberFormatException.forInputString("");
+        }
+    }
+
+    /**
+     * 为缓冲区中剩余的字节创建一个 {@code NumberFormatException}，
+     * 其错误位于缓冲区的索引 {@code errorIndex} 处。
+     */
+    static NumberFormatException forByteBuffer(ByteBuffer buf, int errorIndex) {
+        int pos = buf.position();
+        byte[] bytes = new byte[buf.remaining()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(pos + i);
+        }
+        return NumberFormatException.forByteRange(bytes, 0, bytes.length, errorIndex - pos);
+    }
+
+    /**
+     * 如果基数不在 {@link java.lang.Character#MIN_RADIX} 与
+     * {@link java.lang.Character#MAX_RADIX} 之间，则抛出 {@code NumberFormatException}。
+     */
+    static void checkRadix(int radix) {
+        if (radix < Character.MIN_RADIX) {
+            throw new NumberFormatException("radix " + radix +
+                                            " less than Character.MIN_RADIX");
+        }
+
+        if (radix > Character.MAX_RADIX) {
+            throw new NumberFormatException("radix " + radix +
+                                            " greater than Character.MAX_RADIX");
+        }
+    }
+
     /**
      * 将字符串参数解析为第二个参数指定的基数中的无符号整数。
      * 无符号整数将通常与负数相关的值映射到大于 {@code MAX_VALUE} 的正数。
@@ -64,4 +64,37 @@ class NumberFormatException extends IllegalArgumentException {
     static NumberFormatException forInputString(String s) {
         return new NumberFormatException("For input string: \"" + s + "\"");
     }
+
+    /**
+     * Factory method for making a <code>NumberFormatException</code>
+     * given the specified range of a character sequence which caused
+     * the error.
+     *
+     * @param   s   the input containing the range
+     * @param   beginIndex   the index of the first character of the range
+     * @param   endIndex   the index after the last character of the range
+     * @param   errorIndex   the index of the first erroneous character
+     */
+    static NumberFormatException forCharSequence(CharSequence s,
+            int beginIndex, int endIndex, int errorIndex) {
+        return new NumberFormatException("Error at index "
+            + (errorIndex - beginIndex) + " in: \""
+            + s.subSequence(beginIndex, endIndex) + "\"");
+    }
+
+    /**
+     * Factory method for making a <code>NumberFormatException</code>
+     * given the specified range of ASCII bytes which caused the error.
+     *
+     * @param   bytes   the input containing the range
+     * @param   offset   the index of the first byte of the range
+     * @param   length   the number of bytes in the range
+     * @param   errorIndex   the index of the first erroneous byte
+     */
+    @SuppressWarnings("deprecation")
+    static NumberFormatException forByteRange(byte[] bytes,
+            int offset, int length, int errorIndex) {
+        return forCharSequence(new String(bytes, 0, offset, length),
+                               0, length, errorIndex - offset);
+    }
 }
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A record of the reflective metadata an application computes, such as
+ * the declared methods and fields of classes and their parsed
+ * annotations, which can be used to compute the same metadata ahead of
+ * its use in a later run of the application.
+ *
+ * <p>Reflective metadata is computed lazily, on first use, and then
+ * cached by each {@code Class} object.  Applications that make heavy use
+ * of reflection at startup, such as dependency injection or
+ * serialization frameworks, recompute much the same metadata on every
+ * start.  While {@linkplain #startRecording recording}, every
+ * computation of a kind of metadata for a class is noted, and the
+ * classes and kinds of metadata noted may be {@linkplain #write written}
+ * to a stream, in the order they were first used.  Given such a
+ * snapshot, {@link #warm warm} computes and caches the same metadata,
+ * typically on a background thread while the application starts.  The
+ * snapshot only contains the names of classes and kinds of metadata,
+ * so it remains valid, if perhaps less effective, as an application
+ * changes.
+ *
+ * <p>If the system property {@code java.lang.ReflectionSnapshot.file}
+ * names a file, then once the {@linkplain ClassLoader#getSystemClassLoader
+ * system class loader} is set up, the caches are warmed from that file,
+ * if it exists, by a daemon thread, and recording is started.  The
+ * snapshot is written back to the file when the virtual machine shuts
+ * down.  Metadata computed by {@code warm} is not recorded until the
+ * application first uses it.
+ *
+ * <p>Classes are identified by name and by their defining class loader:
+ * the bootstrap class loader, the system class loader or its parent,
+ * or any other class loader.  Classes of the latter kind are located
+ * through the class loader given to {@code warm}, and are skipped when
+ * warming from the file named by the system property.  Warming loads
+ * classes, but does not initialize them.
+ *
+ * @since 1.8
+ */
+public final class ReflectionSnapshot {
+
+    private ReflectionSnapshot() { }
+
+    // Kinds of metadata, as cached by class Class
+    static final int DECLARED_FIELDS              = 1 << 0;
+    static final int DECLARED_PUBLIC_FIELDS       = 1 << 1;
+    static final int PUBLIC_FIELDS                = 1 << 2;
+    static final int DECLARED_METHODS             = 1 << 3;
+    static final int DECLARED_PUBLIC_METHODS      = 1 << 4;
+    static final int PUBLIC_METHODS               = 1 << 5;
+    static final int DECLARED_CONSTRUCTORS        = 1 << 6;
+    static final int PUBLIC_CONSTRUCTORS          = 1 << 7;
+    static final int ANNOTATIONS                  = 1 << 8;
+    static final int ANNOTATION_TYPE              = 1 << 9;
+
+    // Defining class loaders
+    private static final byte BOOT_LOADER      = 0;
+    private static final byte EXT_LOADER       = 1;
+    private static final byte SYSTEM_LOADER    = 2;
+    private static final byte OTHER_LOADER     = 3;
+
+    private static final int MAGIC = 0x52534E50;
+    private static final int VERSION = 1;
+
+    private static final RuntimePermission PERMISSION =
+        new RuntimePermission("reflectionSnapshot");
+
+    // Set on threads while warming
+    private static final ThreadLocal<Boolean> warming = new ThreadLocal<>();
+
+    /**
+     * The metadata recorded for a class.
+     */
+    static final class Entry {
+        final byte loader;
+        final String name;
+        final AtomicInteger kinds = new AtomicInteger();
+
+        Entry(byte loader, String name) {
+            this.loader = loader;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Notes the metadata computed by classes.  Installed in
+     * Class.snapshotRecorder while recording.
+     */
+    static final class Recorder {
+        private final ClassLoader systemLoader;
+        private final ClassLoader extLoader;
+        // Entries by loader and name, and in the order first recorded
+        private final ConcurrentHashMap<String, Entry> entries =
+            new ConcurrentHashMap<>();
+        private final ConcurrentLinkedQueue<Entry> order =
+            new ConcurrentLinkedQueue<>();
+
+        Recorder(ClassLoader systemLoader) {
+            this.systemLoader = systemLoader;
+            this.extLoader = (systemLoader == null) ? null
+                : systemLoader.getParent();
+        }
+
+        void record(Class<?> c, int kind) {
+            if (c.isArray() || c.isPrimitive())
+                return;
+            if (warming.get() != null) {
+                // Computed ahead of use; recorded on first use instead
+                c.markWarmed(kind);
+                return;
+            }
+            String name = c.getName();
+            if (name.indexOf('/') >= 0)      // not locatable by name
+                return;
+            ClassLoader cl = c.getClassLoader0();
+            byte loader = (cl == null) ? BOOT_LOADER
+                : (cl == systemLoader) ? SYSTEM_LOADER
+                : (cl == extLoader) ? EXT_LOADER
+                : OTHER_LOADER;
+            String key = loader + name;
+            Entry e = entries.get(key);
+            if (e == null) {
+                Entry f = new Entry(loader, name);
+                if ((e = entries.putIfAbsent(key, f)) == null)
+                    order.add(e = f);
+            }
+            AtomicInteger kinds = e.kinds;
+            for (int k; ((k = kinds.get()) & kind) == 0; ) {
+                if (kinds.compareAndSet(k, k | kind))
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Starts recording the reflective metadata computed by classes, if
+     * not already recording.  Metadata already cached by classes is not
+     * recorded.
+     *
+     * @throws SecurityException if a security manager exists and its
+     *         {@code checkPermission} method denies
+     *         {@code RuntimePermission("reflectionSnapshot")}
+     */
+    public static void startRecording() {
+        checkPermission();
+        synchronized (ReflectionSnapshot.class) {
+            if (Class.snapshotRecorder == null)
+                Class.snapshotRecorder =
+                    new Recorder(ClassLoader.getSystemClassLoader());
+        }
+    }
+
+    /**
+     * Stops recording, discarding the record.
+     *
+     * @throws SecurityException if a security manager exists and its
+     *         {@code checkPermission} method denies
+     *         {@code RuntimePermission("reflectionSnapshot")}
+     */
+    public static void stopRecording() {
+        checkPermission();
+        synchronized (ReflectionSnapshot.class) {
+            Class.snapshotRecorder = null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the metadata recorded so far to the given
+     * stream.  The stream is not closed.
+     *
+     * @param out the output stream
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalStateException if not recording
+     * @throws SecurityException if a security manager exists and its
+     *         {@code checkPermission} method denies
+     *         {@code RuntimePermission("reflectionSnapshot")}
+     */
+    public static void write(OutputStream out) throws IOException {
+        checkPermission();
+        Recorder r = Class.snapshotRecorder;
+        if (r == null)
+            throw new IllegalStateException("not recording");
+        DataOutputStream dout =
+            new DataOutputStream(new BufferedOutputStream(out));
+        dout.writeInt(MAGIC);
+        dout.writeInt(VERSION);
+        for (Entry e : r.order) {
+            dout.writeByte(e.loader);
+            dout.writeUTF(e.name);
+            dout.writeInt(e.kinds.get());
+        }
+        dout.writeByte(-1);
+        dout.flush();
+    }
+
+    /**
+     * Computes and caches the reflective metadata recorded in the given
+     * snapshot, in the order it was first used.  Classes that cannot be
+     * found are skipped.
+     *
+     * @param in the input stream holding the snapshot
+     * @param loader the class loader through which to locate classes
+     *        defined by class loaders other than the bootstrap, the
+     *        system class loader and its parent, or {@code null} to skip
+     *        such classes
+     * @return the number of classes for which metadata was computed
+     * @throws IOException if an I/O error occurs, or the stream does not
+     *         hold a snapshot
+     * @throws SecurityException if a security manager exists and its
+     *         {@code checkPermission} method denies
+     *         {@code RuntimePermission("reflectionSnapshot")}
+     */
+    public static int warm(InputStream in, ClassLoader loader)
+        throws IOException {
+        checkPermission();
+        DataInputStream din = new DataInputStream(new BufferedInputStream(in));
+        if (din.readInt() != MAGIC || din.readInt() != VERSION)
+            throw new IOException("not a reflection snapshot");
+        ClassLoader systemLoader = ClassLoader.getSystemClassLoader();
+        ClassLoader extLoader = systemLoader.getParent();
+        int warmed = 0;
+        boolean nested = warming.get() != null;
+        warming.set(Boolean.TRUE);
+        try {
+            for (int l; (l = din.readByte()) >= 0; ) {
+                String name = din.readUTF();
+                int kinds = din.readInt();
+                ClassLoader cl = (l == BOOT_LOADER) ? null
+                    : (l == EXT_LOADER) ? extLoader
+                    : (l == SYSTEM_LOADER) ? systemLoader
+                    : loader;
+                if (l == OTHER_LOADER && loader == null)
+                    continue;
+                try {
+                    Class.forName(name, false, cl).warmReflectionData(kinds);
+                    ++warmed;
+                } catch (ClassNotFoundException | LinkageError ex) {
+                    // out of date; skip
+                }
+            }
+        } finally {
+            if (!nested)
+                warming.remove();
+        }
+        return warmed;
+    }
+
+    private static void checkPermission() {
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null)
+            sm.checkPermission(PERMISSION);
+    }
+
+    /**
+     * Invoked once the system class loader is set up, to warm from
+     * and record to the file named by the system property, if any.
+     */
+    static void initialize(final ClassLoader systemLoader) {
+        String path = AccessController.doPrivileged(
+            new sun.security.action.GetPropertyAction(
+                "java.lang.ReflectionSnapshot.file"));
+        if (path == null || path.isEmpty())
+            return;
+        final File file = new File(path);
+        AccessController.doPrivileged(new PrivilegedAction<Void>() {
+            public Void run() {
+                // Recording first, so that metadata warmed is recorded
+                // when the application first uses it
+                synchronized (ReflectionSnapshot.class) {
+                    if (Class.snapshotRecorder == null)
+                        Class.snapshotRecorder = new Recorder(systemLoader);
+                }
+                if (file.isFile()) {
+                    Thread warmer = new Thread(new Runnable() {
+                        public void run() {
+                            try (InputStream in = new FileInputStream(file)) {
+                                // Classes of other loaders cannot be
+                                // located here; skip them
+                                warm(in, null);
+                            } catch (IOException | RuntimeException ex) {
+                                // unusable snapshot; it is rewritten at exit
+                            }
+                        }
+                    }, "Reflection Snapshot Warmer");
+                    warmer.setDaemon(true);
+                    warmer.setContextClassLoader(systemLoader);
+                    warmer.start();
+                }
+                Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                    public void run() {
+                        File tmp = new File(file.getPath() + ".tmp");
+                        try (OutputStream out = new FileOutputStream(tmp)) {
+                            write(out);
+                        } catch (IOException | RuntimeException ex) {
+                            tmp.delete();
+                            return;
+                        }
+                        if (!tmp.renameTo(file)) {
+                            file.delete();
+                            tmp.renameTo(file);
+                        }
+                    }
+                }, "Reflection Snapshot Writer"));
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,764 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * A mutable sequence of characters for assembling large texts, which
+ * stores its characters in fixed-size segments rather than in one
+ * contiguous array.
+ *
+ * <p>A {@link StringBuilder} keeps its characters in a single array that
+ * it reallocates and copies, doubling its capacity, whenever it runs out
+ * of room, and {@code toString} copies the array once more.  Building a
+ * text of <i>n</i> characters thus needs up to about 3<i>n</i> characters
+ * of memory at its peak.  A {@code SegmentedStringBuilder} only ever
+ * allocates new segments as it grows and never copies the characters it
+ * holds, so that it wastes at most one partly filled segment, and its
+ * contents can be written out, encoded or not, segment by segment,
+ * without ever being copied into a single array or {@code String}.
+ *
+ * <p>A {@code SegmentedStringBuilder} can only be appended to, or
+ * {@linkplain #clear cleared}.  Since appending never changes the
+ * characters already appended, {@link #subSequence subSequence} returns
+ * an immutable {@link Slice} that shares the segments of the builder, in
+ * constant time; slices remain valid, and unchanged, whatever is later
+ * appended to the builder or even if it is cleared.
+ *
+ * <p>Segments hold a power of two number of characters, 8192 by
+ * default, so that {@link #charAt charAt} takes constant time.  The
+ * first segment starts small and grows up to the segment size, so that
+ * short texts do not occupy a whole segment.
+ *
+ * <p>Instances of {@code SegmentedStringBuilder} are not safe for use by
+ * multiple threads.  Slices are immutable, and may be shared freely once
+ * published safely.
+ *
+ * <p>Unless otherwise noted, passing a {@code null} argument to a
+ * constructor or method in this class will cause a
+ * {@link NullPointerException} to be thrown.
+ *
+ * @see     StringBuilder
+ * @since   1.8
+ */
+public final class SegmentedStringBuilder implements Appendable, CharSequence {
+
+    /** the default segment size, as a shift */
+    private static final int DEFAULT_SEGMENT_SHIFT = 13;
+
+    /** the minimum and maximum segment sizes, as shifts */
+    private static final int MIN_SEGMENT_SHIFT = 4;
+    private static final int MAX_SEGMENT_SHIFT = 24;
+
+    /** the initial size of the first segment */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** the size of the buffers used to encode characters */
+    private static final int ENCODING_BUFFER_SIZE = 8192;
+
+    /** log2 of the segment size */
+    private final int shift;
+
+    /**
+     * The segments.  All segments but the last one are full; only the
+     * first one may be shorter than the segment size.
+     */
+    private char[][] segments;
+
+    /** the number of segments allocated */
+    private int nSegments;
+
+    /** the number of characters */
+    private int count;
+
+    /**
+     * Constructs an empty builder with segments of 8192 characters.
+     */
+    public SegmentedStringBuilder() {
+        this.shift = DEFAULT_SEGMENT_SHIFT;
+        this.segments = new char[INITIAL_CAPACITY][];
+    }
+
+    /**
+     * Constructs an empty builder with segments of at least the given
+     * size.  The size is rounded up to a power of two between 16 and
+     * 2<sup>24</sup>.
+     *
+     * @param      segmentSize   the minimum number of characters per
+     *             segment.
+     * @throws     IllegalArgumentException  if {@code segmentSize} is not
+     *             positive.
+     */
+    public SegmentedStringBuilder(int segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException(
+                "Illegal segment size: " + segmentSize);
+        }
+        int s = 32 - Integer.numberOfLeadingZeros(segmentSize - 1);
+        this.shift = Math.max(MIN_SEGMENT_SHIFT, Math.min(s, MAX_SEGMENT_SHIFT));
+        this.segments = new char[INITIAL_CAPACITY][];
+    }
+
+    /**
+     * Returns the length (character count).
+     *
+     * @return  the number of characters appended to this builder.
+     */
+    @Override
+    public int length() {
+        return count;
+    }
+
+    /**
+     * Returns the number of characters per segment.
+     *
+     * @return  the segment size of this builder.
+     */
+    public int segmentSize() {
+        return 1 << shift;
+    }
+
+    /**
+     * Returns the {@code char} value at the specified index.
+     *
+     * @param      index   the index of the desired {@code char} value.
+     * @return     the {@code char} value at the specified index.
+     * @throws     IndexOutOfBoundsException  if {@code index} is
+     *             negative or greater than or equal to {@code length()}.
+     */
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= count) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        return segments[index >>> shift][index & ((1 << shift) - 1)];
+    }
+
+    /**
+     * Returns an immutable slice of the characters of this builder from
+     * {@code start}, inclusive, to {@code end}, exclusive.  The slice
+     * shares the segments of this builder, and is created in constant
+     * time.
+     *
+     * @param      start   the start index, inclusive.
+     * @param      end     the end index, exclusive.
+     * @return     the specified subsequence.
+     * @throws     IndexOutOfBoundsException  if {@code start} or
+     *             {@code end} are negative, if {@code end} is greater
+     *             than {@code length()}, or if {@code start} is greater
+     *             than {@code end}.
+     */
+    @Override
+    public Slice subSequence(int start, int end) {
+        checkRange(start, end, count);
+        return new Slice(segments, shift, start, end - start);
+    }
+
+    /**
+     * Characters are copied from this builder into the destination
+     * character array {@code dst}, as by
+     * {@link AbstractStringBuilder#getChars StringBuilder.getChars}.
+     *
+     * @param      srcBegin   start copying at this offset.
+     * @param      srcEnd     stop copying at this offset.
+     * @param      dst        the array to copy the data into.
+     * @param      dstBegin   offset into {@code dst}.
+     * @throws     IndexOutOfBoundsException  if any of the indices is
+     *             out of range.
+     */
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        checkRange(srcBegin, srcEnd, count);
+        if (dstBegin < 0 || dstBegin > dst.length - (srcEnd - srcBegin)) {
+            throw new StringIndexOutOfBoundsException(dstBegin);
+        }
+        getChars(segments, shift, srcBegin, srcEnd, dst, dstBegin);
+    }
+
+    /**
+     * Returns a string containing the characters of this builder.  The
+     * characters are copied once, directly from the segments into the
+     * new string.
+     *
+     * @return  a string consisting of exactly this sequence of characters.
+     */
+    @Override
+    public String toString() {
+        return toString(segments, shift, 0, count);
+    }
+
+    /**
+     * Removes all characters from this builder.  Its segments are not
+     * reused, so that slices of it remain unchanged.
+     */
+    public void clear() {
+        segments = new char[INITIAL_CAPACITY][];
+        nSegments = 0;
+        count = 0;
+    }
+
+    // Appending
+
+    /**
+     * Appends the specified character.
+     *
+     * @param   c   a {@code char}.
+     * @return  a reference to this object.
+     */
+    @Override
+    public SegmentedStringBuilder append(char c) {
+        char[] seg = writableSegment(1);
+        seg[count & ((1 << shift) - 1)] = c;
+        count++;
+        return this;
+    }
+
+    /**
+     * Appends the specified string.  If {@code str} is {@code null}, then
+     * the four characters {@code "null"} are appended.
+     *
+     * @param   str   a string.
+     * @return  a reference to this object.
+     */
+    public SegmentedStringBuilder append(String str) {
+        if (str == null) {
+            str = "null";
+        }
+        return append(str, 0, str.length());
+    }
+
+    /**
+     * Appends the specified character sequence.  If {@code s} is
+     * {@code null}, then the four characters {@code "null"} are appended.
+     *
+     * @param   s   the sequence to append.
+     * @return  a reference to this object.
+     */
+    @Override
+    public SegmentedStringBuilder append(CharSequence s) {
+        if (s == null) {
+            s = "null";
+        }
+        return append(s, 0, s.length());
+    }
+
+    /**
+     * Appends a subsequence of the specified character sequence, as by
+     * {@link AbstractStringBuilder#append(CharSequence, int, int)
+     * StringBuilder.append(CharSequence, int, int)}.  Strings, string
+     * builders, segmented string builders and their slices are copied in
+     * bulk.
+     *
+     * @param   s   the sequence to append.
+     * @param   start   the starting index of the subsequence to be appended.
+     * @param   end     the end index of the subsequence to be appended.
+     * @return  a reference to this object.
+     * @throws  IndexOutOfBoundsException  if {@code start} is negative,
+     *          or {@code start} is greater than {@code end} or {@code end}
+     *          is greater than {@code s.length()}.
+     */
+    @Override
+    public SegmentedStringBuilder append(CharSequence s, int start, int end) {
+        if (s == null) {
+            s = "null";
+        }
+        checkRange(start, end, s.length());
+        reserve(end - start);
+        int mask = (1 << shift) - 1;
+        while (start < end) {
+            char[] seg = writableSegment(end - start);
+            int off = count & mask;
+            int n = Math.min(seg.length - off, end - start);
+            if (s instanceof String) {
+                ((String) s).getChars(start, start + n, seg, off);
+            } else if (s instanceof AbstractStringBuilder) {
+                ((AbstractStringBuilder) s).getChars(start, start + n, seg, off);
+            } else if (s instanceof SegmentedStringBuilder) {
+                SegmentedStringBuilder b = (SegmentedStringBuilder) s;
+                getChars(b.segments, b.shift, start, start + n, seg, off);
+            } else if (s instanceof Slice) {
+                Slice sl = (Slice) s;
+                getChars(sl.segments, sl.shift, sl.offset + start,
+                         sl.offset + start + n, seg, off);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    seg[off + i] = s.charAt(start + i);
+                }
+            }
+            start += n;
+            count += n;
+        }
+        return this;
+    }
+
+    /**
+     * Appends the characters of the specified array.
+     *
+     * @param   str   the characters to be appended.
+     * @return  a reference to this object.
+     */
+    public SegmentedStringBuilder append(char[] str) {
+        return append(str, 0, str.length);
+    }
+
+    /**
+     * Appends {@code len} characters of the specified array, starting at
+     * index {@code offset}.
+     *
+     * @param   str      the characters to be appended.
+     * @param   offset   the index of the first {@code char} to append.
+     * @param   len      the number of {@code char}s to append.
+     * @return  a reference to this object.
+     * @throws  IndexOutOfBoundsException  if {@code offset < 0} or
+     *          {@code len < 0} or {@code offset+len > str.length}
+     */
+    public SegmentedStringBuilder append(char[] str, int offset, int len) {
+        if (offset < 0 || len < 0 || offset > str.length - len) {
+            throw new IndexOutOfBoundsException(
+                "offset " + offset + ", len " + len + ", length " + str.length);
+        }
+        reserve(len);
+        int mask = (1 << shift) - 1;
+        while (len > 0) {
+            char[] seg = writableSegment(len);
+            int off = count & mask;
+            int n = Math.min(seg.length - off, len);
+            System.arraycopy(str, offset, seg, off, n);
+            offset += n;
+            len -= n;
+            count += n;
+        }
+        return this;
+    }
+
+    /**
+     * Appends the string representation of the {@code Object} argument,
+     * as by {@link String#valueOf(Object)}.
+     *
+     * @param   obj   an {@code Object}.
+     * @return  a reference to this object.
+     */
+    public SegmentedStringBuilder append(Object obj) {
+        return append(String.valueOf(obj));
+    }
+
+    /**
+     * Appends the string representation of the {@code boolean} argument.
+     *
+     * @param   b   a {@code boolean}.
+     * @return  a reference to this object.
+     */
+    public SegmentedStringBuilder append(boolean b) {
+        return append(b ? "true" : "false");
+    }
+
+    /**
+     * Appends the string representation of the {@code int} argument, as
+     * by {@link Integer#toString(int)}, without creating a string when
+     * the current segment has room for it.
+     *
+     * @param   i   an {@code int}.
+     * @return  a reference to this object.
+     */
+    public SegmentedStringBuilder append(int i) {
+        int size = Integer.decimalSize(i);
+        reserve(size);
+        char[] seg = writableSegment(size);
+        int off = count & ((1 << shift) - 1);
+        if (seg.length - off >= size) {
+            count += Integer.formatTo(i, seg, off) - off;
+            return this;
+        }
+        return append(Integer.toString(i));
+    }
+
+    /**
+     * Appends the string representation of the {@code long} argument, as
+     * by {@link Long#toString(long)}, without creating a string when the
+     * current segment has room for it.
+     *
+     * @param   l   a {@code long}.
+     * @return  a reference to this object.
+     */
+    public SegmentedStringBuilder append(long l) {
+        int size = Long.decimalSize(l);
+        reserve(size);
+        char[] seg = writableSegment(size);
+        int off = count & ((1 << shift) - 1);
+        if (seg.length - off >= size) {
+            count += Long.formatTo(l, seg, off) - off;
+            return this;
+        }
+        return append(Long.toString(l));
+    }
+
+    /**
+     * Appends the string representation of the {@code double} argument,
+     * as by {@link Double#toString(double)}, without creating a string
+     * when the current segment has room for it.
+     *
+     * @param   d   a {@code double}.
+     * @return  a reference to this object.
+     */
+    public SegmentedStringBuilder append(double d) {
+        int size = DoubleToDecimal.MAX_CHARS;
+        char[] seg = writableSegment(size);
+        int off = count & ((1 << shift) - 1);
+        if (seg.length - off >= size && count <= Integer.MAX_VALUE - size) {
+            count += DoubleToDecimal.toChars(d, seg, off) - off;
+            return this;
+        }
+        return append(Double.toString(d));
+    }
+
+    /**
+     * Checks that {@code n} more characters can be appended.
+     */
+    private void reserve(int n) {
+        if (n > Integer.MAX_VALUE - count) {
+            throw new OutOfMemoryError();
+        }
+    }
+
+    /**
+     * Returns the segment holding index {@code count}, allocating it, or
+     * growing the first segment, as needed to append characters.  The
+     * first segment is grown to hold up to {@code wanted} more
+     * characters; other segments are allocated at full size.
+     */
+    private char[] writableSegment(int wanted) {
+        int s = count >>> shift;
+        int segmentSize = 1 << shift;
+        if (s < nSegments) {
+            char[] seg = segments[s];
+            if ((count & (segmentSize - 1)) < seg.length) {
+                return seg;
+            }
+            // Only the first segment can be shorter than segmentSize
+            int newLength = Math.max(seg.length << 1, count + wanted);
+            seg = Arrays.copyOf(seg, Math.min(newLength, segmentSize));
+            // Slices may share the segments array, and read segments[0]
+            // from other threads, so never replace it in place
+            segments = segments.clone();
+            segments[0] = seg;
+            return seg;
+        }
+        if (s == segments.length) {
+            segments = Arrays.copyOf(segments, s << 1);
+        }
+        char[] seg = new char[(s == 0)
+            ? Math.min(Math.max(INITIAL_CAPACITY, wanted), segmentSize)
+            : segmentSize];
+        segments[s] = seg;
+        nSegments = s + 1;
+        return seg;
+    }
+
+    // Writing
+
+    /**
+     * Writes the characters of this builder to the given writer, one
+     * segment at a time.
+     *
+     * @param      out   the writer.
+     * @throws     IOException  if an I/O error occurs.
+     */
+    public void writeTo(Writer out) throws IOException {
+        writeTo(segments, shift, 0, count, out);
+    }
+
+    /**
+     * Encodes the characters of this builder with the given charset,
+     * replacing malformed input and unmappable characters with the
+     * charset's default replacement as {@link String#getBytes(Charset)}
+     * does, and writes the bytes to the given channel.
+     *
+     * @param      ch   the channel.
+     * @param      cs   the charset.
+     * @throws     IOException  if an I/O error occurs.
+     */
+    public void writeTo(WritableByteChannel ch, Charset cs) throws IOException {
+        writeTo(segments, shift, 0, count, ch, newEncoder(cs));
+    }
+
+    /**
+     * Encodes the characters of this builder with the given encoder and
+     * writes the bytes to the given channel.  The encoder is reset
+     * first, and is flushed once all characters are encoded.
+     *
+     * @param      ch   the channel.
+     * @param      encoder   the encoder.
+     * @throws     java.nio.charset.CharacterCodingException  if the
+     *             encoder reports malformed input or an unmappable
+     *             character.
+     * @throws     IOException  if an I/O error occurs.
+     */
+    public void writeTo(WritableByteChannel ch, CharsetEncoder encoder)
+        throws IOException
+    {
+        writeTo(segments, shift, 0, count, ch, encoder);
+    }
+
+    /**
+     * An immutable range of the characters of a
+     * {@code SegmentedStringBuilder}, sharing its segments.
+     *
+     * @see     SegmentedStringBuilder#subSequence
+     * @since   1.8
+     */
+    public static final class Slice implements CharSequence {
+
+        final char[][] segments;
+        final int shift;
+        final int offset;
+        private final int length;
+
+        Slice(char[][] segments, int shift, int offset, int length) {
+            this.segments = segments;
+            this.shift = shift;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Returns the length of this slice.
+         *
+         * @return  the number of characters in this slice.
+         */
+        @Override
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Returns the {@code char} value at the specified index.
+         *
+         * @param      index   the index of the desired {@code char} value.
+         * @return     the {@code char} value at the specified index.
+         * @throws     IndexOutOfBoundsException  if {@code index} is
+         *             negative or greater than or equal to {@code length()}.
+         */
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new StringIndexOutOfBoundsException(index);
+            }
+            int i = offset + index;
+            return segments[i >>> shift][i & ((1 << shift) - 1)];
+        }
+
+        /**
+         * Returns a slice of this slice, in constant time.
+         *
+         * @param      start   the start index, inclusive.
+         * @param      end     the end index, exclusive.
+         * @return     the specified subsequence.
+         * @throws     IndexOutOfBoundsException  if {@code start} or
+         *             {@code end} are out of range.
+         */
+        @Override
+        public Slice subSequence(int start, int end) {
+            checkRange(start, end, length);
+            return new Slice(segments, shift, offset + start, end - start);
+        }
+
+        /**
+         * Characters are copied from this slice into the destination
+         * character array {@code dst}.
+         *
+         * @param      srcBegin   start copying at this offset.
+         * @param      srcEnd     stop copying at this offset.
+         * @param      dst        the array to copy the data into.
+         * @param      dstBegin   offset into {@code dst}.
+         * @throws     IndexOutOfBoundsException  if any of the indices
+         *             is out of range.
+         */
+        public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+            checkRange(srcBegin, srcEnd, length);
+            if (dstBegin < 0 || dstBegin > dst.length - (srcEnd - srcBegin)) {
+                throw new StringIndexOutOfBoundsException(dstBegin);
+            }
+            SegmentedStringBuilder.getChars(segments, shift, offset + srcBegin,
+                                            offset + srcEnd, dst, dstBegin);
+        }
+
+        /**
+         * Returns a string containing the characters of this slice.
+         *
+         * @return  a string consisting of exactly this sequence of
+         *          characters.
+         */
+        @Override
+        public String toString() {
+            return SegmentedStringBuilder.toString(segments, shift,
+                                                   offset, offset + length);
+        }
+
+        /**
+         * Writes the characters of this slice to the given writer.
+         *
+         * @param      out   the writer.
+         * @throws     IOException  if an I/O error occurs.
+         * @see        SegmentedStringBuilder#writeTo(Writer)
+         */
+        public void writeTo(Writer out) throws IOException {
+            SegmentedStringBuilder.writeTo(segments, shift,
+                                           offset, offset + length, out);
+        }
+
+        /**
+         * Encodes the characters of this slice with the given charset
+         * and writes the bytes to the given channel.
+         *
+         * @param      ch   the channel.
+         * @param      cs   the charset.
+         * @throws     IOException  if an I/O error occurs.
+         * @see        SegmentedStringBuilder#writeTo(WritableByteChannel, Charset)
+         */
+        public void writeTo(WritableByteChannel ch, Charset cs) throws IOException {
+            SegmentedStringBuilder.writeTo(segments, shift, offset,
+                                           offset + length, ch, newEncoder(cs));
+        }
+
+        /**
+         * Encodes the characters of this slice with the given encoder
+         * and writes the bytes to the given channel.
+         *
+         * @param      ch   the channel.
+         * @param      encoder   the encoder.
+         * @throws     IOException  if an I/O error occurs.
+         * @see        SegmentedStringBuilder#writeTo(WritableByteChannel, CharsetEncoder)
+         */
+        public void writeTo(WritableByteChannel ch, CharsetEncoder encoder)
+            throws IOException
+        {
+            SegmentedStringBuilder.writeTo(segments, shift, offset,
+                                           offset + length, ch, encoder);
+        }
+    }
+
+    // Segment operations shared by builders and slices
+
+    private static void checkRange(int start, int end, int length) {
+        if (start < 0 || start > end || end > length) {
+            throw new StringIndexOutOfBoundsException(
+                "start " + start + ", end " + end + ", length " + length);
+        }
+    }
+
+    private static void getChars(char[][] segments, int shift, int begin, int end,
+                                 char[] dst, int dstBegin) {
+        int mask = (1 << shift) - 1;
+        while (begin < end) {
+            int off = begin & mask;
+            int n = Math.min(mask + 1 - off, end - begin);
+            System.arraycopy(segments[begin >>> shift], off, dst, dstBegin, n);
+            begin += n;
+            dstBegin += n;
+        }
+    }
+
+    private static String toString(char[][] segments, int shift, int begin, int end) {
+        char[] value = new char[end - begin];
+        getChars(segments, shift, begin, end, value, 0);
+        return new String(value, true);
+    }
+
+    private static void writeTo(char[][] segments, int shift, int begin, int end,
+                                Writer out) throws IOException {
+        int mask = (1 << shift) - 1;
+        while (begin < end) {
+            int off = begin & mask;
+            int n = Math.min(mask + 1 - off, end - begin);
+            out.write(segments[begin >>> shift], off, n);
+            begin += n;
+        }
+    }
+
+    private static CharsetEncoder newEncoder(Charset cs) {
+        return cs.newEncoder()
+                 .onMalformedInput(CodingErrorAction.REPLACE)
+                 .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Encodes the characters through a small character buffer, rather
+     * than wrapping each segment, so that surrogate pairs split across
+     * segments are encoded together.
+     */
+    private static void writeTo(char[][] segments, int shift, int begin, int end,
+                                WritableByteChannel ch, CharsetEncoder encoder)
+        throws IOException
+    {
+        CharBuffer cb = CharBuffer.allocate(ENCODING_BUFFER_SIZE);
+        ByteBuffer bb = ByteBuffer.allocate(
+            (int) Math.ceil(ENCODING_BUFFER_SIZE * (double) encoder.maxBytesPerChar()));
+        encoder.reset();
+        boolean endOfInput;
+        do {
+            int n = Math.min(cb.remaining(), end - begin);
+            getChars(segments, shift, begin, begin + n,
+                     cb.array(), cb.arrayOffset() + cb.position());
+            cb.position(cb.position() + n);
+            begin += n;
+            endOfInput = (begin == end);
+            cb.flip();
+            for (;;) {
+                CoderResult cr = encoder.encode(cb, bb, endOfInput);
+                if (cr.isUnderflow()) {
+                    break;
+                }
+                if (cr.isOverflow()) {
+                    drain(bb, ch);
+                    continue;
+                }
+                cr.throwException();
+            }
+            cb.compact();
+        } while (!endOfInput);
+        while (encoder.flush(bb).isOverflow()) {
+            drain(bb, ch);
+        }
+        drain(bb, ch);
+    }
+
+    private static void drain(ByteBuffer bb, WritableByteChannel ch) throws IOException {
+        bb.flip();
+        while (bb.hasRemaining()) {
+            ch.write(bb);
+        }
+        bb.clear();
+    }
+}
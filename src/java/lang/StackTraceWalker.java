@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A facility for inspecting the current thread's stack, which
+ * materializes {@link StackTraceElement}s lazily, one frame at a time,
+ * as they are consumed.  Unlike {@code new Throwable().getStackTrace()},
+ * which creates an element for every frame of the stack, a walk that
+ * only examines the innermost few frames only pays for those:
+ *
+ * <pre> {@code
+ * // the first caller outside of this framework
+ * StackTraceElement caller = StackTraceWalker.getInstance()
+ *     .withFilter(f -> !f.getClassName().startsWith("com.example.framework."))
+ *     .walk(s -> s.skip(1).findFirst().orElse(null));
+ * }</pre>
+ *
+ * <p>A walker may be restricted to frames accepted by a filter, and
+ * to a maximum number of (accepted) frames.  The first frame of a
+ * walk is that of the method invoking {@link #walk walk} or {@link
+ * #forEach forEach}.  Walkers are immutable and may be shared.
+ *
+ * <p>Some virtual machines may, under some circumstances, omit one or
+ * more stack frames, as described for {@link Throwable#getStackTrace}.
+ *
+ * @see Throwable#setStackTraceDepthLimit
+ * @since 1.8
+ */
+public final class StackTraceWalker {
+
+    /** Captures a backtrace, bypassing any depth limits */
+    private static final class Capture extends Throwable {
+        private static final long serialVersionUID = -6310392046307596441L;
+        Capture() {
+            super(null, null, false, false);
+            fillInBacktrace();
+        }
+    }
+
+    private static final StackTraceWalker DEFAULT =
+        new StackTraceWalker(null, Long.MAX_VALUE);
+
+    private final Predicate<? super StackTraceElement> filter;
+    private final long maxDepth;
+
+    private StackTraceWalker(Predicate<? super StackTraceElement> filter,
+                             long maxDepth) {
+        this.filter = filter;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Returns a walker over all frames.
+     *
+     * @return a walker over all frames
+     */
+    public static StackTraceWalker getInstance() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a walker like this one that yields at most the given
+     * number of frames.
+     *
+     * @param maxDepth the maximum number of frames
+     * @return the walker
+     * @throws IllegalArgumentException if {@code maxDepth} is negative
+     */
+    public StackTraceWalker withMaxDepth(long maxDepth) {
+        if (maxDepth < 0L)
+            throw new IllegalArgumentException("maxDepth < 0");
+        return new StackTraceWalker(filter, maxDepth);
+    }
+
+    /**
+     * Returns a walker like this one that yields only frames accepted
+     * by the given filter, as well as any filter of this walker.  The
+     * maximum depth applies to the accepted frames.
+     *
+     * @param filter a predicate on frames
+     * @return the walker
+     * @throws NullPointerException if {@code filter} is null
+     */
+    public StackTraceWalker withFilter(Predicate<? super StackTraceElement> filter) {
+        Objects.requireNonNull(filter);
+        Predicate<? super StackTraceElement> f = this.filter;
+        return new StackTraceWalker((f == null) ? filter :
+                                    e -> f.test(e) && filter.test(e),
+                                    maxDepth);
+    }
+
+    /**
+     * Applies the given function to a stream of the frames of the
+     * current thread, innermost first, and returns its result.  Frames
+     * are captured when this method is called, but each {@code
+     * StackTraceElement} is only created when the stream reaches it.
+     * The stream is only valid during the function's invocation.
+     *
+     * @param function a function applied to the stream of frames
+     * @param <T> the type of the result
+     * @return the result of the function
+     * @throws NullPointerException if {@code function} is null
+     */
+    public <T> T walk(Function<? super Stream<StackTraceElement>, ? extends T> function) {
+        Objects.requireNonNull(function);
+        Stream<StackTraceElement> s =
+            StreamSupport.stream(new FrameSpliterator(new Capture()), false);
+        if (filter != null)
+            s = s.filter(filter);
+        if (maxDepth != Long.MAX_VALUE)
+            s = s.limit(maxDepth);
+        return function.apply(s);
+    }
+
+    /**
+     * Performs the given action on each frame of the current thread,
+     * innermost first.
+     *
+     * @param action the action
+     * @throws NullPointerException if {@code action} is null
+     */
+    public void forEach(Consumer<? super StackTraceElement> action) {
+        Objects.requireNonNull(action);
+        Predicate<? super StackTraceElement> f = filter;
+        FrameSpliterator frames = new FrameSpliterator(new Capture());
+        long[] n = { maxDepth };
+        while (n[0] > 0L && frames.tryAdvance(e -> {
+                    if (f == null || f.test(e)) {
+                        --n[0];
+                        action.accept(e);
+                    }
+                }))
+            ;
+    }
+
+    /**
+     * Materializes the frames of a captured backtrace on demand,
+     * skipping the frames of the walker itself.
+     */
+    static final class FrameSpliterator
+        extends Spliterators.AbstractSpliterator<StackTraceElement> {
+        private final Throwable capture;
+        private final int depth;
+        private int index;
+        private boolean started;
+
+        FrameSpliterator(Throwable capture) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL |
+                  Spliterator.IMMUTABLE);
+            this.capture = capture;
+            this.depth = capture.getStackTraceDepth();
+        }
+
+        public boolean tryAdvance(Consumer<? super StackTraceElement> action) {
+            StackTraceElement e;
+            do {
+                if (index >= depth)
+                    return false;
+                e = capture.getStackTraceElement(index++);
+            } while (!started && (started = !isInternal(e)) == false);
+            action.accept(e);
+            return true;
+        }
+
+        private static boolean isInternal(StackTraceElement e) {
+            String c = e.getClassName();
+            return c.startsWith("java.lang.StackTraceWalker") ||
+                c.equals("java.lang.Throwable");
+        }
+    }
+}
@@ -0,0 +1,766 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of canonical strings, used to share one {@code String} instance
+ * among equal strings the way {@link String#intern} does, but with a
+ * retention policy and a size under the control of the application.
+ *
+ * <p>A <em>weak</em> pool, created by {@link #newWeakPool}, holds its
+ * strings weakly: a string stays in the pool only as long as it is
+ * otherwise reachable, so the pool never grows beyond the set of strings
+ * in use.  A <em>bounded</em> pool, created by {@link #newBoundedPool},
+ * holds at most a given number of strings strongly, and evicts strings
+ * that have not been looked up recently (by the CLOCK policy, an
+ * approximation of least recently used) to make room for new ones.
+ *
+ * <p>Strings can be interned directly from a range of a {@code char[]},
+ * a {@code byte[]} or a {@code CharSequence}: the pool looks the
+ * characters up without creating a {@code String}, and only creates one
+ * if no equal string is pooled yet.  This makes it suitable for
+ * deduplicating values as they are parsed, such as the fields of a CSV
+ * file or the keys of JSON objects, which are typically few distinct
+ * values repeated many times.
+ *
+ * <p>A pool is divided into independently locked segments, selected by
+ * the hash code of the string.  Lookups of pooled strings do not lock;
+ * only the insertion of a new string locks its segment.  The pool keeps
+ * counts of lookups, hits and evictions, from which its
+ * {@linkplain #deduplicationRatio deduplication ratio} can be computed.
+ *
+ * <p>Strings returned by a pool are equal to, but not in general
+ * identical to, the strings returned by {@code String.intern()}; the
+ * two are unrelated.
+ *
+ * @since 1.8
+ */
+public final class StringPool {
+
+    /** default number of segments */
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /** maximum number of segments */
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    /** initial capacity of the table of a segment, a power of two */
+    private static final int MIN_SEGMENT_TABLE_CAPACITY = 16;
+
+    /** maximum capacity of the table of a segment */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    /** maximum number of strings per segment, or 0 if weak */
+    private final int segmentBound;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    private StringPool(int concurrencyLevel, int maximumSize) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException(
+                "Illegal concurrency level: " + concurrencyLevel);
+        }
+        int shift = 0;
+        int n = 1;
+        while (n < concurrencyLevel && n < MAX_SEGMENTS) {
+            shift++;
+            n <<= 1;
+        }
+        int bound = 0;
+        if (maximumSize > 0) {
+            // Don't use more segments than there are strings to hold
+            while (n > 1 && n > maximumSize) {
+                shift--;
+                n >>>= 1;
+            }
+            bound = (maximumSize + n - 1) / n;
+        }
+        this.segmentShift = 32 - shift;
+        this.segmentBound = bound;
+        this.segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment(this);
+        }
+    }
+
+    /**
+     * Creates a new pool that holds its strings weakly, with the default
+     * concurrency level of 16.
+     *
+     * @return a new weak pool
+     */
+    public static StringPool newWeakPool() {
+        return new StringPool(DEFAULT_CONCURRENCY_LEVEL, 0);
+    }
+
+    /**
+     * Creates a new pool that holds its strings weakly.
+     *
+     * @param concurrencyLevel the estimated number of threads concurrently
+     *        adding strings to the pool; the pool is divided into at least
+     *        this many segments
+     * @return a new weak pool
+     * @throws IllegalArgumentException if {@code concurrencyLevel} is not
+     *         positive
+     */
+    public static StringPool newWeakPool(int concurrencyLevel) {
+        return new StringPool(concurrencyLevel, 0);
+    }
+
+    /**
+     * Creates a new pool that holds at most about {@code maximumSize}
+     * strings, with the default concurrency level of 16.
+     *
+     * @param maximumSize the maximum number of strings to hold
+     * @return a new bounded pool
+     * @throws IllegalArgumentException if {@code maximumSize} is not
+     *         positive
+     */
+    public static StringPool newBoundedPool(int maximumSize) {
+        return newBoundedPool(maximumSize, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new pool that holds at most about {@code maximumSize}
+     * strings.  The bound is enforced per segment, so the pool may evict
+     * a string before it holds {@code maximumSize} strings, and may hold
+     * slightly more if {@code maximumSize} is not a multiple of the
+     * number of segments.
+     *
+     * @param maximumSize the maximum number of strings to hold
+     * @param concurrencyLevel the estimated number of threads concurrently
+     *        adding strings to the pool
+     * @return a new bounded pool
+     * @throws IllegalArgumentException if {@code maximumSize} or
+     *         {@code concurrencyLevel} is not positive
+     */
+    public static StringPool newBoundedPool(int maximumSize, int concurrencyLevel) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException(
+                "Illegal maximum size: " + maximumSize);
+        }
+        return new StringPool(concurrencyLevel, maximumSize);
+    }
+
+    /**
+     * Returns {@code true} if this pool holds its strings weakly, and
+     * {@code false} if it is bounded.
+     *
+     * @return {@code true} if this is a weak pool
+     */
+    public boolean isWeak() {
+        return segmentBound == 0;
+    }
+
+    // Interning
+
+    /**
+     * Returns the pooled string equal to {@code s}, adding {@code s}
+     * itself to the pool if there is none.
+     *
+     * @param s the string to intern
+     * @return a string equal to {@code s}, shared by the callers of this
+     *         pool interning equal strings while it stays in the pool
+     * @throws NullPointerException if {@code s} is {@code null}
+     */
+    public String intern(String s) {
+        int h = s.hashCode();
+        String p = segmentFor(h).find(h, s, 0, s.length());
+        if (p == null) {
+            p = segmentFor(h).put(h, s, 0, s.length(), s);
+        }
+        return p;
+    }
+
+    /**
+     * Returns the pooled string equal to the contents of {@code cs},
+     * adding a new string to the pool if there is none.
+     *
+     * @param cs the character sequence to intern
+     * @return the pooled string
+     * @throws NullPointerException if {@code cs} is {@code null}
+     */
+    public String intern(CharSequence cs) {
+        if (cs instanceof String) {
+            return intern((String) cs);
+        }
+        return intern(cs, 0, cs.length());
+    }
+
+    /**
+     * Returns the pooled string equal to the subsequence of {@code cs}
+     * from {@code start}, inclusive, to {@code end}, exclusive, adding a
+     * new string to the pool if there is none.  The subsequence is looked
+     * up without creating a {@code String} or another
+     * {@code CharSequence}.
+     *
+     * @param cs the character sequence
+     * @param start the index of the first character to intern
+     * @param end the index after the last character to intern
+     * @return the pooled string
+     * @throws NullPointerException if {@code cs} is {@code null}
+     * @throws IndexOutOfBoundsException if {@code start} or {@code end}
+     *         is negative, if {@code end} is greater than
+     *         {@code cs.length()}, or if {@code start} is greater than
+     *         {@code end}
+     */
+    public String intern(CharSequence cs, int start, int end) {
+        if (start < 0 || start > end || end > cs.length()) {
+            throw new IndexOutOfBoundsException(
+                "start " + start + ", end " + end + ", length " + cs.length());
+        }
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + cs.charAt(i);
+        }
+        String p = segmentFor(h).find(h, cs, start, end - start);
+        if (p == null) {
+            p = segmentFor(h).put(h, cs, start, end - start, null);
+        }
+        return p;
+    }
+
+    /**
+     * Returns the pooled string equal to the {@code count} characters of
+     * {@code chars} starting at {@code offset}, adding a new string to
+     * the pool if there is none.
+     *
+     * @param chars the characters
+     * @param offset the index of the first character to intern
+     * @param count the number of characters to intern
+     * @return the pooled string
+     * @throws NullPointerException if {@code chars} is {@code null}
+     * @throws IndexOutOfBoundsException if {@code offset} or
+     *         {@code count} is negative, or if {@code offset + count} is
+     *         greater than {@code chars.length}
+     */
+    public String intern(char[] chars, int offset, int count) {
+        checkBounds(chars.length, offset, count);
+        int h = 0;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            h = 31 * h + chars[i];
+        }
+        String p = segmentFor(h).find(h, chars, offset, count);
+        if (p == null) {
+            p = segmentFor(h).put(h, chars, offset, count, null);
+        }
+        return p;
+    }
+
+    /**
+     * Returns the pooled string equal to the {@code length} bytes of
+     * {@code bytes} starting at {@code offset}, decoded with
+     * {@code charset} as {@link String#String(byte[], int, int, Charset)}
+     * would, adding a new string to the pool if there is none.
+     *
+     * <p>Bytes in ISO-8859-1, and bytes in US-ASCII or UTF-8 that are all
+     * ASCII characters, are looked up without being decoded.  Other bytes
+     * are decoded into a temporary character buffer first.
+     *
+     * @param bytes the bytes
+     * @param offset the index of the first byte to intern
+     * @param length the number of bytes to intern
+     * @param charset the charset to decode the bytes with
+     * @return the pooled string
+     * @throws NullPointerException if {@code bytes} or {@code charset} is
+     *         {@code null}
+     * @throws IndexOutOfBoundsException if {@code offset} or
+     *         {@code length} is negative, or if {@code offset + length}
+     *         is greater than {@code bytes.length}
+     */
+    public String intern(byte[] bytes, int offset, int length, Charset charset) {
+        checkBounds(bytes.length, offset, length);
+        int end = offset + length;
+        boolean latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+        if (!latin1 && (charset.equals(StandardCharsets.US_ASCII) ||
+                        charset.equals(StandardCharsets.UTF_8))) {
+            latin1 = true;
+            for (int i = offset; i < end; i++) {
+                if (bytes[i] < 0) {
+                    latin1 = false;
+                    break;
+                }
+            }
+        }
+        if (!latin1) {
+            CharBuffer cb = charset.decode(ByteBuffer.wrap(bytes, offset, length));
+            return intern(cb.array(), cb.arrayOffset() + cb.position(), cb.remaining());
+        }
+        int h = 0;
+        for (int i = offset; i < end; i++) {
+            h = 31 * h + (bytes[i] & 0xff);
+        }
+        String p = segmentFor(h).find(h, bytes, offset, length);
+        if (p == null) {
+            p = segmentFor(h).put(h, bytes, offset, length, null);
+        }
+        return p;
+    }
+
+    private static void checkBounds(int size, int offset, int count) {
+        if (offset < 0 || count < 0 || offset > size - count) {
+            throw new IndexOutOfBoundsException(
+                "offset " + offset + ", count " + count + ", length " + size);
+        }
+    }
+
+    /**
+     * Removes all strings from this pool.  The statistics are not reset.
+     */
+    public void clear() {
+        for (Segment seg : segments) {
+            seg.clear();
+        }
+    }
+
+    // Statistics
+
+    /**
+     * Returns the number of strings in this pool.  For a weak pool this
+     * may include strings that are no longer reachable but have not
+     * been removed yet.
+     *
+     * @return the number of strings in this pool
+     */
+    public int size() {
+        long n = 0;
+        for (Segment seg : segments) {
+            n += seg.count;
+        }
+        return (int) Math.min(n, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of times strings were interned in this pool.
+     *
+     * @return the number of lookups
+     */
+    public long lookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * Returns the number of times strings interned in this pool were
+     * found to be pooled already, that is the number of duplicates the
+     * pool replaced by a shared string.
+     *
+     * @return the number of hits
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of strings a bounded pool evicted to make room
+     * for new strings.  This is always 0 for a weak pool.
+     *
+     * @return the number of evictions
+     */
+    public long evictionCount() {
+        long n = 0;
+        for (Segment seg : segments) {
+            n += seg.evictions;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the fraction of the strings interned in this pool that were
+     * duplicates of a pooled string, that is {@code hitCount()} divided by
+     * {@code lookupCount()}, or 0 if no string was interned yet.
+     *
+     * @return the deduplication ratio, between 0 and 1
+     */
+    public double deduplicationRatio() {
+        long l = lookups.sum();
+        return (l == 0) ? 0.0 : (double) hits.sum() / l;
+    }
+
+    /**
+     * Returns a string describing this pool and its statistics.
+     *
+     * @return a string describing this pool
+     */
+    @Override
+    public String toString() {
+        return (isWeak() ? "StringPool[weak" : "StringPool[bounded")
+            + ", size=" + size()
+            + ", lookups=" + lookupCount()
+            + ", hits=" + hitCount()
+            + ", evictions=" + evictionCount()
+            + ", deduplicationRatio=" + deduplicationRatio()
+            + "]";
+    }
+
+    // Implementation
+
+    private Segment segmentFor(int h) {
+        return (segmentShift == 32) ? segments[0]
+                                    : segments[spread(h) >>> segmentShift];
+    }
+
+    /**
+     * Spreads the higher bits of a string hash code downwards, so that
+     * both the segment (taken from the high bits) and the bucket (taken
+     * from the low bits) depend on all of them.
+     */
+    private static int spread(int h) {
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4) ^ (h << 16);
+    }
+
+    /**
+     * Returns true if {@code s} consists of the {@code count} characters
+     * of {@code key} starting at {@code offset}, where {@code key} is a
+     * {@code char[]}, a {@code byte[]} of ISO-8859-1 characters or a
+     * {@code CharSequence}.
+     */
+    private static boolean matches(String s, Object key, int offset, int count) {
+        if (s.length() != count) {
+            return false;
+        }
+        if (key instanceof char[]) {
+            char[] chars = (char[]) key;
+            for (int i = 0; i < count; i++) {
+                if (s.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+        } else if (key instanceof byte[]) {
+            byte[] bytes = (byte[]) key;
+            for (int i = 0; i < count; i++) {
+                if (s.charAt(i) != (char) (bytes[offset + i] & 0xff)) {
+                    return false;
+                }
+            }
+        } else if (key instanceof String) {
+            return s.equals(key);
+        } else {
+            CharSequence cs = (CharSequence) key;
+            for (int i = 0; i < count; i++) {
+                if (s.charAt(i) != cs.charAt(offset + i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the string to pool for the given key range.
+     */
+    private static String newString(Object key, int offset, int count) {
+        char[] value = new char[count];
+        if (key instanceof char[]) {
+            System.arraycopy((char[]) key, offset, value, 0, count);
+        } else if (key instanceof byte[]) {
+            byte[] bytes = (byte[]) key;
+            for (int i = 0; i < count; i++) {
+                value[i] = (char) (bytes[offset + i] & 0xff);
+            }
+        } else {
+            CharSequence cs = (CharSequence) key;
+            for (int i = 0; i < count; i++) {
+                value[i] = cs.charAt(offset + i);
+            }
+        }
+        return new String(value, true);
+    }
+
+    /**
+     * An entry of a segment hash table.  Entries are immutable, so that
+     * the table may be read without locking; removing an entry from a
+     * bucket copies the entries preceding it.
+     */
+    private static abstract class Entry {
+        final int hash;
+        final Entry next;
+
+        Entry(int hash, Entry next) {
+            this.hash = hash;
+            this.next = next;
+        }
+
+        /** Returns the pooled string, or null if it was cleared. */
+        abstract String get();
+
+        /** Notes a lookup of the pooled string. */
+        abstract void touch();
+
+        /** Returns a copy of this entry followed by {@code next}. */
+        abstract Entry copy(Entry next);
+    }
+
+    /**
+     * An entry of a weak pool.  The weak reference is shared by all
+     * copies of the entry, and identifies it once cleared.
+     */
+    private static final class WeakEntry extends Entry {
+        final Ref ref;
+
+        WeakEntry(int hash, Ref ref, Entry next) {
+            super(hash, next);
+            this.ref = ref;
+        }
+
+        String get()            { return ref.get(); }
+        void touch()            { }
+        Entry copy(Entry next)  { return new WeakEntry(hash, ref, next); }
+    }
+
+    private static final class Ref extends WeakReference<String> {
+        final int hash;
+
+        Ref(String s, int hash, ReferenceQueue<String> queue) {
+            super(s, queue);
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * An entry of a bounded pool.  The slot is shared by all copies of
+     * the entry, and by the eviction clock of the segment.
+     */
+    private static final class StrongEntry extends Entry {
+        final Slot slot;
+
+        StrongEntry(int hash, Slot slot, Entry next) {
+            super(hash, next);
+            this.slot = slot;
+        }
+
+        String get()            { return slot.value; }
+        void touch()            { if (!slot.referenced) slot.referenced = true; }
+        Entry copy(Entry next)  { return new StrongEntry(hash, slot, next); }
+    }
+
+    private static final class Slot {
+        final String value;
+        final int hash;
+        volatile boolean referenced;
+
+        Slot(String value, int hash) {
+            this.value = value;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * A segment of the pool: a hash table read without locking and
+     * updated while holding the segment's monitor.
+     */
+    private static final class Segment {
+        private final StringPool pool;
+
+        /** the hash table; its size is always a power of two */
+        private volatile Entry[] table;
+
+        /** number of entries, written only while holding the monitor */
+        volatile int count;
+
+        /** number of evictions, written only while holding the monitor */
+        volatile long evictions;
+
+        /** queue of cleared references (weak pools) */
+        private final ReferenceQueue<String> queue;
+
+        /** the eviction clock and its hand (bounded pools) */
+        private final Slot[] clock;
+        private int hand;
+
+        Segment(StringPool pool) {
+            this.pool = pool;
+            this.table = new Entry[MIN_SEGMENT_TABLE_CAPACITY];
+            if (pool.segmentBound == 0) {
+                queue = new ReferenceQueue<>();
+                clock = null;
+            } else {
+                queue = null;
+                clock = new Slot[pool.segmentBound];
+            }
+        }
+
+        /**
+         * Looks the key range up without locking, counting the lookup.
+         */
+        String find(int h, Object key, int offset, int length) {
+            pool.lookups.increment();
+            Entry[] tab = table;
+            int sh = spread(h);
+            for (Entry e = tab[sh & (tab.length - 1)]; e != null; e = e.next) {
+                if (e.hash == h) {
+                    String s = e.get();
+                    if (s != null && matches(s, key, offset, length)) {
+                        e.touch();
+                        pool.hits.increment();
+                        return s;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Looks the key range up again while holding the monitor, and
+         * adds {@code s}, or a new string if {@code s} is null, if it is
+         * still missing.
+         */
+        synchronized String put(int h, Object key, int offset, int length, String s) {
+            if (queue != null) {
+                expungeStaleEntries();
+            }
+            Entry[] tab = table;
+            int i = spread(h) & (tab.length - 1);
+            for (Entry e = tab[i]; e != null; e = e.next) {
+                if (e.hash == h) {
+                    String p = e.get();
+                    if (p != null && matches(p, key, offset, length)) {
+                        // added by another thread since find
+                        pool.hits.increment();
+                        return p;
+                    }
+                }
+            }
+            if (s == null) {
+                s = newString(key, offset, length);
+            }
+
+            Entry e;
+            if (clock == null) {
+                e = new WeakEntry(h, new Ref(s, h, queue), null);
+            } else {
+                Slot slot = new Slot(s, h);
+                if (count < clock.length) {
+                    clock[count] = slot;
+                } else {
+                    evict(slot);
+                    tab = table;
+                    i = spread(h) & (tab.length - 1);
+                }
+                e = new StrongEntry(h, slot, null);
+            }
+            int c = count;
+            if (c >= (tab.length >>> 1) + (tab.length >>> 2) &&
+                tab.length < MAXIMUM_CAPACITY) {
+                tab = resize(tab);
+                i = spread(h) & (tab.length - 1);
+            }
+            tab[i] = e.copy(tab[i]);
+            count = c + 1;
+            return s;
+        }
+
+        /**
+         * Evicts the first pooled string the clock hand finds not
+         * referenced since it last passed, and puts {@code slot} in its
+         * place.
+         */
+        private void evict(Slot slot) {
+            Slot[] clock = this.clock;
+            int n = clock.length;
+            int h = hand;
+            Slot victim;
+            while ((victim = clock[h]).referenced) {
+                victim.referenced = false;
+                h = (h + 1 == n) ? 0 : h + 1;
+            }
+            clock[h] = slot;
+            hand = (h + 1 == n) ? 0 : h + 1;
+            remove(victim.hash, victim);
+            evictions++;
+        }
+
+        /**
+         * Removes the entry for the given reference or slot.
+         */
+        private void remove(int h, Object id) {
+            Entry[] tab = table;
+            int i = spread(h) & (tab.length - 1);
+            Entry first = tab[i];
+            for (Entry e = first; e != null; e = e.next) {
+                if (e.hash == h && (e instanceof WeakEntry
+                                    ? ((WeakEntry) e).ref == id
+                                    : ((StrongEntry) e).slot == id)) {
+                    Entry newFirst = e.next;
+                    for (Entry p = first; p != e; p = p.next) {
+                        newFirst = p.copy(newFirst);
+                    }
+                    tab[i] = newFirst;
+                    count--;
+                    return;
+                }
+            }
+        }
+
+        private void expungeStaleEntries() {
+            for (Object x; (x = queue.poll()) != null; ) {
+                Ref ref = (Ref) x;
+                remove(ref.hash, ref);
+            }
+        }
+
+        /**
+         * Doubles the size of the table, copying its entries, and
+         * publishes the new table.
+         */
+        private Entry[] resize(Entry[] oldTab) {
+            Entry[] newTab = new Entry[oldTab.length << 1];
+            int mask = newTab.length - 1;
+            for (Entry first : oldTab) {
+                for (Entry e = first; e != null; e = e.next) {
+                    int i = spread(e.hash) & mask;
+                    newTab[i] = e.copy(newTab[i]);
+                }
+            }
+            table = newTab;
+            return newTab;
+        }
+
+        synchronized void clear() {
+            if (queue != null) {
+                while (queue.poll() != null)
+                    ;
+            } else {
+                Arrays.fill(clock, null);
+                hand = 0;
+            }
+            table = new Entry[MIN_SEGMENT_TABLE_CAPACITY];
+            count = 0;
+        }
+    }
+}
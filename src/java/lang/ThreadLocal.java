@@ -25,8 +25,8 @@
 
 package java.lang;
 import java.lang.ref.*;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 /**
@@ -73,36 +73,92 @@ import java.util.function.Supplier;
  */
 public class ThreadLocal<T> {
     /**
-     * ThreadLocals rely on per-thread linear-probe hash maps attached
-     * to each thread (Thread.threadLocals and
-     * inheritableThreadLocals).  The ThreadLocal objects act as keys,
-     * searched via threadLocalHashCode.  This is a custom hash code
-     * (useful only within ThreadLocalMaps) that eliminates collisions
-     * in the common case where consecutively constructed ThreadLocals
-     * are used by the same threads, while remaining well-behaved in
-     * less common cases.
+     * ThreadLocals rely on per-thread maps attached to each thread
+     * (Thread.threadLocals and inheritableThreadLocals), which are
+     * arrays indexed directly by the ThreadLocal's id.  Ids are small
+     * integers handed out densely by class Ids, and are recycled once
+     * a ThreadLocal has been garbage collected, so the tables of
+     * long-lived threads stay proportional to the number of
+     * ThreadLocals in use at any one time rather than to the number
+     * ever created.  Because an entry refers weakly to its
+     * ThreadLocal, an entry left behind by a collected ThreadLocal
+     * can never be mistaken for one of a later ThreadLocal reusing
+     * its id.
      */
-    private final int threadLocalHashCode = nextHashCode();
+    private final int id = Ids.acquire(this);
 
     /**
-     * The next hash code to be given out. Updated atomically. Starts at
-     * zero.
+     * Allocator of ThreadLocal ids.  Each id is associated with a
+     * weak reference to its ThreadLocal, registered with a queue that
+     * is polled when ids are acquired and on the slow paths of
+     * ThreadLocalMap, at which point the id is released for reuse.
+     * Released ids are reused most-recently-released first, and new
+     * ids are only issued when there are none to reuse.
      */
-    private static AtomicInteger nextHashCode =
-        new AtomicInteger();
+    private static final class Ids {
+        /** Weak reference holding the id of a ThreadLocal */
+        static final class IdRef extends WeakReference<ThreadLocal<?>> {
+            final int id;
+            IdRef(ThreadLocal<?> key, int id, ReferenceQueue<ThreadLocal<?>> q) {
+                super(key, q);
+                this.id = id;
+            }
+        }
 
-    /**
-     * The difference between successively generated hash codes - turns
-     * implicit sequential thread-local IDs into near-optimally spread
-     * multiplicative hash values for power-of-two-sized tables.
-     */
-    private static final int HASH_INCREMENT = 0x61c88647;
+        private static final ReferenceQueue<ThreadLocal<?>> queue =
+            new ReferenceQueue<>();
 
-    /**
-     * Returns the next hash code.
-     */
-    private static int nextHashCode() {
-        return nextHashCode.getAndAdd(HASH_INCREMENT);
+        /** Keeps the IdRefs of live ThreadLocals reachable, by id */
+        private static IdRef[] refs = new IdRef[64];
+
+        /** Stack of released ids */
+        private static int[] free = new int[16];
+        private static int freeCount;
+
+        /** The next id never yet issued */
+        private static int nextId;
+
+        /**
+         * The number of batches of released ids, used by maps to tell
+         * whether they may hold stale entries they have not yet seen.
+         */
+        static volatile int reclaimCount;
+
+        static int acquire(ThreadLocal<?> key) {
+            reclaim();
+            synchronized (Ids.class) {
+                int id;
+                if (freeCount > 0)
+                    id = free[--freeCount];
+                else if ((id = nextId++) < 0) {
+                    nextId = Integer.MIN_VALUE;
+                    throw new Error("ThreadLocal id overflow");
+                }
+                if (id >= refs.length)
+                    refs = Arrays.copyOf(refs, Math.max(id + 1, refs.length << 1));
+                refs[id] = new IdRef(key, id, queue);
+                return id;
+            }
+        }
+
+        /**
+         * Releases the ids of all collected ThreadLocals on the queue.
+         */
+        static void reclaim() {
+            Reference<? extends ThreadLocal<?>> r;
+            if ((r = queue.poll()) != null) {
+                synchronized (Ids.class) {
+                    do {
+                        int id = ((IdRef)r).id;
+                        refs[id] = null;
+                        if (freeCount >= free.length)
+                            free = Arrays.copyOf(free, freeCount << 1);
+                        free[freeCount++] = id;
+                    } while ((r = queue.poll()) != null);
+                    reclaimCount++;
+                }
+            }
+        }
     }
 
     /**
@@ -222,6 +278,32 @@ public class ThreadLocal<T> {
              m.remove(this);
      }
 
+    /**
+     * Removes all of the current thread's thread-local values,
+     * including those of {@link InheritableThreadLocal}s, as if by
+     * invoking {@link #remove} on each thread-local variable the
+     * thread has a value for.  This is intended for threads that are
+     * reused for unrelated tasks, such as those of a thread pool, to
+     * discard state left behind by one task before running the next.
+     * Thread-local variables subsequently read by the thread are
+     * reinitialized by their {@link #initialValue} method.
+     *
+     * <p>This method affects all thread-local variables, including
+     * those maintained by libraries and frameworks the thread may be
+     * using, so should only be invoked by code that controls the
+     * thread's life cycle.
+     *
+     * @since 1.8
+     */
+    public static void removeAll() {
+        Thread t = Thread.currentThread();
+        ThreadLocalMap m;
+        if ((m = t.threadLocals) != null)
+            m.clear();
+        if ((m = t.inheritableThreadLocals) != null)
+            m.clear();
+    }
+
     /**
      * Get the map associated with a ThreadLocal. Overridden in
      * InheritableThreadLocal.
@@ -286,24 +368,25 @@ public class ThreadLocal<T> {
     }
 
     /**
-     * ThreadLocalMap is a customized hash map suitable only for
+     * ThreadLocalMap is a customized map suitable only for
      * maintaining thread local values. No operations are exported
      * outside of the ThreadLocal class. The class is package private to
-     * allow declaration of fields in class Thread.  To help deal with
-     * very large and long-lived usages, the hash table entries use
-     * WeakReferences for keys. However, since reference queues are not
-     * used, stale entries are guaranteed to be removed only when
-     * the table starts running out of space.
+     * allow declaration of fields in class Thread.  Entries are kept in
+     * a table indexed by ThreadLocal id, so lookups need no hashing or
+     * probing.  To help deal with very large and long-lived usages,
+     * the table entries use WeakReferences for keys.  Entries whose
+     * keys have been collected ("stale entries") are replaced when
+     * their id is reused, and are all expunged on the next slow-path
+     * operation after any ids have been reclaimed.
      */
     static class ThreadLocalMap {
 
         /**
-         * The entries in this hash map extend WeakReference, using
+         * The entries in this map extend WeakReference, using
          * its main ref field as the key (which is always a
          * ThreadLocal object).  Note that null keys (i.e. entry.get()
          * == null) mean that the key is no longer referenced, so the
-         * entry can be expunged from table.  Such entries are referred to
-         * as "stale entries" in the code that follows.
+         * entry can be expunged from table.
          */
         static class Entry extends WeakReference<ThreadLocal<?>> {
             /** The value associated with this ThreadLocal. */
@@ -321,40 +404,25 @@ public class ThreadLocal<T> {
         private static final int INITIAL_CAPACITY = 16;
 
         /**
-         * The table, resized as necessary.
+         * The table, indexed by ThreadLocal id, resized as necessary.
          * table.length MUST always be a power of two.
          */
         private Entry[] table;
 
         /**
-         * The number of entries in the table.
+         * The value of Ids.reclaimCount when stale entries were last
+         * expunged.
          */
-        private int size = 0;
-
-        /**
-         * The next size value at which to resize.
-         */
-        private int threshold; // Default to 0
-
-        /**
-         * Set the resize threshold to maintain at worst a 2/3 load factor.
-         */
-        private void setThreshold(int len) {
-            threshold = len * 2 / 3;
-        }
-
-        /**
-         * Increment i modulo len.
-         */
-        private static int nextIndex(int i, int len) {
-            return ((i + 1 < len) ? i + 1 : 0);
-        }
+        private int expungedAt;
 
         /**
-         * Decrement i modulo len.
+         * Returns a power of two table size for the given id.
          */
-        private static int prevIndex(int i, int len) {
-            return ((i - 1 >= 0) ? i - 1 : len - 1);
+        private static int tableSizeFor(int id) {
+            int n = INITIAL_CAPACITY;
+            while (n <= id)
+                n <<= 1;
+            return n;
         }
 
         /**
@@ -363,11 +431,9 @@ public class ThreadLocal<T> {
          * one when we have at least one entry to put in it.
          */
         ThreadLocalMap(ThreadLocal<?> firstKey, Object firstValue) {
-            table = new Entry[INITIAL_CAPACITY];
-            int i = firstKey.threadLocalHashCode & (INITIAL_CAPACITY - 1);
-            table[i] = new Entry(firstKey, firstValue);
-            size = 1;
-            setThreshold(INITIAL_CAPACITY);
+            expungedAt = Ids.reclaimCount;
+            table = new Entry[tableSizeFor(firstKey.id)];
+            table[firstKey.id] = new Entry(firstKey, firstValue);
         }
 
         /**
@@ -379,7 +445,7 @@ public class ThreadLocal<T> {
         private ThreadLocalMap(ThreadLocalMap parentMap) {
             Entry[] parentTable = parentMap.table;
             int len = parentTable.length;
-            setThreshold(len);
+            expungedAt = Ids.reclaimCount;
             table = new Entry[len];
 
             for (int j = 0; j < len; j++) {
@@ -389,59 +455,26 @@ public class ThreadLocal<T> {
                     ThreadLocal<Object> key = (ThreadLocal<Object>) e.get();
                     if (key != null) {
                         Object value = key.childValue(e.value);
-                        Entry c = new Entry(key, value);
-                        int h = key.threadLocalHashCode & (len - 1);
-                        while (table[h] != null)
-                            h = nextIndex(h, len);
-                        table[h] = c;
-                        size++;
+                        table[j] = new Entry(key, value);
                     }
                 }
             }
         }
 
         /**
-         * Get the entry associated with key.  This method
-         * itself handles only the fast path: a direct hit of existing
-         * key. It otherwise relays to getEntryAfterMiss.  This is
-         * designed to maximize performance for direct hits, in part
-         * by making this method readily inlinable.
+         * Get the entry associated with key.  A miss is handled by
+         * the caller establishing an initial value through set, so
+         * this method is kept small enough to be readily inlinable.
          *
          * @param  key the thread local object
          * @return the entry associated with key, or null if no such
          */
         private Entry getEntry(ThreadLocal<?> key) {
-            int i = key.threadLocalHashCode & (table.length - 1);
-            Entry e = table[i];
-            if (e != null && e.get() == key)
-                return e;
-            else
-                return getEntryAfterMiss(key, i, e);
-        }
-
-        /**
-         * Version of getEntry method for use when key is not found in
-         * its direct hash slot.
-         *
-         * @param  key the thread local object
-         * @param  i the table index for key's hash code
-         * @param  e the entry at table[i]
-         * @return the entry associated with key, or null if no such
-         */
-        private Entry getEntryAfterMiss(ThreadLocal<?> key, int i, Entry e) {
             Entry[] tab = table;
-            int len = tab.length;
-
-            while (e != null) {
-                ThreadLocal<?> k = e.get();
-                if (k == key)
-                    return e;
-                if (k == null)
-                    expungeStaleEntry(i);
-                else
-                    i = nextIndex(i, len);
-                e = tab[i];
-            }
+            int i = key.id;
+            Entry e;
+            if (i < tab.length && (e = tab[i]) != null && e.get() == key)
+                return e;
             return null;
         }
 
@@ -452,36 +485,23 @@ public class ThreadLocal<T> {
          * @param value the value to be set
          */
         private void set(ThreadLocal<?> key, Object value) {
-
-            // We don't use a fast path as with get() because it is at
-            // least as common to use set() to create new entries as
-            // it is to replace existing ones, in which case, a fast
-            // path would fail more often than not.
-
             Entry[] tab = table;
-            int len = tab.length;
-            int i = key.threadLocalHashCode & (len-1);
-
-            for (Entry e = tab[i];
-                 e != null;
-                 e = tab[i = nextIndex(i, len)]) {
-                ThreadLocal<?> k = e.get();
-
-                if (k == key) {
-                    e.value = value;
-                    return;
-                }
-
-                if (k == null) {
-                    replaceStaleEntry(key, value, i);
-                    return;
-                }
+            int i = key.id;
+            Entry e;
+            if (i < tab.length && (e = tab[i]) != null && e.get() == key) {
+                e.value = value;
+                return;
             }
 
+            // Adding an entry: first drop those of collected keys
+            Ids.reclaim();
+            if (expungedAt != Ids.reclaimCount)
+                expungeStaleEntries();
+            if (i >= (tab = table).length)
+                tab = resize(i);
+            if ((e = tab[i]) != null)    // stale entry for a reused id
+                e.value = null;
             tab[i] = new Entry(key, value);
-            int sz = ++size;
-            if (!cleanSomeSlots(i, sz) && sz >= threshold)
-                rehash();
         }
 
         /**
@@ -489,233 +509,65 @@ public class ThreadLocal<T> {
          */
         private void remove(ThreadLocal<?> key) {
             Entry[] tab = table;
-            int len = tab.length;
-            int i = key.threadLocalHashCode & (len-1);
-            for (Entry e = tab[i];
-                 e != null;
-                 e = tab[i = nextIndex(i, len)]) {
-                if (e.get() == key) {
-                    e.clear();
-                    expungeStaleEntry(i);
-                    return;
-                }
-            }
-        }
-
-        /**
-         * Replace a stale entry encountered during a set operation
-         * with an entry for the specified key.  The value passed in
-         * the value parameter is stored in the entry, whether or not
-         * an entry already exists for the specified key.
-         *
-         * As a side effect, this method expunges all stale entries in the
-         * "run" containing the stale entry.  (A run is a sequence of entries
-         * between two null slots.)
-         *
-         * @param  key the key
-         * @param  value the value to be associated with key
-         * @param  staleSlot index of the first stale entry encountered while
-         *         searching for key.
-         */
-        private void replaceStaleEntry(ThreadLocal<?> key, Object value,
-                                       int staleSlot) {
-            Entry[] tab = table;
-            int len = tab.length;
+            int i = key.id;
             Entry e;
-
-            // Back up to check for prior stale entry in current run.
-            // We clean out whole runs at a time to avoid continual
-            // incremental rehashing due to garbage collector freeing
-            // up refs in bunches (i.e., whenever the collector runs).
-            int slotToExpunge = staleSlot;
-            for (int i = prevIndex(staleSlot, len);
-                 (e = tab[i]) != null;
-                 i = prevIndex(i, len))
-                if (e.get() == null)
-                    slotToExpunge = i;
-
-            // Find either the key or trailing null slot of run, whichever
-            // occurs first
-            for (int i = nextIndex(staleSlot, len);
-                 (e = tab[i]) != null;
-                 i = nextIndex(i, len)) {
-                ThreadLocal<?> k = e.get();
-
-                // If we find key, then we need to swap it
-                // with the stale entry to maintain hash table order.
-                // The newly stale slot, or any other stale slot
-                // encountered above it, can then be sent to expungeStaleEntry
-                // to remove or rehash all of the other entries in run.
-                if (k == key) {
-                    e.value = value;
-
-                    tab[i] = tab[staleSlot];
-                    tab[staleSlot] = e;
-
-                    // Start expunge at preceding stale entry if it exists
-                    if (slotToExpunge == staleSlot)
-                        slotToExpunge = i;
-                    cleanSomeSlots(expungeStaleEntry(slotToExpunge), len);
-                    return;
-                }
-
-                // If we didn't find stale entry on backward scan, the
-                // first stale entry seen while scanning for key is the
-                // first still present in the run.
-                if (k == null && slotToExpunge == staleSlot)
-                    slotToExpunge = i;
+            if (i < tab.length && (e = tab[i]) != null && e.get() == key) {
+                e.clear();
+                e.value = null;
+                tab[i] = null;
             }
-
-            // If key not found, put new entry in stale slot
-            tab[staleSlot].value = null;
-            tab[staleSlot] = new Entry(key, value);
-
-            // If there are any other stale entries in run, expunge them
-            if (slotToExpunge != staleSlot)
-                cleanSomeSlots(expungeStaleEntry(slotToExpunge), len);
         }
 
         /**
-         * Expunge a stale entry by rehashing any possibly colliding entries
-         * lying between staleSlot and the next null slot.  This also expunges
-         * any other stale entries encountered before the trailing null.  See
-         * Knuth, Section 6.4
-         *
-         * @param staleSlot index of slot known to have null key
-         * @return the index of the next null slot after staleSlot
-         * (all between staleSlot and this slot will have been checked
-         * for expunging).
+         * Remove all entries, retaining the table for reuse.
          */
-        private int expungeStaleEntry(int staleSlot) {
+        private void clear() {
             Entry[] tab = table;
-            int len = tab.length;
-
-            // expunge entry at staleSlot
-            tab[staleSlot].value = null;
-            tab[staleSlot] = null;
-            size--;
-
-            // Rehash until we encounter null
-            Entry e;
-            int i;
-            for (i = nextIndex(staleSlot, len);
-                 (e = tab[i]) != null;
-                 i = nextIndex(i, len)) {
-                ThreadLocal<?> k = e.get();
-                if (k == null) {
+            for (int j = 0; j < tab.length; j++) {
+                Entry e = tab[j];
+                if (e != null) {
+                    e.clear();
                     e.value = null;
-                    tab[i] = null;
-                    size--;
-                } else {
-                    int h = k.threadLocalHashCode & (len - 1);
-                    if (h != i) {
-                        tab[i] = null;
-
-                        // Unlike Knuth 6.4 Algorithm R, we must scan until
-                        // null because multiple entries could have been stale.
-                        while (tab[h] != null)
-                            h = nextIndex(h, len);
-                        tab[h] = e;
-                    }
+                    tab[j] = null;
                 }
             }
-            return i;
+            expungedAt = Ids.reclaimCount;
         }
 
         /**
-         * Heuristically scan some cells looking for stale entries.
-         * This is invoked when either a new element is added, or
-         * another stale one has been expunged. It performs a
-         * logarithmic number of scans, as a balance between no
-         * scanning (fast but retains garbage) and a number of scans
-         * proportional to number of elements, that would find all
-         * garbage but would cause some insertions to take O(n) time.
+         * Grow the table to hold the given id, dropping stale
+         * entries.
          *
-         * @param i a position known NOT to hold a stale entry. The
-         * scan starts at the element after i.
-         *
-         * @param n scan control: {@code log2(n)} cells are scanned,
-         * unless a stale entry is found, in which case
-         * {@code log2(table.length)-1} additional cells are scanned.
-         * When called from insertions, this parameter is the number
-         * of elements, but when from replaceStaleEntry, it is the
-         * table length. (Note: all this could be changed to be either
-         * more or less aggressive by weighting n instead of just
-         * using straight log n. But this version is simple, fast, and
-         * seems to work well.)
-         *
-         * @return true if any stale entries have been removed.
-         */
-        private boolean cleanSomeSlots(int i, int n) {
-            boolean removed = false;
-            Entry[] tab = table;
-            int len = tab.length;
-            do {
-                i = nextIndex(i, len);
-                Entry e = tab[i];
-                if (e != null && e.get() == null) {
-                    n = len;
-                    removed = true;
-                    i = expungeStaleEntry(i);
-                }
-            } while ( (n >>>= 1) != 0);
-            return removed;
-        }
-
-        /**
-         * Re-pack and/or re-size the table. First scan the entire
-         * table removing stale entries. If this doesn't sufficiently
-         * shrink the size of the table, double the table size.
+         * @return the new table
          */
-        private void rehash() {
-            expungeStaleEntries();
-
-            // Use lower threshold for doubling to avoid hysteresis
-            if (size >= threshold - threshold / 4)
-                resize();
-        }
-
-        /**
-         * Double the capacity of the table.
-         */
-        private void resize() {
+        private Entry[] resize(int id) {
             Entry[] oldTab = table;
             int oldLen = oldTab.length;
-            int newLen = oldLen * 2;
-            Entry[] newTab = new Entry[newLen];
-            int count = 0;
-
+            Entry[] newTab = new Entry[tableSizeFor(id)];
             for (int j = 0; j < oldLen; ++j) {
                 Entry e = oldTab[j];
                 if (e != null) {
-                    ThreadLocal<?> k = e.get();
-                    if (k == null) {
+                    if (e.get() == null)
                         e.value = null; // Help the GC
-                    } else {
-                        int h = k.threadLocalHashCode & (newLen - 1);
-                        while (newTab[h] != null)
-                            h = nextIndex(h, newLen);
-                        newTab[h] = e;
-                        count++;
-                    }
+                    else
+                        newTab[j] = e;
                 }
             }
-
-            setThreshold(newLen);
-            size = count;
-            table = newTab;
+            return table = newTab;
         }
 
         /**
          * Expunge all stale entries in the table.
          */
         private void expungeStaleEntries() {
+            expungedAt = Ids.reclaimCount;
             Entry[] tab = table;
-            int len = tab.length;
-            for (int j = 0; j < len; j++) {
+            for (int j = 0; j < tab.length; j++) {
                 Entry e = tab[j];
-                if (e != null && e.get() == null)
-                    expungeStaleEntry(j);
+                if (e != null && e.get() == null) {
+                    e.value = null;
+                    tab[j] = null;
+                }
             }
         }
     }
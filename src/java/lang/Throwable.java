@@ -209,6 +209,26 @@ public class Throwable implements Serializable {
      */
     private StackTraceElement[] stackTrace = UNASSIGNED_STACK;
 
+    /**
+     * The maximum number of frames of the backtrace to materialize as
+     * the stack trace, or 0 if unlimited.  Set when the backtrace is
+     * captured; see {@link #setStackTraceDepthLimit}.
+     */
+    private transient int stackTraceLimit;
+
+    /**
+     * The number of outer frames of the backtrace left out of the
+     * stack trace because of {@link #stackTraceLimit}, so that printed
+     * stack traces can show that they were trimmed.  Serialized with
+     * the stack trace, so that a trimmed trace is still reported as
+     * such after deserialization; streams from earlier releases
+     * leave it zero.
+     *
+     * @serial
+     * @since 1.8
+     */
+    private int elidedFrames;
+
     // Setting this static field introduces an acceptable
     // initialization dependency on a few java.util classes.
     private static final List<Throwable> SUPPRESSED_SENTINEL =
@@ -656,6 +676,8 @@ public class Throwable implements Serializable {
             StackTraceElement[] trace = getOurStackTrace();
             for (StackTraceElement traceElement : trace)
                 s.println("\tat " + traceElement);
+            if (elidedFrames > 0)
+                s.println("\t... " + elidedFrames + " frames not recorded");
 
             // Print suppressed exceptions, if any
             for (Throwable se : getSuppressed())
@@ -683,10 +705,12 @@ public class Throwable implements Serializable {
         } else {
             dejaVu.add(this);
             // Compute number of frames in common between this and enclosing trace
+            // (a trimmed trace lacks the outermost frames, so has none)
             StackTraceElement[] trace = getOurStackTrace();
+            int elided = elidedFrames;
             int m = trace.length - 1;
             int n = enclosingTrace.length - 1;
-            while (m >= 0 && n >=0 && trace[m].equals(enclosingTrace[n])) {
+            while (elided == 0 && m >= 0 && n >=0 && trace[m].equals(enclosingTrace[n])) {
                 m--; n--;
             }
             int framesInCommon = trace.length - 1 - m;
@@ -697,6 +721,8 @@ public class Throwable implements Serializable {
                 s.println(prefix + "\tat " + trace[i]);
             if (framesInCommon != 0)
                 s.println(prefix + "\t... " + framesInCommon + " more");
+            if (elided > 0)
+                s.println(prefix + "\t... " + elided + " frames not recorded");
 
             // Print suppressed exceptions, if any
             for (Throwable se : getSuppressed())
@@ -780,7 +806,12 @@ public class Throwable implements Serializable {
     public synchronized Throwable fillInStackTrace() {
         if (stackTrace != null ||
             backtrace != null /* Out of protocol state */ ) {
-            fillInStackTrace(0);
+            int limit = stackTraceDepthLimit(getClass());
+            if (limit == 0)
+                backtrace = null;     // skip the capture entirely
+            else
+                fillInStackTrace(0);
+            stackTraceLimit = (limit < 0) ? 0 : limit;
             stackTrace = UNASSIGNED_STACK;
         }
         return this;
@@ -788,6 +819,164 @@ public class Throwable implements Serializable {
 
     private native Throwable fillInStackTrace(int dummy);
 
+    /**
+     * Captures the backtrace regardless of any depth limit, leaving
+     * the stack trace fields unchanged.  For use by StackTraceWalker.
+     */
+    final void fillInBacktrace() {
+        fillInStackTrace(0);
+    }
+
+    // Whether StackTraceDepthLimits has been initialized, and whether
+    // its initialization has been attempted
+    private static volatile boolean depthLimitsReady;
+    private static boolean depthLimitsTried;
+
+    /**
+     * Returns the depth limit for throwables of class c, or -1 if
+     * unlimited.  Until the VM has booted, and if StackTraceDepthLimits
+     * is being initialized or failed to initialize, stack traces are
+     * unlimited: throwables must remain constructible regardless, and
+     * those thrown while initializing must not recurse into it.
+     */
+    private static int stackTraceDepthLimit(Class<?> c) {
+        if (!depthLimitsReady) {
+            if (depthLimitsTried || !sun.misc.VM.isBooted())
+                return -1;
+            depthLimitsTried = true;
+            try {
+                StackTraceDepthLimits.ensureInitialized();
+            } catch (Throwable ex) {
+                return -1;
+            }
+            if (!depthLimitsReady)
+                return -1;
+        }
+        try {
+            return StackTraceDepthLimits.limitFor(c);
+        } catch (RuntimeException | Error ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Limits on the depth of recorded stack traces: a global limit
+     * from the {@code java.lang.Throwable.maxStackTraceDepth} system
+     * property, and limits set for particular classes (and their
+     * subclasses) by {@link Throwable#setStackTraceDepthLimit}.
+     * Initialized on first use after the VM has booted.
+     */
+    private static final class StackTraceDepthLimits {
+        static final int GLOBAL = java.security.AccessController.doPrivileged(
+            new sun.security.action.GetIntegerAction(
+                "java.lang.Throwable.maxStackTraceDepth", -1));
+
+        /** The limit set for a class, or -1 */
+        static final class Limit {
+            volatile int depth = -1;
+        }
+
+        /**
+         * Limits by class.  Held by each class rather than in a map,
+         * so that limits do not keep classes or their loaders reachable.
+         */
+        static final ClassValue<Limit> byClass = new ClassValue<Limit>() {
+            protected Limit computeValue(Class<?> type) {
+                return new Limit();
+            }
+        };
+
+        /** Whether a limit has ever been set for a class */
+        static volatile boolean anySet;
+
+        static {
+            depthLimitsReady = true;
+        }
+
+        static void ensureInitialized() { }
+
+        /** Returns the limit for the nearest limited superclass of c */
+        static int limitFor(Class<?> c) {
+            if (anySet) {
+                for (; c != null && c != Object.class; c = c.getSuperclass()) {
+                    int limit = byClass.get(c).depth;
+                    if (limit >= 0)
+                        return limit;
+                }
+            }
+            return (GLOBAL < 0) ? -1 : GLOBAL;
+        }
+
+        static void set(Class<?> c, int maxDepth) {
+            byClass.get(c).depth = maxDepth;
+            if (maxDepth >= 0)
+                anySet = true;
+        }
+    }
+
+    /**
+     * Limits the number of stack frames recorded in the stack traces
+     * of throwables of the given class, and of those subclasses that
+     * do not have a limit of their own.  Only the innermost (most
+     * recent) {@code maxDepth} frames are kept.  A limit of zero
+     * avoids capturing the stack at all, which makes construction of
+     * throwables used for control flow or validation about as cheap
+     * as construction with a {@linkplain
+     * Throwable#Throwable(String, Throwable, boolean, boolean)
+     * non-writable} stack trace.
+     *
+     * <p>Only a limit of zero makes construction cheaper: the virtual
+     * machine captures the whole stack whenever it captures any of
+     * it, and stack trace elements are only created once the stack
+     * trace is first requested.  A positive limit instead bounds the
+     * work and memory spent when the stack trace is requested, printed
+     * or serialized.  Printed stack traces that were trimmed end with
+     * a line giving the number of frames not recorded.
+     *
+     * <p>Limits apply to stack traces filled
+     * in after the call; throwables of classes without a limit use
+     * the global limit given by the system property {@code
+     * java.lang.Throwable.maxStackTraceDepth}, if set.
+     *
+     * @param type the class of throwables to limit
+     * @param maxDepth the maximum number of frames to record, or
+     *        {@code -1} to remove the limit for {@code type}
+     * @throws IllegalArgumentException if {@code maxDepth < -1}
+     * @throws NullPointerException if {@code type} is null
+     * @throws SecurityException if a security manager exists and its
+     *         {@code checkPermission} method denies {@code
+     *         RuntimePermission("setStackTraceDepthLimit")}
+     * @since 1.8
+     */
+    public static void setStackTraceDepthLimit(Class<? extends Throwable> type,
+                                               int maxDepth) {
+        if (type == null)
+            throw new NullPointerException();
+        if (maxDepth < -1)
+            throw new IllegalArgumentException("maxDepth < -1");
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null)
+            sm.checkPermission(new RuntimePermission("setStackTraceDepthLimit"));
+        StackTraceDepthLimits.set(type, maxDepth);
+    }
+
+    /**
+     * Returns the maximum number of stack frames recorded in the
+     * stack traces of throwables of the given class, as set for it or
+     * its nearest superclass by {@link #setStackTraceDepthLimit}, or
+     * else by the global limit.
+     *
+     * @param type the class of throwables
+     * @return the maximum number of frames, or {@code -1} if unlimited
+     * @throws NullPointerException if {@code type} is null
+     * @since 1.8
+     */
+    public static int getStackTraceDepthLimit(Class<? extends Throwable> type) {
+        if (type == null)
+            throw new NullPointerException();
+        return StackTraceDepthLimits.limitFor(type);
+    }
+
     /**
      * Provides programmatic access to the stack trace information printed by
      * {@link #printStackTrace()}.  Returns an array of stack trace elements,
@@ -821,7 +1010,12 @@ public class Throwable implements Serializable {
         // backtrace if this is the first call to this method
         if (stackTrace == UNASSIGNED_STACK ||
             (stackTrace == null && backtrace != null) /* Out of protocol state */) {
+            int limit = stackTraceLimit;
             int depth = getStackTraceDepth();
+            if (limit > 0 && limit < depth) {
+                elidedFrames = depth - limit;
+                depth = limit;      // materialize only the innermost frames
+            }
             stackTrace = new StackTraceElement[depth];
             for (int i=0; i < depth; i++)
                 stackTrace[i] = getStackTraceElement(i);
@@ -872,6 +1066,7 @@ public class Throwable implements Serializable {
                 backtrace == null) // Test for out of protocol state
                 return;
             this.stackTrace = defensiveCopy;
+            this.elidedFrames = 0;
         }
     }
 
@@ -961,6 +1156,9 @@ public class Throwable implements Serializable {
             // empty stack traces.
             stackTrace = UNASSIGNED_STACK.clone();
         }
+
+        if (elidedFrames < 0)
+            throw new InvalidObjectException("Negative elidedFrames");
     }
 
     /**
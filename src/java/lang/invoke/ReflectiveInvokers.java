@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.invoke;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import sun.reflect.CallerSensitive;
+import sun.invoke.util.Wrapper;
+import sun.reflect.Reflection;
+import static java.lang.invoke.MethodHandleStatics.*;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * This class consists exclusively of static methods that produce
+ * accessors for reflected methods and fields which are built on
+ * method handles, as alternatives to {@link Method#invoke Method.invoke},
+ * {@link Field#get Field.get} and {@link Field#set Field.set} for code
+ * that performs the same reflective operations very many times.
+ * <p>
+ * Each accessor provides a typed method handle for the member, which
+ * can be invoked with {@code invokeExact} and no boxing of arguments
+ * or results, as well as {@code Object}-based operations equivalent to
+ * those of the core reflection API.  The latter are composed from the
+ * member's direct method handle by generic conversion and argument
+ * spreading, whose lambda forms are shared by all members of the same
+ * erased signature, so no class is generated per member.
+ * Arguments are checked against the member's types before invocation,
+ * so that any exception then thrown can be attributed to the member
+ * itself without intercepting it.
+ * <p>
+ * Access is checked once, when the accessor is created, on behalf of
+ * the caller of the factory method, as if by a {@linkplain
+ * MethodHandles.Lookup lookup object} with full access to the caller's
+ * class.  As with {@link MethodHandles.Lookup#unreflect
+ * Lookup.unreflect}, access checks are suppressed if the member's
+ * {@code accessible} flag is set.  The accessor itself may then be
+ * used, or shared, without further checks.
+ *
+ * @since 1.8
+ */
+public final class ReflectiveInvokers {
+
+    private ReflectiveInvokers() { }  // do not instantiate
+
+    /**
+     * Returns an invoker for the given method, checking access on
+     * behalf of the caller.
+     *
+     * @param m the reflected method
+     * @return an invoker for the method
+     * @throws IllegalAccessException if access checking fails
+     * @throws NullPointerException if the argument is null
+     */
+    @CallerSensitive
+    public static MethodInvoker methodInvoker(Method m) throws IllegalAccessException {
+        MethodHandle mh = lookupFor(Reflection.getCallerClass()).unreflect(m);
+        return new MethodInvoker(m, mh);
+    }
+
+    /**
+     * Returns an accessor for the given field, checking access on
+     * behalf of the caller.  If the caller is allowed to read but not
+     * to write the field, the accessor is created but its write
+     * operations throw {@code IllegalAccessException}.  As with
+     * {@link Field#set Field.set}, a {@code final} field is writable
+     * only if it is not {@code static} and its {@code accessible} flag
+     * is set.
+     *
+     * @param f the reflected field
+     * @return an accessor for the field
+     * @throws IllegalAccessException if access checking fails
+     * @throws NullPointerException if the argument is null
+     */
+    @CallerSensitive
+    public static FieldAccessor fieldAccessor(Field f) throws IllegalAccessException {
+        MethodHandles.Lookup lookup = lookupFor(Reflection.getCallerClass());
+        MethodHandle getter = lookup.unreflectGetter(f);
+        MethodHandle setter = null;
+        IllegalAccessException denied = null;
+        int mods = f.getModifiers();
+        if (Modifier.isFinal(mods) &&
+            (Modifier.isStatic(mods) || !f.isAccessible())) {
+            denied = new IllegalAccessException("Can not set final field " + f);
+        } else {
+            try {
+                setter = lookup.unreflectSetter(f);
+            } catch (IllegalAccessException ex) {
+                denied = ex;
+            }
+        }
+        return new FieldAccessor(f, getter, setter, denied);
+    }
+
+    private static MethodHandles.Lookup lookupFor(Class<?> caller) {
+        return (caller == null) ? MethodHandles.publicLookup()
+            : MethodHandles.Lookup.IMPL_LOOKUP.in(caller);
+    }
+
+    /**
+     * An invoker for a reflected method.
+     *
+     * @since 1.8
+     */
+    public static final class MethodInvoker {
+        private final Method method;
+        private final MethodHandle handle;
+        /** (Object, Object[])Object */
+        private final MethodHandle target;
+        private final Class<?>[] parameterTypes;
+        private final boolean isStatic;
+        /** True once the declaring class is known to be initialized */
+        private boolean initialized;
+
+        MethodInvoker(Method m, MethodHandle mh) {
+            Class<?>[] ptypes = m.getParameterTypes();
+            boolean isStatic = Modifier.isStatic(m.getModifiers());
+            MethodHandle t = mh.asFixedArity();
+            if (isStatic)
+                t = MethodHandles.dropArguments(t, 0, Object.class);
+            this.method = m;
+            this.handle = mh;
+            this.target = t.asType(MethodType.genericMethodType(ptypes.length + 1))
+                .asSpreader(Object[].class, ptypes.length);
+            this.parameterTypes = ptypes;
+            this.isStatic = isStatic;
+            this.initialized = !isStatic;
+        }
+
+        /**
+         * Returns the method this invoker invokes.
+         *
+         * @return the method
+         */
+        public Method method() {
+            return method;
+        }
+
+        /**
+         * Returns a direct method handle for the method, of the type
+         * it would have if obtained by {@link MethodHandles.Lookup#unreflect
+         * Lookup.unreflect}: the method's parameter types, preceded by
+         * its declaring class if the method is not static, and its
+         * return type.  Invoking the handle with {@code invokeExact}
+         * involves no boxing and no checks beyond those of the method
+         * itself.
+         *
+         * @return a method handle for the method
+         */
+        public MethodHandle handle() {
+            return handle;
+        }
+
+        /**
+         * Invokes the method, with the same effect as {@link Method#invoke
+         * Method.invoke} except that no access check is performed.
+         *
+         * @param obj the object on which to invoke the method; ignored
+         *        if the method is static
+         * @param args the arguments to the method, which may be null
+         *        if it takes none
+         * @return the result of the method, boxed if primitive, or
+         *         {@code null} if it is {@code void}
+         * @throws IllegalArgumentException if the method is an instance
+         *         method and {@code obj} is not an instance of its
+         *         declaring class, or if the number of arguments
+         *         differs, or an argument cannot be converted to its
+         *         parameter type
+         * @throws InvocationTargetException if the method throws an
+         *         exception
+         * @throws NullPointerException if {@code obj} is null and the
+         *         method is an instance method
+         * @throws ExceptionInInitializerError if the initialization
+         *         provoked by this method fails
+         */
+        public Object invoke(Object obj, Object... args)
+            throws InvocationTargetException {
+            Class<?>[] ptypes = parameterTypes;
+            if (!isStatic && !method.getDeclaringClass().isInstance(obj)) {
+                if (obj == null)
+                    throw new NullPointerException();
+                throw new IllegalArgumentException("object is not an instance of declaring class");
+            }
+            if (args == null)
+                args = NO_ARGS;
+            if (args.length != ptypes.length)
+                throw new IllegalArgumentException("wrong number of arguments");
+            for (int i = 0; i < ptypes.length; ++i) {
+                if (!isConvertible(args[i], ptypes[i]))
+                    throw new IllegalArgumentException("argument type mismatch");
+            }
+            if (!initialized) {   // initialize outside of the target
+                UNSAFE.ensureClassInitialized(method.getDeclaringClass());
+                initialized = true;
+            }
+            try {
+                return (Object) target.invokeExact(obj, args);
+            } catch (Throwable ex) {
+                throw new InvocationTargetException(ex);
+            }
+        }
+
+        /**
+         * Returns true if arg may be passed for a parameter of type
+         * ptype: by reference, or by unboxing and widening, as for
+         * Method.invoke.
+         */
+        private static boolean isConvertible(Object arg, Class<?> ptype) {
+            if (!ptype.isPrimitive())
+                return arg == null || ptype.isInstance(arg);
+            Class<?> c;
+            return (arg != null &&
+                    Wrapper.isWrapperType(c = arg.getClass()) &&
+                    Wrapper.forPrimitiveType(ptype)
+                    .isConvertibleFrom(Wrapper.forWrapperType(c)));
+        }
+
+        public String toString() {
+            return "MethodInvoker[" + method + "]";
+        }
+    }
+
+    /**
+     * An accessor for a reflected field.
+     *
+     * @since 1.8
+     */
+    public static final class FieldAccessor {
+        private final Field field;
+        private final MethodHandle getterHandle;
+        private final MethodHandle setterHandle;
+        private final IllegalAccessException setterDenied;
+        /** (Object)Object */
+        private final MethodHandle getter;
+        /** (Object, Object)void, or null if not writable */
+        private final MethodHandle setter;
+        private final boolean isStatic;
+
+        FieldAccessor(Field f, MethodHandle getterHandle,
+                      MethodHandle setterHandle,
+                      IllegalAccessException setterDenied) {
+            boolean isStatic = Modifier.isStatic(f.getModifiers());
+            MethodHandle g = getterHandle, s = setterHandle;
+            if (isStatic) {
+                g = MethodHandles.dropArguments(g, 0, Object.class);
+                if (s != null)
+                    s = MethodHandles.dropArguments(s, 0, Object.class);
+            }
+            this.field = f;
+            this.getterHandle = getterHandle;
+            this.setterHandle = setterHandle;
+            this.setterDenied = setterDenied;
+            this.getter = g.asType(methodType(Object.class, Object.class));
+            this.setter = (s == null) ? null :
+                s.asType(methodType(void.class, Object.class, Object.class));
+            this.isStatic = isStatic;
+        }
+
+        /**
+         * Returns the field this accessor accesses.
+         *
+         * @return the field
+         */
+        public Field field() {
+            return field;
+        }
+
+        /**
+         * Returns a method handle reading the field, of the type it
+         * would have if obtained by {@link MethodHandles.Lookup#unreflectGetter
+         * Lookup.unreflectGetter}.
+         *
+         * @return a method handle reading the field
+         */
+        public MethodHandle getterHandle() {
+            return getterHandle;
+        }
+
+        /**
+         * Returns a method handle writing the field, of the type it
+         * would have if obtained by {@link MethodHandles.Lookup#unreflectSetter
+         * Lookup.unreflectSetter}.
+         *
+         * @return a method handle writing the field
+         * @throws IllegalAccessException if the field may not be written
+         */
+        public MethodHandle setterHandle() throws IllegalAccessException {
+            if (setterHandle == null)
+                throw setterDenied();
+            return setterHandle;
+        }
+
+        /**
+         * Returns the value of the field, with the same effect as
+         * {@link Field#get Field.get} except that no access check is
+         * performed.
+         *
+         * @param obj the object holding the field; ignored if the
+         *        field is static
+         * @return the value, boxed if primitive
+         * @throws IllegalArgumentException if the field is an instance
+         *         field and {@code obj} is not an instance of its
+         *         declaring class
+         * @throws NullPointerException if {@code obj} is null and the
+         *         field is an instance field
+         * @throws ExceptionInInitializerError if the initialization
+         *         provoked by this method fails
+         */
+        public Object get(Object obj) {
+            if (!isStatic && obj == null)
+                throw new NullPointerException();
+            try {
+                return (Object) getter.invokeExact(obj);
+            } catch (ClassCastException ex) {
+                throw new IllegalArgumentException("receiver type mismatch", ex);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw newInternalError(ex);
+            }
+        }
+
+        /**
+         * Sets the value of the field, with the same effect as {@link
+         * Field#set Field.set} except that no access check is
+         * performed, and that the value is converted as if by {@link
+         * MethodHandle#asType asType}.
+         *
+         * @param obj the object holding the field; ignored if the
+         *        field is static
+         * @param value the new value, unboxed if the field is primitive
+         * @throws IllegalAccessException if the field may not be written
+         * @throws IllegalArgumentException if the field is an instance
+         *         field and {@code obj} is not an instance of its
+         *         declaring class, or if the value cannot be converted
+         *         to the field's type
+         * @throws NullPointerException if {@code obj} is null and the
+         *         field is an instance field
+         * @throws ExceptionInInitializerError if the initialization
+         *         provoked by this method fails
+         */
+        public void set(Object obj, Object value) throws IllegalAccessException {
+            MethodHandle s;
+            if ((s = setter) == null)
+                throw setterDenied();
+            if (!isStatic && obj == null)
+                throw new NullPointerException();
+            try {
+                s.invokeExact(obj, value);
+            } catch (ClassCastException | NullPointerException ex) {
+                throw new IllegalArgumentException("value type mismatch", ex);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw newInternalError(ex);
+            }
+        }
+
+        private IllegalAccessException setterDenied() {
+            IllegalAccessException ex =
+                new IllegalAccessException(setterDenied.getMessage());
+            ex.initCause(setterDenied);
+            return ex;
+        }
+
+        public String toString() {
+            return "FieldAccessor[" + field + "]";
+        }
+    }
+
+    private static final Object[] NO_ARGS = new Object[0];
+}
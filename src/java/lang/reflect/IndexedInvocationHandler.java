@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.reflect;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * {@code IndexedInvocationHandler} is the interface implemented by
+ * the handler of an <i>indexed proxy instance</i>, created with
+ * {@link Proxy#newIndexedProxyInstance Proxy.newIndexedProxyInstance}.
+ *
+ * <p>Unlike an {@link InvocationHandler}, which is called reflectively
+ * on every invocation with a {@code Method} object and an array of boxed
+ * arguments, an indexed invocation handler is consulted once per proxy
+ * instance, for each proxy method, when the instance is created.  It
+ * returns a method handle that the proxy then invokes directly on every
+ * call to that method, passing the proxy instance followed by the
+ * arguments with their declared types.  No argument array is allocated,
+ * primitive arguments and results are not boxed, and no per-call method
+ * lookup takes place.
+ *
+ * <p>The methods of an indexed proxy are identified by a stable index,
+ * which is their position in the array returned by
+ * {@link Proxy#getIndexedProxyMethods Proxy.getIndexedProxyMethods} for
+ * the same interfaces.  Indices 0, 1 and 2 are always
+ * {@code java.lang.Object}'s {@code hashCode}, {@code equals} and
+ * {@code toString} methods.
+ *
+ * @see         Proxy#newIndexedProxyInstance
+ * @since       1.8
+ */
+@FunctionalInterface
+public interface IndexedInvocationHandler {
+
+    /**
+     * Returns the method handle implementing a method of an indexed
+     * proxy instance.  This method is invoked once for each proxy method
+     * while the proxy instance is being created, so the proxy instance
+     * itself is not available yet; it is passed as the leading argument
+     * of each invocation of the returned handle instead.
+     *
+     * <p>The returned handle must be adaptable, with
+     * {@link MethodHandle#asType asType}, to a type whose return type is
+     * the return type of {@code method} and whose parameter types are
+     * {@code Object} (the proxy instance) followed by the parameter types
+     * of {@code method}.  Any exception thrown by the handle, checked or
+     * not, propagates unchanged to the caller of the proxy method; it is
+     * not wrapped in an {@link UndeclaredThrowableException}.
+     *
+     * @param   index the index of the proxy method
+     * @param   method the {@code Method} instance corresponding to the
+     * proxy method.  The declaring class of the {@code Method} object will
+     * be {@code java.lang.Object} for indices 0 to 2, and otherwise the
+     * interface that the method was declared in.
+     * @return  the method handle to invoke for the proxy method
+     */
+    MethodHandle methodHandle(int index, Method method);
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.reflect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.MethodVisitor;
+import jdk.internal.org.objectweb.asm.Type;
+
+import static jdk.internal.org.objectweb.asm.Opcodes.*;
+
+/**
+ * Computes the method table of an indexed proxy class and generates its
+ * class file.
+ *
+ * <p>The generated class extends {@code Object} and implements the proxy
+ * interfaces.  It is final and package-private and its only constructor
+ * is private, so it can be instantiated only by {@code Proxy}.  Each
+ * proxy method loads its method handle as a constant
+ * and invokes it exactly, passing {@code this} and its own arguments,
+ * then returns the result as is.  Where interfaces declare the same
+ * method with different (covariant) return types, one class method is
+ * generated per return type, all of them invoking the handle of the
+ * most specific one.
+ *
+ * <p>The class file holds a placeholder string constant in place of each
+ * handle.  The indexed proxy class defined from it only serves as the
+ * host of the classes of its instances: each instance is of a VM
+ * anonymous class defined from the same class file, with the
+ * placeholders patched to the instance's handles, so that the JIT sees
+ * the handles as constants and can inline through them.  Holding them
+ * in instance fields would not allow that.
+ *
+ * @see Proxy#newIndexedProxyInstance
+ * @since 1.8
+ */
+final class IndexedProxyGenerator {
+
+    private static final int CLASSFILE_VERSION = 52;
+    private static final String JAVA_LANG_OBJECT = "java/lang/Object";
+    private static final String METHOD_HANDLE = "java/lang/invoke/MethodHandle";
+    private static final String HANDLE_PLACEHOLDER = "METHOD_HANDLE_PLACEHOLDER_";
+
+    /** Object methods occupying the first indices of every method table */
+    private static final Method[] OBJECT_METHODS;
+    static {
+        try {
+            OBJECT_METHODS = new Method[] {
+                Object.class.getMethod("hashCode"),
+                Object.class.getMethod("equals", Object.class),
+                Object.class.getMethod("toString")
+            };
+        } catch (NoSuchMethodException e) {
+            throw new NoSuchMethodError(e.getMessage());
+        }
+    }
+
+    /** orders the methods of an interface independently of getMethods() */
+    private static final Comparator<Method> METHOD_ORDER = (a, b) -> {
+        int c = a.getName().compareTo(b.getName());
+        if (c != 0) {
+            return c;
+        }
+        Class<?>[] pa = a.getParameterTypes();
+        Class<?>[] pb = b.getParameterTypes();
+        c = Integer.compare(pa.length, pb.length);
+        for (int i = 0; c == 0 && i < pa.length; i++) {
+            c = pa[i].getName().compareTo(pb[i].getName());
+        }
+        return c;
+    };
+
+    private final Class<?>[] interfaces;
+
+    /** the proxy methods, in index order */
+    private final List<Method> methods = new ArrayList<>();
+
+    /** for each proxy method, the distinct return types to implement */
+    private final List<List<Class<?>>> returnTypes = new ArrayList<>();
+
+    /** the class file, once generated */
+    private byte[] classFile;
+
+    /** the constant pool indices of the handle placeholders, by index */
+    private int[] handleConstants;
+
+    /**
+     * Computes the method table of an indexed proxy class implementing
+     * the given interfaces.
+     *
+     * @throws IllegalArgumentException if two interfaces declare methods
+     *         with the same name and parameter types whose return types
+     *         cannot be implemented by a single method
+     */
+    IndexedProxyGenerator(Class<?>[] interfaces) {
+        this.interfaces = interfaces;
+
+        Map<List<Object>, Integer> slots = new HashMap<>();
+        for (Method m : OBJECT_METHODS) {
+            add(slots, m);
+        }
+        for (Class<?> intf : interfaces) {
+            Method[] ms = intf.getMethods();
+            Arrays.sort(ms, METHOD_ORDER);
+            for (Method m : ms) {
+                if (!Modifier.isStatic(m.getModifiers())) {
+                    add(slots, m);
+                }
+            }
+        }
+        if (methods.size() > 65535) {
+            throw new IllegalArgumentException("method limit exceeded");
+        }
+    }
+
+    private void add(Map<List<Object>, Integer> slots, Method m) {
+        Class<?>[] ptypes = m.getParameterTypes();
+        Object[] key = new Object[ptypes.length + 1];
+        key[0] = m.getName();
+        System.arraycopy(ptypes, 0, key, 1, ptypes.length);
+        List<Object> sig = Arrays.asList(key);
+
+        Integer slot = slots.get(sig);
+        if (slot == null) {
+            slots.put(sig, methods.size());
+            methods.add(m);
+            List<Class<?>> rtypes = new ArrayList<>(1);
+            rtypes.add(m.getReturnType());
+            returnTypes.add(rtypes);
+            return;
+        }
+
+        int i = slot;
+        List<Class<?>> rtypes = returnTypes.get(i);
+        Class<?> rtype = m.getReturnType();
+        if (rtypes.contains(rtype)) {
+            return;
+        }
+        Class<?> current = methods.get(i).getReturnType();
+        if (i < OBJECT_METHODS.length || rtype.isPrimitive() || current.isPrimitive()) {
+            // Object methods can only be redeclared with identical types,
+            // and primitive return types are never covariant
+            throw incompatibleReturnTypes(m);
+        }
+        if (current.isAssignableFrom(rtype)) {
+            // the new method is the most specific one seen so far
+            for (Class<?> c : rtypes) {
+                if (!c.isAssignableFrom(rtype)) {
+                    throw incompatibleReturnTypes(m);
+                }
+            }
+            methods.set(i, m);
+        } else if (!rtype.isAssignableFrom(current)) {
+            throw incompatibleReturnTypes(m);
+        }
+        rtypes.add(rtype);
+    }
+
+    private static IllegalArgumentException incompatibleReturnTypes(Method m) {
+        return new IllegalArgumentException(
+            "methods with same signature " + m.getName() +
+            Arrays.toString(m.getParameterTypes()) +
+            " but incompatible return types");
+    }
+
+    /**
+     * Returns the proxy methods, in index order.
+     */
+    Method[] methods() {
+        return methods.toArray(new Method[methods.size()]);
+    }
+
+    /**
+     * Returns the class file generated by {@link #generateClassFile}.
+     */
+    byte[] classFile() {
+        return classFile;
+    }
+
+    /**
+     * Returns the constant pool patches that bind the given handles,
+     * indexed like the method table, in place of the placeholders of the
+     * generated class file, as expected by
+     * {@code Unsafe.defineAnonymousClass}.
+     */
+    Object[] constantPoolPatches(Object[] handles) {
+        // u4 magic, u2 minor_version, u2 major_version, u2 constant_pool_count
+        int size = ((classFile[8] & 0xFF) << 8) | (classFile[9] & 0xFF);
+        Object[] patches = new Object[size];
+        for (int i = 0; i < handleConstants.length; i++) {
+            patches[handleConstants[i]] = handles[i];
+        }
+        return patches;
+    }
+
+    /**
+     * Generates the class file of an indexed proxy class with the given
+     * binary name and access flags.
+     */
+    byte[] generateClassFile(String name, int accessFlags) {
+        String className = name.replace('.', '/');
+        String[] itfs = new String[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            itfs[i] = Type.getInternalName(interfaces[i]);
+        }
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(CLASSFILE_VERSION, accessFlags | ACC_SUPER | ACC_SYNTHETIC,
+                 className, null, JAVA_LANG_OBJECT, itfs);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PRIVATE, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, JAVA_LANG_OBJECT, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(-1, -1);
+        mv.visitEnd();
+
+        int n = methods.size();
+        handleConstants = new int[n];
+        for (int i = 0; i < n; i++) {
+            Method m = methods.get(i);
+            Type[] ptypes = Type.getArgumentTypes(m);
+            Type rtype = Type.getReturnType(m);
+
+            // the exact type of the handle: (Object, ptypes...)rtype
+            Type[] htypes = new Type[ptypes.length + 1];
+            htypes[0] = Type.getType(Object.class);
+            System.arraycopy(ptypes, 0, htypes, 1, ptypes.length);
+            String handleDesc = Type.getMethodDescriptor(rtype, htypes);
+            String placeholder = HANDLE_PLACEHOLDER + i;
+            handleConstants[i] = cw.newConst(placeholder);
+
+            for (Class<?> r : returnTypes.get(i)) {
+                String desc = Type.getMethodDescriptor(Type.getType(r), ptypes);
+                mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, m.getName(),
+                                    desc, null, null);
+                mv.visitCode();
+                // a String here; the checkcast keeps the class verifiable
+                mv.visitLdcInsn(placeholder);
+                mv.visitTypeInsn(CHECKCAST, METHOD_HANDLE);
+                mv.visitVarInsn(ALOAD, 0);
+                int slot = 1;
+                for (Type t : ptypes) {
+                    mv.visitVarInsn(t.getOpcode(ILOAD), slot);
+                    slot += t.getSize();
+                }
+                mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact",
+                                   handleDesc, false);
+                mv.visitInsn(rtype.getOpcode(IRETURN));
+                mv.visitMaxs(-1, -1);
+                mv.visitEnd();
+            }
+        }
+
+        cw.visitEnd();
+        return classFile = cw.toByteArray();
+    }
+}
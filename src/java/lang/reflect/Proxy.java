@@ -25,6 +25,9 @@
 
 package java.lang.reflect;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.ref.WeakReference;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -35,6 +38,7 @@ import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 import sun.misc.ProxyGenerator;
+import sun.misc.Unsafe;
 import sun.misc.VM;
 import sun.reflect.CallerSensitive;
 import sun.reflect.Reflection;
@@ -239,6 +243,28 @@ public class Proxy implements java.io.Serializable {
     private static final WeakCache<ClassLoader, Class<?>[], Class<?>>
         proxyClassCache = new WeakCache<>(new KeyFactory(), new ProxyClassFactory());
 
+    /**
+     * a cache of indexed proxy classes
+     */
+    private static final WeakCache<ClassLoader, Class<?>[], Class<?>>
+        indexedProxyClassCache = new WeakCache<>(new KeyFactory(),
+                                                 new IndexedProxyClassFactory());
+
+    /**
+     * the method tables and class files of indexed proxy classes, from
+     * which the classes of their instances are defined
+     */
+    private static final ClassValue<IndexedProxyGenerator> indexedProxyTemplates =
+        new ClassValue<IndexedProxyGenerator>() {
+            @Override
+            protected IndexedProxyGenerator computeValue(Class<?> type) {
+                IndexedProxyGenerator g = new IndexedProxyGenerator(type.getInterfaces());
+                g.generateClassFile(type.getName(),
+                                    type.getModifiers() & (Modifier.PUBLIC | Modifier.FINAL));
+                return g;
+            }
+        };
+
     /**
      * the invocation handler for this proxy instance.
      * @serial
@@ -550,6 +576,72 @@ public class Proxy implements java.io.Serializable {
         }
     }
 
+    /**
+     * Verifies that the given interfaces may be implemented by a proxy
+     * class defined by the given loader, and returns the package (with a
+     * trailing dot) that the non-public interfaces among them require
+     * the proxy class to be defined in, or {@code null} if they are all
+     * public.
+     */
+    private static String verifyProxyInterfaces(ClassLoader loader,
+                                                Class<?>[] interfaces) {
+        Map<Class<?>, Boolean> interfaceSet = new IdentityHashMap<>(interfaces.length);
+        for (Class<?> intf : interfaces) {
+            /*
+             * Verify that the class loader resolves the name of this
+             * interface to the same Class object.
+             */
+            Class<?> interfaceClass = null;
+            try {
+                interfaceClass = Class.forName(intf.getName(), false, loader);
+            } catch (ClassNotFoundException e) {
+            }
+            if (interfaceClass != intf) {
+                throw new IllegalArgumentException(
+                    intf + " is not visible from class loader");
+            }
+            /*
+             * Verify that the Class object actually represents an
+             * interface.
+             */
+            if (!interfaceClass.isInterface()) {
+                throw new IllegalArgumentException(
+                    interfaceClass.getName() + " is not an interface");
+            }
+            /*
+             * Verify that this interface is not a duplicate.
+             */
+            if (interfaceSet.put(interfaceClass, Boolean.TRUE) != null) {
+                throw new IllegalArgumentException(
+                    "repeated interface: " + interfaceClass.getName());
+            }
+        }
+
+        String proxyPkg = null;     // package to define proxy class in
+
+        /*
+         * Record the package of a non-public proxy interface so that the
+         * proxy class will be defined in the same package.  Verify that
+         * all non-public proxy interfaces are in the same package.
+         */
+        for (Class<?> intf : interfaces) {
+            int flags = intf.getModifiers();
+            if (!Modifier.isPublic(flags)) {
+                String name = intf.getName();
+                int n = name.lastIndexOf('.');
+                String pkg = ((n == -1) ? "" : name.substring(0, n + 1));
+                if (proxyPkg == null) {
+                    proxyPkg = pkg;
+                } else if (!pkg.equals(proxyPkg)) {
+                    throw new IllegalArgumentException(
+                        "non-public interfaces from different packages");
+                }
+            }
+        }
+
+        return proxyPkg;
+    }
+
     /**
      * A factory function that generates, defines and returns the proxy class given
      * the ClassLoader and array of interfaces.
@@ -566,65 +658,14 @@ public class Proxy implements java.io.Serializable {
         @Override
         public Class<?> apply(ClassLoader loader, Class<?>[] interfaces) {
 
-            Map<Class<?>, Boolean> interfaceSet = new IdentityHashMap<>(interfaces.length);
-            for (Class<?> intf : interfaces) {
-                /*
-                 * Verify that the class loader resolves the name of this
-                 * interface to the same Class object.
-                 */
-                Class<?> interfaceClass = null;
-                try {
-                    interfaceClass = Class.forName(intf.getName(), false, loader);
-                } catch (ClassNotFoundException e) {
-                }
-                if (interfaceClass != intf) {
-                    throw new IllegalArgumentException(
-                        intf + " is not visible from class loader");
-                }
-                /*
-                 * Verify that the Class object actually represents an
-                 * interface.
-                 */
-                if (!interfaceClass.isInterface()) {
-                    throw new IllegalArgumentException(
-                        interfaceClass.getName() + " is not an interface");
-                }
-                /*
-                 * Verify that this interface is not a duplicate.
-                 */
-                if (interfaceSet.put(interfaceClass, Boolean.TRUE) != null) {
-                    throw new IllegalArgumentException(
-                        "repeated interface: " + interfaceClass.getName());
-                }
-            }
-
-            String proxyPkg = null;     // package to define proxy class in
+            String proxyPkg = verifyProxyInterfaces(loader, interfaces);
             int accessFlags = Modifier.PUBLIC | Modifier.FINAL;
 
-            /*
-             * Record the package of a non-public proxy interface so that the
-             * proxy class will be defined in the same package.  Verify that
-             * all non-public proxy interfaces are in the same package.
-             */
-            for (Class<?> intf : interfaces) {
-                int flags = intf.getModifiers();
-                if (!Modifier.isPublic(flags)) {
-                    accessFlags = Modifier.FINAL;
-                    String name = intf.getName();
-                    int n = name.lastIndexOf('.');
-                    String pkg = ((n == -1) ? "" : name.substring(0, n + 1));
-                    if (proxyPkg == null) {
-                        proxyPkg = pkg;
-                    } else if (!pkg.equals(proxyPkg)) {
-                        throw new IllegalArgumentException(
-                            "non-public interfaces from different packages");
-                    }
-                }
-            }
-
             if (proxyPkg == null) {
                 // if no non-public proxy interfaces, use com.sun.proxy package
                 proxyPkg = ReflectUtil.PROXY_PACKAGE + ".";
+            } else {
+                accessFlags = Modifier.FINAL;
             }
 
             /*
@@ -654,6 +695,47 @@ public class Proxy implements java.io.Serializable {
         }
     }
 
+    /**
+     * A factory function that generates, defines and returns the indexed
+     * proxy class given the ClassLoader and array of interfaces.
+     */
+    private static final class IndexedProxyClassFactory
+        implements BiFunction<ClassLoader, Class<?>[], Class<?>>
+    {
+        // prefix for all indexed proxy class names
+        private static final String proxyClassNamePrefix = "$IProxy";
+
+        // next number to use for generation of unique proxy class names
+        private static final AtomicLong nextUniqueNumber = new AtomicLong();
+
+        @Override
+        public Class<?> apply(ClassLoader loader, Class<?>[] interfaces) {
+
+            String proxyPkg = verifyProxyInterfaces(loader, interfaces);
+            if (proxyPkg == null) {
+                proxyPkg = ReflectUtil.PROXY_PACKAGE + ".";
+            }
+
+            /*
+             * The class is only ever instantiated through its anonymous
+             * copies, so it is package-private, with a private constructor.
+             */
+            int accessFlags = Modifier.FINAL;
+
+            long num = nextUniqueNumber.getAndIncrement();
+            String proxyName = proxyPkg + proxyClassNamePrefix + num;
+
+            byte[] proxyClassFile = new IndexedProxyGenerator(interfaces)
+                .generateClassFile(proxyName, accessFlags);
+            try {
+                return defineClass0(loader, proxyName,
+                                    proxyClassFile, 0, proxyClassFile.length);
+            } catch (ClassFormatError e) {
+                throw new IllegalArgumentException(e.toString());
+            }
+        }
+    }
+
     /**
      * Returns an instance of a proxy class for the specified interfaces
      * that dispatches method invocations to the specified invocation
@@ -754,7 +836,9 @@ public class Proxy implements java.io.Serializable {
     private static void checkNewProxyPermission(Class<?> caller, Class<?> proxyClass) {
         SecurityManager sm = System.getSecurityManager();
         if (sm != null) {
-            if (ReflectUtil.isNonPublicProxyClass(proxyClass)) {
+            if (ReflectUtil.isNonPublicProxyClass(proxyClass) ||
+                (indexedProxyClassCache.containsValue(proxyClass) &&
+                 !proxyClass.getName().startsWith(ReflectUtil.PROXY_PACKAGE + "."))) {
                 ClassLoader ccl = caller.getClassLoader();
                 ClassLoader pcl = proxyClass.getClassLoader();
 
@@ -773,6 +857,179 @@ public class Proxy implements java.io.Serializable {
         }
     }
 
+    /**
+     * Returns the methods of an indexed proxy class implementing the
+     * specified interfaces, in index order.  The element at index
+     * {@code i} of the returned array is the {@code Method} passed
+     * along with {@code i} to
+     * {@link IndexedInvocationHandler#methodHandle
+     * IndexedInvocationHandler.methodHandle} when an indexed proxy
+     * instance for these interfaces is created.
+     *
+     * <p>The first three elements are always the {@code hashCode},
+     * {@code equals} and {@code toString} methods of
+     * {@code java.lang.Object}; interface declarations of these methods
+     * share their indices.  They are followed, for each interface in
+     * order, by its non-static public methods (including inherited ones)
+     * sorted by name and parameter types, omitting methods with the same
+     * name and parameter types as a method already listed.  Where such
+     * duplicate methods differ in their return types, the method listed
+     * is the one with the most specific return type.  The indices thus
+     * depend only on the interfaces and their order.
+     *
+     * @param   interfaces the list of interfaces for the proxy class
+     *          to implement
+     * @return  a new array of the methods of the indexed proxy class,
+     *          in index order
+     * @throws  IllegalArgumentException if any of the interfaces is not
+     *          an interface or is repeated, or if methods with the same
+     *          name and parameter types have return types that cannot
+     *          be implemented by a single method
+     * @throws  NullPointerException if the {@code interfaces} array
+     *          argument or any of its elements are {@code null}
+     * @since   1.8
+     */
+    public static Method[] getIndexedProxyMethods(Class<?>... interfaces) {
+        Class<?>[] intfs = interfaces.clone();
+        Map<Class<?>, Boolean> interfaceSet = new IdentityHashMap<>(intfs.length);
+        for (Class<?> intf : intfs) {
+            if (!intf.isInterface()) {
+                throw new IllegalArgumentException(
+                    intf.getName() + " is not an interface");
+            }
+            if (interfaceSet.put(intf, Boolean.TRUE) != null) {
+                throw new IllegalArgumentException(
+                    "repeated interface: " + intf.getName());
+            }
+        }
+        return new IndexedProxyGenerator(intfs).methods();
+    }
+
+    /**
+     * Returns an <i>indexed proxy instance</i> for the specified
+     * interfaces that dispatches method invocations to method handles
+     * supplied by the specified indexed invocation handler.
+     *
+     * <p>When the instance is created, {@code h.methodHandle(i, m)} is
+     * invoked for each index {@code i} and method {@code m} of the array
+     * returned by {@link #getIndexedProxyMethods getIndexedProxyMethods}
+     * for the same interfaces, and the returned handle is adapted with
+     * {@link java.lang.invoke.MethodHandle#asType asType} to the type
+     * {@code (Object, }<i>parameter types of m</i>{@code )}<i>return
+     * type of m</i>.  An invocation of a method of the proxy instance
+     * then invokes the corresponding handle directly, with the proxy
+     * instance as its first argument followed by the method arguments,
+     * and returns its result.  Arguments and results are neither copied
+     * into arrays nor boxed, and exceptions thrown by a handle propagate
+     * unchanged, whether or not they are declared by the interface
+     * method.
+     *
+     * <p>Indexed proxy classes are generated and cached per class loader
+     * and list of interfaces, like proxy classes, and are subject to the
+     * same restrictions on their interfaces; they are however distinct
+     * from them: they do not extend {@code Proxy}, and
+     * {@link #isProxyClass isProxyClass} returns {@code false} for them.
+     * So that invocations can be inlined through the handles, each
+     * instance is of its own class, derived from the indexed proxy class
+     * and holding the handles as constants.  Creating an instance is
+     * therefore much more expensive than creating a proxy instance,
+     * and indexed proxy instances are best created once and reused.
+     *
+     * @param   loader the class loader to define the proxy class
+     * @param   interfaces the list of interfaces for the proxy class
+     *          to implement
+     * @param   h the indexed invocation handler supplying the method
+     *          handles to dispatch method invocations to
+     * @return  an indexed proxy instance of a proxy class that is defined
+     *          by the specified class loader and that implements the
+     *          specified interfaces
+     * @throws  IllegalArgumentException if any of the restrictions on the
+     *          parameters that may be passed to {@code getProxyClass}
+     *          are violated, or if a handle returned by {@code h} cannot
+     *          be adapted to the type of its method
+     * @throws  SecurityException if a security manager is present and
+     *          any of the conditions listed by
+     *          {@link #newProxyInstance newProxyInstance} is met
+     * @throws  NullPointerException if the {@code interfaces} array
+     *          argument or any of its elements are {@code null}, or
+     *          if the handler, {@code h}, or any handle it returns
+     *          is {@code null}
+     * @since   1.8
+     */
+    @CallerSensitive
+    public static Object newIndexedProxyInstance(ClassLoader loader,
+                                                 Class<?>[] interfaces,
+                                                 IndexedInvocationHandler h)
+        throws IllegalArgumentException
+    {
+        Objects.requireNonNull(h);
+
+        final Class<?>[] intfs = interfaces.clone();
+        final SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            checkProxyAccess(Reflection.getCallerClass(), loader, intfs);
+        }
+        if (intfs.length > 65535) {
+            throw new IllegalArgumentException("interface limit exceeded");
+        }
+
+        /*
+         * Look up or generate the designated indexed proxy class.
+         */
+        Class<?> cl = indexedProxyClassCache.get(loader, intfs);
+        if (sm != null) {
+            checkNewProxyPermission(Reflection.getCallerClass(), cl);
+        }
+
+        /*
+         * Collect and adapt the method handles of the new instance.
+         */
+        IndexedProxyGenerator template = indexedProxyTemplates.get(cl);
+        Method[] methods = template.methods();
+        MethodHandle[] handles = new MethodHandle[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            Method m = methods[i];
+            MethodHandle mh = Objects.requireNonNull(h.methodHandle(i, m));
+            MethodType type = MethodType.methodType(m.getReturnType(),
+                                                    m.getParameterTypes())
+                                        .insertParameterTypes(0, Object.class);
+            try {
+                handles[i] = mh.asType(type);
+            } catch (WrongMethodTypeException e) {
+                throw new IllegalArgumentException(
+                    "method handle for " + m + " cannot be adapted to " + type, e);
+            }
+        }
+
+        /*
+         * Define the class of the new instance, with the method handles
+         * as constants, and invoke its constructor.
+         */
+        Class<?> ic = Unsafe.getUnsafe().defineAnonymousClass(
+            cl, template.classFile(), template.constantPoolPatches(handles));
+        try {
+            final Constructor<?> cons = ic.getDeclaredConstructor();
+            AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                public Void run() {
+                    cons.setAccessible(true);
+                    return null;
+                }
+            });
+            return cons.newInstance();
+        } catch (IllegalAccessException|InstantiationException e) {
+            throw new InternalError(e.toString(), e);
+        } catch (InvocationTargetException e) {
+            Throwable t = e.getCause();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else {
+                throw new InternalError(t.toString(), t);
+            }
+        } catch (NoSuchMethodException e) {
+            throw new InternalError(e.toString(), e);
+        }
+    }
+
     /**
      * Returns true if and only if the specified class was dynamically
      * generated to be a proxy class using the {@code getProxyClass}
@@ -66,6 +66,15 @@ import sun.security.util.SecurityConstants;
  * <p>
  * The classes that are loaded are by default granted permission only to
  * access the URLs specified when the URLClassLoader was created.
+ * <p>
+ * If the system property {@code java.net.URLClassLoader.index} is set to
+ * {@code true}, the packages held by the local JAR files of the search path
+ * are indexed when a class or resource is first looked up, and lookups only
+ * search the JAR files holding the package of the class or resource (as well
+ * as any directories and other URLs of the search path).  If the system
+ * property {@code java.net.URLClassLoader.indexCache} names a directory, the
+ * index is saved there and reused for JAR files that have not been modified
+ * since.
  *
  * @author  David Connelly
  * @since   1.2
@@ -77,6 +86,9 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
     /* The context to be used when loading classes and resources */
     private final AccessControlContext acc;
 
+    /* The package index of the search path, or null if not enabled */
+    private final URLClassPathIndex index;
+
     /**
      * Constructs a new URLClassLoader for the given URLs. The URLs will be
      * searched in the order specified for classes and resources after first
@@ -105,6 +117,7 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         }
         this.acc = AccessController.getContext();
         ucp = new URLClassPath(urls, acc);
+        index = newIndex(ucp, null, acc);
     }
 
     URLClassLoader(URL[] urls, ClassLoader parent,
@@ -117,6 +130,7 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         }
         this.acc = acc;
         ucp = new URLClassPath(urls, acc);
+        index = newIndex(ucp, null, acc);
     }
 
     /**
@@ -149,6 +163,7 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         }
         this.acc = AccessController.getContext();
         ucp = new URLClassPath(urls, acc);
+        index = newIndex(ucp, null, acc);
     }
 
     URLClassLoader(URL[] urls, AccessControlContext acc) {
@@ -160,6 +175,7 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         }
         this.acc = acc;
         ucp = new URLClassPath(urls, acc);
+        index = newIndex(ucp, null, acc);
     }
 
     /**
@@ -193,6 +209,14 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         }
         acc = AccessController.getContext();
         ucp = new URLClassPath(urls, factory, acc);
+        index = newIndex(ucp, factory, acc);
+    }
+
+    private static URLClassPathIndex newIndex(URLClassPath ucp,
+                                              URLStreamHandlerFactory factory,
+                                              AccessControlContext acc) {
+        return URLClassPathIndex.ENABLED
+            ? new URLClassPathIndex(ucp, factory, acc) : null;
     }
 
     /* A map (used as a set) to keep track of closeable local resources
@@ -289,6 +313,9 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
             security.checkPermission(new RuntimePermission("closeClassLoader"));
         }
         List<IOException> errors = ucp.closeLoaders();
+        if (index != null) {
+            errors.addAll(index.close());
+        }
 
         // now close any remaining streams.
 
@@ -330,6 +357,9 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
      */
     protected void addURL(URL url) {
         ucp.addURL(url);
+        if (index != null) {
+            index.invalidate();
+        }
     }
 
     /**
@@ -362,7 +392,9 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
                 new PrivilegedExceptionAction<Class<?>>() {
                     public Class<?> run() throws ClassNotFoundException {
                         String path = name.replace('.', '/').concat(".class");
-                        Resource res = ucp.getResource(path, false);
+                        Resource res = (index != null)
+                            ? index.getResource(path)
+                            : ucp.getResource(path, false);
                         if (res != null) {
                             try {
                                 return defineClass(name, res);
@@ -566,7 +598,9 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         URL url = AccessController.doPrivileged(
             new PrivilegedAction<URL>() {
                 public URL run() {
-                    return ucp.findResource(name, true);
+                    return (index != null)
+                        ? index.findResource(name)
+                        : ucp.findResource(name, true);
                 }
             }, acc);
 
@@ -585,7 +619,9 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
     public Enumeration<URL> findResources(final String name)
         throws IOException
     {
-        final Enumeration<URL> e = ucp.findResources(name, true);
+        final Enumeration<URL> e = (index != null)
+            ? index.findResources(name)
+            : ucp.findResources(name, true);
 
         return new Enumeration<URL>() {
             private URL url = null;
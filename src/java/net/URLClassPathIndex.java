@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.net;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import sun.misc.Resource;
+import sun.misc.URLClassPath;
+import sun.net.www.ParseUtil;
+
+/**
+ * An index from package (resource directory) names to the positions of
+ * the JAR files of a URLClassLoader's search path that contain them, so
+ * that resources can be looked up in just those JAR files instead of in
+ * each element of the search path in turn.
+ *
+ * Local JAR files are indexed by reading their central directories once,
+ * when the index is first used; when the search path grows, only the
+ * JAR files added to it are read.  All other elements of the search path
+ * (directories, remote URLs, and JAR files whose manifests add to the
+ * search path through Class-Path attributes or that carry their own
+ * INDEX.LIST) are searched for every resource, as before.  The index is
+ * enabled by setting the system property
+ * {@code java.net.URLClassLoader.index} to {@code true}.  If the system
+ * property {@code java.net.URLClassLoader.indexCache} names a directory,
+ * the package lists of JAR files are saved there, and reused in later
+ * runs for as long as the modification time and size of each JAR file
+ * are unchanged.
+ *
+ * Each element of the search path is searched through its own
+ * URLClassPath, so that it can be searched on its own.  The loader's
+ * URLClassPath is then only used to maintain the search path itself.
+ */
+final class URLClassPathIndex {
+
+    static final boolean ENABLED = AccessController.doPrivileged(
+        new sun.security.action.GetBooleanAction(
+            "java.net.URLClassLoader.index")).booleanValue();
+
+    private static final String CACHE_DIR = AccessController.doPrivileged(
+        new sun.security.action.GetPropertyAction(
+            "java.net.URLClassLoader.indexCache"));
+
+    private static final int CACHE_MAGIC = 0x55434958;
+    private static final int CACHE_VERSION = 1;
+    private static final int[] NO_POSITIONS = new int[0];
+
+    /* The loader's search path */
+    private final URLClassPath ucp;
+    private final URLStreamHandlerFactory factory;
+    private final AccessControlContext acc;
+
+    /* The URLClassPath of each element searched so far, by URL */
+    private final Map<String, URLClassPath> paths = new HashMap<>();
+
+    /* The packages of each local JAR file indexed so far, by path */
+    private final Map<String, JarPackages> jars = new HashMap<>();
+
+    /* The index for the current search path; null if not yet built */
+    private volatile Snapshot snapshot;
+
+    /* Incremented, under this lock, whenever the search path changes */
+    private int generation;
+
+    private boolean closed;
+
+    URLClassPathIndex(URLClassPath ucp, URLStreamHandlerFactory factory,
+                      AccessControlContext acc) {
+        this.ucp = ucp;
+        this.factory = factory;
+        this.acc = acc;
+    }
+
+    /**
+     * The index of a search path at some point in time.
+     */
+    private static final class Snapshot {
+        /* The URLClassPath of each element of the search path */
+        final URLClassPath[] paths;
+        /* Positions of the indexed elements holding each package */
+        final Map<String, int[]> packages;
+        /* Positions of the elements that are not indexed */
+        final int[] unindexed;
+
+        Snapshot(URLClassPath[] paths, Map<String, int[]> packages,
+                 int[] unindexed) {
+            this.paths = paths;
+            this.packages = packages;
+            this.unindexed = unindexed;
+        }
+
+        /**
+         * Returns the positions, in increasing order, of the elements
+         * that may hold the named resource.
+         */
+        int[] candidates(String name) {
+            int slash = name.lastIndexOf('/');
+            int[] a = packages.get(slash <= 0 ? "" : name.substring(0, slash));
+            int[] b = unindexed;
+            if (a == null)
+                return b;
+            if (b.length == 0)
+                return a;
+            int[] r = new int[a.length + b.length];
+            for (int i = 0, j = 0, k = 0; k < r.length; ++k)
+                r[k] = (j >= b.length || (i < a.length && a[i] < b[j]))
+                    ? a[i++] : b[j++];
+            return r;
+        }
+    }
+
+    /**
+     * Returns the first resource of the given name on the search path,
+     * as by URLClassPath.getResource(name, false).
+     */
+    Resource getResource(String name) {
+        Snapshot s = snapshot();
+        if (s != null) {
+            for (int k : s.candidates(name)) {
+                Resource res = s.paths[k].getResource(name, false);
+                if (res != null)
+                    return res;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the URL of the first resource of the given name on the
+     * search path, as by URLClassPath.findResource(name, true).
+     */
+    URL findResource(String name) {
+        Snapshot s = snapshot();
+        if (s != null) {
+            for (int k : s.candidates(name)) {
+                URL url = s.paths[k].findResource(name, true);
+                if (url != null)
+                    return url;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the URLs of all resources of the given name on the search
+     * path, as by URLClassPath.findResources(name, true).  A JAR file
+     * reached both directly and through the Class-Path attribute of
+     * another element is searched by both URLClassPaths, so URLs
+     * already returned are skipped, as the single URLClassPath of the
+     * search path would have opened that JAR file only once.
+     */
+    Enumeration<URL> findResources(final String name) {
+        final Snapshot s = snapshot();
+        if (s == null)
+            return Collections.emptyEnumeration();
+        final int[] candidates = s.candidates(name);
+        return new Enumeration<URL>() {
+            private final Set<String> seen = new HashSet<>();
+            private int next;
+            private Enumeration<URL> e;
+            private URL url;
+
+            public boolean hasMoreElements() {
+                while (url == null) {
+                    while (e == null || !e.hasMoreElements()) {
+                        if (next >= candidates.length)
+                            return false;
+                        e = s.paths[candidates[next++]].findResources(name, true);
+                    }
+                    URL u = e.nextElement();
+                    if (seen.add(u.toExternalForm()))
+                        url = u;
+                }
+                return true;
+            }
+
+            public URL nextElement() {
+                if (!hasMoreElements())
+                    throw new NoSuchElementException();
+                URL u = url;
+                url = null;
+                return u;
+            }
+        };
+    }
+
+    /**
+     * Discards the index, to be rebuilt for a changed search path on
+     * its next use.  A build in progress, which may have read the
+     * search path before it changed, is not published.
+     */
+    synchronized void invalidate() {
+        ++generation;
+        snapshot = null;
+    }
+
+    /**
+     * Closes the URLClassPaths of all elements, returning any errors.
+     */
+    synchronized List<IOException> close() {
+        closed = true;
+        snapshot = null;
+        List<IOException> errors = new ArrayList<>();
+        for (URLClassPath path : paths.values())
+            errors.addAll(path.closeLoaders());
+        paths.clear();
+        return errors;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot s;
+        if ((s = snapshot) == null) {
+            synchronized (this) {
+                while ((s = snapshot) == null && !closed) {
+                    int g = generation;
+                    s = AccessController.doPrivileged(
+                        new PrivilegedAction<Snapshot>() {
+                            public Snapshot run() {
+                                return build(ucp.getURLs());
+                            }
+                        }, acc);
+                    if (g == generation) {
+                        snapshot = s;
+                        break;
+                    }
+                }
+            }
+        }
+        return s;
+    }
+
+    /* Indexing */
+
+    /**
+     * The packages of a local JAR file, as of the given modification
+     * time and size; packages is null if the file is not indexable.
+     */
+    private static final class JarPackages {
+        final long lastModified;
+        final long length;
+        final String[] packages;
+
+        JarPackages(long lastModified, long length, String[] packages) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.packages = packages;
+        }
+
+        boolean isCurrent(long lastModified, long length) {
+            return this.lastModified == lastModified && this.length == length;
+        }
+    }
+
+    /**
+     * Builds the index for the given search path.  JAR files already
+     * indexed by an earlier build, such as before an element was added
+     * to the search path, are not scanned again unless they changed.
+     */
+    private Snapshot build(URL[] urls) {
+        File cacheFile = cacheFile(urls);
+        Map<String, JarPackages> cached = (cacheFile == null)
+            ? Collections.<String, JarPackages>emptyMap()
+            : readCache(cacheFile);
+        Map<String, JarPackages> scanned = new HashMap<>();
+        boolean changed = false;
+
+        URLClassPath[] elements = new URLClassPath[urls.length];
+        Map<String, List<Integer>> positions = new HashMap<>();
+        int[] unindexed = new int[urls.length];
+        int unindexedCount = 0;
+        for (int k = 0; k < urls.length; k++) {
+            URL url = urls[k];
+            elements[k] = pathFor(url);
+            File file = localJarFile(url);
+            String[] packages = null;
+            if (file != null) {
+                String key = file.getPath();
+                long lastModified = file.lastModified();
+                long length = file.length();
+                JarPackages jp = jars.get(key), cp = cached.get(key);
+                boolean current = (cp != null && cp.isCurrent(lastModified, length));
+                if (jp == null || !jp.isCurrent(lastModified, length)) {
+                    jp = current ? cp
+                        : new JarPackages(lastModified, length, scan(file));
+                    jars.put(key, jp);
+                }
+                if (!current)
+                    changed = true;
+                scanned.put(key, jp);
+                packages = jp.packages;
+            }
+            if (packages == null) {
+                unindexed[unindexedCount++] = k;
+            } else {
+                for (String pkg : packages) {
+                    List<Integer> list = positions.get(pkg);
+                    if (list == null)
+                        positions.put(pkg, list = new ArrayList<>(1));
+                    list.add(k);
+                }
+            }
+        }
+
+        Map<String, int[]> packages = new HashMap<>(positions.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> e : positions.entrySet()) {
+            List<Integer> list = e.getValue();
+            int[] a = new int[list.size()];
+            for (int i = 0; i < a.length; i++)
+                a[i] = list.get(i);
+            packages.put(e.getKey(), a);
+        }
+        if (cacheFile != null && (changed || scanned.size() != cached.size()))
+            writeCache(cacheFile, scanned);
+        return new Snapshot(elements, packages,
+                            (unindexedCount == 0) ? NO_POSITIONS
+                            : Arrays.copyOf(unindexed, unindexedCount));
+    }
+
+    /**
+     * Returns the URLClassPath searching just the given URL.
+     */
+    private URLClassPath pathFor(URL url) {
+        String key = url.toExternalForm();
+        URLClassPath path = paths.get(key);
+        if (path == null)
+            paths.put(key, path = new URLClassPath(new URL[] { url }, factory, acc));
+        return path;
+    }
+
+    /**
+     * Returns the local JAR file referred to by the given URL, or null
+     * if it does not refer to one.
+     */
+    private static File localJarFile(URL url) {
+        if (!"file".equals(url.getProtocol()))
+            return null;
+        String host = url.getHost();
+        String file = url.getFile();
+        if ((host != null && !host.isEmpty() && !host.equalsIgnoreCase("localhost")) ||
+            file.endsWith("/"))
+            return null;
+        File f = new File(ParseUtil.decode(file.replace('/', File.separatorChar)));
+        return f.isFile() ? f : null;
+    }
+
+    /**
+     * Returns the packages of the given JAR file, or null if it cannot
+     * be indexed.
+     */
+    private static String[] scan(File file) {
+        try (ZipFile zf = new ZipFile(file)) {
+            if (zf.getEntry("META-INF/INDEX.LIST") != null)
+                return null;
+            ZipEntry me = zf.getEntry("META-INF/MANIFEST.MF");
+            if (me != null) {
+                try (InputStream in = zf.getInputStream(me)) {
+                    Manifest man = new Manifest(in);
+                    if (man.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) != null)
+                        return null;
+                }
+            }
+            Set<String> packages = new HashSet<>();
+            Enumeration<? extends ZipEntry> entries = zf.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.endsWith("/")) {
+                    // a directory entry may also be found by its name
+                    // without the trailing slash
+                    name = name.substring(0, name.length() - 1);
+                    int slash = name.lastIndexOf('/');
+                    packages.add(slash <= 0 ? "" : name.substring(0, slash));
+                    packages.add(name);
+                } else {
+                    int slash = name.lastIndexOf('/');
+                    packages.add(slash <= 0 ? "" : name.substring(0, slash));
+                }
+            }
+            return packages.toArray(new String[packages.size()]);
+        } catch (IOException | RuntimeException e) {
+            return null;    // searched in full, reporting errors as before
+        }
+    }
+
+    /* On-disk cache */
+
+    /**
+     * Returns the cache file for the given search path, or null if
+     * caching is not enabled.
+     */
+    private static File cacheFile(URL[] urls) {
+        if (CACHE_DIR == null)
+            return null;
+        int h = 0;
+        for (URL url : urls)
+            h = 31 * h + url.toExternalForm().hashCode();
+        return new File(CACHE_DIR, "urlcp-" + Integer.toHexString(h) + ".idx");
+    }
+
+    private static Map<String, JarPackages> readCache(File file) {
+        Map<String, JarPackages> cached = new HashMap<>();
+        if (!file.isFile())
+            return cached;
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION)
+                return cached;
+            for (int n = in.readInt(); n > 0; n--) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                long length = in.readLong();
+                int count = in.readInt();
+                String[] packages = null;
+                if (count >= 0) {
+                    packages = new String[count];
+                    for (int i = 0; i < count; i++)
+                        packages[i] = in.readUTF();
+                }
+                cached.put(path, new JarPackages(lastModified, length, packages));
+            }
+        } catch (IOException | RuntimeException e) {
+            cached.clear();     // unreadable; rebuild it
+        }
+        return cached;
+    }
+
+    private static void writeCache(File file, Map<String, JarPackages> jars) {
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("urlcp", ".tmp", file.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeInt(jars.size());
+                for (Map.Entry<String, JarPackages> e : jars.entrySet()) {
+                    JarPackages jp = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(jp.lastModified);
+                    out.writeLong(jp.length);
+                    if (jp.packages == null) {
+                        out.writeInt(-1);
+                    } else {
+                        out.writeInt(jp.packages.length);
+                        for (String pkg : jp.packages)
+                            out.writeUTF(pkg);
+                    }
+                }
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file))
+                    tmp.delete();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (tmp != null)    // the cache is only an optimization
+                tmp.delete();
+        }
+    }
+}
@@ -1097,15 +1097,20 @@ public class LinkedList<E>
         return new LLSpliterator<E>(this, -1, 0);
     }
 
-    /** A customized variant of Spliterators.IteratorSpliterator */
+    /**
+     * A customized variant of Spliterators.IteratorSpliterator.
+     *
+     * Because the size of the list is known exactly, trySplit does
+     * not copy elements into arrays. Instead it walks half of the
+     * remaining nodes and hands the prefix off as another
+     * LLSpliterator bounded by its element count, producing balanced
+     * halves without allocation beyond the spliterator itself.
+     */
     static final class LLSpliterator<E> implements Spliterator<E> {
-        static final int BATCH_UNIT = 1 << 10;  // batch array size increment
-        static final int MAX_BATCH = 1 << 25;  // max batch array size;
         final LinkedList<E> list; // null OK unless traversed
         Node<E> current;      // current node; null until initialized
         int est;              // size estimate; -1 until first needed
         int expectedModCount; // initialized when est set
-        int batch;            // batch size for splits
 
         LLSpliterator(LinkedList<E> list, int est, int expectedModCount) {
             this.list = list;
@@ -1131,21 +1136,20 @@ public class LinkedList<E>
         public long estimateSize() { return (long) getEst(); }
 
         public Spliterator<E> trySplit() {
-            Node<E> p;
+            Node<E> h, p;
             int s = getEst();
-            if (s > 1 && (p = current) != null) {
-                int n = batch + BATCH_UNIT;
-                if (n > s)
-                    n = s;
-                if (n > MAX_BATCH)
-                    n = MAX_BATCH;
-                Object[] a = new Object[n];
-                int j = 0;
-                do { a[j++] = p.item; } while ((p = p.next) != null && j < n);
+            if (s > 1 && (h = current) != null) {
+                int n = s >>> 1, j = 0;
+                p = h;
+                do { p = p.next; } while (++j < n && p != null);
+                if (p == null) // list shorter than recorded; let traversal fail
+                    return null;
+                LLSpliterator<E> prefix =
+                    new LLSpliterator<E>(list, j, expectedModCount);
+                prefix.current = h;
                 current = p;
-                batch = j;
                 est = s - j;
-                return Spliterators.spliterator(a, 0, j, Spliterator.ORDERED);
+                return prefix;
             }
             return null;
         }
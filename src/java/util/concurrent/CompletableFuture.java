@@ -405,6 +405,19 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         public void execute(Runnable r) { new Thread(r).start(); }
     }
 
+    /**
+     * A CompletableFuture whose dependents, and their dependents in
+     * turn, use the given executor as their default executor.
+     */
+    static final class ExecutorBoundFuture<T> extends CompletableFuture<T> {
+        final Executor executor;
+        ExecutorBoundFuture(Executor executor) { this.executor = executor; }
+        public Executor defaultExecutor() { return executor; }
+        public <U> CompletableFuture<U> newIncompleteFuture() {
+            return new ExecutorBoundFuture<U>(executor);
+        }
+    }
+
     /**
      * Null-checks user executor argument, and translates uses of
      * commonPool to asyncPool in case parallelism disabled.
@@ -610,11 +623,40 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     private <V> CompletableFuture<V> uniApplyStage(
         Executor e, Function<? super T,? extends V> f) {
         if (f == null) throw new NullPointerException();
-        CompletableFuture<V> d =  new CompletableFuture<V>();
-        if (e != null || !d.uniApply(this, f, null)) {
-            UniApply<T,V> c = new UniApply<T,V>(e, d, this, f);
-            push(c);
-            c.tryFire(SYNC);
+        Object r;
+        if (e == null && (r = result) != null)
+            return uniApplyNow(r, f);
+        CompletableFuture<V> d = newIncompleteFuture();
+        UniApply<T,V> c = new UniApply<T,V>(e, d, this, f);
+        push(c);
+        c.tryFire(SYNC);
+        return d;
+    }
+
+    /**
+     * Fast path for uniApplyStage when this is already complete: runs
+     * the function in the caller and stores the outcome directly in
+     * the not yet published dependent, without a Completion or CAS.
+     * An existing CompletionException is propagated without
+     * allocating a new AltResult.
+     */
+    private <V> CompletableFuture<V> uniApplyNow(
+        Object r, Function<? super T,? extends V> f) {
+        Throwable x;
+        CompletableFuture<V> d = newIncompleteFuture();
+        if (r instanceof AltResult) {
+            if ((x = ((AltResult)r).ex) != null) {
+                d.result = encodeThrowable(x, r);
+                return d;
+            }
+            r = null;
+        }
+        try {
+            @SuppressWarnings("unchecked") T t = (T) r;
+            V v = f.apply(t);
+            d.result = (v == null) ? NIL : v;
+        } catch (Throwable ex) {
+            d.result = encodeThrowable(ex);
         }
         return d;
     }
@@ -665,11 +707,34 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     private CompletableFuture<Void> uniAcceptStage(Executor e,
                                                    Consumer<? super T> f) {
         if (f == null) throw new NullPointerException();
-        CompletableFuture<Void> d = new CompletableFuture<Void>();
-        if (e != null || !d.uniAccept(this, f, null)) {
-            UniAccept<T> c = new UniAccept<T>(e, d, this, f);
-            push(c);
-            c.tryFire(SYNC);
+        Object r;
+        if (e == null && (r = result) != null)
+            return uniAcceptNow(r, f);
+        CompletableFuture<Void> d = newIncompleteFuture();
+        UniAccept<T> c = new UniAccept<T>(e, d, this, f);
+        push(c);
+        c.tryFire(SYNC);
+        return d;
+    }
+
+    /** Fast path for uniAcceptStage; see uniApplyNow. */
+    private CompletableFuture<Void> uniAcceptNow(
+        Object r, Consumer<? super T> f) {
+        Throwable x;
+        CompletableFuture<Void> d = newIncompleteFuture();
+        if (r instanceof AltResult) {
+            if ((x = ((AltResult)r).ex) != null) {
+                d.result = encodeThrowable(x, r);
+                return d;
+            }
+            r = null;
+        }
+        try {
+            @SuppressWarnings("unchecked") T t = (T) r;
+            f.accept(t);
+            d.result = NIL;
+        } catch (Throwable ex) {
+            d.result = encodeThrowable(ex);
         }
         return d;
     }
@@ -713,12 +778,29 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
 
     private CompletableFuture<Void> uniRunStage(Executor e, Runnable f) {
         if (f == null) throw new NullPointerException();
-        CompletableFuture<Void> d = new CompletableFuture<Void>();
-        if (e != null || !d.uniRun(this, f, null)) {
-            UniRun<T> c = new UniRun<T>(e, d, this, f);
-            push(c);
-            c.tryFire(SYNC);
-        }
+        Object r;
+        if (e == null && (r = result) != null)
+            return uniRunNow(r, f);
+        CompletableFuture<Void> d = newIncompleteFuture();
+        UniRun<T> c = new UniRun<T>(e, d, this, f);
+        push(c);
+        c.tryFire(SYNC);
+        return d;
+    }
+
+    /** Fast path for uniRunStage; see uniApplyNow. */
+    private CompletableFuture<Void> uniRunNow(Object r, Runnable f) {
+        Throwable x;
+        CompletableFuture<Void> d = newIncompleteFuture();
+        if (r instanceof AltResult && (x = ((AltResult)r).ex) != null)
+            d.result = encodeThrowable(x, r);
+        else
+            try {
+                f.run();
+                d.result = NIL;
+            } catch (Throwable ex) {
+                d.result = encodeThrowable(ex);
+            }
         return d;
     }
 
@@ -774,12 +856,39 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     private CompletableFuture<T> uniWhenCompleteStage(
         Executor e, BiConsumer<? super T, ? super Throwable> f) {
         if (f == null) throw new NullPointerException();
-        CompletableFuture<T> d = new CompletableFuture<T>();
-        if (e != null || !d.uniWhenComplete(this, f, null)) {
-            UniWhenComplete<T> c = new UniWhenComplete<T>(e, d, this, f);
-            push(c);
-            c.tryFire(SYNC);
+        Object r;
+        if (e == null && (r = result) != null)
+            return uniWhenCompleteNow(r, f);
+        CompletableFuture<T> d = newIncompleteFuture();
+        UniWhenComplete<T> c = new UniWhenComplete<T>(e, d, this, f);
+        push(c);
+        c.tryFire(SYNC);
+        return d;
+    }
+
+    /** Fast path for uniWhenCompleteStage; see uniApplyNow. */
+    private CompletableFuture<T> uniWhenCompleteNow(
+        Object r, BiConsumer<? super T, ? super Throwable> f) {
+        T t; Throwable x = null;
+        CompletableFuture<T> d = newIncompleteFuture();
+        if (r instanceof AltResult) {
+            x = ((AltResult)r).ex;
+            t = null;
+        } else {
+            @SuppressWarnings("unchecked") T tr = (T) r;
+            t = tr;
         }
+        try {
+            f.accept(t, x);
+            if (x == null) {
+                d.result = r;
+                return d;
+            }
+        } catch (Throwable ex) {
+            if (x == null)
+                x = ex;
+        }
+        d.result = encodeThrowable(x, r);
         return d;
     }
 
@@ -830,11 +939,34 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     private <V> CompletableFuture<V> uniHandleStage(
         Executor e, BiFunction<? super T, Throwable, ? extends V> f) {
         if (f == null) throw new NullPointerException();
-        CompletableFuture<V> d = new CompletableFuture<V>();
-        if (e != null || !d.uniHandle(this, f, null)) {
-            UniHandle<T,V> c = new UniHandle<T,V>(e, d, this, f);
-            push(c);
-            c.tryFire(SYNC);
+        Object r;
+        if (e == null && (r = result) != null)
+            return uniHandleNow(r, f);
+        CompletableFuture<V> d = newIncompleteFuture();
+        UniHandle<T,V> c = new UniHandle<T,V>(e, d, this, f);
+        push(c);
+        c.tryFire(SYNC);
+        return d;
+    }
+
+    /** Fast path for uniHandleStage; see uniApplyNow. */
+    private <V> CompletableFuture<V> uniHandleNow(
+        Object r, BiFunction<? super T, Throwable, ? extends V> f) {
+        T t; Throwable x;
+        CompletableFuture<V> d = newIncompleteFuture();
+        if (r instanceof AltResult) {
+            x = ((AltResult)r).ex;
+            t = null;
+        } else {
+            x = null;
+            @SuppressWarnings("unchecked") T tr = (T) r;
+            t = tr;
+        }
+        try {
+            V v = f.apply(t, x);
+            d.result = (v == null) ? NIL : v;
+        } catch (Throwable ex) {
+            d.result = encodeThrowable(ex);
         }
         return d;
     }
@@ -880,12 +1012,23 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     private CompletableFuture<T> uniExceptionallyStage(
         Function<Throwable, ? extends T> f) {
         if (f == null) throw new NullPointerException();
-        CompletableFuture<T> d = new CompletableFuture<T>();
-        if (!d.uniExceptionally(this, f, null)) {
-            UniExceptionally<T> c = new UniExceptionally<T>(d, this, f);
-            push(c);
-            c.tryFire(SYNC);
+        Object r; Throwable x;
+        CompletableFuture<T> d = newIncompleteFuture();
+        if ((r = result) != null) { // fast path; see uniApplyNow
+            if (r instanceof AltResult && (x = ((AltResult)r).ex) != null) {
+                try {
+                    d.result = d.encodeValue(f.apply(x));
+                } catch (Throwable ex) {
+                    d.result = encodeThrowable(ex);
+                }
+            }
+            else
+                d.result = r;
+            return d;
         }
+        UniExceptionally<T> c = new UniExceptionally<T>(d, this, f);
+        push(c);
+        c.tryFire(SYNC);
         return d;
     }
 
@@ -969,10 +1112,12 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         if (f == null) throw new NullPointerException();
         Object r; Throwable x;
         if (e == null && (r = result) != null) {
-            // try to return function result directly
+            // try to relay function result directly
+            CompletableFuture<V> d = newIncompleteFuture();
             if (r instanceof AltResult) {
                 if ((x = ((AltResult)r).ex) != null) {
-                    return new CompletableFuture<V>(encodeThrowable(x, r));
+                    d.result = encodeThrowable(x, r);
+                    return d;
                 }
                 r = null;
             }
@@ -981,17 +1126,18 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
                 CompletableFuture<V> g = f.apply(t).toCompletableFuture();
                 Object s = g.result;
                 if (s != null)
-                    return new CompletableFuture<V>(encodeRelay(s));
-                CompletableFuture<V> d = new CompletableFuture<V>();
-                UniRelay<V> copy = new UniRelay<V>(d, g);
-                g.push(copy);
-                copy.tryFire(SYNC);
-                return d;
+                    d.result = encodeRelay(s);
+                else {
+                    UniRelay<V> copy = new UniRelay<V>(d, g);
+                    g.push(copy);
+                    copy.tryFire(SYNC);
+                }
             } catch (Throwable ex) {
-                return new CompletableFuture<V>(encodeThrowable(ex));
+                d.result = encodeThrowable(ex);
             }
+            return d;
         }
-        CompletableFuture<V> d = new CompletableFuture<V>();
+        CompletableFuture<V> d = newIncompleteFuture();
         UniCompose<T,V> c = new UniCompose<T,V>(e, d, this, f);
         push(c);
         c.tryFire(SYNC);
@@ -1116,7 +1262,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         CompletableFuture<U> b;
         if (f == null || (b = o.toCompletableFuture()) == null)
             throw new NullPointerException();
-        CompletableFuture<V> d = new CompletableFuture<V>();
+        CompletableFuture<V> d = newIncompleteFuture();
         if (e != null || !d.biApply(this, b, f, null)) {
             BiApply<T,U,V> c = new BiApply<T,U,V>(e, d, this, b, f);
             bipush(b, c);
@@ -1188,7 +1334,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         CompletableFuture<U> b;
         if (f == null || (b = o.toCompletableFuture()) == null)
             throw new NullPointerException();
-        CompletableFuture<Void> d = new CompletableFuture<Void>();
+        CompletableFuture<Void> d = newIncompleteFuture();
         if (e != null || !d.biAccept(this, b, f, null)) {
             BiAccept<T,U> c = new BiAccept<T,U>(e, d, this, b, f);
             bipush(b, c);
@@ -1247,7 +1393,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         CompletableFuture<?> b;
         if (f == null || (b = o.toCompletableFuture()) == null)
             throw new NullPointerException();
-        CompletableFuture<Void> d = new CompletableFuture<Void>();
+        CompletableFuture<Void> d = newIncompleteFuture();
         if (e != null || !d.biRun(this, b, f, null)) {
             BiRun<T,?> c = new BiRun<>(e, d, this, b, f);
             bipush(b, c);
@@ -1256,60 +1402,124 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return d;
     }
 
+    /**
+     * Shared state of an allOf or anyOf group: the dependent, the
+     * sources, and for allOf the number of sources (plus one while
+     * relays are being pushed) not yet known to be complete.
+     */
+    static final class Group {
+        CompletableFuture<?> dep;
+        CompletableFuture<?>[] srcs;
+        volatile int pending;
+        Group(CompletableFuture<?> dep, CompletableFuture<?>[] srcs,
+              int pending) {
+            this.dep = dep; this.srcs = srcs; this.pending = pending;
+        }
+
+        /** Decrements pending, returning true if now zero. */
+        final boolean arrive() {
+            return UNSAFE.getAndAddInt(this, PENDING, -1) == 1;
+        }
+    }
+
+    /**
+     * A Completion pushed onto one source of an allOf.  Unlike a tree
+     * of BiRelays, all relays of a group share a single dependent and
+     * counter, so a group of n sources needs at most n small
+     * Completions and no intermediate futures, and sources that are
+     * already complete need none at all.
+     */
     @SuppressWarnings("serial")
-    static final class BiRelay<T,U> extends BiCompletion<T,U,Void> { // for And
-        BiRelay(CompletableFuture<Void> dep,
-                CompletableFuture<T> src,
-                CompletableFuture<U> snd) {
-            super(null, dep, src, snd);
+    static final class AllRelay extends Completion {
+        CompletableFuture<?> src;
+        Group group;
+        AllRelay(CompletableFuture<?> src, Group group) {
+            this.src = src; this.group = group;
         }
-        final CompletableFuture<Void> tryFire(int mode) {
-            CompletableFuture<Void> d;
-            CompletableFuture<T> a;
-            CompletableFuture<U> b;
-            if ((d = dep) == null || !d.biRelay(a = src, b = snd))
+        final CompletableFuture<?> tryFire(int mode) {
+            CompletableFuture<?> a; Group g;
+            if ((a = src) == null || a.result == null || (g = group) == null ||
+                !compareAndSetForkJoinTaskTag((short)0, (short)1))
                 return null;
-            src = null; snd = null; dep = null;
-            return d.postFire(a, b, mode);
+            src = null; group = null;
+            if (!g.arrive())
+                return null;
+            CompletableFuture<?> d = g.dep;
+            CompletableFuture<?>[] cfs = g.srcs;
+            g.dep = null; g.srcs = null;
+            d.completeAll(cfs);
+            return d.postFire(a, mode);
+        }
+        final boolean isLive() {
+            Group g; CompletableFuture<?> d;
+            return (g = group) != null && (d = g.dep) != null &&
+                d.result == null;
         }
     }
 
-    boolean biRelay(CompletableFuture<?> a, CompletableFuture<?> b) {
-        Object r, s; Throwable x;
-        if (a == null || (r = a.result) == null ||
-            b == null || (s = b.result) == null)
-            return false;
+    /**
+     * Completes this allOf dependent after all sources of the group
+     * have completed, exceptionally with the outcome of the first
+     * (in argument order) exceptional source if there is one.
+     */
+    final void completeAll(CompletableFuture<?>[] cfs) {
         if (result == null) {
-            if (r instanceof AltResult && (x = ((AltResult)r).ex) != null)
-                completeThrowable(x, r);
-            else if (s instanceof AltResult && (x = ((AltResult)s).ex) != null)
-                completeThrowable(x, s);
-            else
-                completeNull();
+            for (CompletableFuture<?> a : cfs) {
+                Object r; Throwable x;
+                if ((r = a.result) instanceof AltResult &&
+                    (x = ((AltResult)r).ex) != null) {
+                    completeThrowable(x, r);
+                    return;
+                }
+            }
+            completeNull();
         }
-        return true;
     }
 
-    /** Recursively constructs a tree of completions. */
-    static CompletableFuture<Void> andTree(CompletableFuture<?>[] cfs,
-                                           int lo, int hi) {
+    /** Pushes c onto the stack of a unless a is done. */
+    static boolean pushIfIncomplete(CompletableFuture<?> a, Completion c) {
+        while (a.result == null) {
+            if (a.tryPushStack(c))
+                return true;
+            lazySetNext(c, null); // clear on failure
+        }
+        return false;
+    }
+
+    /** Implements allOf. */
+    static CompletableFuture<Void> andAll(CompletableFuture<?>[] cfs) {
         CompletableFuture<Void> d = new CompletableFuture<Void>();
-        if (lo > hi) // empty
-            d.result = NIL;
-        else {
-            CompletableFuture<?> a, b;
-            int mid = (lo + hi) >>> 1;
-            if ((a = (lo == mid ? cfs[lo] :
-                      andTree(cfs, lo, mid))) == null ||
-                (b = (lo == hi ? a : (hi == mid+1) ? cfs[hi] :
-                      andTree(cfs, mid+1, hi)))  == null)
+        int n = cfs.length, pending = 0;
+        for (CompletableFuture<?> a : cfs) {
+            if (a == null)
                 throw new NullPointerException();
-            if (!d.biRelay(a, b)) {
-                BiRelay<?,?> c = new BiRelay<>(d, a, b);
-                a.bipush(b, c);
-                c.tryFire(SYNC);
+            if (a.result == null)
+                ++pending;
+        }
+        if (pending == 0) {
+            d.completeAll(cfs);
+            return d;
+        }
+        // an extra count holds off completion until all are pushed
+        Group g = new Group(d, cfs, pending + 1);
+        for (int i = 0; i < n && pending > 0; ++i) {
+            CompletableFuture<?> a = cfs[i];
+            if (a.result == null) {
+                --pending;
+                AllRelay c = new AllRelay(a, g);
+                if (pushIfIncomplete(a, c))
+                    c.tryFire(SYNC);    // in case completed while pushing
+                else
+                    g.arrive();
             }
         }
+        if (pending > 0)                // completed before being visited
+            UNSAFE.getAndAddInt(g, PENDING, -pending);
+        if (g.arrive()) {
+            g.dep = null; g.srcs = null;
+            d.completeAll(cfs);
+            d.postComplete();
+        }
         return d;
     }
 
@@ -1388,7 +1598,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         CompletableFuture<U> b;
         if (f == null || (b = o.toCompletableFuture()) == null)
             throw new NullPointerException();
-        CompletableFuture<V> d = new CompletableFuture<V>();
+        CompletableFuture<V> d = newIncompleteFuture();
         if (e != null || !d.orApply(this, b, f, null)) {
             OrApply<T,U,V> c = new OrApply<T,U,V>(e, d, this, b, f);
             orpush(b, c);
@@ -1452,7 +1662,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         CompletableFuture<U> b;
         if (f == null || (b = o.toCompletableFuture()) == null)
             throw new NullPointerException();
-        CompletableFuture<Void> d = new CompletableFuture<Void>();
+        CompletableFuture<Void> d = newIncompleteFuture();
         if (e != null || !d.orAccept(this, b, f, null)) {
             OrAccept<T,U> c = new OrAccept<T,U>(e, d, this, b, f);
             orpush(b, c);
@@ -1510,7 +1720,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         CompletableFuture<?> b;
         if (f == null || (b = o.toCompletableFuture()) == null)
             throw new NullPointerException();
-        CompletableFuture<Void> d = new CompletableFuture<Void>();
+        CompletableFuture<Void> d = newIncompleteFuture();
         if (e != null || !d.orRun(this, b, f, null)) {
             OrRun<T,?> c = new OrRun<>(e, d, this, b, f);
             orpush(b, c);
@@ -1519,51 +1729,54 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return d;
     }
 
+    /**
+     * A Completion pushed onto one source of an anyOf, relaying that
+     * source's outcome to the shared dependent if first to complete.
+     */
     @SuppressWarnings("serial")
-    static final class OrRelay<T,U> extends BiCompletion<T,U,Object> { // for Or
-        OrRelay(CompletableFuture<Object> dep, CompletableFuture<T> src,
-                CompletableFuture<U> snd) {
-            super(null, dep, src, snd);
+    static final class AnyRelay extends Completion {
+        CompletableFuture<?> src;
+        CompletableFuture<Object> dep;
+        AnyRelay(CompletableFuture<?> src, CompletableFuture<Object> dep) {
+            this.src = src; this.dep = dep;
         }
         final CompletableFuture<Object> tryFire(int mode) {
-            CompletableFuture<Object> d;
-            CompletableFuture<T> a;
-            CompletableFuture<U> b;
-            if ((d = dep) == null || !d.orRelay(a = src, b = snd))
+            CompletableFuture<?> a; CompletableFuture<Object> d; Object r;
+            if ((a = src) == null || (r = a.result) == null ||
+                (d = dep) == null)
                 return null;
-            src = null; snd = null; dep = null;
-            return d.postFire(a, b, mode);
+            src = null; dep = null;
+            if (d.result != null || !d.completeRelay(r))
+                return null;
+            return d.postFire(a, mode);
+        }
+        final boolean isLive() {
+            CompletableFuture<Object> d;
+            return (d = dep) != null && d.result == null;
         }
     }
 
-    final boolean orRelay(CompletableFuture<?> a, CompletableFuture<?> b) {
-        Object r;
-        if (a == null || b == null ||
-            ((r = a.result) == null && (r = b.result) == null))
-            return false;
-        if (result == null)
-            completeRelay(r);
-        return true;
-    }
-
-    /** Recursively constructs a tree of completions. */
-    static CompletableFuture<Object> orTree(CompletableFuture<?>[] cfs,
-                                            int lo, int hi) {
-        CompletableFuture<Object> d = new CompletableFuture<Object>();
-        if (lo <= hi) {
-            CompletableFuture<?> a, b;
-            int mid = (lo + hi) >>> 1;
-            if ((a = (lo == mid ? cfs[lo] :
-                      orTree(cfs, lo, mid))) == null ||
-                (b = (lo == hi ? a : (hi == mid+1) ? cfs[hi] :
-                      orTree(cfs, mid+1, hi)))  == null)
+    /** Implements anyOf. */
+    static CompletableFuture<Object> orAll(CompletableFuture<?>[] cfs) {
+        for (CompletableFuture<?> a : cfs) {
+            if (a == null)
                 throw new NullPointerException();
-            if (!d.orRelay(a, b)) {
-                OrRelay<?,?> c = new OrRelay<>(d, a, b);
-                a.orpush(b, c);
-                c.tryFire(SYNC);
+        }
+        CompletableFuture<Object> d = new CompletableFuture<Object>();
+        for (CompletableFuture<?> a : cfs) {
+            Object r;
+            if ((r = a.result) != null) {
+                d.result = encodeRelay(r);
+                return d;
             }
         }
+        for (CompletableFuture<?> a : cfs) {
+            if (d.result != null)
+                break;
+            AnyRelay c = new AnyRelay(a, d);
+            if (!pushIfIncomplete(a, c) || a.result != null)
+                c.tryFire(SYNC);
+        }
         return d;
     }
 
@@ -1985,7 +2198,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
 
     public <U> CompletableFuture<U> thenApplyAsync(
         Function<? super T,? extends U> fn) {
-        return uniApplyStage(asyncPool, fn);
+        return uniApplyStage(defaultExecutor(), fn);
     }
 
     public <U> CompletableFuture<U> thenApplyAsync(
@@ -1998,7 +2211,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     }
 
     public CompletableFuture<Void> thenAcceptAsync(Consumer<? super T> action) {
-        return uniAcceptStage(asyncPool, action);
+        return uniAcceptStage(defaultExecutor(), action);
     }
 
     public CompletableFuture<Void> thenAcceptAsync(Consumer<? super T> action,
@@ -2011,7 +2224,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     }
 
     public CompletableFuture<Void> thenRunAsync(Runnable action) {
-        return uniRunStage(asyncPool, action);
+        return uniRunStage(defaultExecutor(), action);
     }
 
     public CompletableFuture<Void> thenRunAsync(Runnable action,
@@ -2028,7 +2241,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     public <U,V> CompletableFuture<V> thenCombineAsync(
         CompletionStage<? extends U> other,
         BiFunction<? super T,? super U,? extends V> fn) {
-        return biApplyStage(asyncPool, other, fn);
+        return biApplyStage(defaultExecutor(), other, fn);
     }
 
     public <U,V> CompletableFuture<V> thenCombineAsync(
@@ -2046,7 +2259,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     public <U> CompletableFuture<Void> thenAcceptBothAsync(
         CompletionStage<? extends U> other,
         BiConsumer<? super T, ? super U> action) {
-        return biAcceptStage(asyncPool, other, action);
+        return biAcceptStage(defaultExecutor(), other, action);
     }
 
     public <U> CompletableFuture<Void> thenAcceptBothAsync(
@@ -2062,7 +2275,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
 
     public CompletableFuture<Void> runAfterBothAsync(CompletionStage<?> other,
                                                      Runnable action) {
-        return biRunStage(asyncPool, other, action);
+        return biRunStage(defaultExecutor(), other, action);
     }
 
     public CompletableFuture<Void> runAfterBothAsync(CompletionStage<?> other,
@@ -2078,7 +2291,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
 
     public <U> CompletableFuture<U> applyToEitherAsync(
         CompletionStage<? extends T> other, Function<? super T, U> fn) {
-        return orApplyStage(asyncPool, other, fn);
+        return orApplyStage(defaultExecutor(), other, fn);
     }
 
     public <U> CompletableFuture<U> applyToEitherAsync(
@@ -2094,7 +2307,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
 
     public CompletableFuture<Void> acceptEitherAsync(
         CompletionStage<? extends T> other, Consumer<? super T> action) {
-        return orAcceptStage(asyncPool, other, action);
+        return orAcceptStage(defaultExecutor(), other, action);
     }
 
     public CompletableFuture<Void> acceptEitherAsync(
@@ -2110,7 +2323,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
 
     public CompletableFuture<Void> runAfterEitherAsync(CompletionStage<?> other,
                                                        Runnable action) {
-        return orRunStage(asyncPool, other, action);
+        return orRunStage(defaultExecutor(), other, action);
     }
 
     public CompletableFuture<Void> runAfterEitherAsync(CompletionStage<?> other,
@@ -2126,7 +2339,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
 
     public <U> CompletableFuture<U> thenComposeAsync(
         Function<? super T, ? extends CompletionStage<U>> fn) {
-        return uniComposeStage(asyncPool, fn);
+        return uniComposeStage(defaultExecutor(), fn);
     }
 
     public <U> CompletableFuture<U> thenComposeAsync(
@@ -2142,7 +2355,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
 
     public CompletableFuture<T> whenCompleteAsync(
         BiConsumer<? super T, ? super Throwable> action) {
-        return uniWhenCompleteStage(asyncPool, action);
+        return uniWhenCompleteStage(defaultExecutor(), action);
     }
 
     public CompletableFuture<T> whenCompleteAsync(
@@ -2157,7 +2370,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
 
     public <U> CompletableFuture<U> handleAsync(
         BiFunction<? super T, Throwable, ? extends U> fn) {
-        return uniHandleStage(asyncPool, fn);
+        return uniHandleStage(defaultExecutor(), fn);
     }
 
     public <U> CompletableFuture<U> handleAsync(
@@ -2174,6 +2387,64 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return this;
     }
 
+    /**
+     * Returns a new incomplete CompletableFuture of the type to be
+     * returned by a CompletionStage method.  Subclasses should
+     * normally override this method to return an instance of the
+     * same class as this CompletableFuture.  The default
+     * implementation returns an instance of class CompletableFuture.
+     *
+     * @param <U> the type of the value
+     * @return a new CompletableFuture
+     * @since 1.8
+     */
+    public <U> CompletableFuture<U> newIncompleteFuture() {
+        return new CompletableFuture<U>();
+    }
+
+    /**
+     * Returns the default Executor used for async methods that do not
+     * specify an Executor. This class uses the {@link
+     * ForkJoinPool#commonPool()} if it supports more than one
+     * parallel thread, or else an Executor using one thread per async
+     * task.  This method may be overridden in subclasses to return
+     * an Executor that provides at least one independent thread.
+     *
+     * @return the executor
+     * @since 1.8
+     */
+    public Executor defaultExecutor() {
+        return asyncPool;
+    }
+
+    /**
+     * Returns a new CompletableFuture that is completed with the same
+     * result as this CompletableFuture, and whose dependent stages,
+     * and their dependents in turn, use the given executor for async
+     * methods that do not specify an Executor.  This allows a chain
+     * of stages to be bound to one executor, for example a
+     * connection's event loop, without passing it to each method.
+     *
+     * @param executor the default executor for the new future and
+     * its dependents
+     * @return the new CompletableFuture
+     * @throws NullPointerException if the executor is null
+     * @since 1.8
+     */
+    public CompletableFuture<T> withDefaultExecutor(Executor executor) {
+        CompletableFuture<T> d =
+            new ExecutorBoundFuture<T>(screenExecutor(executor));
+        Object r;
+        if ((r = result) != null)
+            d.result = encodeRelay(r);
+        else {
+            UniRelay<T> c = new UniRelay<T>(d, this);
+            push(c);
+            c.tryFire(SYNC);
+        }
+        return d;
+    }
+
     // not in interface CompletionStage
 
     /**
@@ -2222,7 +2493,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
      * {@code null}
      */
     public static CompletableFuture<Void> allOf(CompletableFuture<?>... cfs) {
-        return andTree(cfs, 0, cfs.length - 1);
+        return andAll(cfs);
     }
 
     /**
@@ -2241,7 +2512,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
      * {@code null}
      */
     public static CompletableFuture<Object> anyOf(CompletableFuture<?>... cfs) {
-        return orTree(cfs, 0, cfs.length - 1);
+        return orAll(cfs);
     }
 
     /* ------------- Control and status methods -------------- */
@@ -2369,6 +2640,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     private static final long RESULT;
     private static final long STACK;
     private static final long NEXT;
+    private static final long PENDING;
     static {
         try {
             final sun.misc.Unsafe u;
@@ -2378,6 +2650,8 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
             STACK = u.objectFieldOffset(k.getDeclaredField("stack"));
             NEXT = u.objectFieldOffset
                 (Completion.class.getDeclaredField("next"));
+            PENDING = u.objectFieldOffset
+                (Group.class.getDeclaredField("pending"));
         } catch (Exception x) {
             throw new Error(x);
         }
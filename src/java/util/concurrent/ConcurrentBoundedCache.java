@@ -0,0 +1,1245 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ * The eviction policy of this class, and its FrequencySketch and
+ * TimerWheel classes in particular, are adapted from the Caffeine
+ * caching library, which carries the following notice:
+ *
+ * Copyright 2015 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package java.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A concurrent cache holding a bounded number (or total weight) of
+ * mappings, which evicts mappings that are unlikely to be used again
+ * when the bound is exceeded, and optionally expires mappings a
+ * fixed time after they were last written or accessed.  Caches are
+ * configured using a {@link Builder}:
+ *
+ * <pre> {@code
+ * ConcurrentBoundedCache<String, Graph> graphs =
+ *     ConcurrentBoundedCache.<String, Graph>newBuilder()
+ *         .maximumSize(10_000)
+ *         .expireAfterWrite(10, TimeUnit.MINUTES)
+ *         .recordStats()
+ *         .build();
+ * Graph g = graphs.computeIfAbsent(name, Graph::load);}</pre>
+ *
+ * <p>Mappings are held in a {@link ConcurrentHashMap}, so retrievals
+ * do not block and updates to different keys proceed concurrently.
+ * The bookkeeping needed for eviction is instead deferred: reads
+ * record the accessed entry in a lossy, striped buffer, writes record
+ * a task in a queue, and both are applied in batches, under a lock,
+ * by whichever thread finds a buffer full or has written, if the lock
+ * is free.  Under heavy contention some read accesses are dropped
+ * rather than recorded, which only slightly degrades the eviction
+ * policy's accuracy.  Consequently, the cache may briefly exceed its
+ * bound, and expired mappings are not returned but may still be
+ * counted by {@link #estimatedSize} until removed.
+ *
+ * <p>The eviction policy is <em>Window TinyLFU</em>: new mappings
+ * enter a small LRU window, and on leaving it must compete for a
+ * place in the main space, segmented into probationary and protected
+ * LRU regions, against that space's least recently used mapping.
+ * The one with the higher estimated access frequency, as recorded by
+ * a compact count-min sketch of recent accesses including those of
+ * mappings no longer present, is retained.  This favors mappings
+ * that are used frequently as well as recently, and resists
+ * pollution by scans of mappings that are used only once.
+ * Expiration is scheduled on a hierarchical timer wheel, so that
+ * expired mappings are found in amortized constant time.
+ *
+ * <p>Like {@link ConcurrentHashMap}, this class does <em>not</em>
+ * allow {@code null} to be used as a key or value.
+ *
+ * @since 1.8
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of cached values
+ */
+public class ConcurrentBoundedCache<K,V> {
+
+    /*
+     * Each mapping is a Node, which is the value in the backing
+     * ConcurrentHashMap.  Writers update a node's value in place
+     * while holding the node's monitor, so that the node's life
+     * cycle state (ALIVE, RETIRED once removed from the map, DEAD
+     * once removed from the policy) is checked and changed
+     * atomically with its value.
+     *
+     * All policy data -- the LRU deques, the timer wheel, the
+     * frequency sketch and the weights -- is guarded by evictionLock
+     * and is only touched during maintenance, which (in order)
+     * drains the read buffer, applies the queued write tasks,
+     * expires entries and evicts entries while over the bound.
+     * drainStatus records whether maintenance is required, so that
+     * a thread holding the lock repeats it when other threads asked
+     * for it while it was running.
+     */
+
+    /** The number of CPUS, to size read buffer stripes */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** Percentage of the maximum reserved for the admission window */
+    static final double WINDOW_PERCENT = 0.01;
+
+    /** Percentage of the main space reserved for the protected region */
+    static final double PROTECTED_PERCENT = 0.80;
+
+    /** Drain status values */
+    static final int IDLE = 0, REQUIRED = 1, PROCESSING = 2;
+
+    /** Node states */
+    static final int ALIVE = 0, RETIRED = 1, DEAD = 2;
+
+    /** Regions holding a node */
+    static final int NONE = 0, WINDOW = 1, PROBATION = 2, PROTECTED = 3;
+
+    /**
+     * A cache entry.  The key, value, weight and times are written
+     * while holding the node's monitor; the remaining fields belong
+     * to the policy.
+     */
+    static final class Node<K,V> {
+        final K key;
+        volatile V value;
+        volatile int weight;
+        volatile long writeTime;
+        volatile long accessTime;
+        volatile int state;
+
+        // guarded by evictionLock
+        int region;
+        int policyWeight;
+        long expiresAt;
+        Node<K,V> prev, next;               // region deque links
+        Node<K,V> prevInTimer, nextInTimer; // timer wheel links
+
+        Node(K key, V value, int weight, long now) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+
+        /** Creates a sentinel for a deque or timer bucket */
+        Node() {
+            this.key = null;
+            prev = next = prevInTimer = nextInTimer = this;
+        }
+    }
+
+    final ConcurrentHashMap<K,Node<K,V>> data;
+    final ReadBuffer<K,V> readBuffer;
+    final ConcurrentLinkedQueue<Runnable> writeBuffer;
+    final ReentrantLock evictionLock;
+    final ToIntBiFunction<? super K, ? super V> weigher;
+    final LongSupplier ticker;
+    final long expireAfterWriteNanos;   // or -1
+    final long expireAfterAccessNanos;  // or -1
+    final boolean recordStats;
+    transient volatile int drainStatus;
+
+    // statistics
+    final LongAdder hitCount = new LongAdder();
+    final LongAdder missCount = new LongAdder();
+    final LongAdder evictionCount = new LongAdder();
+    final LongAdder evictionWeight = new LongAdder();
+
+    // guarded by evictionLock
+    final long maximum;
+    final long windowMaximum;
+    final long protectedMaximum;
+    long weightedSize;
+    long windowWeightedSize;
+    long protectedWeightedSize;
+    final Node<K,V> window = new Node<K,V>();
+    final Node<K,V> probation = new Node<K,V>();
+    final Node<K,V> protectedRegion = new Node<K,V>();
+    final FrequencySketch sketch;
+    final TimerWheel<K,V> timerWheel;
+
+    ConcurrentBoundedCache(Builder<K,V> b) {
+        this.maximum = b.maximum;
+        this.weigher = b.weigher;
+        this.ticker = (b.ticker != null) ? b.ticker : System::nanoTime;
+        this.expireAfterWriteNanos = b.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = b.expireAfterAccessNanos;
+        this.recordStats = b.recordStats;
+        long w = (long)(maximum * WINDOW_PERCENT);
+        this.windowMaximum = (maximum == Long.MAX_VALUE) ? maximum :
+            Math.max(Math.min(1L, maximum), w);
+        this.protectedMaximum = (maximum == Long.MAX_VALUE) ? maximum :
+            (long)((maximum - windowMaximum) * PROTECTED_PERCENT);
+        this.data = new ConcurrentHashMap<K,Node<K,V>>
+            ((int)Math.min(b.initialCapacity, 1 << 30));
+        this.readBuffer = new ReadBuffer<K,V>();
+        this.writeBuffer = new ConcurrentLinkedQueue<Runnable>();
+        this.evictionLock = new ReentrantLock();
+        this.sketch = (maximum == Long.MAX_VALUE) ? null :
+            new FrequencySketch(weigher == null ? maximum :
+                                Math.max(b.initialCapacity, 16L));
+        this.timerWheel = (expireAfterWriteNanos < 0L &&
+                           expireAfterAccessNanos < 0L) ? null :
+            new TimerWheel<K,V>(this, ticker.getAsLong());
+    }
+
+    /**
+     * Returns a new builder for a cache.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @return the builder
+     */
+    public static <K,V> Builder<K,V> newBuilder() {
+        return new Builder<K,V>();
+    }
+
+    /**
+     * A builder of {@link ConcurrentBoundedCache}s.  At least one of
+     * a maximum size, a maximum weight or an expiration time should
+     * be set, since a cache without any is never purged.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    public static final class Builder<K,V> {
+        long maximum = Long.MAX_VALUE;
+        ToIntBiFunction<? super K, ? super V> weigher;
+        long expireAfterWriteNanos = -1L;
+        long expireAfterAccessNanos = -1L;
+        long initialCapacity = 16L;
+        LongSupplier ticker;
+        boolean recordStats;
+
+        Builder() {}
+
+        /**
+         * Bounds the number of mappings held by the cache.
+         *
+         * @param maximumSize the maximum number of mappings
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maximumSize} is
+         *         negative, or a maximum weight has been set
+         */
+        public Builder<K,V> maximumSize(long maximumSize) {
+            if (maximumSize < 0L || weigher != null)
+                throw new IllegalArgumentException();
+            this.maximum = maximumSize;
+            if (maximumSize < initialCapacity)
+                initialCapacity = maximumSize;
+            return this;
+        }
+
+        /**
+         * Bounds the total weight of the mappings held by the cache,
+         * where each mapping's weight is computed by the given
+         * weigher when the mapping is written.
+         *
+         * @param maximumWeight the maximum total weight
+         * @param weigher the function computing a mapping's
+         *        non-negative weight
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maximumWeight}
+         *         is negative, or a maximum size has been set
+         * @throws NullPointerException if the weigher is null
+         */
+        public Builder<K,V> maximumWeight(long maximumWeight,
+                                          ToIntBiFunction<? super K, ? super V> weigher) {
+            if (weigher == null)
+                throw new NullPointerException();
+            if (maximumWeight < 0L || maximum != Long.MAX_VALUE)
+                throw new IllegalArgumentException();
+            this.maximum = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Expires each mapping once the given duration has elapsed
+         * since its value was last written.
+         *
+         * @param duration the duration
+         * @param unit the unit of the duration
+         * @return this builder
+         * @throws IllegalArgumentException if {@code duration} is negative
+         */
+        public Builder<K,V> expireAfterWrite(long duration, TimeUnit unit) {
+            if (duration < 0L)
+                throw new IllegalArgumentException();
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Expires each mapping once the given duration has elapsed
+         * since it was last read or written.
+         *
+         * @param duration the duration
+         * @param unit the unit of the duration
+         * @return this builder
+         * @throws IllegalArgumentException if {@code duration} is negative
+         */
+        public Builder<K,V> expireAfterAccess(long duration, TimeUnit unit) {
+            if (duration < 0L)
+                throw new IllegalArgumentException();
+            this.expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Sets the expected number of mappings, used to size internal
+         * structures.
+         *
+         * @param initialCapacity the expected number of mappings
+         * @return this builder
+         * @throws IllegalArgumentException if {@code initialCapacity}
+         *         is negative
+         */
+        public Builder<K,V> initialCapacity(int initialCapacity) {
+            if (initialCapacity < 0)
+                throw new IllegalArgumentException();
+            this.initialCapacity = initialCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the source of time, in nanoseconds, used for
+         * expiration.  The default is {@link System#nanoTime}.
+         *
+         * @param ticker the time source
+         * @return this builder
+         * @throws NullPointerException if the ticker is null
+         */
+        public Builder<K,V> ticker(LongSupplier ticker) {
+            if (ticker == null)
+                throw new NullPointerException();
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * Enables the accumulation of {@link Stats} for the cache.
+         *
+         * @return this builder
+         */
+        public Builder<K,V> recordStats() {
+            this.recordStats = true;
+            return this;
+        }
+
+        /**
+         * Returns a new cache with the configured settings.
+         *
+         * @return the cache
+         */
+        public ConcurrentBoundedCache<K,V> build() {
+            return new ConcurrentBoundedCache<K,V>(this);
+        }
+    }
+
+    /**
+     * A snapshot of the statistics of a cache.
+     */
+    public static final class Stats {
+        private final long hitCount, missCount, evictionCount, evictionWeight;
+
+        Stats(long hitCount, long missCount,
+              long evictionCount, long evictionWeight) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.evictionWeight = evictionWeight;
+        }
+
+        /** @return the number of lookups that found a mapping */
+        public long hitCount()       { return hitCount; }
+        /** @return the number of lookups that found no mapping */
+        public long missCount()      { return missCount; }
+        /** @return the number of mappings evicted or expired */
+        public long evictionCount()  { return evictionCount; }
+        /** @return the total weight of mappings evicted or expired */
+        public long evictionWeight() { return evictionWeight; }
+
+        /**
+         * Returns the ratio of hits to lookups, or {@code 1.0} if
+         * there have been no lookups.
+         *
+         * @return the hit rate
+         */
+        public double hitRate() {
+            long n = hitCount + missCount;
+            return (n == 0L) ? 1.0 : (double)hitCount / n;
+        }
+
+        public String toString() {
+            return super.toString() +
+                "[hits = " + hitCount +
+                ", misses = " + missCount +
+                ", evictions = " + evictionCount +
+                ", eviction weight = " + evictionWeight + "]";
+        }
+    }
+
+    // Public operations
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this cache contains no unexpired mapping for
+     * the key.
+     *
+     * @param key the key
+     * @return the value, or {@code null} if none
+     * @throws NullPointerException if the specified key is null
+     */
+    public V get(Object key) {
+        Node<K,V> n = data.get(key);
+        long now;
+        if (n == null || hasExpired(n, now = ticker.getAsLong())) {
+            if (recordStats)
+                missCount.increment();
+            if (n != null)
+                scheduleDrain();        // to purge expired entries
+            return null;
+        }
+        V v = n.value;
+        if (recordStats)
+            hitCount.increment();
+        afterRead(n, now);
+        return v;
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * or its mapping has expired, attempts to compute its value using
+     * the given mapping function and enters it into this cache unless
+     * {@code null}.  The function is invoked at most once per
+     * invocation of this method, while holding a lock on the key's
+     * bin of the backing map, so it should be short and simple, and
+     * must not attempt to update this cache.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         the specified key, or null if the computed value is null
+     * @throws NullPointerException if the specified key or
+     *         mappingFunction is null
+     * @throws RuntimeException or Error if the mappingFunction does so,
+     *         in which case the mapping is left unestablished
+     */
+    public V computeIfAbsent(K key,
+                             Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null)
+            throw new NullPointerException();
+        for (;;) {
+            long now = ticker.getAsLong();
+            Node<K,V> n = data.get(key);
+            if (n != null) {
+                if (!hasExpired(n, now)) {
+                    V v = n.value;
+                    if (recordStats)
+                        hitCount.increment();
+                    afterRead(n, now);
+                    return v;
+                }
+                if (data.remove(key, n))
+                    retire(n);
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            Node<K,V>[] created = (Node<K,V>[])new Node<?,?>[1];
+            n = data.computeIfAbsent(key, k -> {
+                V v = mappingFunction.apply(k);
+                return (v == null) ? null :
+                    (created[0] = new Node<K,V>(k, v, weigh(k, v), now));
+            });
+            if (n == null || n == created[0]) {
+                if (recordStats)
+                    missCount.increment();
+                if (n == null)
+                    return null;
+                afterWrite(new AddTask(n));
+                return n.value;
+            }
+        }
+    }
+
+    /**
+     * Associates the specified value with the specified key in this
+     * cache, replacing any previous mapping.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous unexpired value associated with the key,
+     *         or {@code null} if there was none
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * If the specified key has no unexpired mapping, associates it
+     * with the given value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous unexpired value associated with the key,
+     *         or {@code null} if there was none
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    /** Implementation for put and putIfAbsent */
+    final V put(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        int weight = weigh(key, value);
+        long now = ticker.getAsLong();
+        Node<K,V> node = null;
+        for (;;) {
+            Node<K,V> prior = data.get(key);
+            if (prior == null) {
+                if (node == null)
+                    node = new Node<K,V>(key, value, weight, now);
+                if ((prior = data.putIfAbsent(key, node)) == null) {
+                    afterWrite(new AddTask(node));
+                    return null;
+                }
+            }
+            V oldValue; boolean expired;
+            synchronized (prior) {
+                if (prior.state != ALIVE)
+                    continue;           // removed; retry
+                oldValue = prior.value;
+                expired = hasExpired(prior, now);
+                if (onlyIfAbsent && !expired) {
+                    afterRead(prior, now);
+                    return oldValue;
+                }
+                prior.value = value;
+                prior.weight = weight;
+                prior.writeTime = now;
+                prior.accessTime = now;
+            }
+            afterWrite(new UpdateTask(prior));
+            return expired ? null : oldValue;
+        }
+    }
+
+    /**
+     * Removes the mapping for a key from this cache if it is present.
+     *
+     * @param key key whose mapping is to be removed from the cache
+     * @return the previous unexpired value associated with the key,
+     *         or {@code null} if there was none
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        Node<K,V> n = data.remove(key);
+        if (n == null)
+            return null;
+        V v = retire(n);
+        return hasExpired(n, ticker.getAsLong()) ? null : v;
+    }
+
+    /**
+     * Removes all of the mappings from this cache.
+     */
+    public void clear() {
+        final ReentrantLock lock = evictionLock;
+        lock.lock();
+        try {
+            maintenance();
+            for (Node<K,V> n : data.values()) {
+                if (data.remove(n.key, n)) {
+                    synchronized (n) {
+                        n.state = RETIRED;
+                    }
+                    removeFromPolicy(n);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the approximate number of mappings in this cache,
+     * which may include mappings that have expired or are about to
+     * be evicted.
+     *
+     * @return the estimated number of mappings
+     */
+    public long estimatedSize() {
+        return data.mappingCount();
+    }
+
+    /**
+     * Performs any pending maintenance, including the eviction of
+     * mappings exceeding the bound and the removal of expired
+     * mappings.  Maintenance is otherwise performed in the course of
+     * other operations, so this method need only be called when the
+     * cache is idle but its mappings should be released.
+     */
+    public void cleanUp() {
+        final ReentrantLock lock = evictionLock;
+        lock.lock();
+        try {
+            drainStatus = PROCESSING;
+            maintenance();
+            U.compareAndSwapInt(this, DRAINSTATUS, PROCESSING, IDLE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of this cache's statistics, which are only
+     * maintained if enabled with {@link Builder#recordStats}.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        return new Stats(hitCount.sum(), missCount.sum(),
+                         evictionCount.sum(), evictionWeight.sum());
+    }
+
+    /**
+     * Returns a string identifying this cache, as well as its state.
+     *
+     * @return a string identifying this cache, as well as its state
+     */
+    public String toString() {
+        return super.toString() +
+            "[size = " + data.mappingCount() +
+            ", maximum = " + maximum + "]";
+    }
+
+    // Internal operations
+
+    final int weigh(K key, V value) {
+        if (weigher == null)
+            return 1;
+        int w = weigher.applyAsInt(key, value);
+        if (w < 0)
+            throw new IllegalArgumentException();
+        return w;
+    }
+
+    final boolean hasExpired(Node<K,V> n, long now) {
+        return (expireAfterWriteNanos >= 0L &&
+                now - n.writeTime >= expireAfterWriteNanos) ||
+            (expireAfterAccessNanos >= 0L &&
+             now - n.accessTime >= expireAfterAccessNanos);
+    }
+
+    /** Returns the time at which n expires, or now if never */
+    final long expirationTime(Node<K,V> n) {
+        long t = Long.MAX_VALUE;
+        if (expireAfterWriteNanos >= 0L)
+            t = n.writeTime + Math.min(expireAfterWriteNanos, Long.MAX_VALUE >>> 1);
+        if (expireAfterAccessNanos >= 0L)
+            t = Math.min(t, n.accessTime +
+                         Math.min(expireAfterAccessNanos, Long.MAX_VALUE >>> 1));
+        return t;
+    }
+
+    /**
+     * Marks a node that has been removed from the map as retired,
+     * and queues its removal from the policy.
+     *
+     * @return the node's value
+     */
+    final V retire(Node<K,V> n) {
+        V v;
+        synchronized (n) {
+            v = n.value;
+            n.state = RETIRED;
+        }
+        afterWrite(new RemovalTask(n));
+        return v;
+    }
+
+    final void afterRead(Node<K,V> n, long now) {
+        if (expireAfterAccessNanos >= 0L)
+            n.accessTime = now;
+        if (readBuffer.offer(n) || drainStatus == REQUIRED)
+            scheduleDrain();
+    }
+
+    final void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        scheduleDrain();
+    }
+
+    /**
+     * Performs maintenance if the eviction lock is free.  If it is
+     * not, the thread holding it will see the REQUIRED status and
+     * repeat its maintenance.
+     */
+    final void scheduleDrain() {
+        final ReentrantLock lock = evictionLock;
+        drainStatus = REQUIRED;
+        while (drainStatus == REQUIRED && lock.tryLock()) {
+            try {
+                drainStatus = PROCESSING;
+                maintenance();
+                U.compareAndSwapInt(this, DRAINSTATUS, PROCESSING, IDLE);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** Applies buffered work, then expires and evicts entries. */
+    final void maintenance() {
+        readBuffer.drainTo(this);
+        for (Runnable task; (task = writeBuffer.poll()) != null; )
+            task.run();
+        if (timerWheel != null)
+            timerWheel.advance(ticker.getAsLong());
+        evictEntries();
+    }
+
+    // Policy operations; all called with evictionLock held
+
+    /** Records an access to a live node from the read buffer */
+    final void onAccess(Node<K,V> n) {
+        if (n.region == NONE)
+            return;                     // not added yet, or removed
+        if (sketch != null)
+            sketch.increment(n.key);
+        switch (n.region) {
+        case WINDOW:
+            moveToBack(window, n);
+            break;
+        case PROBATION:
+            unlink(n);
+            n.region = PROTECTED;
+            linkLast(protectedRegion, n);
+            protectedWeightedSize += n.policyWeight;
+            demoteFromProtected();
+            break;
+        case PROTECTED:
+            moveToBack(protectedRegion, n);
+            break;
+        }
+        if (timerWheel != null && expireAfterAccessNanos >= 0L)
+            timerWheel.reschedule(n, expirationTime(n));
+    }
+
+    /** Moves protected entries beyond its maximum to probation */
+    final void demoteFromProtected() {
+        while (protectedWeightedSize > protectedMaximum) {
+            Node<K,V> d = protectedRegion.next;
+            if (d == protectedRegion)
+                break;
+            unlink(d);
+            protectedWeightedSize -= d.policyWeight;
+            d.region = PROBATION;
+            linkLast(probation, d);
+        }
+    }
+
+    final class AddTask implements Runnable {
+        final Node<K,V> node;
+        AddTask(Node<K,V> node) { this.node = node; }
+        public void run() {
+            Node<K,V> n = node;
+            if (n.state == DEAD || n.region != NONE)
+                return;
+            int w = n.weight;
+            n.policyWeight = w;
+            weightedSize += w;
+            windowWeightedSize += w;
+            n.region = WINDOW;
+            linkLast(window, n);
+            if (sketch != null) {
+                sketch.ensureCapacity(data.size());
+                sketch.increment(n.key);
+            }
+            if (timerWheel != null)
+                timerWheel.schedule(n, expirationTime(n));
+            if (n.state == RETIRED)     // removed before added
+                removeFromPolicy(n);
+        }
+    }
+
+    /**
+     * Applies a write to a node.  The node's current weight, rather
+     * than the difference made by this write, is used, since writes
+     * may have raced with the node's AddTask or with each other.
+     */
+    final class UpdateTask implements Runnable {
+        final Node<K,V> node;
+        UpdateTask(Node<K,V> node) { this.node = node; }
+        public void run() {
+            Node<K,V> n = node;
+            if (n.region == NONE)
+                return;
+            int d = n.weight - n.policyWeight;
+            n.policyWeight += d;
+            weightedSize += d;
+            if (n.region == WINDOW)
+                windowWeightedSize += d;
+            else if (n.region == PROTECTED)
+                protectedWeightedSize += d;
+            if (timerWheel != null)
+                timerWheel.reschedule(n, expirationTime(n));
+            onAccess(n);
+        }
+    }
+
+    final class RemovalTask implements Runnable {
+        final Node<K,V> node;
+        RemovalTask(Node<K,V> node) { this.node = node; }
+        public void run() {
+            removeFromPolicy(node);
+        }
+    }
+
+    /** Unlinks a node from the policy, if it is linked, and kills it */
+    final void removeFromPolicy(Node<K,V> n) {
+        int r = n.region;
+        if (r != NONE) {
+            unlink(n);
+            weightedSize -= n.policyWeight;
+            if (r == WINDOW)
+                windowWeightedSize -= n.policyWeight;
+            else if (r == PROTECTED)
+                protectedWeightedSize -= n.policyWeight;
+            n.region = NONE;
+            if (timerWheel != null)
+                timerWheel.deschedule(n);
+            n.state = DEAD;
+        }
+    }
+
+    /**
+     * Evicts the given node, unless it is an expiration that has
+     * been overtaken by a write or access.
+     *
+     * @return true if the node was evicted or was already removed
+     */
+    final boolean evictEntry(Node<K,V> n, boolean expiration, long now) {
+        boolean[] removed = new boolean[1];
+        data.computeIfPresent(n.key, (k, cur) -> {
+            if (cur != n)
+                return cur;
+            synchronized (n) {
+                if (expiration && !hasExpired(n, now))
+                    return n;
+                n.state = RETIRED;
+            }
+            removed[0] = true;
+            return null;
+        });
+        if (!removed[0] && n.state == ALIVE)
+            return false;
+        if (removed[0] && recordStats) {
+            evictionCount.increment();
+            evictionWeight.add(n.policyWeight);
+        }
+        removeFromPolicy(n);
+        return true;
+    }
+
+    /**
+     * Evicts entries while the cache exceeds its maximum.  Entries
+     * leaving the window become candidates at the back of
+     * probation, and compete with probation's least recently used
+     * entry, the victim, for admission.
+     */
+    final void evictEntries() {
+        if (maximum == Long.MAX_VALUE)
+            return;
+        int candidates = 0;
+        while (windowWeightedSize > windowMaximum) {
+            Node<K,V> c = window.next;
+            if (c == window)
+                break;
+            unlink(c);
+            windowWeightedSize -= c.policyWeight;
+            c.region = PROBATION;
+            linkLast(probation, c);
+            ++candidates;
+        }
+        while (weightedSize > maximum) {
+            Node<K,V> victim = probation.next, candidate;
+            if (victim == probation &&
+                (victim = protectedRegion.next) == protectedRegion &&
+                (victim = window.next) == window)
+                break;                  // nothing left to evict
+            Node<K,V> e = victim;
+            if (candidates > 0 && (candidate = probation.prev) != probation &&
+                candidate != victim && !admit(candidate.key, victim.key)) {
+                e = candidate;
+                --candidates;
+            }
+            if (!evictEntry(e, false, 0L))
+                break;
+        }
+    }
+
+    /** Returns whether a candidate should replace a victim */
+    final boolean admit(K candidateKey, K victimKey) {
+        return sketch.frequency(candidateKey) > sketch.frequency(victimKey);
+    }
+
+    // Intrusive deques, each with a sentinel
+
+    static <K,V> void linkLast(Node<K,V> sentinel, Node<K,V> n) {
+        Node<K,V> last = sentinel.prev;
+        n.prev = last;
+        n.next = sentinel;
+        last.next = n;
+        sentinel.prev = n;
+    }
+
+    static <K,V> void unlink(Node<K,V> n) {
+        Node<K,V> p = n.prev, s = n.next;
+        if (p != null) {
+            p.next = s;
+            s.prev = p;
+            n.prev = n.next = null;
+        }
+    }
+
+    static <K,V> void moveToBack(Node<K,V> sentinel, Node<K,V> n) {
+        if (sentinel.prev != n) {
+            unlink(n);
+            linkLast(sentinel, n);
+        }
+    }
+
+    /**
+     * A striped, lossy buffer of read accesses.  Each stripe is a
+     * small ring buffer written by CAS on its tail and drained under
+     * the eviction lock.  Readers choose a stripe with their thread's
+     * probe, moving to another stripe when a CAS fails; accesses are
+     * dropped when a stripe is full.
+     */
+    static final class ReadBuffer<K,V> {
+        static final int STRIPES = Math.min(64, Integer.highestOneBit(
+                                                Math.max(1, NCPU) * 4 - 1) << 1);
+        static final int BUFFER_SIZE = 16; // power of two
+        static final int MASK = BUFFER_SIZE - 1;
+
+        @sun.misc.Contended static final class Stripe {
+            volatile long head;
+            volatile long tail;
+            final AtomicReferenceArray<Node<?,?>> buffer =
+                new AtomicReferenceArray<Node<?,?>>(BUFFER_SIZE);
+        }
+
+        final Stripe[] stripes = new Stripe[STRIPES];
+
+        ReadBuffer() {
+            for (int i = 0; i < STRIPES; ++i)
+                stripes[i] = new Stripe();
+        }
+
+        /**
+         * Records an access.
+         *
+         * @return true if the buffer should now be drained
+         */
+        boolean offer(Node<K,V> n) {
+            int h;
+            if ((h = ThreadLocalRandom.getProbe()) == 0) {
+                ThreadLocalRandom.localInit();
+                h = ThreadLocalRandom.getProbe();
+            }
+            Stripe s = stripes[h & (STRIPES - 1)];
+            long t = s.tail, size = t - s.head;
+            if (size >= BUFFER_SIZE)
+                return true;
+            if (U.compareAndSwapLong(s, TAIL, t, t + 1L)) {
+                s.buffer.lazySet((int)t & MASK, n);
+                return size + 1 >= BUFFER_SIZE;
+            }
+            ThreadLocalRandom.advanceProbe(h);
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        void drainTo(ConcurrentBoundedCache<K,V> cache) {
+            for (Stripe s : stripes) {
+                long h = s.head, t = s.tail;
+                for (; h != t; ++h) {
+                    int i = (int)h & MASK;
+                    Node<?,?> n = s.buffer.get(i);
+                    if (n == null)
+                        break;          // not yet published
+                    s.buffer.lazySet(i, null);
+                    cache.onAccess((Node<K,V>)n);
+                }
+                U.putOrderedLong(s, HEAD, h);
+            }
+        }
+    }
+
+    /**
+     * A frequency sketch: a count-min sketch of four-bit counters,
+     * four per long, each key mapping to one counter in each of four
+     * longs.  When the number of increments reaches ten times the
+     * table size, all counters are halved, so that the sketch
+     * reflects recent history.  Adapted from Caffeine's
+     * FrequencySketch; see the notice at the head of this file.
+     */
+    static final class FrequencySketch {
+        static final long[] SEED = { // a mixture of seeds from FNV-1a, CityHash, and Murmur3
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        static final long RESET_MASK = 0x7777777777777777L;
+        static final long ONE_MASK = 0x1111111111111111L;
+
+        long[] table;
+        int tableMask;
+        int sampleSize;
+        int size;
+
+        FrequencySketch(long expected) {
+            ensureCapacity(expected);
+        }
+
+        /** Grows the table to suit the given number of entries */
+        void ensureCapacity(long expected) {
+            int n = (int)Math.min(Math.max(expected, 8L), 1 << 26);
+            if (table != null && table.length >= n)
+                return;
+            int c = Integer.highestOneBit(n - 1) << 1;
+            table = new long[c];
+            tableMask = c - 1;
+            sampleSize = 10 * c;
+            size = 0;
+        }
+
+        int frequency(Object key) {
+            int h = spread(key.hashCode()), start = (h & 3) << 2;
+            int freq = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; ++i) {
+                int index = indexOf(h, i);
+                int count = (int)((table[index] >>> ((start + i) << 2)) & 0xfL);
+                freq = Math.min(freq, count);
+            }
+            return freq;
+        }
+
+        void increment(Object key) {
+            int h = spread(key.hashCode()), start = (h & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; ++i) {
+                int index = indexOf(h, i), offset = (start + i) << 2;
+                long mask = 0xfL << offset;
+                if ((table[index] & mask) != mask) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++size >= sampleSize)
+                reset();
+        }
+
+        /** Halves every counter */
+        void reset() {
+            int odd = 0;
+            for (int i = 0; i < table.length; ++i) {
+                odd += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = (size >>> 1) - (odd >>> 2);
+        }
+
+        int indexOf(int item, int i) {
+            long hash = (item + SEED[i]) * SEED[i];
+            hash += (hash >>> 32);
+            return ((int)hash) & tableMask;
+        }
+
+        static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+
+    /**
+     * A hierarchical timer wheel.  Each level is an array of buckets
+     * covering successively coarser spans of time (about a second, a
+     * minute, an hour and a day, and beyond); a node is placed in the
+     * finest level whose span exceeds its remaining time.  As time
+     * advances, the buckets passed over are emptied, expiring due
+     * nodes and rescheduling the others into finer levels.  Adapted
+     * from Caffeine's TimerWheel; see the notice at the head of this
+     * file.
+     */
+    static final class TimerWheel<K,V> {
+        static final int[] BUCKETS = { 64, 64, 32, 4, 1 };
+        static final long[] SPANS = {
+            1L << 30,   // 1.07 seconds
+            1L << 36,   // 1.14 minutes
+            1L << 42,   // 1.22 hours
+            1L << 46,   // 0.81 days
+            1L << 48,   // 3.26 days
+            1L << 48,
+        };
+        static final int[] SHIFT = { 30, 36, 42, 46, 48 };
+
+        final ConcurrentBoundedCache<K,V> cache;
+        final Node<K,V>[][] wheel;
+        long nanos;
+
+        @SuppressWarnings("unchecked")
+        TimerWheel(ConcurrentBoundedCache<K,V> cache, long now) {
+            this.cache = cache;
+            this.nanos = now;
+            wheel = (Node<K,V>[][])new Node<?,?>[BUCKETS.length][];
+            for (int i = 0; i < wheel.length; ++i) {
+                wheel[i] = (Node<K,V>[])new Node<?,?>[BUCKETS[i]];
+                for (int j = 0; j < wheel[i].length; ++j)
+                    wheel[i][j] = new Node<K,V>();
+            }
+        }
+
+        /** Advances to the given time, expiring nodes that are due */
+        void advance(long now) {
+            long previous = nanos;
+            nanos = now;
+            for (int i = 0; i < SHIFT.length; ++i) {
+                long previousTicks = previous >>> SHIFT[i];
+                long currentTicks = now >>> SHIFT[i];
+                if (currentTicks - previousTicks <= 0L)
+                    break;
+                expire(i, previousTicks, currentTicks - previousTicks);
+            }
+        }
+
+        void expire(int level, long previousTicks, long delta) {
+            Node<K,V>[] buckets = wheel[level];
+            int mask = buckets.length - 1;
+            int steps = (int)Math.min(delta + 1L, (long)buckets.length);
+            int start = (int)(previousTicks & mask);
+            for (int i = start, end = start + steps; i < end; ++i) {
+                Node<K,V> sentinel = buckets[i & mask];
+                Node<K,V> n = sentinel.nextInTimer;
+                sentinel.prevInTimer = sentinel.nextInTimer = sentinel;
+                while (n != sentinel) {
+                    Node<K,V> next = n.nextInTimer;
+                    n.prevInTimer = n.nextInTimer = null;
+                    if (n.expiresAt - nanos > 0L ||
+                        !cache.evictEntry(n, true, nanos))
+                        schedule(n, cache.expirationTime(n));
+                    n = next;
+                }
+            }
+        }
+
+        void schedule(Node<K,V> n, long expiresAt) {
+            n.expiresAt = expiresAt;
+            Node<K,V> sentinel = findBucket(expiresAt);
+            Node<K,V> last = sentinel.prevInTimer;
+            n.prevInTimer = last;
+            n.nextInTimer = sentinel;
+            last.nextInTimer = n;
+            sentinel.prevInTimer = n;
+        }
+
+        void reschedule(Node<K,V> n, long expiresAt) {
+            if (n.nextInTimer != null) {
+                deschedule(n);
+                schedule(n, expiresAt);
+            }
+        }
+
+        void deschedule(Node<K,V> n) {
+            Node<K,V> p = n.prevInTimer, s = n.nextInTimer;
+            if (s != null) {
+                p.nextInTimer = s;
+                s.prevInTimer = p;
+                n.prevInTimer = n.nextInTimer = null;
+            }
+        }
+
+        Node<K,V> findBucket(long time) {
+            long duration = time - nanos;
+            if (duration < 0L) {        // overdue; use the current bucket
+                time = nanos;
+                duration = 0L;
+            }
+            int last = wheel.length - 1;
+            for (int i = 0; i < last; ++i) {
+                if (duration < SPANS[i + 1]) {
+                    long ticks = time >>> SHIFT[i];
+                    return wheel[i][(int)ticks & (wheel[i].length - 1)];
+                }
+            }
+            return wheel[last][0];
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long DRAINSTATUS;
+    private static final long HEAD;
+    private static final long TAIL;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            DRAINSTATUS = U.objectFieldOffset
+                (ConcurrentBoundedCache.class.getDeclaredField("drainStatus"));
+            Class<?> k = ReadBuffer.Stripe.class;
+            HEAD = U.objectFieldOffset(k.getDeclaredField("head"));
+            TAIL = U.objectFieldOffset(k.getDeclaredField("tail"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -3641,6 +3641,148 @@ public class ConcurrentHashMap<K,V> extends AbstractMap<K,V>
         return (b <= 0L || (n /= b) >= sp) ? sp : (int)n;
     }
 
+    /**
+     * Copies all of the mappings from the specified map to this one,
+     * with the same effect as {@link #putAll(Map)}.  Rather than
+     * inserting each mapping separately, this method presizes the
+     * table for all of them, groups them by bin, and then inserts
+     * each group while holding its bin's lock once, updating the
+     * element count once per task.  This is much faster than
+     * {@code putAll(Map)} for large maps, at the price of temporary
+     * arrays holding the mappings and their hash codes.  As with
+     * other bulk operations, the mappings are not inserted
+     * atomically: concurrent retrievals may see some but not all of
+     * them.
+     *
+     * @param parallelismThreshold the (estimated) number of mappings
+     * needed for this operation to be executed in parallel
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null, or
+     *         contains a null key or value
+     * @since 1.8
+     */
+    public void putAll(long parallelismThreshold,
+                       Map<? extends K, ? extends V> m) {
+        int b = batchForKeys(parallelismThreshold, m.size());
+        if (b <= 0) {                   // batching would not pay off
+            putAll(m);
+            return;
+        }
+        Object[] ks = new Object[m.size()], vs = new Object[ks.length];
+        int size = 0;
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            Object k = e.getKey(), v = e.getValue();
+            if (k == null || v == null)
+                throw new NullPointerException();
+            if (size == ks.length) {    // m grew while traversed
+                int c = size + (size >>> 1) + 1;
+                ks = Arrays.copyOf(ks, c);
+                vs = Arrays.copyOf(vs, c);
+            }
+            ks[size] = k;
+            vs[size++] = v;
+        }
+        batchInsert(b, ks, vs, size, null);
+    }
+
+    /**
+     * For each of the given keys that is not already associated with
+     * a value, attempts to compute its value using the given mapping
+     * function and enters it into this map unless {@code null}, with
+     * the same effect as invoking {@link #computeIfAbsent} for each
+     * key, but batched as described for {@link #putAll(long, Map)}.
+     * Each key's computation is performed while holding the lock of
+     * its bin, which may also be held for the computations of other
+     * keys in the same bin, so the function should be short and
+     * simple, and must not attempt to update any mappings of this
+     * map.
+     *
+     * @param parallelismThreshold the (estimated) number of keys
+     * needed for this operation to be executed in parallel
+     * @param keys the keys
+     * @param mappingFunction the function to compute a value
+     * @throws NullPointerException if the keys, any of the keys, or
+     *         the mappingFunction is null
+     * @throws RuntimeException or Error if the mappingFunction does so,
+     *         in which case the mappings for some keys may be left
+     *         unestablished
+     * @since 1.8
+     */
+    public void computeIfAbsentAll(long parallelismThreshold,
+                                   Collection<? extends K> keys,
+                                   Function<? super K, ? extends V> mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        Object[] ks = keys.toArray();
+        for (Object k : ks) {
+            if (k == null)
+                throw new NullPointerException();
+        }
+        int b = batchForKeys(parallelismThreshold, ks.length);
+        if (b > 0)
+            batchInsert(b, ks, null, ks.length, mappingFunction);
+        else {
+            long s = sumCount() + ks.length;
+            tryPresize((s >= (long)Integer.MAX_VALUE) ?
+                       Integer.MAX_VALUE : (int)s);
+            for (Object k : ks) {
+                @SuppressWarnings("unchecked") K key = (K)k;
+                computeIfAbsent(key, mappingFunction);
+            }
+        }
+    }
+
+    /**
+     * Returns the initial batch value for a bulk insertion of the
+     * given number of keys, or zero if it should be performed
+     * sequentially, in which case the per-key methods are used:
+     * grouping keys by bin only pays off when that lets tasks insert
+     * into disjoint parts of the table in parallel.
+     */
+    static int batchForKeys(long parallelismThreshold, int size) {
+        int sp;
+        if (parallelismThreshold == Long.MAX_VALUE || size < 2 ||
+            size < parallelismThreshold ||
+            (sp = ForkJoinPool.getCommonPoolParallelism()) <= 1)
+            return 0;
+        sp <<= 2;                       // slack of 4, as in batchFor
+        long n = (parallelismThreshold <= 0L) ? sp :
+            size / parallelismThreshold;
+        return (n >= sp) ? sp : (int)n;
+    }
+
+    /**
+     * Implementation for bulk putAll and computeIfAbsentAll.  Sorts
+     * the keys by bin index in the presized table, after which
+     * BatchInsertTasks split the sorted keys at bin boundaries, so
+     * that tasks work on disjoint ranges of bins.
+     *
+     * @param batch the initial batch value
+     * @param ks the keys, all non-null
+     * @param vs the values, or null if computing
+     * @param size the number of keys
+     * @param fn the mapping function, or null if putting
+     */
+    private final void batchInsert(int batch,
+                                   Object[] ks, Object[] vs, int size,
+                                   Function<? super K, ? extends V> fn) {
+        int[] hs = new int[size];
+        for (int x = 0; x < size; ++x)
+            hs[x] = spread(ks[x].hashCode());
+        long s = sumCount() + size;
+        tryPresize((s >= (long)Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)s);
+        Node<K,V>[] tab;
+        if ((tab = table) == null || tab.length == 0)
+            tab = initTable();
+        int m = tab.length - 1;
+        long[] order = new long[size];  // bin index, then key index
+        for (int x = 0; x < size; ++x)
+            order[x] = ((long)(hs[x] & m) << 32) | x;
+        Arrays.parallelSort(order);
+        new BatchInsertTask<K,V>
+            (null, batch, 0, size, this, tab, ks, vs, hs, order, fn).invoke();
+    }
+
     /**
      * Performs the given action for each (key, value).
      *
@@ -6274,6 +6416,222 @@ public class ConcurrentHashMap<K,V> extends AbstractMap<K,V>
         }
     }
 
+    /**
+     * Task for putAll(long, Map) and computeIfAbsentAll.  Each task
+     * handles a range of the order array, which holds bin indices in
+     * its high words and key indices in its low words, inserting
+     * each run of keys for the same bin together.
+     */
+    @SuppressWarnings("serial")
+    static final class BatchInsertTask<K,V> extends CountedCompleter<Void> {
+        final ConcurrentHashMap<K,V> map;
+        final Node<K,V>[] tab;
+        final Object[] ks, vs;
+        final int[] hs;
+        final long[] order;
+        final Function<? super K, ? extends V> fn;
+        int batch, lo, hi;
+        long added;             // mappings added, to be counted
+        BatchInsertTask(BatchInsertTask<K,V> par, int b, int lo, int hi,
+                        ConcurrentHashMap<K,V> map, Node<K,V>[] tab,
+                        Object[] ks, Object[] vs, int[] hs, long[] order,
+                        Function<? super K, ? extends V> fn) {
+            super(par);
+            this.batch = b; this.lo = lo; this.hi = hi;
+            this.map = map; this.tab = tab; this.ks = ks; this.vs = vs;
+            this.hs = hs; this.order = order; this.fn = fn;
+        }
+
+        public final void compute() {
+            final long[] order = this.order;
+            while (batch > 0) {
+                int h = (lo + hi) >>> 1;
+                long bin = order[h] >>> 32; // split at a bin boundary
+                while (h < hi && (order[h] >>> 32) == bin)
+                    ++h;
+                if (h >= hi)
+                    break;
+                addToPendingCount(1);
+                new BatchInsertTask<K,V>
+                    (this, batch >>>= 1, h, hi, map, tab, ks, vs, hs,
+                     order, fn).fork();
+                hi = h;
+            }
+            try {
+                for (int j = lo, e; j < hi; j = e) {
+                    int i = (int)(order[j] >>> 32);
+                    for (e = j + 1; e < hi && (int)(order[e] >>> 32) == i; ++e)
+                        ;
+                    if (!insertBin(i, j, e)) {
+                        for (int k = j; k < e; ++k) // moved; do it the slow way
+                            insertOne((int)order[k]);
+                    }
+                }
+            } finally {
+                if (added != 0L)
+                    map.addCount(added, 2);
+            }
+            propagateCompletion();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void insertOne(int x) {
+            K k = (K)ks[x];
+            if (fn == null)
+                map.putVal(k, (V)vs[x], false);
+            else
+                map.computeIfAbsent(k, fn);
+        }
+
+        /**
+         * Inserts the keys with indices in order[lo..hi), which all
+         * belong in bin i, while holding the bin's lock.
+         *
+         * @return false if the bin has been moved to a new table
+         */
+        @SuppressWarnings("unchecked")
+        private boolean insertBin(int i, int lo, int hi) {
+            final Node<K,V>[] tab = this.tab;
+            final Function<? super K, ? extends V> fn = this.fn;
+            int binCount = 0;
+            for (Node<K,V> f; binCount == 0;) {
+                int fh;
+                if ((f = tabAt(tab, i)) == null && fn == null) {
+                    Node<K,V> first = null, last = null; // no lock needed
+                    int c = 0;
+                    for (int j = lo; j < hi; ++j) {
+                        int x = (int)order[j], h = hs[x];
+                        K k = (K)ks[x];
+                        Node<K,V> e = first;
+                        for (K ek; e != null; e = e.next) {
+                            if (e.hash == h &&
+                                ((ek = e.key) == k || k.equals(ek)))
+                                break;
+                        }
+                        if (e != null)
+                            e.val = (V)vs[x];
+                        else {
+                            e = new Node<K,V>(h, k, (V)vs[x], null);
+                            if (last == null)
+                                first = e;
+                            else
+                                last.next = e;
+                            last = e;
+                            ++c;
+                        }
+                    }
+                    if (casTabAt(tab, i, null, first)) {
+                        added += c;
+                        binCount = c;
+                    }
+                }
+                else if (f == null) {
+                    Node<K,V> r = new ReservationNode<K,V>();
+                    synchronized (r) {
+                        if (casTabAt(tab, i, null, r)) {
+                            Node<K,V> first = null, last = null;
+                            binCount = 1;
+                            try {
+                                for (int j = lo; j < hi; ++j) {
+                                    int x = (int)order[j], h = hs[x];
+                                    K k = (K)ks[x];
+                                    Node<K,V> e = first;
+                                    for (K ek; e != null; e = e.next) {
+                                        if (e.hash == h &&
+                                            ((ek = e.key) == k || k.equals(ek)))
+                                            break;
+                                    }
+                                    V v;
+                                    if (e != null) {
+                                        if (fn == null)
+                                            e.val = (V)vs[x];
+                                    }
+                                    else if ((v = (fn == null) ? (V)vs[x] :
+                                              fn.apply(k)) != null) {
+                                        e = new Node<K,V>(h, k, v, null);
+                                        if (last == null)
+                                            first = e;
+                                        else
+                                            last.next = e;
+                                        last = e;
+                                        ++added;
+                                        ++binCount;
+                                    }
+                                }
+                            } finally {
+                                setTabAt(tab, i, first);
+                            }
+                        }
+                    }
+                }
+                else if ((fh = f.hash) == MOVED)
+                    return false;
+                else {
+                    synchronized (f) {
+                        if (tabAt(tab, i) == f) {
+                            if (fh >= 0) {
+                                binCount = 1;
+                                for (int j = lo; j < hi; ++j) {
+                                    int x = (int)order[j], h = hs[x], c = 1;
+                                    K k = (K)ks[x];
+                                    for (Node<K,V> e = f;; ++c) {
+                                        K ek;
+                                        if (e.hash == h &&
+                                            ((ek = e.key) == k ||
+                                             (ek != null && k.equals(ek)))) {
+                                            if (fn == null)
+                                                e.val = (V)vs[x];
+                                            break;
+                                        }
+                                        Node<K,V> pred = e;
+                                        if ((e = e.next) == null) {
+                                            V v = (fn == null) ? (V)vs[x] :
+                                                fn.apply(k);
+                                            if (v != null) {
+                                                pred.next =
+                                                    new Node<K,V>(h, k, v, null);
+                                                ++added;
+                                                ++c;
+                                            }
+                                            break;
+                                        }
+                                    }
+                                    if (c > binCount)
+                                        binCount = c;
+                                }
+                            }
+                            else if (f instanceof TreeBin) {
+                                binCount = 2;
+                                TreeBin<K,V> t = (TreeBin<K,V>)f;
+                                for (int j = lo; j < hi; ++j) {
+                                    int x = (int)order[j], h = hs[x];
+                                    K k = (K)ks[x];
+                                    TreeNode<K,V> r, p; V v;
+                                    if (fn == null) {
+                                        v = (V)vs[x];
+                                        if ((p = t.putTreeVal(h, k, v)) != null)
+                                            p.val = v;
+                                        else
+                                            ++added;
+                                    }
+                                    else if (((r = t.root) == null ||
+                                              r.findTreeNode(h, k, null) == null) &&
+                                             (v = fn.apply(k)) != null) {
+                                        t.putTreeVal(h, k, v);
+                                        ++added;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            if (binCount >= TREEIFY_THRESHOLD)
+                map.treeifyBin(tab, i);
+            return true;
+        }
+    }
+
     // Unsafe mechanics
     private static final sun.misc.Unsafe U;
     private static final long SIZECTL;
@@ -803,7 +803,15 @@ public class ConcurrentLinkedQueue<E> extends AbstractQueue<E>
         tail = t;
     }
 
-    /** A customized variant of Spliterators.IteratorSpliterator */
+    /**
+     * A customized variant of Spliterators.IteratorSpliterator.
+     *
+     * The size of the queue is unknown (size() is a full traversal),
+     * so splits copy batches that double in size, starting from the
+     * common pool parallelism. The i-th split thus covers about half
+     * of what has been seen so far, and the final array batches,
+     * which split evenly, hold most of the elements.
+     */
     static final class CLQSpliterator<E> implements Spliterator<E> {
         static final int MAX_BATCH = 1 << 25;  // max batch array size;
         final ConcurrentLinkedQueue<E> queue;
@@ -818,7 +826,8 @@ public class ConcurrentLinkedQueue<E> extends AbstractQueue<E>
             Node<E> p;
             final ConcurrentLinkedQueue<E> q = this.queue;
             int b = batch;
-            int n = (b <= 0) ? 1 : (b >= MAX_BATCH) ? MAX_BATCH : b + 1;
+            int n = (b <= 0) ? ForkJoinPool.getCommonPoolParallelism() :
+                (b >= MAX_BATCH >>> 1) ? MAX_BATCH : b << 1;
             if (!exhausted &&
                 ((p = current) != null || (p = q.first()) != null) &&
                 p.next != null) {
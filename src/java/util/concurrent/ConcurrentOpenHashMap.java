@@ -0,0 +1,1002 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A hash table supporting full concurrency of retrievals and updates
+ * that, unlike {@link ConcurrentHashMap}, stores its keys and values
+ * directly in an open-addressed array rather than in a node object
+ * per mapping.  A mapping occupies two array elements and a cached
+ * hash code, so large maps need substantially less memory and far
+ * fewer objects than a {@code ConcurrentHashMap} of the same size.
+ *
+ * <p>Retrievals never block and never write to shared memory, except
+ * to help complete a resize in progress.  Insertions and removals are
+ * lock-free, using compare-and-swap on the affected array elements.
+ * Removals leave the key in place and mark its value as deleted, and
+ * the key's slot is reused if the key is re-inserted; slots of
+ * deleted keys are reclaimed when the table is next resized.  Resizes
+ * copy the table incrementally: threads accessing the map while a
+ * resize is in progress each copy part of the table, and keep using
+ * the old table for the parts not yet copied.
+ *
+ * <p>As with {@code ConcurrentHashMap}, an update operation for a
+ * given key bears a <em>happens-before</em> relation with any
+ * (non-null) retrieval for that key reporting the updated value.
+ * Iterators and the results of aggregate status methods such as
+ * {@code size} and {@code containsValue} reflect the state of the map
+ * at some point at or since their creation or invocation, and
+ * iterators do not throw {@link
+ * java.util.ConcurrentModificationException}.  Creating an iterator
+ * while the table is being resized first completes the resize.
+ *
+ * <p>This class and its views and iterators implement all of the
+ * <em>optional</em> methods of the {@link Map} and {@link Iterator}
+ * interfaces.  The {@link ConcurrentMap} methods {@code compute},
+ * {@code merge} and the like are implemented by retrying {@code
+ * putIfAbsent}, {@code replace} and {@code remove}, so unlike those
+ * of {@code ConcurrentHashMap}, their functions may be invoked more
+ * than once.  Like {@link java.util.Hashtable} but unlike {@link java.util.HashMap},
+ * this class does <em>not</em> allow {@code null} to be used as a key
+ * or value.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @since 1.8
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public class ConcurrentOpenHashMap<K,V> extends AbstractMap<K,V>
+    implements ConcurrentMap<K,V>, Serializable {
+    private static final long serialVersionUID = 4437260862913845517L;
+
+    /*
+     * Overview:
+     *
+     * The table is an array holding keys at even and values at odd
+     * indices, probed linearly.  A key slot, once claimed by CAS
+     * from null, never holds another key in that table, so readers
+     * need no locking: they probe until they find the key or a null
+     * key slot.  Values are replaced by CAS; a removal CASes the
+     * value to TOMBSTONE.
+     *
+     * Resizing follows the scheme of Cliff Click's NonBlockingHashMap.
+     * A thread that finds the table too full creates a new table and
+     * links it from the old one's "next" field.  Each old slot is
+     * then copied by (1) CASing a null key to TOMBSTONE, so that no
+     * key can be inserted there any more, (2) boxing the value in a
+     * Prime, after which the old value can no longer change, (3)
+     * inserting the unboxed value into the new table unless a value
+     * is already present there, and (4) replacing the Prime with
+     * TOMBPRIME.  Any thread that finds a Prime completes the copy
+     * of that slot and retries in the new table.  Threads that probe
+     * past a TOMBSTONE key, or past the reprobe limit, continue in
+     * the new table.  A null key slot is therefore a definite miss in
+     * every table: a key is only inserted into a newer table after
+     * its probe sequence in the older one was closed off.
+     *
+     * Threads operating on the map also copy chunks of the oldest
+     * table being copied.  Copy counts are maintained so that
+     * exactly one thread accounts for each slot, and the map's
+     * table is advanced to the next table when all slots have been
+     * copied.
+     *
+     * The size is a LongAdder shared by all the tables of a resize
+     * chain.  clear() removes mappings one slot at a time, as
+     * ConcurrentHashMap.clear does per bin, rather than installing a
+     * new table, so that concurrent insertions are never lost.
+     */
+
+    /** The smallest table capacity; must be a power of two. */
+    static final int MIN_CAPACITY = 16;
+
+    /** The largest table capacity, so that the table fits an array. */
+    static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    /** The base number of probes before switching to a new table. */
+    static final int REPROBE_LIMIT = 10;
+
+    /** The number of slots a thread copies per chunk while resizing. */
+    static final int COPY_CHUNK = 1 << 10;
+
+    /** The value of a removed mapping, and the key of a closed slot. */
+    static final Object TOMBSTONE = new Object();
+
+    /** Box marking a value that is being copied to the next table. */
+    static final class Prime {
+        final Object value;
+        Prime(Object value) { this.value = value; }
+    }
+
+    /** Value of a slot that has been copied, or needed no copy. */
+    static final Prime TOMBPRIME = new Prime(TOMBSTONE);
+
+    /** Expected value for putIfMatch matching any state. */
+    static final Object NO_MATCH_OLD = new Object();
+
+    /** Expected value for putIfMatch matching any present value. */
+    static final Object MATCH_ANY = new Object();
+
+    /** A table, and its links to the rest of the resize chain. */
+    static final class Table {
+        final Object[] kvs;     // keys and values
+        final int[] hashes;     // cached hashes, or 0 if not yet set
+        final LongAdder size;   // number of mappings in the chain
+        final LongAdder slots = new LongAdder(); // claimed key slots
+        volatile Table next;    // table being copied into, if any
+        volatile int copyIndex; // next chunk to copy
+        volatile int copyDone;  // number of slots copied
+        Table(int capacity, LongAdder size) {
+            this.kvs = new Object[capacity << 1];
+            this.hashes = new int[capacity];
+            this.size = size;
+        }
+    }
+
+    /** The current (oldest) table. */
+    transient volatile Table table;
+
+    // views
+    private transient KeySetView<K,V> keySet;
+    private transient ValuesView<K,V> values;
+    private transient EntrySetView<K,V> entrySet;
+
+    /**
+     * Creates a new, empty map with the default initial table size.
+     */
+    public ConcurrentOpenHashMap() {
+        table = new Table(MIN_CAPACITY, new LongAdder());
+    }
+
+    /**
+     * Creates a new, empty map with an initial table size
+     * accommodating the specified number of elements without the
+     * need to dynamically resize.
+     *
+     * @param initialCapacity the initial capacity
+     * @throws IllegalArgumentException if the initial capacity
+     *         of elements is negative
+     */
+    public ConcurrentOpenHashMap(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException();
+        table = new Table(capacityFor(initialCapacity), new LongAdder());
+    }
+
+    /**
+     * Creates a new map with the same mappings as the given map.
+     *
+     * @param m the map
+     * @throws NullPointerException if the specified map is null
+     *         or contains null keys or values
+     */
+    public ConcurrentOpenHashMap(Map<? extends K, ? extends V> m) {
+        this(m.size());
+        putAll(m);
+    }
+
+    /**
+     * Returns a table capacity holding the given number of elements
+     * below the resize threshold of three quarters full.
+     */
+    static int capacityFor(long n) {
+        long c = MIN_CAPACITY, m = n + (n >>> 1) + 1;
+        while (c < m && c < MAXIMUM_CAPACITY)
+            c <<= 1;
+        return (int)c;
+    }
+
+    static int hash(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h == 0) ? 1 : h;    // 0 marks an unset cached hash
+    }
+
+    static int reprobeLimit(int capacity) {
+        return REPROBE_LIMIT + (capacity >>> 4);
+    }
+
+    static boolean keyEq(Object k, Object key, int[] hashes, int i, int h) {
+        int kh;
+        return k == key ||
+            (k != TOMBSTONE && ((kh = hashes[i]) == 0 || kh == h) &&
+             key.equals(k));
+    }
+
+    static boolean matches(Object v, Object expVal) {
+        if (expVal == NO_MATCH_OLD)
+            return true;
+        if (expVal == null)     // copying: only into an empty slot
+            return v == null;
+        if (expVal == TOMBSTONE)
+            return v == null || v == TOMBSTONE;
+        if (expVal == MATCH_ANY)
+            return v != null && v != TOMBSTONE;
+        return v == expVal || (v != null && v != TOMBSTONE && expVal.equals(v));
+    }
+
+    /*
+     * Volatile access methods for table slots.
+     */
+
+    static Object keyAt(Object[] kvs, int i) {
+        return U.getObjectVolatile(kvs, ((long)i << (ASHIFT + 1)) + ABASE);
+    }
+
+    static Object valAt(Object[] kvs, int i) {
+        return U.getObjectVolatile(kvs, ((long)i << (ASHIFT + 1)) + VBASE);
+    }
+
+    static boolean casKey(Object[] kvs, int i, Object c, Object v) {
+        return U.compareAndSwapObject(kvs, ((long)i << (ASHIFT + 1)) + ABASE,
+                                      c, v);
+    }
+
+    static boolean casVal(Object[] kvs, int i, Object c, Object v) {
+        return U.compareAndSwapObject(kvs, ((long)i << (ASHIFT + 1)) + VBASE,
+                                      c, v);
+    }
+
+    // Core operations
+
+    /**
+     * Returns the value for the key, or null if absent.
+     */
+    final Object getImpl(Table t, Object key, int h) {
+        outer: for (;;) {
+            final Object[] kvs = t.kvs;
+            final int[] hs = t.hashes;
+            int n = hs.length, mask = n - 1, i = h & mask, reprobes = 0;
+            for (;;) {
+                Object k = keyAt(kvs, i), v = valAt(kvs, i);
+                if (k == null)
+                    return null;
+                Table nt = t.next;      // read after v, see Overview
+                if (keyEq(k, key, hs, i, h)) {
+                    if (!(v instanceof Prime))
+                        return (v == TOMBSTONE) ? null : v;
+                    t = copySlotAndCheck(t, i, true);
+                    continue outer;
+                }
+                if (++reprobes >= reprobeLimit(n) || k == TOMBSTONE) {
+                    if (nt == null)
+                        return null;
+                    helpCopy();
+                    t = nt;
+                    continue outer;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+    }
+
+    /**
+     * Sets the value for the key to putval, which is TOMBSTONE for a
+     * removal, if its current value matches expVal, which is either
+     * an actual value or one of NO_MATCH_OLD (always), MATCH_ANY (if
+     * present), TOMBSTONE (if absent) or null (copying; if the slot
+     * was never written).
+     *
+     * @return the previous value, which is null or TOMBSTONE if absent
+     */
+    final Object putIfMatch(Table t, Object key, int h,
+                            Object putval, Object expVal) {
+        for (;;) {
+            final Object[] kvs = t.kvs;
+            final int[] hs = t.hashes;
+            int n = hs.length, mask = n - 1, i = h & mask, reprobes = 0;
+            Object k, v;
+            Table nt = null;
+            for (;;) {                  // find or claim the key's slot
+                v = valAt(kvs, i);
+                k = keyAt(kvs, i);
+                if (k == null) {
+                    if (putval == TOMBSTONE)
+                        return null;    // removing an absent key
+                    if (expVal != NO_MATCH_OLD && expVal != TOMBSTONE &&
+                        expVal != null)
+                        return null;    // replacing an absent key
+                    if (casKey(kvs, i, null, key)) {
+                        hs[i] = h;
+                        t.slots.increment();
+                        break;
+                    }
+                    k = keyAt(kvs, i);  // lost race; k is now non-null
+                }
+                if (keyEq(k, key, hs, i, h))
+                    break;
+                if (++reprobes >= reprobeLimit(n) || k == TOMBSTONE) {
+                    nt = resize(t);     // closed or full; use next table
+                    if (expVal != null)
+                        helpCopy();
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+            if (nt != null) {
+                t = nt;
+                continue;
+            }
+            if (putval == v)
+                return v;
+            if ((nt = t.next) == null &&
+                ((v == null && reprobes > 1 && isFull(t)) ||
+                 v instanceof Prime))
+                nt = resize(t);
+            if (nt == null) {
+                for (;;) {
+                    if (!matches(v, expVal))
+                        return v;
+                    if (casVal(kvs, i, v, putval)) {
+                        if (expVal != null) {
+                            boolean was = (v != null && v != TOMBSTONE);
+                            boolean now = (putval != TOMBSTONE);
+                            if (was != now)
+                                t.size.add(now ? 1L : -1L);
+                        }
+                        return v;
+                    }
+                    if ((v = valAt(kvs, i)) instanceof Prime)
+                        break;
+                }
+            }
+            t = copySlotAndCheck(t, i, expVal != null);
+        }
+    }
+
+    /** Returns true if three quarters of the table's slots are claimed. */
+    static boolean isFull(Table t) {
+        int n = t.hashes.length;
+        return t.slots.sum() >= n - (n >>> 2);
+    }
+
+    /**
+     * Returns the next table of t, creating it if necessary.
+     */
+    final Table resize(Table t) {
+        Table nt;
+        if ((nt = t.next) != null)
+            return nt;
+        int n = t.hashes.length, nn = n;
+        long sz = t.size.sum();
+        if (sz >= (n >>> 2))            // else mostly removed mappings
+            nn = n << 1;
+        if (sz >= (n >>> 1))
+            nn = n << 2;
+        if (nn > MAXIMUM_CAPACITY || nn <= 0)
+            nn = MAXIMUM_CAPACITY;
+        if ((nt = t.next) != null)      // recheck before allocating
+            return nt;
+        nt = new Table(nn, t.size);
+        return U.compareAndSwapObject(t, NEXT, null, nt) ? nt : t.next;
+    }
+
+    /**
+     * Copies a chunk of the oldest table being copied, if any.
+     */
+    final void helpCopy() {
+        Table t = table, nt;
+        if ((nt = t.next) != null) {
+            int n = t.hashes.length, i;
+            while ((i = t.copyIndex) < n) {
+                if (U.compareAndSwapInt(t, COPYINDEX, i, i + COPY_CHUNK)) {
+                    int work = 0, end = Math.min(n, i + COPY_CHUNK);
+                    for (int j = i; j < end; ++j) {
+                        if (copySlot(t, j, nt))
+                            ++work;
+                    }
+                    copyCheckAndPromote(t, work);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies slot i of t, which has a next table, and helps with the
+     * resize if asked to.
+     *
+     * @return the next table
+     */
+    final Table copySlotAndCheck(Table t, int i, boolean shouldHelp) {
+        Table nt = t.next;
+        if (copySlot(t, i, nt))
+            copyCheckAndPromote(t, 1);
+        if (shouldHelp)
+            helpCopy();
+        return nt;
+    }
+
+    /**
+     * Records work copied slots of t, and advances the map's table
+     * past tables that have been completely copied.
+     */
+    final void copyCheckAndPromote(Table t, int work) {
+        if (work > 0)
+            U.getAndAddInt(t, COPYDONE, work);
+        Table top, nt;
+        while ((nt = (top = table).next) != null &&
+               top.copyDone >= top.hashes.length)
+            U.compareAndSwapObject(this, TABLE, top, nt);
+    }
+
+    /**
+     * Copies slot i of t into nt, as described in the Overview.
+     *
+     * @return true if this call completed the copy of the slot
+     */
+    final boolean copySlot(Table t, int i, Table nt) {
+        final Object[] kvs = t.kvs;
+        Object k;
+        while ((k = keyAt(kvs, i)) == null)
+            casKey(kvs, i, null, TOMBSTONE);
+        Object v = valAt(kvs, i);
+        while (!(v instanceof Prime)) {
+            Prime box = (v == null || v == TOMBSTONE) ? TOMBPRIME : new Prime(v);
+            if (casVal(kvs, i, v, box)) {
+                if (box == TOMBPRIME)
+                    return true;        // nothing to copy
+                v = box;
+                break;
+            }
+            v = valAt(kvs, i);
+        }
+        if (v == TOMBPRIME)
+            return false;               // copied by another thread
+        int h = t.hashes[i];
+        boolean copied =
+            putIfMatch(nt, k, (h != 0) ? h : hash(k),
+                       ((Prime)v).value, null) == null;
+        while (v != TOMBPRIME && !casVal(kvs, i, v, TOMBPRIME))
+            v = valAt(kvs, i);
+        return copied;
+    }
+
+    /**
+     * Completes any resize in progress, returning a table holding
+     * all current mappings, for use in traversals.
+     */
+    final Table snapshot() {
+        Table t = table;
+        for (Table nt; (nt = t.next) != null; t = nt) {
+            int work = 0;
+            for (int i = 0, n = t.hashes.length; i < n; ++i) {
+                if (copySlot(t, i, nt))
+                    ++work;
+            }
+            copyCheckAndPromote(t, work);
+        }
+        return t;
+    }
+
+    // Public operations
+
+    /**
+     * Returns the number of key-value mappings in this map.  If the
+     * map contains more than {@code Integer.MAX_VALUE} elements,
+     * returns {@code Integer.MAX_VALUE}.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        long n = table.size.sum();
+        return ((n < 0L) ? 0 :
+                (n > (long)Integer.MAX_VALUE) ? Integer.MAX_VALUE :
+                (int)n);
+    }
+
+    /**
+     * Returns the number of mappings, which may exceed the range of
+     * {@code int}.  The value returned is an estimate; the actual
+     * count may differ if there are concurrent insertions or
+     * removals.
+     *
+     * @return the number of mappings
+     */
+    public long mappingCount() {
+        long n = table.size.sum();
+        return (n < 0L) ? 0L : n;
+    }
+
+    public boolean isEmpty() {
+        return table.size.sum() <= 0L;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return (V)getImpl(table, key, hash(key));
+    }
+
+    /**
+     * Tests if the specified object is a key in this table.
+     *
+     * @param  key possible key
+     * @return {@code true} if and only if the specified object
+     *         is a key in this table, as determined by the
+     *         {@code equals} method; {@code false} otherwise
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean containsKey(Object key) {
+        return getImpl(table, key, hash(key)) != null;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value. Note: This method requires a full traversal
+     * of the map, and is much slower than method {@code containsKey}.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the
+     *         specified value
+     * @throws NullPointerException if the specified value is null
+     */
+    public boolean containsValue(Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        for (Iterator<V> it = new ValueIterator<K,V>(this); it.hasNext(); ) {
+            V v = it.next();
+            if (v == value || value.equals(v))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the previous value, converting absence to null.
+     */
+    @SuppressWarnings("unchecked")
+    private V put(Object key, Object putval, Object expVal) {
+        if (key == null || putval == null)
+            throw new NullPointerException();
+        Object v = putIfMatch(table, key, hash(key), putval, expVal);
+        return (v == TOMBSTONE) ? null : (V)v;
+    }
+
+    /**
+     * Maps the specified key to the specified value in this table.
+     * Neither the key nor the value can be null.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V put(K key, V value) {
+        return put(key, value, NO_MATCH_OLD);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, TOMBSTONE);
+    }
+
+    /**
+     * Removes the key (and its corresponding value) from this map.
+     * This method does nothing if the key is not in the map.
+     *
+     * @param  key the key that needs to be removed
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        return put(key, TOMBSTONE, NO_MATCH_OLD);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        return value != null && value.equals(put(key, TOMBSTONE, value));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null)
+            throw new NullPointerException();
+        return oldValue.equals(put(key, newValue, oldValue));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        return put(key, value, MATCH_ANY);
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this one.
+     * These mappings replace any mappings that this map had for any of the
+     * keys currently in the specified map.
+     *
+     * @param m mappings to be stored in this map
+     */
+    public void putAll(Map<? extends K, ? extends V> m) {
+        Table t = table;
+        int n = t.hashes.length;
+        if (t.next == null && m.size() > (n >>> 1)) {
+            int c = capacityFor(t.size.sum() + m.size());
+            if (c > n) {                // presize
+                Table nt = new Table(c, t.size);
+                if (U.compareAndSwapObject(t, NEXT, null, nt))
+                    helpCopy();
+            }
+        }
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+            put(e.getKey(), e.getValue());
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        Table t = snapshot();
+        final Object[] kvs = t.kvs;
+        final int[] hs = t.hashes;
+        for (int i = 0, n = hs.length; i < n; ++i) {
+            Object k = keyAt(kvs, i), v = valAt(kvs, i);
+            if (k != null && k != TOMBSTONE && v != null && v != TOMBSTONE) {
+                int h = hs[i];
+                putIfMatch(t, k, (h != 0) ? h : hash(k), TOMBSTONE, MATCH_ANY);
+            }
+        }
+    }
+
+    /**
+     * Returns a {@link Set} view of the keys contained in this map.
+     * The set is backed by the map, so changes to the map are
+     * reflected in the set, and vice-versa.  The set supports
+     * element removal, but not addition.
+     *
+     * @return the set view
+     */
+    public Set<K> keySet() {
+        KeySetView<K,V> ks;
+        return (ks = keySet) != null ? ks : (keySet = new KeySetView<K,V>(this));
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in
+     * this map.  The collection is backed by the map, so changes to
+     * the map are reflected in the collection, and vice-versa.  The
+     * collection supports element removal, but not addition.
+     *
+     * @return the collection view
+     */
+    public Collection<V> values() {
+        ValuesView<K,V> vs;
+        return (vs = values) != null ? vs : (values = new ValuesView<K,V>(this));
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this
+     * map.  The set is backed by the map, so changes to the map are
+     * reflected in the set, and vice-versa.  The set supports element
+     * removal, but not addition.
+     *
+     * @return the set view
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        EntrySetView<K,V> es;
+        return (es = entrySet) != null ? es : (entrySet = new EntrySetView<K,V>(this));
+    }
+
+    // Iterators and views
+
+    /**
+     * Base of iterators, traversing a snapshot table.  Values that
+     * have been primed by a later resize are looked up again.
+     */
+    abstract static class BaseIterator<K,V> {
+        final ConcurrentOpenHashMap<K,V> map;
+        final Table t;
+        int index;
+        K nextKey, lastKey;
+        V nextVal;
+
+        BaseIterator(ConcurrentOpenHashMap<K,V> map) {
+            this.map = map;
+            this.t = map.snapshot();
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        final void advance() {
+            final Object[] kvs = t.kvs;
+            for (int n = t.hashes.length; index < n; ) {
+                int i = index++;
+                Object k = keyAt(kvs, i), v;
+                if (k == null || k == TOMBSTONE)
+                    continue;
+                if ((v = valAt(kvs, i)) instanceof Prime)
+                    v = map.get(k);
+                if (v != null && v != TOMBSTONE) {
+                    nextKey = (K)k;
+                    nextVal = (V)v;
+                    return;
+                }
+            }
+            nextKey = null;
+            nextVal = null;
+        }
+
+        public final boolean hasNext() {
+            return nextKey != null;
+        }
+
+        final K nextKey() {
+            K k;
+            if ((k = nextKey) == null)
+                throw new NoSuchElementException();
+            lastKey = k;
+            return k;
+        }
+
+        public final void remove() {
+            K k;
+            if ((k = lastKey) == null)
+                throw new IllegalStateException();
+            lastKey = null;
+            map.remove(k);
+        }
+    }
+
+    static final class KeyIterator<K,V> extends BaseIterator<K,V>
+        implements Iterator<K> {
+        KeyIterator(ConcurrentOpenHashMap<K,V> map) { super(map); }
+        public K next() {
+            K k = nextKey();
+            advance();
+            return k;
+        }
+    }
+
+    static final class ValueIterator<K,V> extends BaseIterator<K,V>
+        implements Iterator<V> {
+        ValueIterator(ConcurrentOpenHashMap<K,V> map) { super(map); }
+        public V next() {
+            nextKey();
+            V v = nextVal;
+            advance();
+            return v;
+        }
+    }
+
+    static final class EntryIterator<K,V> extends BaseIterator<K,V>
+        implements Iterator<Map.Entry<K,V>> {
+        EntryIterator(ConcurrentOpenHashMap<K,V> map) { super(map); }
+        public Map.Entry<K,V> next() {
+            K k = nextKey();
+            V v = nextVal;
+            advance();
+            return new MapEntry<K,V>(k, v, map);
+        }
+    }
+
+    /**
+     * Exported Entry for EntryIterator.
+     */
+    static final class MapEntry<K,V> implements Map.Entry<K,V> {
+        final K key; // non-null
+        V val;       // non-null
+        final ConcurrentOpenHashMap<K,V> map;
+        MapEntry(K key, V val, ConcurrentOpenHashMap<K,V> map) {
+            this.key = key;
+            this.val = val;
+            this.map = map;
+        }
+        public K getKey()        { return key; }
+        public V getValue()      { return val; }
+        public int hashCode()    { return key.hashCode() ^ val.hashCode(); }
+        public String toString() { return key + "=" + val; }
+
+        public boolean equals(Object o) {
+            Object k, v; Map.Entry<?,?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?,?>)o).getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    (k == key || k.equals(key)) &&
+                    (v == val || v.equals(val)));
+        }
+
+        /**
+         * Sets our entry's value and writes through to the map, as
+         * for ConcurrentHashMap.MapEntry.
+         */
+        public V setValue(V value) {
+            if (value == null) throw new NullPointerException();
+            V v = val;
+            val = value;
+            map.put(key, value);
+            return v;
+        }
+    }
+
+    static final class KeySetView<K,V> extends AbstractSet<K> {
+        final ConcurrentOpenHashMap<K,V> map;
+        KeySetView(ConcurrentOpenHashMap<K,V> map) { this.map = map; }
+        public Iterator<K> iterator()     { return new KeyIterator<K,V>(map); }
+        public int size()                 { return map.size(); }
+        public boolean isEmpty()          { return map.isEmpty(); }
+        public boolean contains(Object o) { return map.containsKey(o); }
+        public boolean remove(Object o)   { return map.remove(o) != null; }
+        public void clear()               { map.clear(); }
+    }
+
+    static final class ValuesView<K,V> extends AbstractCollection<V> {
+        final ConcurrentOpenHashMap<K,V> map;
+        ValuesView(ConcurrentOpenHashMap<K,V> map) { this.map = map; }
+        public Iterator<V> iterator()     { return new ValueIterator<K,V>(map); }
+        public int size()                 { return map.size(); }
+        public boolean isEmpty()          { return map.isEmpty(); }
+        public boolean contains(Object o) { return map.containsValue(o); }
+        public void clear()               { map.clear(); }
+    }
+
+    static final class EntrySetView<K,V> extends AbstractSet<Map.Entry<K,V>> {
+        final ConcurrentOpenHashMap<K,V> map;
+        EntrySetView(ConcurrentOpenHashMap<K,V> map) { this.map = map; }
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator<K,V>(map);
+        }
+        public int size()        { return map.size(); }
+        public boolean isEmpty() { return map.isEmpty(); }
+        public void clear()      { map.clear(); }
+
+        public boolean contains(Object o) {
+            Object k, v, r; Map.Entry<?,?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?,?>)o).getKey()) != null &&
+                    (r = map.get(k)) != null &&
+                    (v = e.getValue()) != null &&
+                    (v == r || v.equals(r)));
+        }
+
+        public boolean remove(Object o) {
+            Object k, v; Map.Entry<?,?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?,?>)o).getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    map.remove(k, v));
+        }
+    }
+
+    /**
+     * Saves the state of the {@code ConcurrentOpenHashMap} instance
+     * to a stream (i.e., serializes it).
+     * @param s the stream
+     * @throws java.io.IOException if an I/O error occurs
+     * @serialData
+     * the key (Object) and value (Object)
+     * for each key-value mapping, followed by a null pair.
+     * The key-value mappings are emitted in no particular order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        s.defaultWriteObject();
+        for (Iterator<Map.Entry<K,V>> it = new EntryIterator<K,V>(this);
+             it.hasNext(); ) {
+            Map.Entry<K,V> e = it.next();
+            s.writeObject(e.getKey());
+            s.writeObject(e.getValue());
+        }
+        s.writeObject(null);
+        s.writeObject(null);
+    }
+
+    /**
+     * Reconstitutes the instance from a stream (that is, deserializes it).
+     * @param s the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *         could not be found
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        table = new Table(MIN_CAPACITY, new LongAdder());
+        for (;;) {
+            K k = (K) s.readObject();
+            V v = (V) s.readObject();
+            if (k == null || v == null)
+                break;
+            put(k, v);
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long TABLE;
+    private static final long NEXT;
+    private static final long COPYINDEX;
+    private static final long COPYDONE;
+    private static final long ABASE;
+    private static final long VBASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = ConcurrentOpenHashMap.class;
+            TABLE = U.objectFieldOffset
+                (k.getDeclaredField("table"));
+            Class<?> tk = Table.class;
+            NEXT = U.objectFieldOffset
+                (tk.getDeclaredField("next"));
+            COPYINDEX = U.objectFieldOffset
+                (tk.getDeclaredField("copyIndex"));
+            COPYDONE = U.objectFieldOffset
+                (tk.getDeclaredField("copyDone"));
+            Class<?> ak = Object[].class;
+            ABASE = U.arrayBaseOffset(ak);
+            int scale = U.arrayIndexScale(ak);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            VBASE = ABASE + scale;
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Task counts and latency histograms for an executor.  Statistics
+ * are collected only while enabled, using {@link
+ * ThreadPoolExecutor#setStatisticsEnabled} or {@link
+ * ForkJoinPool#setStatisticsEnabled}, and are then available from
+ * the executor's {@code getStatistics} method.
+ *
+ * <p>All counters are {@link LongAdder}s, so recording a task adds
+ * only a few uncontended updates and two calls to {@link
+ * System#nanoTime} to its execution.
+ *
+ * @since 1.8
+ */
+public class ExecutorStatistics implements ExecutorStatisticsMXBean {
+
+    /** The number of buckets in each latency histogram. */
+    public static final int BUCKETS = 64;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final Histogram queueLatency = new Histogram();
+    private final Histogram executionLatency = new Histogram();
+
+    /**
+     * Creates statistics with all counts zero.
+     */
+    ExecutorStatistics() {}
+
+    /**
+     * A histogram with one bucket per power of two, along with
+     * the total of the recorded values for computing means.
+     */
+    static final class Histogram {
+        final LongAdder[] buckets = new LongAdder[BUCKETS];
+        final LongAdder total = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; ++i)
+                buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            if (nanos < 0L)     // nanoTime is only monotonic per thread
+                nanos = 0L;
+            buckets[64 - Long.numberOfLeadingZeros(nanos)].increment();
+            total.add(nanos);
+        }
+
+        long[] counts() {
+            long[] a = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; ++i)
+                a[i] = buckets[i].sum();
+            return a;
+        }
+
+        double mean() {
+            long n = 0L;
+            for (LongAdder b : buckets)
+                n += b.sum();
+            return (n == 0L) ? 0.0 : (double)total.sum() / n;
+        }
+
+        long percentile(double p) {
+            if (!(p >= 0.0 && p <= 100.0))
+                throw new IllegalArgumentException();
+            long[] a = counts();
+            long n = 0L;
+            for (long c : a)
+                n += c;
+            if (n == 0L)
+                return 0L;
+            long rank = (long)Math.ceil(n * (p / 100.0)), seen = 0L;
+            for (int i = 0; i < BUCKETS; ++i) {
+                if ((seen += a[i]) >= rank && seen > 0L)
+                    return (i == 0) ? 0L :
+                        (i == BUCKETS - 1) ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+            return Long.MAX_VALUE;
+        }
+
+        void reset() {
+            for (LongAdder b : buckets)
+                b.reset();
+            total.reset();
+        }
+    }
+
+    /**
+     * Wrapper recording when a task was queued, for executors that
+     * wrap submitted tasks anyway.  Records the queue latency when
+     * run.
+     */
+    static final class TimedTask implements Runnable {
+        final Runnable task;
+        final ExecutorStatistics statistics;
+        final long queuedAt;
+        TimedTask(Runnable task, ExecutorStatistics statistics) {
+            this.task = task;
+            this.statistics = statistics;
+            this.queuedAt = System.nanoTime();
+        }
+
+        public void run() {
+            statistics.queueLatency.record(System.nanoTime() - queuedAt);
+            task.run();
+        }
+    }
+
+    /**
+     * Callable analog of TimedTask, recording its queue latency when
+     * called.
+     */
+    static final class TimedCallable<T> implements Callable<T> {
+        final Callable<? extends T> callable;
+        final ExecutorStatistics statistics;
+        final long queuedAt;
+        TimedCallable(Callable<? extends T> callable,
+                      ExecutorStatistics statistics) {
+            this.callable = callable;
+            this.statistics = statistics;
+            this.queuedAt = System.nanoTime();
+        }
+
+        public T call() throws Exception {
+            statistics.queueLatency.record(System.nanoTime() - queuedAt);
+            return callable.call();
+        }
+    }
+
+    /**
+     * FutureTask recording when it was created, for executors that
+     * create the tasks they queue, using {@code newTaskFor}.  The
+     * executor records the queue latency when the task is run.
+     */
+    static final class TimedFutureTask<V> extends FutureTask<V> {
+        final long queuedAt = System.nanoTime();
+        TimedFutureTask(Callable<V> callable) {
+            super(callable);
+        }
+        TimedFutureTask(Runnable runnable, V result) {
+            super(runnable, result);
+        }
+    }
+
+    // Recording, used by executors
+
+    final void countSubmitted() {
+        submitted.increment();
+    }
+
+    /**
+     * Records the queue latency of a task that has been waiting to
+     * run for the given time, for executors that know it otherwise.
+     */
+    final void waited(long nanos) {
+        queueLatency.record(nanos);
+    }
+
+    final void executed(long nanos, boolean abrupt) {
+        executionLatency.record(nanos);
+        completed.increment();
+        if (abrupt)
+            failed.increment();
+    }
+
+    final void rejected() {
+        rejected.increment();
+    }
+
+    // MXBean methods
+
+    public long getSubmittedTaskCount() {
+        return submitted.sum();
+    }
+
+    public long getCompletedTaskCount() {
+        return completed.sum();
+    }
+
+    public long getFailedTaskCount() {
+        return failed.sum();
+    }
+
+    public long getRejectedTaskCount() {
+        return rejected.sum();
+    }
+
+    public long[] getQueueLatencyHistogram() {
+        return queueLatency.counts();
+    }
+
+    public long[] getExecutionLatencyHistogram() {
+        return executionLatency.counts();
+    }
+
+    public double getMeanQueueLatency() {
+        return queueLatency.mean();
+    }
+
+    public double getMeanExecutionLatency() {
+        return executionLatency.mean();
+    }
+
+    public long getQueueLatencyPercentile(double percentile) {
+        return queueLatency.percentile(percentile);
+    }
+
+    public long getExecutionLatencyPercentile(double percentile) {
+        return executionLatency.percentile(percentile);
+    }
+
+    public void reset() {
+        submitted.reset();
+        completed.reset();
+        failed.reset();
+        rejected.reset();
+        queueLatency.reset();
+        executionLatency.reset();
+    }
+
+    /**
+     * Returns a string summarizing these statistics.
+     *
+     * @return a string summarizing these statistics
+     */
+    public String toString() {
+        return super.toString() +
+            "[submitted = " + getSubmittedTaskCount() +
+            ", completed = " + getCompletedTaskCount() +
+            ", failed = " + getFailedTaskCount() +
+            ", rejected = " + getRejectedTaskCount() +
+            ", mean queue latency = " + (long)getMeanQueueLatency() +
+            "ns, mean execution latency = " + (long)getMeanExecutionLatency() +
+            "ns]";
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+/**
+ * The management interface for the task statistics of an executor,
+ * as maintained by {@link ExecutorStatistics}.  An
+ * {@code ExecutorStatistics} is an
+ * <a href="../../lang/management/ManagementFactory.html#MXBean">MXBean</a>
+ * and may be registered with the
+ * {@linkplain java.lang.management.ManagementFactory#getPlatformMBeanServer
+ * platform MBeanServer} under a name of the application's choosing.
+ *
+ * <p>Latencies are recorded in nanoseconds in histograms with one
+ * bucket per power of two: bucket {@code 0} counts latencies of zero,
+ * and bucket {@code i > 0} counts latencies {@code t} with
+ * {@code 2^(i-1) <= t < 2^i}.  Histograms have
+ * {@link ExecutorStatistics#BUCKETS} buckets.
+ *
+ * <p>All values are maintained without locking, so a set of values
+ * read while tasks are running need not be mutually consistent.
+ *
+ * @since 1.8
+ */
+public interface ExecutorStatisticsMXBean {
+    /**
+     * Returns the number of tasks submitted for execution since the
+     * statistics were enabled or last reset.
+     *
+     * @return the number of submitted tasks
+     */
+    long getSubmittedTaskCount();
+
+    /**
+     * Returns the number of tasks that have finished executing,
+     * normally or by throwing an exception.
+     *
+     * @return the number of completed tasks
+     */
+    long getCompletedTaskCount();
+
+    /**
+     * Returns the number of tasks that completed by throwing an
+     * exception.
+     *
+     * @return the number of failed tasks
+     */
+    long getFailedTaskCount();
+
+    /**
+     * Returns the number of tasks that were rejected.
+     *
+     * @return the number of rejected tasks
+     */
+    long getRejectedTaskCount();
+
+    /**
+     * Returns the histogram of the times that tasks spent queued
+     * before starting to run.  For a {@link ThreadPoolExecutor},
+     * only tasks it creates from those passed to {@code submit} and
+     * the like are recorded; for a {@link
+     * ScheduledThreadPoolExecutor}, this is the time from when each
+     * run of a task became due.
+     *
+     * @return the number of tasks in each bucket
+     */
+    long[] getQueueLatencyHistogram();
+
+    /**
+     * Returns the histogram of task running times.
+     *
+     * @return the number of tasks in each bucket
+     */
+    long[] getExecutionLatencyHistogram();
+
+    /**
+     * Returns the mean time in nanoseconds that tasks spent queued,
+     * or zero if none have been recorded.
+     *
+     * @return the mean queue latency
+     */
+    double getMeanQueueLatency();
+
+    /**
+     * Returns the mean task running time in nanoseconds, or zero if
+     * none have been recorded.
+     *
+     * @return the mean execution latency
+     */
+    double getMeanExecutionLatency();
+
+    /**
+     * Returns an upper bound, accurate to within a factor of two, on
+     * the given percentile of the queue latencies, in nanoseconds.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket holding the percentile,
+     *         or zero if no latencies have been recorded
+     * @throws IllegalArgumentException if the percentile is out of range
+     */
+    long getQueueLatencyPercentile(double percentile);
+
+    /**
+     * Returns an upper bound, accurate to within a factor of two, on
+     * the given percentile of the task running times, in nanoseconds.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket holding the percentile,
+     *         or zero if no latencies have been recorded
+     * @throws IllegalArgumentException if the percentile is out of range
+     */
+    long getExecutionLatencyPercentile(double percentile);
+
+    /**
+     * Resets all counts and histograms to zero.  This is only
+     * reliable when no tasks are being submitted or run.
+     */
+    void reset();
+}
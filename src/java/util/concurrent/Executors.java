@@ -113,6 +113,30 @@ public class Executors {
              null, true);
     }
 
+    /**
+     * Creates a thread pool that reuses a fixed number of threads
+     * operating off a shared unbounded {@link StripedBlockingQueue}.
+     * It behaves like {@link #newFixedThreadPool(int)}, except that
+     * each worker thread takes tasks from a queue of its own, and
+     * steals from the others' only when its own is empty, reducing
+     * contention when many threads submit and execute many short
+     * tasks.  Tasks are not necessarily started in the order they
+     * were submitted.
+     *
+     * @param nThreads the number of threads in the pool
+     * @return the newly created thread pool
+     * @throws IllegalArgumentException if {@code nThreads <= 0}
+     * @since 1.8
+     */
+    public static ExecutorService newStripedThreadPool(int nThreads) {
+        if (nThreads <= 0)
+            throw new IllegalArgumentException();
+        return new ThreadPoolExecutor(nThreads, nThreads,
+                                      0L, TimeUnit.MILLISECONDS,
+                                      new StripedBlockingQueue<Runnable>
+                                      (Math.min(nThreads, 1 << 16)));
+    }
+
     /**
      * Creates a work-stealing thread pool using all
      * {@link Runtime#availableProcessors available processors}
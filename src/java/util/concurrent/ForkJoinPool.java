@@ -45,6 +45,7 @@ import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadLocalRandom;
@@ -835,6 +836,23 @@ public class ForkJoinPool extends AbstractExecutorService {
             return (n >= 0) ? 0 : -n; // ignore transient negative
         }
 
+        /**
+         * Returns an estimate of the number of tasks in this queue,
+         * not counting PrioritySignals, by traversing it.
+         */
+        final int submissionCount() {
+            ForkJoinTask<?>[] a; int m, count = 0;
+            if ((a = array) != null && (m = a.length - 1) >= 0) {
+                for (int b = base, s = top; b - s < 0; ++b) {
+                    Object t = U.getObjectVolatile
+                        (a, ((m & b) << ASHIFT) + ABASE);
+                    if (t != null && !(t instanceof PrioritySignal))
+                        ++count;
+                }
+            }
+            return count;
+        }
+
         /**
          * Provides a more accurate estimate of whether this queue has
          * any tasks than does queueSize, by checking whether a
@@ -1053,7 +1071,17 @@ public class ForkJoinPool extends AbstractExecutorService {
         final void runTask(ForkJoinTask<?> task) {
             if (task != null) {
                 scanState &= ~SCANNING; // mark as busy
-                (currentSteal = task).doExec();
+                ForkJoinPool p = pool;
+                ExecutorStatistics stats = (p == null) ? null : p.statistics;
+                if (stats == null || task instanceof PrioritySignal)
+                    (currentSteal = task).doExec(); // signals time their task
+                else {
+                    long start = System.nanoTime();
+                    int s = (currentSteal = task).doExec();
+                    stats.executed(System.nanoTime() - start,
+                                   (s & ForkJoinTask.DONE_MASK) ==
+                                   ForkJoinTask.EXCEPTIONAL);
+                }
                 U.putOrderedObject(this, QCURRENTSTEAL, null); // release for GC
                 execLocalTasks();
                 ForkJoinWorkerThread thread = owner;
@@ -1396,6 +1424,10 @@ public class ForkJoinPool extends AbstractExecutorService {
     final UncaughtExceptionHandler ueh;  // per-worker UEH
     final String workerNamePrefix;       // to create worker name string
     volatile AtomicLong stealCounter;    // also used as sync monitor
+    volatile ExecutorStatistics statistics; // null unless enabled
+    volatile PriorityBlockingQueue<PrioritySubmission> prioritySubmissions;
+    volatile int priorityCount;          // approx size of prioritySubmissions
+    volatile long prioritySequence;      // FIFO order among equal priorities
 
     /**
      * Acquires the runState lock; returns current (locked) runState.
@@ -1719,6 +1751,9 @@ public class ForkJoinPool extends AbstractExecutorService {
             for (int origin = r & m, k = origin, oldSum = 0, checkSum = 0;;) {
                 WorkQueue q; ForkJoinTask<?>[] a; ForkJoinTask<?> t;
                 int b, n; long c;
+                if (k == origin && ss >= 0 && priorityCount > 0 &&
+                    (t = pollPrioritySubmission()) != null)
+                    return t;                         // prefer prioritized
                 if ((q = ws[k]) != null) {
                     if ((n = (b = q.base) - q.top) < 0 &&
                         (a = q.array) != null) {      // non-empty
@@ -2288,6 +2323,8 @@ public class ForkJoinPool extends AbstractExecutorService {
                     }
                 }
             }
+            if (pass > 0)
+                cancelPrioritySubmissions();
             if (checkSum != oldSum) {             // unstable
                 oldSum = checkSum;
                 pass = 0;
@@ -2325,6 +2362,9 @@ public class ForkJoinPool extends AbstractExecutorService {
             boolean move = false;
             if ((rs = runState) < 0) {
                 tryTerminate(false, false);     // help terminate
+                ExecutorStatistics stats = statistics;
+                if (stats != null)
+                    stats.rejected();
                 throw new RejectedExecutionException();
             }
             else if ((rs & STARTED) == 0 ||     // initialize
@@ -2397,7 +2437,9 @@ public class ForkJoinPool extends AbstractExecutorService {
      * @param task the task. Caller must ensure non-null.
      */
     final void externalPush(ForkJoinTask<?> task) {
-        WorkQueue[] ws; WorkQueue q; int m;
+        WorkQueue[] ws; WorkQueue q; int m; ExecutorStatistics stats;
+        if ((stats = statistics) != null)
+            stats.countSubmitted();
         int r = ThreadLocalRandom.getProbe();
         int rs = runState;
         if ((ws = workQueues) != null && (m = (ws.length - 1)) >= 0 &&
@@ -2419,6 +2461,120 @@ public class ForkJoinPool extends AbstractExecutorService {
         externalSubmit(task);
     }
 
+    // Prioritized submissions
+
+    /**
+     * A task submitted with a priority, ordered by decreasing
+     * priority, then increasing deadline, then submission order.
+     */
+    static final class PrioritySubmission
+        implements Comparable<PrioritySubmission> {
+        final ForkJoinTask<?> task;
+        final int priority;
+        final long deadline;             // System.nanoTime based
+        final boolean hasDeadline;
+        final long seq;
+        PrioritySubmission(ForkJoinTask<?> task, int priority,
+                           long deadline, boolean hasDeadline, long seq) {
+            this.task = task; this.priority = priority;
+            this.deadline = deadline; this.hasDeadline = hasDeadline;
+            this.seq = seq;
+        }
+        public int compareTo(PrioritySubmission o) {
+            if (priority != o.priority)
+                return (priority > o.priority) ? -1 : 1;
+            if (hasDeadline != o.hasDeadline)
+                return hasDeadline ? -1 : 1;
+            long d;
+            if (hasDeadline && (d = deadline - o.deadline) != 0L)
+                return (d < 0L) ? -1 : 1;
+            return (seq < o.seq) ? -1 : (seq == o.seq) ? 0 : 1;
+        }
+    }
+
+    /**
+     * Placeholder pushed as an ordinary submission for each
+     * prioritized submission.  Prioritized tasks are held outside of
+     * the work queues, where workers look for them before scanning
+     * others, so these signals exist only to engage the usual
+     * activation, quiescence and termination machinery; when run,
+     * each executes one prioritized task if any remain.  Since there
+     * are as many signals as submissions, none are stranded.
+     */
+    @SuppressWarnings("serial")
+    static final class PrioritySignal extends ForkJoinTask<Void> {
+        final ForkJoinPool pool;
+        PrioritySignal(ForkJoinPool pool) { this.pool = pool; }
+        public final Void getRawResult() { return null; }
+        public final void setRawResult(Void v) { }
+        public final boolean exec() {
+            ForkJoinTask<?> t = pool.pollPrioritySubmission();
+            if (t != null) {
+                ExecutorStatistics stats = pool.statistics;
+                if (stats == null)
+                    t.doExec();
+                else {
+                    long start = System.nanoTime();
+                    int s = t.doExec();
+                    stats.executed(System.nanoTime() - start,
+                                   (s & ForkJoinTask.DONE_MASK) ==
+                                   ForkJoinTask.EXCEPTIONAL);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Adds a prioritized submission, and a signal for it.
+     */
+    private void prioritizedPush(ForkJoinTask<?> task, int priority,
+                                 long deadline, boolean hasDeadline) {
+        PriorityBlockingQueue<PrioritySubmission> q;
+        if ((q = prioritySubmissions) == null) {
+            U.compareAndSwapObject(this, PRIORITYSUBMISSIONS, null,
+                                   new PriorityBlockingQueue<PrioritySubmission>());
+            q = prioritySubmissions;
+        }
+        if (runState < 0) {
+            ExecutorStatistics stats = statistics;
+            if (stats != null)
+                stats.rejected();
+            throw new RejectedExecutionException();
+        }
+        PrioritySubmission e = new PrioritySubmission
+            (task, priority, deadline, hasDeadline,
+             U.getAndAddLong(this, PRIORITYSEQUENCE, 1L));
+        q.offer(e);
+        U.getAndAddInt(this, PRIORITYCOUNT, 1);
+        try {
+            externalPush(new PrioritySignal(this));
+        } catch (Throwable ex) {         // back out if rejected
+            if (q.remove(e))
+                U.getAndAddInt(this, PRIORITYCOUNT, -1);
+            throw ex;
+        }
+    }
+
+    /**
+     * Removes and returns the highest priority prioritized
+     * submission, if any.
+     */
+    final ForkJoinTask<?> pollPrioritySubmission() {
+        PriorityBlockingQueue<PrioritySubmission> q; PrioritySubmission e;
+        if (priorityCount <= 0 || (q = prioritySubmissions) == null ||
+            (e = q.poll()) == null)
+            return null;
+        U.getAndAddInt(this, PRIORITYCOUNT, -1);
+        return e.task;
+    }
+
+    /** Cancels prioritized submissions upon termination. */
+    private void cancelPrioritySubmissions() {
+        for (ForkJoinTask<?> t; (t = pollPrioritySubmission()) != null; )
+            ForkJoinTask.cancelIgnoringExceptions(t);
+    }
+
     /**
      * Returns common pool queue for an external thread.
      */
@@ -2644,7 +2800,7 @@ public class ForkJoinPool extends AbstractExecutorService {
         if (task instanceof ForkJoinTask<?>) // avoid re-wrap
             job = (ForkJoinTask<?>) task;
         else
-            job = new ForkJoinTask.RunnableExecuteAction(task);
+            job = new ForkJoinTask.RunnableExecuteAction(timed(task));
         externalPush(job);
     }
 
@@ -2665,13 +2821,69 @@ public class ForkJoinPool extends AbstractExecutorService {
         return task;
     }
 
+    /**
+     * Submits a ForkJoinTask for execution ahead of ordinary
+     * submissions.  Workers look for prioritized submissions,
+     * highest priority first, before taking other submissions or
+     * stealing, so latency-sensitive tasks need not queue behind
+     * bulk computations.  Once started, a task's own subtasks are
+     * processed in the usual order, and running tasks are not
+     * preempted, so a prioritized task may still wait for a worker
+     * to finish its current task.
+     *
+     * @param task the task to submit
+     * @param priority the priority of the task; prioritized
+     * submissions with larger values are taken first
+     * @param <T> the type of the task's result
+     * @return the task
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     * @since 1.8
+     */
+    public <T> ForkJoinTask<T> submit(ForkJoinTask<T> task, int priority) {
+        if (task == null)
+            throw new NullPointerException();
+        prioritizedPush(task, priority, 0L, false);
+        return task;
+    }
+
+    /**
+     * Submits a ForkJoinTask for execution ahead of ordinary
+     * submissions, as with {@link #submit(ForkJoinTask, int)}, to be
+     * completed within the given time.  Among prioritized
+     * submissions of equal priority, those with deadlines are taken
+     * first, earliest deadline first.  Deadlines only order tasks:
+     * a task is run even if its deadline has passed.
+     *
+     * @param task the task to submit
+     * @param priority the priority of the task; prioritized
+     * submissions with larger values are taken first
+     * @param timeout the time from now by which the task should run
+     * @param unit the time unit of the timeout argument
+     * @param <T> the type of the task's result
+     * @return the task
+     * @throws NullPointerException if the task or unit is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     * @since 1.8
+     */
+    public <T> ForkJoinTask<T> submit(ForkJoinTask<T> task, int priority,
+                                      long timeout, TimeUnit unit) {
+        if (task == null)
+            throw new NullPointerException();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        prioritizedPush(task, priority, deadline, true);
+        return task;
+    }
+
     /**
      * @throws NullPointerException if the task is null
      * @throws RejectedExecutionException if the task cannot be
      *         scheduled for execution
      */
     public <T> ForkJoinTask<T> submit(Callable<T> task) {
-        ForkJoinTask<T> job = new ForkJoinTask.AdaptedCallable<T>(task);
+        ForkJoinTask<T> job = new ForkJoinTask.AdaptedCallable<T>(timed(task));
         externalPush(job);
         return job;
     }
@@ -2682,7 +2894,8 @@ public class ForkJoinPool extends AbstractExecutorService {
      *         scheduled for execution
      */
     public <T> ForkJoinTask<T> submit(Runnable task, T result) {
-        ForkJoinTask<T> job = new ForkJoinTask.AdaptedRunnable<T>(task, result);
+        ForkJoinTask<T> job =
+            new ForkJoinTask.AdaptedRunnable<T>(timed(task), result);
         externalPush(job);
         return job;
     }
@@ -2699,11 +2912,31 @@ public class ForkJoinPool extends AbstractExecutorService {
         if (task instanceof ForkJoinTask<?>) // avoid re-wrap
             job = (ForkJoinTask<?>) task;
         else
-            job = new ForkJoinTask.AdaptedRunnableAction(task);
+            job = new ForkJoinTask.AdaptedRunnableAction(timed(task));
         externalPush(job);
         return job;
     }
 
+    /**
+     * Returns the given task, wrapped to record its queue latency
+     * if statistics are enabled.
+     */
+    private Runnable timed(Runnable task) {
+        ExecutorStatistics stats = statistics;
+        return (stats == null || task == null) ? task :
+            new ExecutorStatistics.TimedTask(task, stats);
+    }
+
+    /**
+     * Returns the given task, wrapped to record its queue latency
+     * if statistics are enabled.
+     */
+    private <T> Callable<T> timed(Callable<T> task) {
+        ExecutorStatistics stats = statistics;
+        return (stats == null || task == null) ? task :
+            new ExecutorStatistics.TimedCallable<T>(task, stats);
+    }
+
     /**
      * @throws NullPointerException       {@inheritDoc}
      * @throws RejectedExecutionException {@inheritDoc}
@@ -2837,7 +3070,8 @@ public class ForkJoinPool extends AbstractExecutorService {
      * @return {@code true} if all threads are currently idle
      */
     public boolean isQuiescent() {
-        return (config & SMASK) + (int)(ctl >> AC_SHIFT) <= 0;
+        return (config & SMASK) + (int)(ctl >> AC_SHIFT) <= 0 &&
+            priorityCount <= 0;
     }
 
     /**
@@ -2888,18 +3122,19 @@ public class ForkJoinPool extends AbstractExecutorService {
 
     /**
      * Returns an estimate of the number of tasks submitted to this
-     * pool that have not yet begun executing.  This method may take
-     * time proportional to the number of submissions.
+     * pool that have not yet begun executing, including prioritized
+     * submissions.  This method may take time proportional to the
+     * number of submissions.
      *
      * @return the number of queued submissions
      */
     public int getQueuedSubmissionCount() {
-        int count = 0;
+        int count = Math.max(priorityCount, 0);
         WorkQueue[] ws; WorkQueue w;
         if ((ws = workQueues) != null) {
             for (int i = 0; i < ws.length; i += 2) {
                 if ((w = ws[i]) != null)
-                    count += w.queueSize();
+                    count += w.submissionCount();
             }
         }
         return count;
@@ -2913,6 +3148,8 @@ public class ForkJoinPool extends AbstractExecutorService {
      */
     public boolean hasQueuedSubmissions() {
         WorkQueue[] ws; WorkQueue w;
+        if (priorityCount > 0)
+            return true;
         if ((ws = workQueues) != null) {
             for (int i = 0; i < ws.length; i += 2) {
                 if ((w = ws[i]) != null && !w.isEmpty())
@@ -2931,10 +3168,16 @@ public class ForkJoinPool extends AbstractExecutorService {
      */
     protected ForkJoinTask<?> pollSubmission() {
         WorkQueue[] ws; WorkQueue w; ForkJoinTask<?> t;
+        if ((t = pollPrioritySubmission()) != null)
+            return t;
         if ((ws = workQueues) != null) {
             for (int i = 0; i < ws.length; i += 2) {
-                if ((w = ws[i]) != null && (t = w.poll()) != null)
-                    return t;
+                if ((w = ws[i]) != null) {
+                    while ((t = w.poll()) != null) {
+                        if (!(t instanceof PrioritySignal))
+                            return t;
+                    }
+                }
             }
         }
         return null;
@@ -2960,12 +3203,18 @@ public class ForkJoinPool extends AbstractExecutorService {
     protected int drainTasksTo(Collection<? super ForkJoinTask<?>> c) {
         int count = 0;
         WorkQueue[] ws; WorkQueue w; ForkJoinTask<?> t;
+        while ((t = pollPrioritySubmission()) != null) {
+            c.add(t);
+            ++count;
+        }
         if ((ws = workQueues) != null) {
             for (int i = 0; i < ws.length; ++i) {
                 if ((w = ws[i]) != null) {
                     while ((t = w.poll()) != null) {
-                        c.add(t);
-                        ++count;
+                        if (!(t instanceof PrioritySignal)) {
+                            c.add(t);
+                            ++count;
+                        }
                     }
                 }
             }
@@ -2973,6 +3222,51 @@ public class ForkJoinPool extends AbstractExecutorService {
         return count;
     }
 
+    /**
+     * Enables or disables the collection of {@link ExecutorStatistics}
+     * for this pool.  Enabling statistics when they are already
+     * enabled has no effect; enabling them after they were disabled
+     * starts a new set of statistics.
+     *
+     * <p>Each execution of a task taken from a queue by a worker
+     * thread, whether submitted externally or stolen from another
+     * worker, is recorded as one completed task, along with its
+     * running time, which includes the subtasks it joins.  Subtasks
+     * that a worker forks and then runs itself are part of their
+     * parent's execution.  Queue latency is recorded for tasks
+     * submitted as {@code Runnable}s or {@code Callable}s using the
+     * {@code execute} and {@code submit} methods, but not for
+     * {@code ForkJoinTask}s.
+     *
+     * @param value {@code true} to collect statistics
+     * @throws SecurityException if a security manager exists and
+     *         the caller is not permitted to modify threads
+     *         because it does not hold {@link
+     *         java.lang.RuntimePermission}{@code ("modifyThread")}
+     * @since 1.8
+     */
+    public void setStatisticsEnabled(boolean value) {
+        checkPermission();
+        synchronized (this) {
+            if (!value)
+                statistics = null;
+            else if (statistics == null)
+                statistics = new ExecutorStatistics();
+        }
+    }
+
+    /**
+     * Returns the statistics collected for this pool, or
+     * {@code null} if statistics are not enabled.
+     *
+     * @return the statistics, or {@code null} if not enabled
+     * @see #setStatisticsEnabled
+     * @since 1.8
+     */
+    public ExecutorStatistics getStatistics() {
+        return statistics;
+    }
+
     /**
      * Returns a string identifying this pool, as well as its state,
      * including indications of run state, parallelism level, and
@@ -3176,6 +3470,12 @@ public class ForkJoinPool extends AbstractExecutorService {
                 Thread.yield(); // cannot block
             }
             found = false;
+            ForkJoinTask<?> pt;
+            if (priorityCount > 0 && (pt = pollPrioritySubmission()) != null) {
+                found = true;
+                pt.doExec();
+                continue;
+            }
             for (int j = (m + 1) << 2; j >= 0; --j) {
                 ForkJoinTask<?> t; WorkQueue q; int b, k;
                 if ((k = r++ & m) <= m && k >= 0 && (q = ws[k]) != null &&
@@ -3343,6 +3643,9 @@ public class ForkJoinPool extends AbstractExecutorService {
     private static final long CTL;
     private static final long RUNSTATE;
     private static final long STEALCOUNTER;
+    private static final long PRIORITYSUBMISSIONS;
+    private static final long PRIORITYCOUNT;
+    private static final long PRIORITYSEQUENCE;
     private static final long PARKBLOCKER;
     private static final long QTOP;
     private static final long QLOCK;
@@ -3362,6 +3665,12 @@ public class ForkJoinPool extends AbstractExecutorService {
                 (k.getDeclaredField("runState"));
             STEALCOUNTER = U.objectFieldOffset
                 (k.getDeclaredField("stealCounter"));
+            PRIORITYSUBMISSIONS = U.objectFieldOffset
+                (k.getDeclaredField("prioritySubmissions"));
+            PRIORITYCOUNT = U.objectFieldOffset
+                (k.getDeclaredField("priorityCount"));
+            PRIORITYSEQUENCE = U.objectFieldOffset
+                (k.getDeclaredField("prioritySequence"));
             Class<?> tk = Thread.class;
             PARKBLOCKER = U.objectFieldOffset
                 (tk.getDeclaredField("parkBlocker"));
@@ -855,12 +855,23 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
-    /** A customized variant of Spliterators.IteratorSpliterator */
+    /**
+     * A customized variant of Spliterators.IteratorSpliterator.
+     *
+     * Splits copy batches of elements into arrays. The batch size is
+     * chosen on the first split from the size estimate, so that the
+     * queue is carved into about four batches per common pool worker
+     * (matching the leaf target of parallel stream tasks), but never
+     * more than half of the remaining elements. Small queues thus
+     * split into balanced halves, and large queues into a bounded
+     * number of evenly sized arrays rather than a long run of
+     * arithmetically growing ones.
+     */
     static final class LBQSpliterator<E> implements Spliterator<E> {
         static final int MAX_BATCH = 1 << 25;  // max batch array size;
         final LinkedBlockingQueue<E> queue;
         Node<E> current;    // current node; null until initialized
-        int batch;          // batch size for splits
+        int batch;          // batch size for splits; 0 until first split
         boolean exhausted;  // true when no more nodes
         long est;           // size estimate
         LBQSpliterator(LinkedBlockingQueue<E> queue) {
@@ -873,8 +884,14 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         public Spliterator<E> trySplit() {
             Node<E> h;
             final LinkedBlockingQueue<E> q = this.queue;
+            long s = est;
             int b = batch;
-            int n = (b <= 0) ? 1 : (b >= MAX_BATCH) ? MAX_BATCH : b + 1;
+            if (b <= 0) {
+                long t = s / ((long)ForkJoinPool.getCommonPoolParallelism() << 2);
+                batch = b = (t <= 1L) ? 1 : (t >= MAX_BATCH) ? MAX_BATCH : (int)t;
+            }
+            long half = s >>> 1;
+            int n = (half <= 1L) ? 1 : (half < b) ? (int)half : b;
             if (!exhausted &&
                 ((h = current) != null || (h = q.head.next) != null) &&
                 h.next != null) {
@@ -899,7 +916,6 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
                 else if ((est -= i) < 0L)
                     est = 0L;
                 if (i > 0) {
-                    batch = i;
                     return Spliterators.spliterator
                         (a, 0, i, Spliterator.ORDERED | Spliterator.NONNULL |
                          Spliterator.CONCURRENT);
@@ -0,0 +1,775 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A bounded {@linkplain BlockingQueue blocking queue} backed by a
+ * ring buffer, for use by any number of producer threads and exactly
+ * one consumer thread.  This queue orders elements FIFO
+ * (first-in-first-out); elements inserted by the same producer are
+ * taken in the order they were inserted.
+ *
+ * <p>Unlike {@link ArrayBlockingQueue}, no lock is used: producers
+ * claim slots by atomically advancing a shared tail index, and the
+ * single consumer owns the head index.  The indices are held in
+ * separately padded fields so that they do not share a cache line.
+ * The batch method {@link #fill} claims a run of slots with a single
+ * atomic update, and {@link #drain} releases a run of slots with a
+ * single write.
+ *
+ * <p>Blocking operations first spin briefly and then park; producers
+ * unpark a parked consumer when they publish an element, and the
+ * consumer unparks one parked producer for each slot it releases.
+ *
+ * <p><b>The single-consumer restriction is not checked.</b> The
+ * removal methods ({@code remove()}, {@code poll}, {@code take},
+ * {@code peek}, {@code element}, {@code drain}, {@code drainTo},
+ * {@code clear}) must only ever be called from one thread at a time.
+ * If this is not the case, use another {@link BlockingQueue}.  All
+ * other methods may be called from any thread.
+ *
+ * <p>Removal of arbitrary elements is not supported: the
+ * {@code remove(Object)}, {@code removeAll}, {@code retainAll} and
+ * {@code removeIf} methods, and the {@code remove} method of the
+ * iterator, throw {@link UnsupportedOperationException}.  The
+ * iterator is weakly consistent; it returns the elements present at
+ * some point at or since its creation, in FIFO order.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @since 1.8
+ * @see SpscArrayBlockingQueue
+ * @param <E> the type of elements held in this collection
+ */
+public class MpscArrayBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    /*
+     * The buffer length is the capacity rounded up to a power of two,
+     * so that an index maps to a slot with a mask.  Indices are
+     * longs that only ever increase.
+     *
+     * A producer claims index t by CASing tail from t to t + 1, and
+     * then writes its element into the slot.  The consumer therefore
+     * may find tail ahead of head while the slot at head is still
+     * null; it then spins until the claiming producer completes its
+     * write, which is never blocked.  The consumer clears each slot
+     * before publishing the new head, so a producer that has claimed
+     * an index below head + capacity always finds its slot empty.
+     * To avoid reading the consumer's head on every insertion,
+     * producers share producerLimit, a cached upper bound on tail
+     * that is refreshed from head only when it is reached.
+     *
+     * Waiting uses a Dekker-style handshake as in
+     * SpscArrayBlockingQueue.  The consumer publishes itself in
+     * consumerWaiter before re-checking for elements; producers check
+     * it after their CAS of tail.  Producers waiting for space push
+     * a node onto the Treiber stack producerWaiters before
+     * re-checking; after each volatile write of head the consumer
+     * pops and unparks one waiting producer per released slot.  Woken
+     * producers that still find the queue full (because another
+     * producer took the slot) push new nodes.  Signallers and
+     * departing producers race to CAS a node's thread to null; a
+     * producer that loses the race and leaves on timeout or interrupt
+     * passes the wakeup on, and one that wins unlinks its node.
+     */
+
+    /** The number of times to spin before parking */
+    static final int SPINS =
+        (Runtime.getRuntime().availableProcessors() > 1) ? 1 << 7 : 0;
+
+    /** Node in the stack of waiting producers */
+    static final class WaitNode {
+        volatile Thread thread;
+        volatile WaitNode next;
+        WaitNode(Thread thread) { this.thread = thread; }
+    }
+
+    /**
+     * Placeholder written into slots claimed by a fill whose supplier
+     * failed, so that the consumer does not wait for them forever.
+     */
+    static final Object FAILED = new Object();
+
+    /** The queued items */
+    final Object[] buffer;
+
+    /** Mask for the buffer index; buffer.length - 1 */
+    final int mask;
+
+    /** The maximum number of elements held */
+    final int capacity;
+
+    /** Index of the next element to take; written only by the consumer */
+    @sun.misc.Contended("consumer")
+    volatile long head;
+
+    /** The consumer, while it is blocked waiting for an element */
+    @sun.misc.Contended("consumer")
+    volatile Thread consumerWaiter;
+
+    /** Index of the next slot to claim */
+    @sun.misc.Contended("producer")
+    volatile long tail;
+
+    /** A bound on tail below which slots are known to be free */
+    @sun.misc.Contended("producer")
+    volatile long producerLimit;
+
+    /** Stack of producers blocked waiting for space */
+    @sun.misc.Contended("producer")
+    volatile WaitNode producerWaiters;
+
+    /**
+     * Creates a {@code MpscArrayBlockingQueue} with the given (fixed)
+     * capacity.
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1} or
+     *         {@code capacity > 1 << 30}
+     */
+    public MpscArrayBlockingQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException();
+        int n = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new Object[n];
+        this.mask = n - 1;
+        this.capacity = capacity;
+        this.producerLimit = capacity;
+    }
+
+    /**
+     * Creates a {@code MpscArrayBlockingQueue} with the given (fixed)
+     * capacity, initially containing the elements of the given
+     * collection, added in traversal order of the collection's
+     * iterator.
+     *
+     * @param capacity the capacity of this queue
+     * @param c the collection of elements to initially contain
+     * @throws IllegalArgumentException if {@code capacity} is less than
+     *         {@code c.size()}, or less than 1
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public MpscArrayBlockingQueue(int capacity, Collection<? extends E> c) {
+        this(capacity);
+        for (E e : c) {
+            if (!offer(e))
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /** Returns the Unsafe offset of the slot for the given index */
+    final long offset(long index) {
+        return ((long)((int)index & mask) << ASHIFT) + ABASE;
+    }
+
+    // Producer side
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and {@code false}
+     * if this queue is full.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        long t, limit = producerLimit;
+        do {
+            if ((t = tail) >= limit) {
+                if (t >= (limit = head + capacity))
+                    return false;
+                producerLimit = limit;
+            }
+        } while (!U.compareAndSwapLong(this, TAIL, t, t + 1));
+        U.putOrderedObject(buffer, offset(t), e);
+        if (consumerWaiter != null)
+            signalConsumer();
+        return true;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * for space to become available if the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        while (!offer(e))
+            awaitSpace(false, 0L);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * up to the specified wait time for space to become available if
+     * the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        while (!offer(e)) {
+            if (nanos <= 0L || !awaitSpace(true, nanos))
+                return false;
+            nanos = deadline - System.nanoTime();
+        }
+        return true;
+    }
+
+    /**
+     * Inserts up to {@code limit} elements obtained from the given
+     * supplier, as many as currently fit, publishing them to the
+     * consumer together.  The supplier is only invoked for elements
+     * that will be inserted.
+     *
+     * @param s the supplier of elements to insert
+     * @param limit the maximum number of elements to insert
+     * @return the number of elements inserted
+     * @throws NullPointerException if the supplier is null or supplies
+     *         a null element; elements supplied before it remain
+     *         inserted
+     * @throws IllegalArgumentException if {@code limit} is negative
+     */
+    public int fill(Supplier<? extends E> s, int limit) {
+        if (s == null) throw new NullPointerException();
+        if (limit < 0) throw new IllegalArgumentException();
+        long t, n, bound = producerLimit;
+        do {
+            if ((t = tail) + limit > bound) {
+                bound = head + capacity;
+                if (bound > producerLimit)
+                    producerLimit = bound;
+            }
+            if ((n = Math.min(bound - t, (long)limit)) <= 0L)
+                return 0;
+        } while (!U.compareAndSwapLong(this, TAIL, t, t + n));
+        int i = 0;
+        try {
+            for (E e; i < (int)n; ++i) {
+                if ((e = s.get()) == null)
+                    throw new NullPointerException();
+                U.putOrderedObject(buffer, offset(t + i), e);
+            }
+        } finally {
+            // The claimed slots must all be written, even if the
+            // supplier fails, or the consumer would wait for them forever
+            for (; i < (int)n; ++i)
+                U.putOrderedObject(buffer, offset(t + i), FAILED);
+            if (consumerWaiter != null)
+                signalConsumer();
+        }
+        return (int)n;
+    }
+
+    // Consumer side
+
+    /**
+     * Returns the element in the slot at the given offset, which has
+     * been claimed, waiting for the claiming producer to write it if
+     * necessary.  Returns null for slots abandoned by a failed fill.
+     */
+    @SuppressWarnings("unchecked")
+    private E awaitSlot(long off) {
+        Object x;
+        // The producer may have been descheduled between its CAS of
+        // tail and its write, so yield rather than spin indefinitely
+        for (int spins = SPINS; (x = U.getObjectVolatile(buffer, off)) == null; ) {
+            if (spins > 0)
+                --spins;
+            else
+                Thread.yield();
+        }
+        return (x == FAILED) ? null : (E) x;
+    }
+
+    public E poll() {
+        for (long h; (h = head) != tail; ) {
+            long off = offset(h);
+            E e = awaitSlot(off);
+            U.putOrderedObject(buffer, off, null);
+            head = h + 1;
+            if (producerWaiters != null)
+                signalProducers(1);
+            if (e != null)
+                return e;
+        }
+        return null;
+    }
+
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = poll()) == null)
+            awaitElement(false, 0L);
+        return e;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        E e;
+        while ((e = poll()) == null) {
+            if (nanos <= 0L || !awaitElement(true, nanos))
+                return null;
+            nanos = deadline - System.nanoTime();
+        }
+        return e;
+    }
+
+    public E peek() {
+        for (long h; (h = head) != tail; ) {
+            long off = offset(h);
+            E e = awaitSlot(off);
+            if (e != null)
+                return e;
+            U.putOrderedObject(buffer, off, null);
+            head = h + 1;
+            if (producerWaiters != null)
+                signalProducers(1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes up to {@code limit} available elements and passes them,
+     * in order, to the given action, releasing their slots to the
+     * producer together.  If the action throws an exception, the
+     * element being processed and those before it are removed, and
+     * the exception is relayed to the caller.
+     *
+     * @param action the action to perform on each element
+     * @param limit the maximum number of elements to remove
+     * @return the number of elements removed
+     * @throws NullPointerException if the action is null
+     * @throws IllegalArgumentException if {@code limit} is negative
+     */
+    public int drain(Consumer<? super E> action, int limit) {
+        if (action == null) throw new NullPointerException();
+        if (limit < 0) throw new IllegalArgumentException();
+        long h = head;
+        int n = (int)Math.min(tail - h, (long)limit), i = 0, k = 0;
+        try {
+            while (i < n) {
+                long off = offset(h + i);
+                E e = awaitSlot(off);
+                U.putOrderedObject(buffer, off, null);
+                ++i;
+                if (e != null) {
+                    ++k;
+                    action.accept(e);
+                }
+            }
+        } finally {
+            if (i > 0) {
+                head = h + i;
+                if (producerWaiters != null)
+                    signalProducers(i);
+            }
+        }
+        return k;
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        return drain(c::add, maxElements);
+    }
+
+    /**
+     * Atomically removes all of the elements that are present in this
+     * queue at the time of the call.
+     */
+    public void clear() {
+        long h = head, t = tail;
+        if (h < t) {
+            for (long i = h; i < t; ++i) {
+                long off = offset(i);
+                awaitSlot(off);
+                U.putOrderedObject(buffer, off, null);
+            }
+            head = t;
+            if (producerWaiters != null)
+                signalProducers((int)(t - h));
+        }
+    }
+
+    // Waiting
+
+    /**
+     * Unparks the waiting consumer, if any.  The waiter is cleared by
+     * the signalling thread so that it is unparked at most once per
+     * park; the consumer re-registers if it needs to wait again.
+     */
+    private void signalConsumer() {
+        Thread w = consumerWaiter;
+        if (w != null && U.compareAndSwapObject(this, CONSUMERWAITER, w, null))
+            LockSupport.unpark(w);
+    }
+
+    /**
+     * Unparks up to n waiting producers, one for each released slot,
+     * skipping nodes of producers that have stopped waiting.
+     */
+    private void signalProducers(int n) {
+        WaitNode q;
+        while (n > 0 && (q = producerWaiters) != null) {
+            if (U.compareAndSwapObject(this, PRODUCERWAITERS, q, q.next)) {
+                Thread w = q.thread;
+                if (w != null && U.compareAndSwapObject(q, THREAD, w, null)) {
+                    LockSupport.unpark(w);
+                    --n;
+                }
+            }
+        }
+    }
+
+    /**
+     * Unlinks cancelled nodes from the stack of waiting producers, at
+     * least up to the given node, as in
+     * SynchronousQueue.TransferStack.clean.  Nodes are only cancelled
+     * by their own producers, so a node found with a null thread
+     * while still on the stack can be dropped.
+     */
+    private void unlinkCancelledProducers(WaitNode s) {
+        WaitNode past = s.next;
+        if (past != null && past.thread == null)
+            past = past.next;
+        WaitNode p;
+        while ((p = producerWaiters) != null && p != past && p.thread == null)
+            U.compareAndSwapObject(this, PRODUCERWAITERS, p, p.next);
+        while (p != null && p != past) {
+            WaitNode n = p.next;
+            if (n != null && n.thread == null)
+                U.compareAndSwapObject(p, NEXT, n, n.next);
+            else
+                p = n;
+        }
+    }
+
+    /**
+     * Spins and then parks until the queue is non-empty, the timeout
+     * elapses, or the thread is interrupted.
+     *
+     * @return true if the queue may be non-empty, false on timeout
+     */
+    private boolean awaitElement(boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        final Thread w = Thread.currentThread();
+        int spins = SPINS;
+        try {
+            for (;;) {
+                if (head < tail)
+                    return true;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                    return false;
+                if (spins > 0)
+                    --spins;
+                else if (consumerWaiter != w)
+                    consumerWaiter = w; // (re)register, then recheck
+                else if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+            }
+        } finally {
+            if (consumerWaiter == w)
+                consumerWaiter = null;
+        }
+    }
+
+    /**
+     * Spins and then parks until the queue has space, the timeout
+     * elapses, or the thread is interrupted.
+     *
+     * @return true if the queue may have space, false on timeout
+     */
+    private boolean awaitSpace(boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        WaitNode q = null;
+        int spins = SPINS;
+        boolean found = false;
+        try {
+            for (;;) {
+                if (tail - head < capacity)
+                    return found = true;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                    return false;
+                if (spins > 0)
+                    --spins;
+                else if (q == null || q.thread == null) {
+                    // (re)register, then recheck
+                    q = new WaitNode(Thread.currentThread());
+                    WaitNode h;
+                    do {
+                        q.next = h = producerWaiters;
+                    } while (!U.compareAndSwapObject(this, PRODUCERWAITERS, h, q));
+                }
+                else if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+            }
+        } finally {
+            if (q != null) {
+                Thread w = q.thread;
+                if (w != null && U.compareAndSwapObject(q, THREAD, w, null))
+                    unlinkCancelledProducers(q);
+                else if (!found)
+                    // Signalled, but leaving on timeout or interrupt
+                    // without retrying: pass the wakeup on
+                    signalProducers(1);
+            }
+        }
+    }
+
+    // Any thread
+
+    /**
+     * Returns the number of elements in this queue.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        for (;;) {
+            long h = head, t = tail;
+            if (h == head) {
+                long n = t - h;
+                return (n <= 0L) ? 0 : (n >= capacity) ? capacity : (int)n;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return head >= tail;
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can
+     * ideally (in the absence of memory or resource constraints)
+     * accept without blocking.
+     */
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Returns an array containing the elements present in this queue
+     * at some point at or since the call, in FIFO order.  Elements
+     * whose slots are released by the consumer while they are being
+     * read, and those following a slot that is claimed but not yet
+     * written, are not included.
+     */
+    final Object[] snapshot() {
+        long h = head, t = tail;
+        int n = (int)Math.max(0L, Math.min(t - h, (long)capacity));
+        Object[] a = new Object[n];
+        int k = 0;
+        for (int i = 0; i < n; ++i) {
+            Object x = U.getObjectVolatile(buffer, offset(h + i));
+            if (x == null)      // not yet written
+                break;
+            a[i] = x;
+            k = i + 1;
+        }
+        // Slots at or beyond the current head were not reused while read
+        int skip = (int)Math.max(0L, Math.min(head - h, (long)k)), j = 0;
+        Object[] r = new Object[k - skip];
+        for (int i = skip; i < k; ++i) {
+            if (a[i] != FAILED)
+                r[j++] = a[i];
+        }
+        return (j == r.length) ? r : Arrays.copyOf(r, j);
+    }
+
+    public Object[] toArray() {
+        return snapshot();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] s = snapshot();
+        int n = s.length;
+        if (a.length < n)
+            return (T[]) Arrays.copyOf(s, n, a.getClass());
+        System.arraycopy(s, 0, a, 0, n);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as removal of
+     * arbitrary elements is not supported by this queue.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as removal of
+     * arbitrary elements is not supported by this queue.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as removal of
+     * arbitrary elements is not supported by this queue.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as removal of
+     * arbitrary elements is not supported by this queue.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public boolean removeIf(Predicate<? super E> filter) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The iterator operates over a snapshot of the elements
+     * present at some point at or since its creation, and does not
+     * support {@code remove}.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Returns a {@link Spliterator} over a snapshot of the elements in
+     * this queue.
+     *
+     * <p>The returned spliterator reports {@link Spliterator#ORDERED},
+     * {@link Spliterator#NONNULL}, {@link Spliterator#SIZED} and
+     * {@link Spliterator#SUBSIZED}.
+     *
+     * @return a {@code Spliterator} over the elements in this queue
+     */
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator
+            (snapshot(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    public String toString() {
+        return Arrays.toString(snapshot());
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    private static final long TAIL;
+    private static final long CONSUMERWAITER;
+    private static final long PRODUCERWAITERS;
+    private static final long THREAD;
+    private static final long NEXT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = MpscArrayBlockingQueue.class;
+            TAIL = U.objectFieldOffset
+                (k.getDeclaredField("tail"));
+            CONSUMERWAITER = U.objectFieldOffset
+                (k.getDeclaredField("consumerWaiter"));
+            PRODUCERWAITERS = U.objectFieldOffset
+                (k.getDeclaredField("producerWaiters"));
+            THREAD = U.objectFieldOffset
+                (WaitNode.class.getDeclaredField("thread"));
+            NEXT = U.objectFieldOffset
+                (WaitNode.class.getDeclaredField("next"));
+            Class<?> ak = Object[].class;
+            ABASE = U.arrayBaseOffset(ak);
+            int scale = U.arrayIndexScale(ak);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,857 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An unbounded {@linkplain BlockingQueue blocking queue} that uses the
+ * same ordering rules as {@link PriorityBlockingQueue}, but spreads its
+ * elements over several independently locked binary heaps so that
+ * many threads can insert and remove concurrently.
+ *
+ * <p>Insertions go to a pseudo-randomly chosen heap.  {@link #poll()}
+ * and the blocking retrieval methods inspect the heads of two
+ * randomly chosen heaps and remove the lesser, so the ordering is
+ * <em>relaxed</em>: the element returned is not necessarily the
+ * least element of the queue, but it is likely to be among the few
+ * least, with a rank error that grows only with the number of heaps,
+ * not with the number of elements.  Applications that occasionally
+ * need the least element can use {@link #pollLeast}, which inspects
+ * the heads of all heaps.  A queue constructed with a single heap is
+ * strictly ordered, like {@code PriorityBlockingQueue}.
+ *
+ * <p>Because each heap is guarded by its own lock, acquired only by
+ * {@code tryLock} in the common case so that threads move to another
+ * heap rather than wait, throughput scales with the number of
+ * threads as long as there are at least as many heaps.  Each heap
+ * grows while holding its own lock.  Bulk operations, {@code size}
+ * and {@code peek} are not atomic with respect to the queue as a
+ * whole, and the iterator traverses a snapshot, in no particular
+ * order.
+ *
+ * <p>This class and its iterator implement all of the
+ * <em>optional</em> methods of the {@link Collection} and {@link
+ * Iterator} interfaces.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ */
+public class MultiPriorityBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E>, java.io.Serializable {
+    private static final long serialVersionUID = -2358812702164227140L;
+
+    /*
+     * This is a "MultiQueue": c * P sequential heaps, each with a
+     * spinlock word and a volatile copy of its least element (top),
+     * which lets pollers compare heaps without locking them.  An
+     * insertion locks a random heap, moving on to another if the
+     * lock is held.  A removal samples two heaps, and locks the one
+     * with the lesser top, resampling on contention; if both
+     * sampled heaps are empty it falls back to visiting every heap,
+     * so poll returns null only if every heap was seen to be empty.
+     *
+     * Blocking uses the same scheme as StripedBlockingQueue:
+     * waiting consumers push a WaitNode onto waiters and re-check
+     * the tops before parking; producers check waiters after their
+     * insertion, which is followed by a volatile unlock.
+     */
+
+    /** Initial capacity of each heap */
+    static final int INITIAL_CAPACITY = 16;
+
+    /** Maximum capacity of each heap */
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /** Sampling attempts before a poll visits every heap */
+    static final int POLL_TRIES = 4;
+
+    /** The number of times to recheck the heaps before parking */
+    static final int SPINS =
+        (Runtime.getRuntime().availableProcessors() > 1) ? 1 << 4 : 0;
+
+    /**
+     * A binary heap with its own lock, laid out as in
+     * PriorityBlockingQueue.  All fields but lock and top are
+     * guarded by lock.
+     */
+    @sun.misc.Contended static final class Heap {
+        volatile int lock;
+        volatile Object top;        // queue[0], or null if empty
+        Object[] queue = new Object[INITIAL_CAPACITY];
+        int size;
+    }
+
+    /** Node in the stack of waiting consumers */
+    static final class WaitNode {
+        volatile Thread thread;
+        WaitNode next;
+        WaitNode(Thread thread) { this.thread = thread; }
+    }
+
+    /**
+     * The comparator, or null if the queue uses elements' natural
+     * ordering.
+     */
+    private final Comparator<? super E> comparator;
+
+    /** The heaps; a power of two in number */
+    private transient Heap[] heaps;
+
+    /** Stack of consumers blocked waiting for elements */
+    transient volatile WaitNode waiters;
+
+    /**
+     * Creates a {@code MultiPriorityBlockingQueue} with two heaps per
+     * available processor that orders its elements according to
+     * their {@linkplain Comparable natural ordering}.
+     */
+    public MultiPriorityBlockingQueue() {
+        this(2 * Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Creates a {@code MultiPriorityBlockingQueue} with two heaps per
+     * available processor that orders its elements according to the
+     * specified comparator.
+     *
+     * @param comparator the comparator that will be used to order
+     *        this priority queue.  If {@code null}, the {@linkplain
+     *        Comparable natural ordering} of the elements will be used.
+     */
+    public MultiPriorityBlockingQueue(Comparator<? super E> comparator) {
+        this(2 * Runtime.getRuntime().availableProcessors(), comparator);
+    }
+
+    /**
+     * Creates a {@code MultiPriorityBlockingQueue} with at least the
+     * given number of heaps that orders its elements according to
+     * the specified comparator.  About twice as many heaps as
+     * concurrently accessing threads keeps contention low, while
+     * fewer heaps give more accurate ordering.
+     *
+     * @param heaps the number of heaps; rounded up to a power of two
+     * @param comparator the comparator that will be used to order
+     *        this priority queue.  If {@code null}, the {@linkplain
+     *        Comparable natural ordering} of the elements will be used.
+     * @throws IllegalArgumentException if {@code heaps < 1} or
+     *         {@code heaps > 1 << 16}
+     */
+    public MultiPriorityBlockingQueue(int heaps,
+                                      Comparator<? super E> comparator) {
+        if (heaps <= 0 || heaps > 1 << 16)
+            throw new IllegalArgumentException();
+        this.comparator = comparator;
+        this.heaps = newHeaps(heaps);
+    }
+
+    private static Heap[] newHeaps(int heaps) {
+        int n = (heaps == 1) ? 1 : Integer.highestOneBit(heaps - 1) << 1;
+        Heap[] hs = new Heap[n];
+        for (int i = 0; i < n; ++i)
+            hs[i] = new Heap();
+        return hs;
+    }
+
+    // Heap locking
+
+    private static boolean tryLock(Heap h) {
+        return h.lock == 0 && U.compareAndSwapInt(h, LOCK, 0, 1);
+    }
+
+    private static void lock(Heap h) {
+        while (!tryLock(h))
+            Thread.yield();
+    }
+
+    private static void unlock(Heap h) {
+        U.putIntVolatile(h, LOCK, 0);
+    }
+
+    // Sequential heap operations; call only with the heap locked
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object x, Object y) {
+        Comparator<? super E> cmp;
+        return ((cmp = comparator) == null) ?
+            ((Comparable<? super E>)x).compareTo((E)y) :
+            cmp.compare((E)x, (E)y);
+    }
+
+    private void insert(Heap h, Object x) {
+        Object[] a = h.queue;
+        int n = h.size;
+        if (n == 0)
+            compare(x, x); // type check, as the loop below compares nothing
+        if (n >= a.length) {
+            int oldCap = a.length;
+            int newCap = oldCap + ((oldCap < 64) ? (oldCap + 2) : (oldCap >> 1));
+            if (newCap - MAX_ARRAY_SIZE > 0) {
+                if (oldCap == MAX_ARRAY_SIZE)
+                    throw new OutOfMemoryError();
+                newCap = MAX_ARRAY_SIZE;
+            }
+            h.queue = a = Arrays.copyOf(a, newCap);
+        }
+        int k = n;
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            Object e = a[parent];
+            if (compare(x, e) >= 0)
+                break;
+            a[k] = e;
+            k = parent;
+        }
+        a[k] = x;
+        h.size = n + 1;
+        h.top = a[0];
+    }
+
+    private Object removeAt(Heap h, int i) {
+        Object[] a = h.queue;
+        int s = --h.size;
+        Object result = a[i];
+        Object x = a[s];
+        a[s] = null;
+        if (s != i) {
+            int k = siftDown(a, i, x, s);
+            if (k == i) {                   // sift up
+                while (k > 0) {
+                    int parent = (k - 1) >>> 1;
+                    Object e = a[parent];
+                    if (compare(x, e) >= 0)
+                        break;
+                    a[k] = e;
+                    k = parent;
+                }
+                a[k] = x;
+            }
+        }
+        h.top = a[0];
+        return result;
+    }
+
+    /** Sifts x down from k in a heap of size n; returns final index */
+    private int siftDown(Object[] a, int k, Object x, int n) {
+        int half = n >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            Object c = a[child];
+            int right = child + 1;
+            if (right < n && compare(c, a[right]) > 0)
+                c = a[child = right];
+            if (compare(x, c) <= 0)
+                break;
+            a[k] = c;
+            k = child;
+        }
+        a[k] = x;
+        return k;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E removeTop(Heap h) {
+        return (h.size == 0) ? null : (E)removeAt(h, 0);
+    }
+
+    // Queue operations
+
+    /**
+     * Inserts the specified element into this priority queue.
+     * As the queue is unbounded, this method will never return
+     * {@code false}.
+     *
+     * @param e the element to add
+     * @return {@code true} (as specified by {@link Queue#offer})
+     * @throws ClassCastException if the specified element cannot be compared
+     *         with elements currently in the priority queue according to the
+     *         priority queue's ordering
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        Heap[] hs = heaps;
+        int m = hs.length - 1, r = ThreadLocalRandom.nextSecondarySeed();
+        Heap h;
+        while (!tryLock(h = hs[r & m])) {
+            r ^= r << 13; r ^= r >>> 17; r ^= r << 5; // xorshift
+        }
+        try {
+            insert(h, e);
+        } finally {
+            unlock(h);
+        }
+        if (waiters != null)
+            signalWaiter();
+        return true;
+    }
+
+    /**
+     * Inserts the specified element into this priority queue.
+     * As the queue is unbounded, this method will never block.
+     *
+     * @param e the element to add
+     * @throws ClassCastException if the specified element cannot be compared
+     *         with elements currently in the priority queue according to the
+     *         priority queue's ordering
+     * @throws NullPointerException if the specified element is null
+     */
+    public void put(E e) {
+        offer(e);
+    }
+
+    /**
+     * Inserts the specified element into this priority queue.
+     * As the queue is unbounded, this method will never block or
+     * return {@code false}.
+     *
+     * @param e the element to add
+     * @param timeout This parameter is ignored as the method never blocks
+     * @param unit This parameter is ignored as the method never blocks
+     * @return {@code true} (as specified by
+     *  {@link BlockingQueue#offer(Object,long,TimeUnit) BlockingQueue.offer})
+     * @throws ClassCastException if the specified element cannot be compared
+     *         with elements currently in the priority queue according to the
+     *         priority queue's ordering
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    /**
+     * Retrieves and removes the lesser of the heads of two randomly
+     * chosen heaps, or if both are empty, any element, or returns
+     * {@code null} if this queue is empty.
+     *
+     * @return an element at or near the head of this queue, or
+     *         {@code null} if this queue is empty
+     */
+    public E poll() {
+        Heap[] hs = heaps;
+        int m = hs.length - 1;
+        if (m > 0) {
+            int r = ThreadLocalRandom.nextSecondarySeed();
+            for (int tries = 0; tries < POLL_TRIES; ++tries) {
+                Heap a = hs[r & m], b = hs[(r >>> 16) & m], h;
+                Object x = a.top, y = b.top;
+                if (x == null && y == null)
+                    break;
+                h = (x == null) ? b : (y == null) ? a :
+                    (compare(y, x) < 0) ? b : a;
+                if (tryLock(h)) {
+                    E e;
+                    try {
+                        e = removeTop(h);
+                    } finally {
+                        unlock(h);
+                    }
+                    if (e != null)
+                        return e;
+                }
+                r ^= r << 13; r ^= r >>> 17; r ^= r << 5; // xorshift
+            }
+        }
+        return pollAny();
+    }
+
+    /** Removes the head of the first non-empty heap from a random origin */
+    private E pollAny() {
+        Heap[] hs = heaps;
+        int n = hs.length, origin = ThreadLocalRandom.nextSecondarySeed();
+        for (int i = 0; i < n; ++i) {
+            Heap h = hs[(origin + i) & (n - 1)];
+            if (h.top != null) {
+                E e;
+                lock(h);
+                try {
+                    e = removeTop(h);
+                } finally {
+                    unlock(h);
+                }
+                if (e != null)
+                    return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves and removes the least element of this queue, as
+     * found by comparing the heads of all heaps, or returns {@code
+     * null} if this queue is empty.  This is slower than {@link
+     * #poll}, and in the presence of concurrent insertions may still
+     * miss an element inserted while the heads were compared.
+     *
+     * @return the least element, or {@code null} if this queue is empty
+     */
+    public E pollLeast() {
+        Heap[] hs = heaps;
+        for (;;) {
+            Heap least = null;
+            Object x = null;
+            for (Heap h : hs) {
+                Object y = h.top;
+                if (y != null && (x == null || compare(y, x) < 0)) {
+                    least = h;
+                    x = y;
+                }
+            }
+            if (least == null)
+                return null;
+            lock(least);
+            try {
+                if (least.top == x)
+                    return removeTop(least);
+            } finally {
+                unlock(least);
+            }
+        }
+    }
+
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = poll()) == null)
+            awaitElement(false, 0L);
+        return e;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        E e;
+        while ((e = poll()) == null) {
+            if (nanos <= 0L || !awaitElement(true, nanos))
+                return null;
+            nanos = deadline - System.nanoTime();
+        }
+        return e;
+    }
+
+    /**
+     * Retrieves, but does not remove, the least of the heads of all
+     * heaps, or returns {@code null} if this queue is empty.
+     *
+     * @return the least head, or {@code null} if this queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        Object x = null;
+        for (Heap h : heaps) {
+            Object y = h.top;
+            if (y != null && (x == null || compare(y, x) < 0))
+                x = y;
+        }
+        return (E)x;
+    }
+
+    /**
+     * Unparks one waiting consumer, skipping nodes of consumers that
+     * have stopped waiting.
+     */
+    private void signalWaiter() {
+        WaitNode q;
+        while ((q = waiters) != null) {
+            if (U.compareAndSwapObject(this, WAITERS, q, q.next)) {
+                Thread w = q.thread;
+                if (w != null && U.compareAndSwapObject(q, THREAD, w, null)) {
+                    LockSupport.unpark(w);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Spins and then parks until the queue is non-empty, the timeout
+     * elapses, or the thread is interrupted.
+     *
+     * @return true if the queue may be non-empty, false on timeout
+     */
+    private boolean awaitElement(boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        WaitNode q = null;
+        int spins = SPINS;
+        boolean found = false;
+        try {
+            for (;;) {
+                if (!isEmpty())
+                    return found = true;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                    return false;
+                if (spins > 0)
+                    --spins;
+                else if (q == null || q.thread == null) {
+                    // (re)register, then recheck
+                    q = new WaitNode(Thread.currentThread());
+                    WaitNode h;
+                    do {
+                        q.next = h = waiters;
+                    } while (!U.compareAndSwapObject(this, WAITERS, h, q));
+                }
+                else if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+            }
+        } finally {
+            if (q != null) {
+                Thread w = q.thread;
+                if (w != null && U.compareAndSwapObject(q, THREAD, w, null)) {
+                    // We may have consumed a wakeup meant for another waiter
+                    if (waiters != null && !isEmpty())
+                        signalWaiter();
+                }
+                else if (!found)
+                    // Signalled, but leaving on timeout or interrupt
+                    // without taking: pass the wakeup on
+                    signalWaiter();
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if every heap is empty.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        for (Heap h : heaps) {
+            if (h.top != null)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of elements in this queue.  The heaps are
+     * not locked, so the result may be inaccurate if the queue is
+     * concurrently modified.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        long n = 0L;
+        for (Heap h : heaps)
+            n += h.size;
+        return (n >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+    }
+
+    /**
+     * Always returns {@code Integer.MAX_VALUE} because
+     * a {@code MultiPriorityBlockingQueue} is not capacity constrained.
+     * @return {@code Integer.MAX_VALUE} always
+     */
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the comparator used to order the elements in this queue,
+     * or {@code null} if this queue uses the {@linkplain Comparable
+     * natural ordering} of its elements.
+     *
+     * @return the comparator used to order the elements in this queue,
+     *         or {@code null} if this queue uses the natural
+     *         ordering of its elements
+     */
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Removes a single instance of the specified element from this
+     * queue, if it is present.  More formally, removes an element
+     * {@code e} such that {@code o.equals(e)}, if this queue contains
+     * one or more such elements.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        return o != null && removeMatching(o, false);
+    }
+
+    /** Removes o, matched by equals or (if identity) ==, from any heap */
+    private boolean removeMatching(Object o, boolean identity) {
+        for (Heap h : heaps) {
+            lock(h);
+            try {
+                Object[] a = h.queue;
+                for (int i = 0, n = h.size; i < n; ++i) {
+                    if (identity ? o == a[i] : o.equals(a[i])) {
+                        removeAt(h, i);
+                        return true;
+                    }
+                }
+            } finally {
+                unlock(h);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if this queue contains the specified element.
+     * More formally, returns {@code true} if and only if this queue
+     * contains at least one element {@code e} such that
+     * {@code o.equals(e)}.
+     *
+     * @param o object to be checked for containment in this queue
+     * @return {@code true} if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        if (o != null) {
+            for (Heap h : heaps) {
+                lock(h);
+                try {
+                    Object[] a = h.queue;
+                    for (int i = 0, n = h.size; i < n; ++i) {
+                        if (o.equals(a[i]))
+                            return true;
+                    }
+                } finally {
+                    unlock(h);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes at most the given number of elements, taking the least
+     * head among all heaps each time, and adds them to the given
+     * collection.
+     *
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        for (E e; n < maxElements && (e = pollLeast()) != null; ++n)
+            c.add(e);
+        return n;
+    }
+
+    /**
+     * Atomically, for each heap in turn, removes all of its elements.
+     */
+    public void clear() {
+        for (Heap h : heaps) {
+            lock(h);
+            try {
+                Arrays.fill(h.queue, 0, h.size, null);
+                h.size = 0;
+                h.top = null;
+            } finally {
+                unlock(h);
+            }
+        }
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue.
+     * The returned array elements are in no particular order.
+     *
+     * @return an array containing all of the elements in this queue
+     */
+    public Object[] toArray() {
+        Object[] r = new Object[size()];
+        int n = 0;
+        for (Heap h : heaps) {
+            lock(h);
+            try {
+                int s = h.size;
+                if (n + s > r.length)
+                    r = Arrays.copyOf(r, n + s);
+                System.arraycopy(h.queue, 0, r, n, s);
+                n += s;
+            } finally {
+                unlock(h);
+            }
+        }
+        return (n == r.length) ? r : Arrays.copyOf(r, n);
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue;
+     * the runtime type of the returned array is that of the specified
+     * array.  The returned array elements are in no particular order.
+     *
+     * @param a the array into which the elements of the queue are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose
+     * @return an array containing all of the elements in this queue
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this queue
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] r = toArray();
+        int n = r.length;
+        if (a.length < n)
+            return (T[]) Arrays.copyOf(r, n, a.getClass());
+        System.arraycopy(r, 0, a, 0, n);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements in this
+     * queue, in no particular order.  The iterator's {@code remove}
+     * method removes the last returned element from the queue.
+     *
+     * @return an iterator over the elements in this queue
+     */
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    /**
+     * Snapshot iterator that works off copy of underlying q array.
+     */
+    final class Itr implements Iterator<E> {
+        final Object[] array; // Array of all elements
+        int cursor;           // index of next element to return
+        int lastRet;          // index of last element, or -1 if no such
+
+        Itr(Object[] array) {
+            lastRet = -1;
+            this.array = array;
+        }
+
+        public boolean hasNext() {
+            return cursor < array.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= array.length)
+                throw new NoSuchElementException();
+            lastRet = cursor;
+            return (E)array[cursor++];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            removeMatching(array[lastRet], true);
+            lastRet = -1;
+        }
+    }
+
+    /**
+     * Saves this queue to a stream (that is, serializes it).
+     *
+     * @param s the stream
+     * @throws java.io.IOException if an I/O error occurs
+     * @serialData The number of heaps ({@code int}), the number of
+     * elements ({@code int}), followed by all of its elements (each
+     * an {@code Object}) in no particular order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        s.defaultWriteObject();
+        Object[] a = toArray();
+        s.writeInt(heaps.length);
+        s.writeInt(a.length);
+        for (Object e : a)
+            s.writeObject(e);
+    }
+
+    /**
+     * Reconstitutes this queue from a stream (that is, deserializes it).
+     * @param s the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *         could not be found
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int nHeaps = s.readInt();
+        if (nHeaps <= 0 || nHeaps > 1 << 16)
+            throw new java.io.InvalidObjectException("heaps");
+        heaps = newHeaps(nHeaps);
+        for (int i = 0, n = s.readInt(); i < n; ++i) {
+            @SuppressWarnings("unchecked") E e = (E)s.readObject();
+            offer(e);
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long WAITERS;
+    private static final long THREAD;
+    private static final long LOCK;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = MultiPriorityBlockingQueue.class;
+            WAITERS = U.objectFieldOffset
+                (k.getDeclaredField("waiters"));
+            THREAD = U.objectFieldOffset
+                (WaitNode.class.getDeclaredField("thread"));
+            LOCK = U.objectFieldOffset
+                (Heap.class.getDeclaredField("lock"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -330,11 +330,28 @@ public class ScheduledThreadPoolExecutor
                 !canRunInCurrentRunState(task.isPeriodic()) &&
                 remove(task))
                 task.cancel(false);
-            else
+            else {
+                ExecutorStatistics stats = getStatistics();
+                if (stats != null)
+                    stats.countSubmitted();
                 ensurePrestart();
+            }
         }
     }
 
+    /**
+     * Records the queue latency of a task about to be run as the time
+     * since it became due, rather than since it was submitted.
+     */
+    @Override
+    void taskStarting(ExecutorStatistics stats, Runnable task) {
+        if (task instanceof RunnableScheduledFuture)
+            stats.waited(-((RunnableScheduledFuture<?>)task)
+                         .getDelay(NANOSECONDS));
+        else
+            super.taskStarting(stats, task);
+    }
+
     /**
      * Requeues a periodic task unless current run state precludes it.
      * Same idea as delayedExecute except drops task rather than rejecting.
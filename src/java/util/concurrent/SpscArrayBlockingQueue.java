@@ -0,0 +1,657 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A bounded {@linkplain BlockingQueue blocking queue} backed by a
+ * ring buffer, for use by exactly one producer thread and one
+ * consumer thread.  This queue orders elements FIFO
+ * (first-in-first-out).
+ *
+ * <p>Unlike {@link ArrayBlockingQueue}, no lock is used: the
+ * producer and the consumer each own one index into the buffer,
+ * held in separately padded fields so that they do not share a
+ * cache line, and each caches its last view of the other's index so
+ * that the shared index is only re-read when the buffer appears full
+ * (for the producer) or empty (for the consumer).  The batch methods
+ * {@link #fill} and {@link #drain} publish an index once per batch
+ * rather than once per element.
+ *
+ * <p>Blocking operations first spin briefly and then park; the other
+ * side unparks a parked thread when it makes progress.  No
+ * {@code Condition} objects or wait nodes are allocated.
+ *
+ * <p><b>The single-producer/single-consumer restriction is not
+ * checked.</b> The insertion methods ({@code add}, {@code offer},
+ * {@code put}, {@code fill}, {@code addAll}) must only ever be called
+ * from one thread at a time, and likewise the removal methods
+ * ({@code remove()}, {@code poll}, {@code take}, {@code peek},
+ * {@code element}, {@code drain}, {@code drainTo}, {@code clear}).
+ * If this is not the case, use {@link MpscArrayBlockingQueue} or
+ * another {@link BlockingQueue}.  The remaining methods, such as
+ * {@code size} and {@code iterator}, may be called from any thread.
+ *
+ * <p>Removal of arbitrary elements is not supported: the
+ * {@code remove(Object)}, {@code removeAll}, {@code retainAll} and
+ * {@code removeIf} methods, and the {@code remove} method of the
+ * iterator, throw {@link UnsupportedOperationException}.  The
+ * iterator is weakly consistent; it returns the elements present at
+ * some point at or since its creation, in FIFO order.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ */
+public class SpscArrayBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    /*
+     * The buffer length is the capacity rounded up to a power of two,
+     * so that an index maps to a slot with a mask.  Indices are
+     * longs that only ever increase, so the queue holds
+     * tail - head elements and is full when that reaches capacity.
+     *
+     * The producer writes an element into its slot and then
+     * publishes it with a volatile write of tail; the consumer reads
+     * tail, then the slot, clears the slot and publishes the freed
+     * slot with a volatile write of head.  Each side caches the
+     * other's index in a plain field confined to its own thread.
+     *
+     * Waiting uses the classic Dekker-style handshake: a thread about
+     * to park first publishes itself in producerWaiter or
+     * consumerWaiter, then re-checks the queue; the other side
+     * checks the waiter field after its volatile index write.  One of
+     * the two must then see the other's write, so wakeups are never
+     * lost.
+     */
+
+    /** The number of times to spin before parking */
+    static final int SPINS =
+        (Runtime.getRuntime().availableProcessors() > 1) ? 1 << 7 : 0;
+
+    /** The queued items */
+    final Object[] buffer;
+
+    /** Mask for the buffer index; buffer.length - 1 */
+    final int mask;
+
+    /** The maximum number of elements held */
+    final int capacity;
+
+    /** Index of the next element to take; written only by the consumer */
+    @sun.misc.Contended("consumer")
+    volatile long head;
+
+    /** The consumer's last view of tail */
+    @sun.misc.Contended("consumer")
+    long tailCache;
+
+    /** The consumer, while it is blocked waiting for an element */
+    @sun.misc.Contended("consumer")
+    volatile Thread consumerWaiter;
+
+    /** Index of the next slot to fill; written only by the producer */
+    @sun.misc.Contended("producer")
+    volatile long tail;
+
+    /** The producer's last view of head */
+    @sun.misc.Contended("producer")
+    long headCache;
+
+    /** The producer, while it is blocked waiting for space */
+    @sun.misc.Contended("producer")
+    volatile Thread producerWaiter;
+
+    /**
+     * Creates a {@code SpscArrayBlockingQueue} with the given (fixed)
+     * capacity.
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1} or
+     *         {@code capacity > 1 << 30}
+     */
+    public SpscArrayBlockingQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException();
+        int n = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new Object[n];
+        this.mask = n - 1;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a {@code SpscArrayBlockingQueue} with the given (fixed)
+     * capacity, initially containing the elements of the given
+     * collection, added in traversal order of the collection's
+     * iterator.
+     *
+     * @param capacity the capacity of this queue
+     * @param c the collection of elements to initially contain
+     * @throws IllegalArgumentException if {@code capacity} is less than
+     *         {@code c.size()}, or less than 1
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public SpscArrayBlockingQueue(int capacity, Collection<? extends E> c) {
+        this(capacity);
+        for (E e : c) {
+            if (!offer(e))
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /** Returns the Unsafe offset of the slot for the given index */
+    final long offset(long index) {
+        return ((long)((int)index & mask) << ASHIFT) + ABASE;
+    }
+
+    // Producer side
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and {@code false}
+     * if this queue is full.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        long t = tail;
+        if (t - headCache >= capacity && t - (headCache = head) >= capacity)
+            return false;
+        U.putOrderedObject(buffer, offset(t), e);
+        tail = t + 1;
+        if (consumerWaiter != null)
+            signalConsumer();
+        return true;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * for space to become available if the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        while (!offer(e))
+            awaitSpace(false, 0L);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * up to the specified wait time for space to become available if
+     * the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        while (!offer(e)) {
+            if (nanos <= 0L || !awaitSpace(true, nanos))
+                return false;
+            nanos = deadline - System.nanoTime();
+        }
+        return true;
+    }
+
+    /**
+     * Inserts up to {@code limit} elements obtained from the given
+     * supplier, as many as currently fit, publishing them to the
+     * consumer together.  The supplier is only invoked for elements
+     * that will be inserted.
+     *
+     * @param s the supplier of elements to insert
+     * @param limit the maximum number of elements to insert
+     * @return the number of elements inserted
+     * @throws NullPointerException if the supplier is null or supplies
+     *         a null element; elements supplied before it remain
+     *         inserted
+     * @throws IllegalArgumentException if {@code limit} is negative
+     */
+    public int fill(Supplier<? extends E> s, int limit) {
+        if (s == null) throw new NullPointerException();
+        if (limit < 0) throw new IllegalArgumentException();
+        long t = tail;
+        long free = capacity - (t - headCache);
+        if (free < limit)
+            free = capacity - (t - (headCache = head));
+        int n = (int)Math.min(free, (long)limit), i = 0;
+        try {
+            for (; i < n; ++i) {
+                E e = s.get();
+                if (e == null) throw new NullPointerException();
+                U.putOrderedObject(buffer, offset(t + i), e);
+            }
+        } finally {
+            if (i > 0) {
+                tail = t + i;
+                if (consumerWaiter != null)
+                    signalConsumer();
+            }
+        }
+        return n;
+    }
+
+    // Consumer side
+
+    public E poll() {
+        long h = head;
+        if (h >= tailCache && h >= (tailCache = tail))
+            return null;
+        long off = offset(h);
+        @SuppressWarnings("unchecked") E e = (E) U.getObject(buffer, off);
+        U.putOrderedObject(buffer, off, null);
+        head = h + 1;
+        if (producerWaiter != null)
+            signalProducer();
+        return e;
+    }
+
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = poll()) == null)
+            awaitElement(false, 0L);
+        return e;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        E e;
+        while ((e = poll()) == null) {
+            if (nanos <= 0L || !awaitElement(true, nanos))
+                return null;
+            nanos = deadline - System.nanoTime();
+        }
+        return e;
+    }
+
+    public E peek() {
+        long h = head;
+        if (h >= tailCache && h >= (tailCache = tail))
+            return null;
+        @SuppressWarnings("unchecked") E e = (E) U.getObject(buffer, offset(h));
+        return e;
+    }
+
+    /**
+     * Removes up to {@code limit} available elements and passes them,
+     * in order, to the given action, releasing their slots to the
+     * producer together.  If the action throws an exception, the
+     * element being processed and those before it are removed, and
+     * the exception is relayed to the caller.
+     *
+     * @param action the action to perform on each element
+     * @param limit the maximum number of elements to remove
+     * @return the number of elements removed
+     * @throws NullPointerException if the action is null
+     * @throws IllegalArgumentException if {@code limit} is negative
+     */
+    public int drain(Consumer<? super E> action, int limit) {
+        if (action == null) throw new NullPointerException();
+        if (limit < 0) throw new IllegalArgumentException();
+        long h = head;
+        long avail = tailCache - h;
+        if (avail < limit)
+            avail = (tailCache = tail) - h;
+        int n = (int)Math.min(avail, (long)limit), i = 0;
+        try {
+            while (i < n) {
+                long off = offset(h + i);
+                @SuppressWarnings("unchecked") E e = (E) U.getObject(buffer, off);
+                U.putOrderedObject(buffer, off, null);
+                ++i;
+                action.accept(e);
+            }
+        } finally {
+            if (i > 0) {
+                head = h + i;
+                if (producerWaiter != null)
+                    signalProducer();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        return drain(c::add, maxElements);
+    }
+
+    /**
+     * Atomically removes all of the elements that are present in this
+     * queue at the time of the call.
+     */
+    public void clear() {
+        long h = head, t = tail;
+        if (h < t) {
+            for (long i = h; i < t; ++i)
+                U.putOrderedObject(buffer, offset(i), null);
+            head = t;
+            if (producerWaiter != null)
+                signalProducer();
+        }
+    }
+
+    // Waiting
+
+    /**
+     * Unparks the waiting consumer, if any.  The waiter is cleared by
+     * the signalling thread so that it is unparked at most once per
+     * park; the consumer re-registers if it needs to wait again.
+     */
+    private void signalConsumer() {
+        Thread w = consumerWaiter;
+        if (w != null && U.compareAndSwapObject(this, CONSUMERWAITER, w, null))
+            LockSupport.unpark(w);
+    }
+
+    /**
+     * Unparks the waiting producer, if any.
+     */
+    private void signalProducer() {
+        Thread w = producerWaiter;
+        if (w != null && U.compareAndSwapObject(this, PRODUCERWAITER, w, null))
+            LockSupport.unpark(w);
+    }
+
+    /**
+     * Spins and then parks until the queue is non-empty, the timeout
+     * elapses, or the thread is interrupted.
+     *
+     * @return true if the queue may be non-empty, false on timeout
+     */
+    private boolean awaitElement(boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        final Thread w = Thread.currentThread();
+        int spins = SPINS;
+        try {
+            for (;;) {
+                if (head < tail)
+                    return true;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                    return false;
+                if (spins > 0)
+                    --spins;
+                else if (consumerWaiter != w)
+                    consumerWaiter = w; // (re)register, then recheck
+                else if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+            }
+        } finally {
+            if (consumerWaiter == w)
+                consumerWaiter = null;
+        }
+    }
+
+    /**
+     * Spins and then parks until the queue has space, the timeout
+     * elapses, or the thread is interrupted.
+     *
+     * @return true if the queue may have space, false on timeout
+     */
+    private boolean awaitSpace(boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        final Thread w = Thread.currentThread();
+        int spins = SPINS;
+        try {
+            for (;;) {
+                if (tail - head < capacity)
+                    return true;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                    return false;
+                if (spins > 0)
+                    --spins;
+                else if (producerWaiter != w)
+                    producerWaiter = w; // (re)register, then recheck
+                else if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+            }
+        } finally {
+            if (producerWaiter == w)
+                producerWaiter = null;
+        }
+    }
+
+    // Any thread
+
+    /**
+     * Returns the number of elements in this queue.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        for (;;) {
+            long h = head, t = tail;
+            if (h == head) {
+                long n = t - h;
+                return (n <= 0L) ? 0 : (n >= capacity) ? capacity : (int)n;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return head >= tail;
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can
+     * ideally (in the absence of memory or resource constraints)
+     * accept without blocking.
+     */
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Returns an array containing the elements present in this queue
+     * at some point at or since the call, in FIFO order.  Elements
+     * whose slots are released by the consumer while they are being
+     * read are not included, so the result never contains null.
+     */
+    final Object[] snapshot() {
+        long h = head, t = tail;
+        int n = (int)Math.max(0L, Math.min(t - h, (long)capacity));
+        Object[] a = new Object[n];
+        for (int i = 0; i < n; ++i)
+            a[i] = U.getObjectVolatile(buffer, offset(h + i));
+        // Slots at or beyond the current head were not reused while
+        // read; of those, skip any found empty because they were
+        // released just before being read
+        int skip = (int)Math.max(0L, Math.min(head - h, (long)n)), j = 0;
+        for (int i = skip; i < n; ++i) {
+            if (a[i] != null)
+                a[j++] = a[i];
+        }
+        return (j == n) ? a : Arrays.copyOf(a, j);
+    }
+
+    public Object[] toArray() {
+        return snapshot();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] s = snapshot();
+        int n = s.length;
+        if (a.length < n)
+            return (T[]) Arrays.copyOf(s, n, a.getClass());
+        System.arraycopy(s, 0, a, 0, n);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as removal of
+     * arbitrary elements is not supported by this queue.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as removal of
+     * arbitrary elements is not supported by this queue.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as removal of
+     * arbitrary elements is not supported by this queue.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as removal of
+     * arbitrary elements is not supported by this queue.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public boolean removeIf(Predicate<? super E> filter) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The iterator operates over a snapshot of the elements
+     * present at some point at or since its creation, and does not
+     * support {@code remove}.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Returns a {@link Spliterator} over a snapshot of the elements in
+     * this queue.
+     *
+     * <p>The returned spliterator reports {@link Spliterator#ORDERED},
+     * {@link Spliterator#NONNULL}, {@link Spliterator#SIZED} and
+     * {@link Spliterator#SUBSIZED}.
+     *
+     * @return a {@code Spliterator} over the elements in this queue
+     */
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator
+            (snapshot(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    public String toString() {
+        return Arrays.toString(snapshot());
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    private static final long CONSUMERWAITER;
+    private static final long PRODUCERWAITER;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = SpscArrayBlockingQueue.class;
+            CONSUMERWAITER = U.objectFieldOffset
+                (k.getDeclaredField("consumerWaiter"));
+            PRODUCERWAITER = U.objectFieldOffset
+                (k.getDeclaredField("producerWaiter"));
+            Class<?> ak = Object[].class;
+            ABASE = U.arrayBaseOffset(ak);
+            int scale = U.arrayIndexScale(ak);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
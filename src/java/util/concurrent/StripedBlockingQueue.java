@@ -0,0 +1,559 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An unbounded {@linkplain BlockingQueue blocking queue} that spreads
+ * its elements over several independent lock-free queues, or
+ * <em>stripes</em>, each owned by one consuming thread, so that
+ * concurrent producers and consumers rarely contend on the same queue
+ * head or tail.  It is intended as the work
+ * queue of a {@link ThreadPoolExecutor} with many worker threads and
+ * many small tasks: see {@link Executors#newStripedThreadPool(int)}.
+ * Because the executor itself only interacts with its work queue
+ * through the {@code BlockingQueue} methods, it retains all of its
+ * usual behavior: core and maximum pool sizes, keep-alive, rejection
+ * handling and the {@code beforeExecute}/{@code afterExecute} hooks.
+ *
+ * <p>The first time a thread takes an element it claims a stripe of
+ * its own, which it releases when it terminates.  A consumer always
+ * polls its own stripe first, and only when that is empty steals
+ * from the others.  An insertion by a thread that owns a stripe (for
+ * example a task submitting another task) goes to that stripe;
+ * other insertions are spread pseudo-randomly over all stripes.  If
+ * there are more consumers than stripes, the surplus consumers share
+ * stripes.  Threads waiting for elements park on a
+ * lock-free stack and are unparked one at a time as elements arrive.
+ *
+ * <p>Ordering is FIFO within each stripe, but <em>not</em> across
+ * stripes: an element may be taken before an element inserted before
+ * it on another stripe.  Bulk operations and {@code size} are not
+ * atomic, and the iterator is weakly consistent.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ */
+public class StripedBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E>, java.io.Serializable {
+    private static final long serialVersionUID = 6236181389276519357L;
+
+    /*
+     * Stripes are ConcurrentLinkedQueues, so each insertion and
+     * removal is a CAS on one stripe's head or tail.  The number of
+     * stripes is a power of two so a stripe is selected with a mask.
+     *
+     * Ownership is recorded in the owners array, an open-addressed
+     * table keyed by thread id: a consumer starts at the slot its id
+     * hashes to and probes linearly, first for a slot it already
+     * owns and then for one that is free or whose owner has
+     * terminated, which it claims by CAS.  Workers of an executor
+     * are long-lived, so in the common case the first slot probed is
+     * the consumer's own and finding it costs a single read.  Only
+     * consumers ever claim slots: peek and other inspection methods
+     * do not, and neither do producers.  Producers that own no
+     * stripe select one using the per-thread probe also used by
+     * ThreadLocalRandom and Striped64, advancing it on each insertion
+     * so that a single producer also spreads its elements.  Thieves
+     * start scanning at a random stripe rather than their neighbor's
+     * so that they do not all converge on the same victim.
+     *
+     * Waiting consumers push a WaitNode onto waiters and then re-scan
+     * all stripes before parking; producers check waiters after
+     * their (CAS-based) insertion.  One of the two therefore sees the
+     * other, and wakeups are never lost.  A producer pops and unparks
+     * a single waiter per insertion.  The signaller and a departing
+     * waiter race to CAS the node's thread to null; a waiter that
+     * loses (it was signalled) but leaves on timeout or interrupt
+     * passes the wakeup on to another waiter.
+     */
+
+    /** The number of times to rescan the stripes before parking */
+    static final int SPINS =
+        (Runtime.getRuntime().availableProcessors() > 1) ? 1 << 4 : 0;
+
+    /** Node in the stack of waiting consumers */
+    static final class WaitNode {
+        volatile Thread thread;
+        WaitNode next;
+        WaitNode(Thread thread) { this.thread = thread; }
+    }
+
+    /** The stripes */
+    final ConcurrentLinkedQueue<E>[] stripes;
+
+    /** The consuming thread owning each stripe, or null if unowned */
+    transient Thread[] owners;
+
+    /** Stack of consumers blocked waiting for elements */
+    transient volatile WaitNode waiters;
+
+    /**
+     * Creates a {@code StripedBlockingQueue} with one stripe per
+     * available processor.
+     */
+    public StripedBlockingQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a {@code StripedBlockingQueue} with at least the given
+     * number of stripes.  Using at least as many stripes as there are
+     * consuming threads gives each consumer a stripe of its own.
+     *
+     * @param stripes the number of stripes; rounded up to a power of two
+     * @throws IllegalArgumentException if {@code stripes < 1} or
+     *         {@code stripes > 1 << 16}
+     */
+    public StripedBlockingQueue(int stripes) {
+        if (stripes <= 0 || stripes > 1 << 16)
+            throw new IllegalArgumentException();
+        int n = (stripes == 1) ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        @SuppressWarnings("unchecked")
+        ConcurrentLinkedQueue<E>[] qs =
+            (ConcurrentLinkedQueue<E>[])new ConcurrentLinkedQueue<?>[n];
+        for (int i = 0; i < n; ++i)
+            qs[i] = new ConcurrentLinkedQueue<E>();
+        this.stripes = qs;
+        this.owners = new Thread[n];
+    }
+
+    /**
+     * Returns the index of the stripe for the next insertion by the
+     * current thread.
+     */
+    private int insertionIndex() {
+        Thread t = Thread.currentThread();
+        int h = hash(t) & (stripes.length - 1);
+        if (owners[h] == t)
+            return h;
+        if ((h = ThreadLocalRandom.getProbe()) == 0) {
+            ThreadLocalRandom.localInit();
+            h = ThreadLocalRandom.getProbe();
+        }
+        else
+            ThreadLocalRandom.advanceProbe(h);
+        return h & (stripes.length - 1);
+    }
+
+    /**
+     * Returns the slot in owners at which to start probing for the
+     * given thread.
+     */
+    static int hash(Thread t) {
+        long id = t.getId();
+        int h = (int)(id ^ (id >>> 32)) * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the index of the stripe owned by the current thread,
+     * claiming one if it has none.  If every stripe is owned by
+     * another live thread, returns a stripe to share.
+     */
+    private int homeIndex() {
+        final Thread t = Thread.currentThread();
+        final Thread[] os = owners;
+        int m = os.length - 1, h = hash(t) & m;
+        if (os[h] == t)
+            return h;
+        for (int i = 1; i <= m; ++i) {
+            int j = (h + i) & m;
+            if (os[j] == t)
+                return j;
+        }
+        for (int i = 0; i <= m; ++i) {
+            int j = (h + i) & m;
+            long u = ((long)j << TSHIFT) + TBASE;
+            Thread o = (Thread)U.getObjectVolatile(os, u);
+            if ((o == null || !o.isAlive()) &&
+                U.compareAndSwapObject(os, u, o, t))
+                return j;
+        }
+        return h;
+    }
+
+    /**
+     * Inserts the specified element into this queue.  As the queue is
+     * unbounded, this method will never return {@code false}.
+     *
+     * @return {@code true} (as specified by {@link Queue#offer})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        stripes[insertionIndex()].offer(e);
+        if (waiters != null)
+            signalWaiter();
+        return true;
+    }
+
+    /**
+     * Inserts the specified element into this queue.  As the queue is
+     * unbounded, this method will never block.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public void put(E e) {
+        offer(e);
+    }
+
+    /**
+     * Inserts the specified element into this queue.  As the queue is
+     * unbounded, this method will never block or return {@code false}.
+     *
+     * @return {@code true} (as specified by
+     *  {@link BlockingQueue#offer(Object,long,TimeUnit) BlockingQueue.offer})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    /**
+     * Retrieves and removes an element of this queue, first from the
+     * current thread's own stripe and otherwise from any other
+     * stripe, or returns {@code null} if every stripe is empty.
+     */
+    public E poll() {
+        final ConcurrentLinkedQueue<E>[] qs = stripes;
+        int n = qs.length, h = homeIndex();
+        E e;
+        if ((e = qs[h].poll()) != null || n == 1)
+            return e;
+        int r = ThreadLocalRandom.nextSecondarySeed();
+        for (int i = 0; i < n; ++i) {
+            int j = (r + i) & (n - 1);
+            if (j != h && (e = qs[j].poll()) != null)
+                return e;
+        }
+        return null;
+    }
+
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = poll()) == null)
+            awaitElement(false, 0L);
+        return e;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        E e;
+        while ((e = poll()) == null) {
+            if (nanos <= 0L || !awaitElement(true, nanos))
+                return null;
+            nanos = deadline - System.nanoTime();
+        }
+        return e;
+    }
+
+    public E peek() {
+        for (ConcurrentLinkedQueue<E> q : stripes) {
+            E e = q.peek();
+            if (e != null)
+                return e;
+        }
+        return null;
+    }
+
+    /**
+     * Unparks one waiting consumer, skipping nodes of consumers that
+     * have stopped waiting.
+     */
+    private void signalWaiter() {
+        WaitNode q;
+        while ((q = waiters) != null) {
+            if (U.compareAndSwapObject(this, WAITERS, q, q.next)) {
+                Thread w = q.thread;
+                if (w != null && U.compareAndSwapObject(q, THREAD, w, null)) {
+                    LockSupport.unpark(w);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Spins and then parks until the queue is non-empty, the timeout
+     * elapses, or the thread is interrupted.
+     *
+     * @return true if the queue may be non-empty, false on timeout
+     */
+    private boolean awaitElement(boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        WaitNode q = null;
+        int spins = SPINS;
+        boolean found = false;
+        try {
+            for (;;) {
+                if (!isEmpty())
+                    return found = true;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                    return false;
+                if (spins > 0)
+                    --spins;
+                else if (q == null || q.thread == null) {
+                    // (re)register, then recheck
+                    q = new WaitNode(Thread.currentThread());
+                    WaitNode h;
+                    do {
+                        q.next = h = waiters;
+                    } while (!U.compareAndSwapObject(this, WAITERS, h, q));
+                }
+                else if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+            }
+        } finally {
+            if (q != null) {
+                Thread w = q.thread;
+                if (w != null && U.compareAndSwapObject(q, THREAD, w, null)) {
+                    // We may have consumed a wakeup meant for another waiter
+                    if (waiters != null && !isEmpty())
+                        signalWaiter();
+                }
+                else if (!found)
+                    // Signalled, but leaving on timeout or interrupt
+                    // without taking: pass the wakeup on
+                    signalWaiter();
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if every stripe is empty.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        for (ConcurrentLinkedQueue<E> q : stripes) {
+            if (!q.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of elements in this queue.  As with
+     * {@link ConcurrentLinkedQueue#size}, this requires a traversal
+     * of every stripe and the result may be inaccurate if the queue
+     * is concurrently modified.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        long n = 0L;
+        for (ConcurrentLinkedQueue<E> q : stripes)
+            n += q.size();
+        return (n >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+    }
+
+    /**
+     * Always returns {@code Integer.MAX_VALUE} because a
+     * {@code StripedBlockingQueue} is not capacity constrained.
+     *
+     * @return {@code Integer.MAX_VALUE} (as specified by
+     *         {@link BlockingQueue#remainingCapacity()})
+     */
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Removes a single instance of the specified element from this
+     * queue, if it is present.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        if (o != null) {
+            for (ConcurrentLinkedQueue<E> q : stripes) {
+                if (q.remove(o))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if this queue contains the specified element.
+     *
+     * @param o object to be checked for containment in this queue
+     * @return {@code true} if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        if (o != null) {
+            for (ConcurrentLinkedQueue<E> q : stripes) {
+                if (q.contains(o))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        for (ConcurrentLinkedQueue<E> q : stripes) {
+            for (E e; n < maxElements && (e = q.poll()) != null; ++n)
+                c.add(e);
+        }
+        return n;
+    }
+
+    public void clear() {
+        for (ConcurrentLinkedQueue<E> q : stripes)
+            q.clear();
+    }
+
+    public Object[] toArray() {
+        ArrayList<E> list = new ArrayList<E>();
+        for (ConcurrentLinkedQueue<E> q : stripes)
+            list.addAll(q);
+        return list.toArray();
+    }
+
+    public <T> T[] toArray(T[] a) {
+        ArrayList<E> list = new ArrayList<E>();
+        for (ConcurrentLinkedQueue<E> q : stripes)
+            list.addAll(q);
+        return list.toArray(a);
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue, stripe by
+     * stripe.  The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+     *
+     * @return an iterator over the elements in this queue
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    /** Iterator that traverses each stripe's iterator in turn */
+    final class Itr implements Iterator<E> {
+        private int index;
+        private Iterator<E> current = stripes[0].iterator();
+        private Iterator<E> lastRet;
+
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (++index >= stripes.length)
+                    return false;
+                current = stripes[index].iterator();
+            }
+            return true;
+        }
+
+        public E next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            lastRet = current;
+            return current.next();
+        }
+
+        public void remove() {
+            if (lastRet == null)
+                throw new IllegalStateException();
+            lastRet.remove();
+            lastRet = null;
+        }
+    }
+
+    /**
+     * Reconstitutes this queue from a stream (that is, deserializes it).
+     * @param s the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *         could not be found
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        owners = new Thread[stripes.length];
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long WAITERS;
+    private static final long THREAD;
+    private static final long TBASE;
+    private static final int TSHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = StripedBlockingQueue.class;
+            WAITERS = U.objectFieldOffset
+                (k.getDeclaredField("waiters"));
+            THREAD = U.objectFieldOffset
+                (WaitNode.class.getDeclaredField("thread"));
+            Class<?> tk = Thread[].class;
+            TBASE = U.arrayBaseOffset(tk);
+            int scale = U.arrayIndexScale(tk);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            TSHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
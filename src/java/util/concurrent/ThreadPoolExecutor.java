@@ -544,6 +544,14 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     private volatile int maximumPoolSize;
 
+    /**
+     * Task statistics, or null if not enabled.  So that the work
+     * queue always holds the tasks passed to execute, only tasks
+     * created by newTaskFor, which are ours to wrap anyway, carry the
+     * time they were submitted; see taskStarting.
+     */
+    private volatile ExecutorStatistics statistics;
+
     /**
      * The default rejected execution handler
      */
@@ -827,9 +835,23 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * Package-protected for use by ScheduledThreadPoolExecutor.
      */
     final void reject(Runnable command) {
+        ExecutorStatistics stats = statistics;
+        if (stats != null)
+            stats.rejected();
         handler.rejectedExecution(command, this);
     }
 
+    /**
+     * Records the queue latency of a task about to be run.  Overridden
+     * by ScheduledThreadPoolExecutor, which measures it from when the
+     * task became due.
+     */
+    void taskStarting(ExecutorStatistics stats, Runnable task) {
+        if (task instanceof ExecutorStatistics.TimedFutureTask)
+            stats.waited(System.nanoTime() -
+                         ((ExecutorStatistics.TimedFutureTask<?>)task).queuedAt);
+    }
+
     /**
      * Performs any further cleanup following run state transition on
      * invocation of shutdown.  A no-op here, but used by
@@ -1143,8 +1165,12 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     !wt.isInterrupted())
                     wt.interrupt();
                 try {
+                    ExecutorStatistics stats = statistics;
+                    if (stats != null)
+                        taskStarting(stats, task);
                     beforeExecute(wt, task);
                     Throwable thrown = null;
+                    long start = (stats == null) ? 0L : System.nanoTime();
                     try {
                         task.run();
                     } catch (RuntimeException x) {
@@ -1154,6 +1180,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     } catch (Throwable x) {
                         thrown = x; throw new Error(x);
                     } finally {
+                        if (stats != null)
+                            stats.executed(System.nanoTime() - start,
+                                           thrown != null);
                         afterExecute(task, thrown);
                     }
                 } finally {
@@ -1362,21 +1391,31 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
          * thread.  If it fails, we know we are shut down or saturated
          * and so reject the task.
          */
+        ExecutorStatistics stats = statistics;
         int c = ctl.get();
         if (workerCountOf(c) < corePoolSize) {
-            if (addWorker(command, true))
+            if (addWorker(command, true)) {
+                if (stats != null)
+                    stats.countSubmitted();
                 return;
+            }
             c = ctl.get();
         }
         if (isRunning(c) && workQueue.offer(command)) {
             int recheck = ctl.get();
             if (! isRunning(recheck) && remove(command))
                 reject(command);
-            else if (workerCountOf(recheck) == 0)
-                addWorker(null, false);
+            else {
+                if (stats != null)
+                    stats.countSubmitted();
+                if (workerCountOf(recheck) == 0)
+                    addWorker(null, false);
+            }
         }
         else if (!addWorker(command, false))
             reject(command);
+        else if (stats != null)
+            stats.countSubmitted();
     }
 
     /**
@@ -1901,6 +1940,77 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Returns a {@code RunnableFuture} for the given runnable and
+     * default value.  While statistics are enabled, the task records
+     * when it was created, so that its queue latency can be measured.
+     *
+     * @since 1.8
+     */
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        ExecutorStatistics stats = statistics;
+        return (stats == null) ? super.newTaskFor(runnable, value)
+            : new ExecutorStatistics.TimedFutureTask<T>(runnable, value);
+    }
+
+    /**
+     * Returns a {@code RunnableFuture} for the given callable task.
+     * While statistics are enabled, the task records when it was
+     * created, so that its queue latency can be measured.
+     *
+     * @since 1.8
+     */
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        ExecutorStatistics stats = statistics;
+        return (stats == null) ? super.newTaskFor(callable)
+            : new ExecutorStatistics.TimedFutureTask<T>(callable);
+    }
+
+    /**
+     * Enables or disables the collection of {@link ExecutorStatistics}
+     * for tasks subsequently submitted to this executor.  Enabling
+     * statistics when they are already enabled has no effect; enabling
+     * them after they were disabled starts a new set of statistics.
+     *
+     * <p>The work queue holds the tasks passed to {@code execute}
+     * unchanged, so queue latency is only recorded for tasks that
+     * this executor creates itself, using {@link #newTaskFor}, from
+     * those passed to {@code submit}, {@code invokeAll} and {@code
+     * invokeAny}.  While statistics are enabled, these tasks record
+     * the time they were created.  Runnables passed directly to
+     * {@code execute} are counted and timed while running, but their
+     * time in the queue is not measured.
+     *
+     * @param value {@code true} to collect statistics
+     * @since 1.8
+     */
+    public void setStatisticsEnabled(boolean value) {
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            if (!value)
+                statistics = null;
+            else if (statistics == null)
+                statistics = new ExecutorStatistics();
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the statistics collected for this executor, or
+     * {@code null} if statistics are not enabled.
+     *
+     * @return the statistics, or {@code null} if not enabled
+     * @see #setStatisticsEnabled
+     * @since 1.8
+     */
+    public ExecutorStatistics getStatistics() {
+        return statistics;
+    }
+
     /**
      * Returns a string identifying this pool, as well as its state,
      * including indications of run state and estimated worker and
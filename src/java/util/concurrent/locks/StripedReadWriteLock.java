@@ -0,0 +1,780 @@
+/*
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent.locks;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReadWriteLock} whose read lock scales with the number of
+ * reading threads.  {@link ReentrantReadWriteLock} and {@link
+ * StampedLock} record every read acquisition in a single shared
+ * word, so under read-mostly use on many processors that word's
+ * cache line moves between processors on every acquire and release.
+ * This class instead counts readers in an array of separately padded
+ * cells, in the manner of {@link java.util.concurrent.atomic.LongAdder};
+ * readers usually update only a cell that no other processor is
+ * writing.  In exchange, acquiring the write lock requires scanning
+ * all the cells, so this class is best suited to data that is read
+ * far more often than it is written.
+ *
+ * <p>This lock supports the following properties:
+ *
+ * <ul>
+ * <li><b>Writer preference.</b> Once a thread has acquired the
+ * write lock's underlying mutual exclusion, new readers wait until
+ * it has released the write lock, while readers holding the read
+ * lock are allowed to finish.  Writers therefore never starve.
+ *
+ * <li><b>Fairness.</b> Writers, and readers that must wait for
+ * writers, are ordered by a {@link ReentrantLock} constructed with
+ * the given fairness policy.
+ *
+ * <li><b>Reentrancy.</b> Both locks may be reacquired by threads
+ * holding them.  A writer may also acquire the read lock, and
+ * thereby downgrade from the write lock by then releasing it.
+ * Upgrading from a read lock to the write lock is not possible: a
+ * thread holding the read lock that tries to acquire the write lock
+ * will deadlock.
+ *
+ * <li><b>Conditions.</b> The write lock provides a {@link Condition}
+ * implementation with the same behavior as that of {@link
+ * ReentrantLock#newCondition}.  The read lock does not support
+ * conditions.
+ * </ul>
+ *
+ * <p>Each thread's read hold count is kept in a {@link ThreadLocal}
+ * associated with the lock, so this class is not suited to very
+ * large numbers of short-lived locks.  Serialization of this class
+ * behaves in the same way as built-in locks: a deserialized lock is
+ * in the unlocked state, regardless of its state when serialized.
+ *
+ * @since 1.8
+ */
+public class StripedReadWriteLock implements ReadWriteLock, java.io.Serializable {
+    private static final long serialVersionUID = -2480398738206471384L;
+
+    /*
+     * Readers increment a cell and then read writerPending; a writer
+     * sets writerPending and then sums the cells.  Both accesses are
+     * volatile, so either the reader sees the writer (and backs its
+     * increment out again) or the writer sees the reader (and waits
+     * for it to leave).  writerPending is only set and cleared by the
+     * thread holding writerLock, which also serializes writers.
+     *
+     * A reader that backs out wakes the pending writer, and then
+     * waits for the write lock to be released by passing through
+     * writerLock, which provides the blocking and fairness policies.
+     * Readers leaving while a writer is pending likewise unpark it.
+     * Since backing-out readers briefly hold writerLock, whether the
+     * write lock is held is tracked separately, in writeLocked.
+     *
+     * Each thread remembers the cell it incremented in its ReadHolder
+     * so it can release the same cell.  If a CAS on its cell fails,
+     * it moves to another cell for its next acquisition, so threads
+     * that collide on a cell tend to drift apart, as in Striped64.
+     * Unlike ReentrantReadWriteLock, ReadHolders are kept after the
+     * last read release, to avoid garbage and keep the thread's cell.
+     */
+
+    /** The number of times to rescan cells before parking a writer */
+    static final int SPINS =
+        (Runtime.getRuntime().availableProcessors() > 1) ? 1 << 6 : 0;
+
+    /** A padded reader count. */
+    @sun.misc.Contended static final class Cell {
+        volatile long value;
+    }
+
+    /** Per-thread read hold count and cells. */
+    static final class ReadHolder {
+        int count;
+        int probe;      // hash selecting the cell for the next acquire
+        int slot;       // index of the cell incremented while holding
+        ReadHolder(int probe) { this.probe = probe; }
+    }
+
+    /** Inner class providing the read lock */
+    private final ReadLock readerLock;
+    /** Inner class providing the write lock */
+    private final WriteLock writerLock;
+    /** Serializes writers and blocks readers while a writer is active */
+    final ReentrantLock mutex;
+    /** Reader counts; length is a power of two */
+    transient Cell[] cells;
+    /** The current thread's read holds */
+    transient ThreadLocal<ReadHolder> readHolds;
+    /** Set while a writer holds or is acquiring the write lock */
+    transient volatile boolean writerPending;
+    /** The thread holding mutex, to be unparked by leaving readers */
+    transient volatile Thread writer;
+    /** Set while a writer holds the write lock, after readers drained */
+    transient volatile boolean writeLocked;
+
+    /**
+     * Creates a new {@code StripedReadWriteLock} with non-fair
+     * ordering, using one cell per available processor.
+     */
+    public StripedReadWriteLock() {
+        this(false);
+    }
+
+    /**
+     * Creates a new {@code StripedReadWriteLock} with the given
+     * fairness policy, using one cell per available processor.
+     *
+     * @param fair {@code true} if this lock should use a fair ordering policy
+     */
+    public StripedReadWriteLock(boolean fair) {
+        this(fair, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new {@code StripedReadWriteLock} with the given
+     * fairness policy and at least the given number of reader cells.
+     *
+     * @param fair {@code true} if this lock should use a fair ordering policy
+     * @param cells the number of reader cells; rounded up to a power of two
+     * @throws IllegalArgumentException if {@code cells < 1} or
+     *         {@code cells > 1 << 16}
+     */
+    public StripedReadWriteLock(boolean fair, int cells) {
+        if (cells <= 0 || cells > 1 << 16)
+            throw new IllegalArgumentException();
+        mutex = new ReentrantLock(fair);
+        readerLock = new ReadLock(this);
+        writerLock = new WriteLock(this);
+        initCells(cells);
+    }
+
+    private void initCells(int size) {
+        int n = (size == 1) ? 1 : Integer.highestOneBit(size - 1) << 1;
+        Cell[] cs = new Cell[n];
+        for (int i = 0; i < n; ++i)
+            cs[i] = new Cell();
+        cells = cs;
+        readHolds = new ThreadLocal<ReadHolder>() {
+            protected ReadHolder initialValue() {
+                long id = Thread.currentThread().getId();
+                int h = (int)(id ^ (id >>> 32)) * 0x9e3779b9;
+                return new ReadHolder(h ^ (h >>> 16));
+            }
+        };
+    }
+
+    public StripedReadWriteLock.WriteLock writeLock() { return writerLock; }
+    public StripedReadWriteLock.ReadLock  readLock()  { return readerLock; }
+
+    // Read lock internals
+
+    /**
+     * Tries once to acquire the read lock for a thread not already
+     * holding it.
+     */
+    final boolean tryAcquireRead(ReadHolder rh) {
+        Cell[] cs = cells;
+        int i = rh.probe & (cs.length - 1);
+        Cell c = cs[i];
+        long v = c.value;
+        if (!U.compareAndSwapLong(c, VALUE, v, v + 1L)) {
+            int h = rh.probe;           // xorshift to another cell
+            h ^= h << 13; h ^= h >>> 17; h ^= h << 5;
+            rh.probe = h;
+            U.getAndAddLong(c, VALUE, 1L);
+        }
+        if (!writerPending || mutex.isHeldByCurrentThread()) {
+            rh.count = 1;
+            rh.slot = i;
+            return true;
+        }
+        // back out and let the writer proceed
+        U.getAndAddLong(c, VALUE, -1L);
+        Thread w = writer;
+        if (w != null)
+            LockSupport.unpark(w);
+        return false;
+    }
+
+    final void releaseRead() {
+        ReadHolder rh = readHolds.get();
+        if (rh.count <= 0)
+            throw new IllegalMonitorStateException();
+        if (--rh.count == 0) {
+            U.getAndAddLong(cells[rh.slot], VALUE, -1L);
+            if (writerPending) {
+                Thread w = writer;
+                if (w != null)
+                    LockSupport.unpark(w);
+            }
+        }
+    }
+
+    // Write lock internals
+
+    /**
+     * Called after the first acquisition of mutex by a writer: marks
+     * a writer as pending and waits for readers to drain.
+     *
+     * @param interruptible true if interrupts abort the wait
+     * @param timed true if the wait ends at the deadline
+     * @param deadline the nanoTime deadline, if timed
+     * @return 1 if all readers left, 0 on timeout or -1 if
+     *         interrupted, in which latter cases the pending flag has
+     *         been cleared and the interrupt status consumed
+     */
+    final int awaitReaders(boolean interruptible, boolean timed,
+                           long deadline) {
+        writer = Thread.currentThread();
+        writerPending = true;
+        boolean interrupted = false;
+        int spins = SPINS;
+        while (readerCount() != 0L) {
+            if (spins > 0) {
+                --spins;
+                continue;
+            }
+            if (timed) {
+                long nanos = deadline - System.nanoTime();
+                if (nanos <= 0L) {
+                    abandonWrite();
+                    if (interrupted)
+                        Thread.currentThread().interrupt();
+                    return 0;
+                }
+                LockSupport.parkNanos(this, nanos);
+            }
+            else
+                LockSupport.park(this);
+            if (Thread.interrupted()) {
+                if (interruptible) {
+                    abandonWrite();
+                    return -1;
+                }
+                interrupted = true;
+            }
+        }
+        writeLocked = true;
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        return 1;
+    }
+
+    /** Clears the pending flag when a writer stops waiting for readers. */
+    private void abandonWrite() {
+        writerPending = false;
+        writer = null;
+    }
+
+    final void releaseWrite() {
+        if (mutex.getHoldCount() == 1) {
+            writeLocked = false;
+            writerPending = false;
+            writer = null;
+        }
+        mutex.unlock();
+    }
+
+    /** Returns the sum of the reader cells. */
+    final long readerCount() {
+        long sum = 0L;
+        for (Cell c : cells)
+            sum += c.value;
+        return sum;
+    }
+
+    /**
+     * The lock returned by method {@link StripedReadWriteLock#readLock}.
+     */
+    public static class ReadLock implements Lock, java.io.Serializable {
+        private static final long serialVersionUID = -3958410342063526170L;
+        private final StripedReadWriteLock lock;
+
+        /**
+         * Constructor for use by subclasses
+         *
+         * @param lock the outer lock object
+         * @throws NullPointerException if the lock is null
+         */
+        protected ReadLock(StripedReadWriteLock lock) {
+            if (lock == null)
+                throw new NullPointerException();
+            this.lock = lock;
+        }
+
+        /**
+         * Acquires the read lock, waiting while another thread holds
+         * or is acquiring the write lock.
+         */
+        public void lock() {
+            final StripedReadWriteLock l = lock;
+            ReadHolder rh = l.readHolds.get();
+            if (rh.count > 0)
+                ++rh.count;
+            else {
+                while (!l.tryAcquireRead(rh)) {
+                    l.mutex.lock();     // wait for the writer
+                    l.mutex.unlock();
+                }
+            }
+        }
+
+        /**
+         * Acquires the read lock unless the current thread is
+         * {@linkplain Thread#interrupt interrupted}.
+         *
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            final StripedReadWriteLock l = lock;
+            ReadHolder rh = l.readHolds.get();
+            if (rh.count > 0)
+                ++rh.count;
+            else {
+                while (!l.tryAcquireRead(rh)) {
+                    l.mutex.lockInterruptibly();
+                    l.mutex.unlock();
+                }
+            }
+        }
+
+        /**
+         * Acquires the read lock only if no other thread holds or is
+         * acquiring the write lock at the time of invocation.
+         *
+         * @return {@code true} if the read lock was acquired
+         */
+        public boolean tryLock() {
+            final StripedReadWriteLock l = lock;
+            ReadHolder rh = l.readHolds.get();
+            if (rh.count > 0) {
+                ++rh.count;
+                return true;
+            }
+            return l.tryAcquireRead(rh);
+        }
+
+        /**
+         * Acquires the read lock if no other thread holds the write
+         * lock within the given waiting time and the current thread
+         * has not been {@linkplain Thread#interrupt interrupted}.
+         *
+         * @param timeout the time to wait for the read lock
+         * @param unit the time unit of the timeout argument
+         * @return {@code true} if the read lock was acquired
+         * @throws InterruptedException if the current thread is interrupted
+         * @throws NullPointerException if the time unit is null
+         */
+        public boolean tryLock(long timeout, TimeUnit unit)
+                throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            final StripedReadWriteLock l = lock;
+            ReadHolder rh = l.readHolds.get();
+            if (rh.count > 0) {
+                ++rh.count;
+                return true;
+            }
+            final long deadline = System.nanoTime() + nanos;
+            while (!l.tryAcquireRead(rh)) {
+                if (!l.mutex.tryLock(deadline - System.nanoTime(),
+                                     TimeUnit.NANOSECONDS))
+                    return false;
+                l.mutex.unlock();
+            }
+            return true;
+        }
+
+        /**
+         * Attempts to release this lock.
+         *
+         * @throws IllegalMonitorStateException if the current thread
+         *         does not hold this lock
+         */
+        public void unlock() {
+            lock.releaseRead();
+        }
+
+        /**
+         * Throws {@code UnsupportedOperationException} because
+         * {@code ReadLocks} do not support conditions.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Returns a string identifying this lock, as well as its lock state.
+         * The state, in brackets, includes the String {@code "Read locks ="}
+         * followed by the number of held read locks.
+         *
+         * @return a string identifying this lock, as well as its lock state
+         */
+        public String toString() {
+            return super.toString() +
+                "[Read locks = " + lock.readerCount() + "]";
+        }
+    }
+
+    /**
+     * The lock returned by method {@link StripedReadWriteLock#writeLock}.
+     */
+    public static class WriteLock implements Lock, java.io.Serializable {
+        private static final long serialVersionUID = 5237681294308417734L;
+        private final StripedReadWriteLock lock;
+
+        /**
+         * Constructor for use by subclasses
+         *
+         * @param lock the outer lock object
+         * @throws NullPointerException if the lock is null
+         */
+        protected WriteLock(StripedReadWriteLock lock) {
+            if (lock == null)
+                throw new NullPointerException();
+            this.lock = lock;
+        }
+
+        /**
+         * Acquires the write lock, waiting for other writers and then
+         * for all readers to release their read locks.
+         */
+        public void lock() {
+            final StripedReadWriteLock l = lock;
+            l.mutex.lock();
+            if (l.mutex.getHoldCount() == 1)
+                l.awaitReaders(false, false, 0L);
+        }
+
+        /**
+         * Acquires the write lock unless the current thread is
+         * {@linkplain Thread#interrupt interrupted}.
+         *
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        public void lockInterruptibly() throws InterruptedException {
+            final StripedReadWriteLock l = lock;
+            l.mutex.lockInterruptibly();
+            if (l.mutex.getHoldCount() == 1 &&
+                l.awaitReaders(true, false, 0L) < 0) {
+                l.mutex.unlock();
+                throw new InterruptedException();
+            }
+        }
+
+        /**
+         * Acquires the write lock only if no other thread holds
+         * either lock at the time of invocation.
+         *
+         * @return {@code true} if the write lock was acquired
+         */
+        public boolean tryLock() {
+            final StripedReadWriteLock l = lock;
+            if (!l.mutex.tryLock())
+                return false;
+            if (l.mutex.getHoldCount() == 1) {
+                l.writer = Thread.currentThread();
+                l.writerPending = true;
+                if (l.readerCount() != 0L) {
+                    l.releaseWrite();
+                    return false;
+                }
+                l.writeLocked = true;
+            }
+            return true;
+        }
+
+        /**
+         * Acquires the write lock if it and all read locks are
+         * released within the given waiting time and the current
+         * thread has not been {@linkplain Thread#interrupt interrupted}.
+         *
+         * @param timeout the time to wait for the write lock
+         * @param unit the time unit of the timeout argument
+         * @return {@code true} if the write lock was acquired
+         * @throws InterruptedException if the current thread is interrupted
+         * @throws NullPointerException if the time unit is null
+         */
+        public boolean tryLock(long timeout, TimeUnit unit)
+                throws InterruptedException {
+            final StripedReadWriteLock l = lock;
+            long nanos = unit.toNanos(timeout);
+            final long deadline = System.nanoTime() + nanos;
+            if (!l.mutex.tryLock(nanos, TimeUnit.NANOSECONDS))
+                return false;
+            int r;
+            if (l.mutex.getHoldCount() == 1 &&
+                (r = l.awaitReaders(true, true, deadline)) <= 0) {
+                l.mutex.unlock();
+                if (r < 0)
+                    throw new InterruptedException();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Attempts to release this lock.
+         *
+         * @throws IllegalMonitorStateException if the current thread does not
+         *         hold this lock
+         */
+        public void unlock() {
+            lock.releaseWrite();
+        }
+
+        /**
+         * Returns a {@link Condition} instance for use with this
+         * {@link Lock} instance, with the same behavior as the
+         * conditions of a {@link ReentrantLock}.  Awaiting the
+         * condition releases the write lock, allowing readers in;
+         * on return, the write lock has been reacquired and all
+         * readers have again left.
+         *
+         * @return the Condition object
+         */
+        public Condition newCondition() {
+            return new WriteCondition(lock, lock.mutex.newCondition());
+        }
+
+        /**
+         * Queries if this write lock is held by the current thread.
+         *
+         * @return {@code true} if the current thread holds this lock and
+         *         {@code false} otherwise
+         */
+        public boolean isHeldByCurrentThread() {
+            return lock.mutex.isHeldByCurrentThread();
+        }
+
+        /**
+         * Queries the number of holds on this write lock by the current
+         * thread.
+         *
+         * @return the number of holds on this lock by the current thread,
+         *         or zero if this lock is not held by the current thread
+         */
+        public int getHoldCount() {
+            return lock.mutex.getHoldCount();
+        }
+
+        /**
+         * Returns a string identifying this lock, as well as its lock
+         * state.  The state, in brackets, includes either the String
+         * {@code "Unlocked"} or the String {@code "Locked"}.
+         *
+         * @return a string identifying this lock, as well as its lock state
+         */
+        public String toString() {
+            return super.toString() +
+                (lock.writeLocked ? "[Locked]" : "[Unlocked]");
+        }
+    }
+
+    /**
+     * Condition of the write lock.  Delegates to a condition of the
+     * mutex, withdrawing the pending writer flag while waiting.
+     */
+    static final class WriteCondition implements Condition, java.io.Serializable {
+        private static final long serialVersionUID = 1411396563574213367L;
+        private final StripedReadWriteLock lock;
+        private final Condition condition;
+
+        WriteCondition(StripedReadWriteLock lock, Condition condition) {
+            this.lock = lock;
+            this.condition = condition;
+        }
+
+        /** Clears the pending flag before the mutex is released. */
+        private void beforeAwait() {
+            if (!lock.mutex.isHeldByCurrentThread())
+                throw new IllegalMonitorStateException();
+            lock.writeLocked = false;
+            lock.writerPending = false;
+            lock.writer = null;
+        }
+
+        /** Waits out readers again after the mutex is reacquired. */
+        private void afterAwait() {
+            lock.awaitReaders(false, false, 0L);
+        }
+
+        public void await() throws InterruptedException {
+            beforeAwait();
+            try {
+                condition.await();
+            } finally {
+                afterAwait();
+            }
+        }
+
+        public void awaitUninterruptibly() {
+            beforeAwait();
+            try {
+                condition.awaitUninterruptibly();
+            } finally {
+                afterAwait();
+            }
+        }
+
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            beforeAwait();
+            try {
+                return condition.awaitNanos(nanosTimeout);
+            } finally {
+                afterAwait();
+            }
+        }
+
+        public boolean await(long time, TimeUnit unit)
+                throws InterruptedException {
+            beforeAwait();
+            try {
+                return condition.await(time, unit);
+            } finally {
+                afterAwait();
+            }
+        }
+
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            beforeAwait();
+            try {
+                return condition.awaitUntil(deadline);
+            } finally {
+                afterAwait();
+            }
+        }
+
+        public void signal() {
+            condition.signal();
+        }
+
+        public void signalAll() {
+            condition.signalAll();
+        }
+    }
+
+    // Instrumentation and status
+
+    /**
+     * Returns {@code true} if this lock has fairness set true.
+     *
+     * @return {@code true} if this lock has fairness set true
+     */
+    public final boolean isFair() {
+        return mutex.isFair();
+    }
+
+    /**
+     * Queries the number of read locks held for this lock.  This
+     * requires a traversal of all reader cells.  This method is
+     * designed for use in monitoring system state, not for
+     * synchronization control.
+     *
+     * @return the number of read locks held
+     */
+    public int getReadLockCount() {
+        long n = readerCount();
+        return (n >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+    }
+
+    /**
+     * Queries the number of reentrant read holds on this lock by the
+     * current thread.
+     *
+     * @return the number of holds on the read lock by the current thread,
+     *         or zero if the read lock is not held by the current thread
+     */
+    public int getReadHoldCount() {
+        return readHolds.get().count;
+    }
+
+    /**
+     * Queries if the write lock is held by any thread.  This method
+     * is designed for use in monitoring system state, not for
+     * synchronization control.
+     *
+     * @return {@code true} if any thread holds the write lock and
+     *         {@code false} otherwise
+     */
+    public boolean isWriteLocked() {
+        return writeLocked;
+    }
+
+    /**
+     * Queries if the write lock is held by the current thread.
+     *
+     * @return {@code true} if the current thread holds the write lock and
+     *         {@code false} otherwise
+     */
+    public boolean isWriteLockedByCurrentThread() {
+        return mutex.isHeldByCurrentThread();
+    }
+
+    /**
+     * Returns a string identifying this lock, as well as its lock state.
+     * The state, in brackets, includes the String {@code "Write locks ="}
+     * followed by the number of reentrantly held write locks, and the
+     * String {@code "Read locks ="} followed by the number of held
+     * read locks.
+     *
+     * @return a string identifying this lock, as well as its lock state
+     */
+    public String toString() {
+        return super.toString() +
+            "[Write locks = " + (writeLocked ? "1+" : "0") +
+            ", Read locks = " + readerCount() + "]";
+    }
+
+    /**
+     * Reconstitutes the lock from a stream (that is, deserializes
+     * it), in the unlocked state.
+     *
+     * @param s the stream
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        initCells(Runtime.getRuntime().availableProcessors());
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long VALUE;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            VALUE = U.objectFieldOffset
+                (Cell.class.getDeclaredField("value"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -26,6 +26,8 @@ package java.util.stream;
 
 import java.util.Objects;
 import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
 
@@ -142,12 +144,30 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
 
     private Runnable sourceCloseAction;
 
+    /**
+     * Action releasing resources held by the lazy evaluation of stateful
+     * operations, or null; only valid for the source stage.
+     */
+    private Runnable sourceEvaluationCleanup;
+
     /**
      * True if pipeline is parallel, otherwise the pipeline is sequential; only
      * valid for the source stage.
      */
     private boolean parallel;
 
+    /**
+     * The pool in which parallel evaluation is performed, or null for the
+     * common pool; only valid for the source stage.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * The target parallelism used to size leaf tasks, or zero to use the
+     * parallelism of the pool; only valid for the source stage.
+     */
+    private int targetParallelism;
+
     /**
      * Constructor for the head of a stream pipeline.
      *
@@ -229,9 +249,65 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
             throw new IllegalStateException(MSG_STREAM_LINKED);
         linkedOrConsumed = true;
 
-        return isParallel()
-               ? terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags()))
-               : terminalOp.evaluateSequential(this, sourceSpliterator(terminalOp.getOpFlags()));
+        try {
+            if (!isParallel())
+                return terminalOp.evaluateSequential(this, sourceSpliterator(terminalOp.getOpFlags()));
+            else
+                return evaluateInPool(
+                    () -> terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags())));
+        }
+        finally {
+            runEvaluationCleanup();
+        }
+    }
+
+    /**
+     * Registers an action releasing resources, such as open files, held by
+     * the lazy evaluation of a stateful operation in this pipeline.  The
+     * action is run when the terminal operation completes, whether or not it
+     * consumed all elements, or when the pipeline is closed if its elements
+     * are instead traversed through its spliterator or iterator.
+     *
+     * @param action the action to run, which must be idempotent
+     */
+    final void addEvaluationCleanup(Runnable action) {
+        Runnable existing = sourceStage.sourceEvaluationCleanup;
+        sourceStage.sourceEvaluationCleanup =
+                (existing == null)
+                ? action
+                : Streams.composeWithExceptions(existing, action);
+    }
+
+    /**
+     * Runs and clears the actions registered with
+     * {@link #addEvaluationCleanup}.
+     */
+    private void runEvaluationCleanup() {
+        Runnable cleanup = sourceStage.sourceEvaluationCleanup;
+        if (cleanup != null) {
+            sourceStage.sourceEvaluationCleanup = null;
+            cleanup.run();
+        }
+    }
+
+    /**
+     * Performs a parallel evaluation in the pool bound to this pipeline.  If
+     * no pool is bound, or the caller is already running in that pool, the
+     * evaluation is performed directly by the caller, and tasks it forks are
+     * pushed to the caller's pool (the common pool for non-worker threads).
+     * Otherwise the evaluation is submitted to the bound pool and the caller
+     * waits for its result, so that all tasks forked by the evaluation are
+     * executed by workers of that pool.
+     *
+     * @param <R> the type of result
+     * @param evaluation the evaluation to perform
+     * @return the result
+     */
+    final <R> R evaluateInPool(Supplier<R> evaluation) {
+        ForkJoinPool p = sourceStage.pool;
+        if (p == null || ForkJoinTask.getPool() == p)
+            return evaluation.get();
+        return p.invoke(ForkJoinTask.adapt(evaluation::get));
     }
 
     /**
@@ -254,10 +330,29 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
             // upstream slice and upstream operations will not be included
             // in this slice
             depth = 0;
-            return opEvaluateParallel(previousStage, previousStage.sourceSpliterator(0), generator);
+            try {
+                return evaluateInPool(
+                    () -> opEvaluateParallel(previousStage, previousStage.sourceSpliterator(0), generator));
+            }
+            finally {
+                runEvaluationCleanup();
+            }
+        }
+        else if (isParallel()) {
+            try {
+                return evaluateInPool(() -> evaluate(sourceSpliterator(0), true, generator));
+            }
+            finally {
+                runEvaluationCleanup();
+            }
         }
         else {
-            return evaluate(sourceSpliterator(0), true, generator);
+            try {
+                return evaluate(sourceSpliterator(0), true, generator);
+            }
+            finally {
+                runEvaluationCleanup();
+            }
         }
     }
 
@@ -309,6 +404,25 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
     @SuppressWarnings("unchecked")
     public final S parallel() {
         sourceStage.parallel = true;
+        sourceStage.pool = null;
+        sourceStage.targetParallelism = 0;
+        return (S) this;
+    }
+
+    @Override
+    public final S parallel(ForkJoinPool pool) {
+        return parallel(pool, pool.getParallelism());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final S parallel(ForkJoinPool pool, int parallelism) {
+        Objects.requireNonNull(pool);
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(Integer.toString(parallelism));
+        sourceStage.parallel = true;
+        sourceStage.pool = pool;
+        sourceStage.targetParallelism = parallelism;
         return (S) this;
     }
 
@@ -317,6 +431,15 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         linkedOrConsumed = true;
         sourceSupplier = null;
         sourceSpliterator = null;
+        if (sourceStage.sourceEvaluationCleanup != null) {
+            // Run the evaluation cleanup first, as part of the close action
+            Runnable cleanup = sourceStage.sourceEvaluationCleanup;
+            Runnable closeAction = sourceStage.sourceCloseAction;
+            sourceStage.sourceEvaluationCleanup = null;
+            sourceStage.sourceCloseAction = (closeAction == null)
+                    ? cleanup
+                    : Streams.composeWithExceptions(cleanup, closeAction);
+        }
         if (sourceStage.sourceCloseAction != null) {
             Runnable closeAction = sourceStage.sourceCloseAction;
             sourceStage.sourceCloseAction = null;
@@ -428,7 +551,9 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
                         thisOpFlags = thisOpFlags & ~StreamOpFlag.IS_SHORT_CIRCUIT;
                     }
 
-                    spliterator = p.opEvaluateParallelLazy(u, spliterator);
+                    @SuppressWarnings("rawtypes") AbstractPipeline op = p, helper = u;
+                    Spliterator<?> input = spliterator;
+                    spliterator = evaluateInPool(() -> op.opEvaluateParallelLazy(helper, input));
 
                     // Inject or clear SIZED on the source pipeline stage
                     // based on the stage's spliterator
@@ -461,6 +586,12 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         return p.getOutputShape();
     }
 
+    @Override
+    final int getTargetParallelism() {
+        int t = sourceStage.targetParallelism;
+        return (t > 0) ? t : ForkJoinPool.getCommonPoolParallelism();
+    }
+
     @Override
     final <P_IN> long exactOutputSizeIfKnown(Spliterator<P_IN> spliterator) {
         return StreamOpFlag.SIZED.isKnown(getStreamAndOpFlags()) ? spliterator.getExactSizeIfKnown() : -1;
@@ -185,6 +185,20 @@ abstract class AbstractTask<P_IN, P_OUT, R,
         return est > 0L ? est : 1L;
     }
 
+    /**
+     * Returns a suggested target leaf size based on the initial size estimate
+     * and the target parallelism of the given pipeline, over-partitioning by
+     * the same factor as {@link #LEAF_TARGET}.
+     *
+     * @param helper the pipeline being evaluated
+     * @param sizeEstimate the initial size estimate
+     * @return suggested target leaf size
+     */
+    static long suggestTargetSize(PipelineHelper<?> helper, long sizeEstimate) {
+        long est = sizeEstimate / ((long) helper.getTargetParallelism() << 2);
+        return est > 0L ? est : 1L;
+    }
+
     /**
      * Returns the targetSize, initializing it via the supplied
      * size estimate if not already initialized.
@@ -192,7 +206,7 @@ abstract class AbstractTask<P_IN, P_OUT, R,
     protected final long getTargetSize(long sizeEstimate) {
         long s;
         return ((s = targetSize) != 0 ? s :
-                (targetSize = suggestTargetSize(sizeEstimate)));
+                (targetSize = suggestTargetSize(helper, sizeEstimate)));
     }
 
     /**
@@ -29,8 +29,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.IntConsumer;
 import java.util.function.Predicate;
 
@@ -116,6 +118,65 @@ public interface BaseStream<T, S extends BaseStream<T, S>>
      */
     S parallel();
 
+    /**
+     * Returns an equivalent stream that is parallel, and whose parallel
+     * evaluation is performed by the workers of the given
+     * {@link ForkJoinPool} rather than the
+     * {@linkplain ForkJoinPool#commonPool() common pool}.  Leaf tasks are
+     * sized for the pool's {@linkplain ForkJoinPool#getParallelism()
+     * parallelism}.  May return itself.
+     *
+     * <p>Binding a pipeline to a dedicated pool isolates it from other
+     * parallel streams and from asynchronous tasks running in the common
+     * pool, and makes its work observable through the pool's monitoring
+     * methods such as {@link ForkJoinPool#getStealCount()}.  A subsequent
+     * call to {@link #parallel()} restores evaluation in the common pool.
+     *
+     * <p>This is an <a href="package-summary.html#StreamOps">intermediate
+     * operation</a>.
+     *
+     * @implSpec
+     * The default implementation ignores the pool and returns
+     * {@code parallel()}.
+     *
+     * @param pool the pool in which to evaluate the pipeline
+     * @return a parallel stream
+     * @throws NullPointerException if the pool is null
+     */
+    default S parallel(ForkJoinPool pool) {
+        return parallel(pool, pool.getParallelism());
+    }
+
+    /**
+     * Returns an equivalent stream that is parallel, and whose parallel
+     * evaluation is performed by the workers of the given
+     * {@link ForkJoinPool}, decomposed into leaf tasks sized for the given
+     * target parallelism.  May return itself.
+     *
+     * <p>A target parallelism lower than that of the pool limits how finely
+     * the pipeline is split, leaving capacity for other work in the pool;
+     * a higher one over-partitions it.
+     *
+     * <p>This is an <a href="package-summary.html#StreamOps">intermediate
+     * operation</a>.
+     *
+     * @implSpec
+     * The default implementation ignores the pool and the parallelism, and
+     * returns {@code parallel()}.
+     *
+     * @param pool the pool in which to evaluate the pipeline
+     * @param parallelism the target parallelism
+     * @return a parallel stream
+     * @throws NullPointerException if the pool is null
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    default S parallel(ForkJoinPool pool, int parallelism) {
+        Objects.requireNonNull(pool);
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(Integer.toString(parallelism));
+        return parallel();
+    }
+
     /**
      * Returns an equivalent stream that is
      * <a href="package-summary.html#Ordering">unordered</a>.  May return
@@ -71,6 +71,15 @@ abstract class PipelineHelper<P_OUT> {
      */
     abstract int getStreamAndOpFlags();
 
+    /**
+     * Returns the parallelism that parallel evaluation of this pipeline should
+     * be decomposed for.  This is the parallelism bound to the pipeline, if
+     * any, otherwise the parallelism of the common pool.
+     *
+     * @return the target parallelism, always positive
+     */
+    abstract int getTargetParallelism();
+
     /**
      * Returns the exact output size of the portion of the output resulting from
      * applying the pipeline stages described by this {@code PipelineHelper} to
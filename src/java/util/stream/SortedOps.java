@@ -24,11 +24,26 @@
  */
 package java.util.stream;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.IntFunction;
 
 
@@ -63,6 +78,22 @@ final class SortedOps {
         return new OfRef<>(upstream, comparator);
     }
 
+    /**
+     * Appends a "sorted" operation to the provided stream that spills sorted
+     * runs of at most {@code runLength} elements to temporary files.
+     *
+     * @param <T> the type of both input and output elements
+     * @param upstream a reference stream with element type T
+     * @param comparator the comparator to order elements by
+     * @param runLength the maximum number of elements buffered in memory
+     * @param codec the codec used to write and read spilled elements
+     */
+    static <T> Stream<T> makeRef(AbstractPipeline<?, T, ?> upstream,
+                                Comparator<? super T> comparator,
+                                int runLength, SpillCodec<T> codec) {
+        return new OfRefSpilling<>(upstream, comparator, runLength, codec);
+    }
+
     /**
      * Appends a "sorted" operation to the provided stream.
      *
@@ -161,6 +192,75 @@ final class SortedOps {
         }
     }
 
+    /**
+     * Specialized subtype for sorting reference streams that may not fit in
+     * memory.  Elements are buffered in runs of bounded length; each full run
+     * is sorted and written to a temporary file, and the runs are merged
+     * lazily as elements are pushed (or pulled) downstream.
+     */
+    private static final class OfRefSpilling<T> extends ReferencePipeline.StatefulOp<T, T> {
+        private final Comparator<? super T> comparator;
+        private final int runLength;
+        private final SpillCodec<T> codec;
+
+        OfRefSpilling(AbstractPipeline<?, T, ?> upstream, Comparator<? super T> comparator,
+                      int runLength, SpillCodec<T> codec) {
+            super(upstream, StreamShape.REFERENCE,
+                  StreamOpFlag.IS_ORDERED | StreamOpFlag.NOT_SORTED);
+            if (runLength <= 0)
+                throw new IllegalArgumentException(Integer.toString(runLength));
+            this.comparator = Objects.requireNonNull(comparator);
+            this.runLength = runLength;
+            this.codec = Objects.requireNonNull(codec);
+        }
+
+        @Override
+        public Sink<T> opWrapSink(int flags, Sink<T> sink) {
+            Objects.requireNonNull(sink);
+            SpillingRefSortingSink<T> spilling =
+                new SpillingRefSortingSink<>(sink, comparator, runLength, codec);
+            // Upstream may fail before end() is reached, and a failure or a
+            // short-circuit downstream may leave the merge undrained
+            addEvaluationCleanup(spilling::discard);
+            return spilling;
+        }
+
+        @Override
+        public <P_IN> Node<T> opEvaluateParallel(PipelineHelper<T> helper,
+                                                 Spliterator<P_IN> spliterator,
+                                                 IntFunction<T[]> generator) {
+            // The result is an in-memory node, so the elements must fit
+            T[] flattenedData = helper.evaluate(spliterator, true, generator).asArray(generator);
+            Arrays.parallelSort(flattenedData, comparator);
+            return Nodes.node(flattenedData);
+        }
+
+        @Override
+        public <P_IN> Spliterator<T> opEvaluateParallelLazy(PipelineHelper<T> helper,
+                                                            Spliterator<P_IN> spliterator) {
+            // Runs are produced by a sequential traversal of the upstream
+            // elements; the merged output is then consumed without buffering
+            RunSpiller<T> spiller = new RunSpiller<>(comparator, runLength, codec);
+            try {
+                helper.wrapAndCopyInto(new Sink<T>() {
+                    @Override
+                    public void accept(T t) {
+                        spiller.add(t);
+                    }
+                }, spliterator);
+            } catch (Throwable ex) {
+                spiller.discard();
+                throw ex;
+            }
+            long count = spiller.count();
+            RunSpiller.MergeIterator<T> it = spiller.merge();
+            // A short-circuiting terminal operation, or an abandoned
+            // iterator, may leave the merge undrained with its run files open
+            addEvaluationCleanup(it::close);
+            return Spliterators.spliterator(it, count, Spliterator.ORDERED);
+        }
+    }
+
     /**
      * Specialized subtype for sorting int streams.
      */
@@ -405,6 +505,388 @@ final class SortedOps {
         }
     }
 
+    /**
+     * {@link Sink} for implementing a spilling sort on reference streams.
+     */
+    private static final class SpillingRefSortingSink<T> extends AbstractRefSortingSink<T> {
+        private final int runLength;
+        private final SpillCodec<T> codec;
+        private RunSpiller<T> spiller;
+        private RunSpiller.MergeIterator<T> merge;
+
+        SpillingRefSortingSink(Sink<? super T> sink, Comparator<? super T> comparator,
+                               int runLength, SpillCodec<T> codec) {
+            super(sink, comparator);
+            this.runLength = runLength;
+            this.codec = codec;
+        }
+
+        @Override
+        public void begin(long size) {
+            spiller = new RunSpiller<>(comparator, runLength, codec);
+        }
+
+        @Override
+        public void end() {
+            long count = spiller.count();
+            RunSpiller.MergeIterator<T> it = merge = spiller.merge();
+            spiller = null;
+            try {
+                downstream.begin(count);
+                if (!cancellationWasRequested) {
+                    while (it.hasNext())
+                        downstream.accept(it.next());
+                }
+                else {
+                    while (it.hasNext() && !downstream.cancellationRequested())
+                        downstream.accept(it.next());
+                }
+                downstream.end();
+            } finally {
+                it.close();
+                merge = null;
+            }
+        }
+
+        @Override
+        public void accept(T t) {
+            spiller.add(t);
+        }
+
+        /**
+         * Deletes any runs still held, when the sink protocol was not
+         * completed.
+         */
+        void discard() {
+            RunSpiller<T> sp = spiller;
+            RunSpiller.MergeIterator<T> it = merge;
+            spiller = null;
+            merge = null;
+            if (sp != null)
+                sp.discard();
+            if (it != null)
+                it.close();
+        }
+    }
+
+    /**
+     * Accumulates elements into sorted runs of at most {@code runLength}
+     * elements, writing each full run to a temporary file, and produces an
+     * iterator that k-way merges the spilled runs with the final in-memory
+     * run.  Ties are broken by run order, so the merge is stable.
+     *
+     * <p>At most {@link #MAX_FAN_IN} runs are merged at a time, bounding the
+     * number of open files and read buffers; if more runs were spilled,
+     * consecutive groups of them are first merged into longer runs, in as
+     * many passes as needed.
+     *
+     * <p>Run files are created in a single temporary directory, which is
+     * scheduled for deletion on exit, and are deleted when the merge iterator
+     * is exhausted or closed.
+     */
+    static final class RunSpiller<T> {
+        /** Buffer size for run files */
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        /** The maximum number of runs, including the in-memory run, merged at once */
+        static final int MAX_FAN_IN = 64;
+
+        /** Directory holding run files, created on first use */
+        private static Path runDirectory;
+
+        /**
+         * Returns the directory holding run files, creating it if it does
+         * not exist, for example because a temporary file cleaner removed it.
+         */
+        private static synchronized Path runDirectory() throws IOException {
+            Path dir = runDirectory;
+            if (dir == null || !Files.isDirectory(dir)) {
+                dir = Files.createTempDirectory("sorted");
+                dir.toFile().deleteOnExit();
+                runDirectory = dir;
+            }
+            return dir;
+        }
+
+        private final Comparator<? super T> comparator;
+        private final int runLength;
+        private final SpillCodec<T> codec;
+        private final ArrayList<Path> runs = new ArrayList<>();
+        private final ArrayList<Long> runSizes = new ArrayList<>();
+        private ArrayList<T> buffer = new ArrayList<>();
+        private long count;
+
+        RunSpiller(Comparator<? super T> comparator, int runLength, SpillCodec<T> codec) {
+            this.comparator = comparator;
+            this.runLength = runLength;
+            this.codec = codec;
+        }
+
+        long count() {
+            return count;
+        }
+
+        void add(T t) {
+            buffer.add(t);
+            count++;
+            if (buffer.size() >= runLength)
+                spill();
+        }
+
+        private void spill() {
+            buffer.sort(comparator);
+            try {
+                writeRun(buffer.iterator());
+            } catch (IOException e) {
+                deleteRuns(runs);
+                throw new UncheckedIOException(e);
+            }
+            runSizes.add((long) buffer.size());
+            buffer.clear();
+        }
+
+        /**
+         * Writes the given elements to a new run file, added to the end of
+         * {@code runs}.
+         */
+        private void writeRun(Iterator<T> it) throws IOException {
+            Path run = Files.createTempFile(runDirectory(), "sorted", ".run");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE))) {
+                while (it.hasNext())
+                    codec.write(it.next(), out);
+            }
+        }
+
+        /**
+         * Returns an iterator over all added elements in sorted order.  No
+         * further elements may be added.
+         */
+        MergeIterator<T> merge() {
+            ArrayList<T> last = buffer;
+            buffer = null;
+            last.sort(comparator);
+            while (runs.size() >= MAX_FAN_IN)
+                mergePass();
+            return new MergeIterator<>(comparator, codec, runs, runSizes, last);
+        }
+
+        /**
+         * Replaces each consecutive group of up to {@link #MAX_FAN_IN}
+         * spilled runs by a single run merging them.  As the groups keep
+         * their order, the merge remains stable.
+         */
+        private void mergePass() {
+            ArrayList<Path> in = new ArrayList<>(runs);
+            ArrayList<Long> inSizes = new ArrayList<>(runSizes);
+            runs.clear();
+            runSizes.clear();
+            int i = 0;
+            try {
+                for (; i < in.size(); i += MAX_FAN_IN) {
+                    int j = Math.min(i + MAX_FAN_IN, in.size());
+                    long size = 0;
+                    for (int k = i; k < j; k++)
+                        size += inSizes.get(k);
+                    MergeIterator<T> it = new MergeIterator<>(
+                        comparator, codec, new ArrayList<>(in.subList(i, j)),
+                        new ArrayList<>(inSizes.subList(i, j)), new ArrayList<>());
+                    try {
+                        writeRun(it);
+                    } finally {
+                        it.close();
+                    }
+                    runSizes.add(size);
+                }
+            } catch (IOException e) {
+                abandonPass(in, i);
+                throw new UncheckedIOException(e);
+            } catch (Throwable e) {
+                abandonPass(in, i);
+                throw e;
+            }
+        }
+
+        /**
+         * Deletes the runs of a failed merge pass: those produced so far,
+         * and the input runs from the given position on.
+         */
+        private void abandonPass(ArrayList<Path> in, int from) {
+            deleteRuns(new ArrayList<>(in.subList(Math.min(from, in.size()), in.size())));
+            deleteRuns(runs);
+        }
+
+        /**
+         * Deletes the runs spilled so far, when the elements will not be
+         * merged.
+         */
+        void discard() {
+            buffer = null;
+            deleteRuns(runs);
+        }
+
+        static void deleteRuns(ArrayList<Path> runs) {
+            for (Path p : runs) {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignore) {
+                    // left in the run directory
+                }
+            }
+        }
+
+        /** A cursor over one sorted run */
+        static final class Run<T> {
+            final int index;
+            final DataInputStream in; // null for the in-memory run
+            final Iterator<T> it;     // null for spilled runs
+            long remaining;
+            T head;
+
+            Run(int index, DataInputStream in, long size) {
+                this.index = index;
+                this.in = in;
+                this.it = null;
+                this.remaining = size;
+            }
+
+            Run(int index, ArrayList<T> list) {
+                this.index = index;
+                this.in = null;
+                this.it = list.iterator();
+                this.remaining = list.size();
+            }
+
+            boolean advance(SpillCodec<T> codec) throws IOException {
+                if (remaining == 0) {
+                    head = null;
+                    return false;
+                }
+                remaining--;
+                head = (it != null) ? it.next() : codec.read(in);
+                return true;
+            }
+        }
+
+        static final class MergeIterator<T> implements Iterator<T> {
+            private final SpillCodec<T> codec;
+            private final ArrayList<Path> files;
+            private final ArrayList<Run<T>> open = new ArrayList<>();
+            private final PriorityQueue<Run<T>> heap;
+            private boolean closed;
+
+            MergeIterator(Comparator<? super T> comparator, SpillCodec<T> codec,
+                          ArrayList<Path> files, ArrayList<Long> sizes,
+                          ArrayList<T> last) {
+                this.codec = codec;
+                this.files = files;
+                this.heap = new PriorityQueue<>(files.size() + 1, (a, b) -> {
+                    int c = comparator.compare(a.head, b.head);
+                    return (c != 0) ? c : Integer.compare(a.index, b.index);
+                });
+                try {
+                    for (int i = 0; i < files.size(); i++) {
+                        DataInputStream in = new DataInputStream(
+                            new BufferedInputStream(Files.newInputStream(files.get(i)),
+                                                    BUFFER_SIZE));
+                        Run<T> r = new Run<>(i, in, sizes.get(i));
+                        open.add(r);
+                        if (r.advance(codec))
+                            heap.add(r);
+                    }
+                    Run<T> r = new Run<>(files.size(), last);
+                    if (r.advance(codec))
+                        heap.add(r);
+                } catch (IOException e) {
+                    close();
+                    throw new UncheckedIOException(e);
+                }
+                if (heap.isEmpty())
+                    close();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !heap.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                Run<T> r = heap.poll();
+                if (r == null)
+                    throw new NoSuchElementException();
+                T t = r.head;
+                try {
+                    if (r.advance(codec))
+                        heap.add(r);
+                    else if (heap.isEmpty())
+                        close();
+                } catch (IOException e) {
+                    close();
+                    throw new UncheckedIOException(e);
+                }
+                return t;
+            }
+
+            /**
+             * Closes all run files and deletes them.
+             */
+            void close() {
+                if (!closed) {
+                    closed = true;
+                    heap.clear();
+                    for (Run<T> r : open) {
+                        try {
+                            r.in.close();
+                        } catch (IOException ignore) {
+                        }
+                    }
+                    deleteRuns(files);
+                }
+            }
+        }
+    }
+
+    /**
+     * Codec for strings.  Unlike {@link DataOutput#writeUTF}, this encoding is
+     * not limited to 65535 bytes.
+     */
+    enum StringCodec implements SpillCodec<String> {
+        INSTANCE;
+
+        @Override
+        public void write(String s, DataOutput out) throws IOException {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            byte[] b = new byte[in.readInt()];
+            in.readFully(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Codec for longs.
+     */
+    enum LongCodec implements SpillCodec<Long> {
+        INSTANCE;
+
+        @Override
+        public void write(Long l, DataOutput out) throws IOException {
+            out.writeLong(l);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    }
+
     /**
      * Abstract {@link Sink} for implementing sort on int streams.
      */
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2012, 2016, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes stream elements to, and decodes them from, the temporary files used
+ * by a spilling sort.  See {@link Stream#sorted(java.util.Comparator, int, SpillCodec)}.
+ *
+ * <p>An element read back by {@link #read} must compare equal, according to
+ * the sort's comparator, to the element written by {@link #write}.  Each call
+ * to {@code read} must consume exactly the bytes produced by the matching call
+ * to {@code write}.
+ *
+ * @param <T> the type of elements encoded by this codec
+ * @since 1.8
+ */
+public interface SpillCodec<T> {
+
+    /**
+     * Writes an element to the given output.
+     *
+     * @param t the element to write
+     * @param out the output to write to
+     * @throws IOException if an I/O error occurs
+     */
+    void write(T t, DataOutput out) throws IOException;
+
+    /**
+     * Reads an element previously written by {@link #write}.
+     *
+     * @param in the input to read from
+     * @return the element read
+     * @throws IOException if an I/O error occurs
+     */
+    T read(DataInput in) throws IOException;
+
+    /**
+     * Returns a codec for non-null strings of any length, encoded as UTF-8.
+     *
+     * @return a codec for strings
+     */
+    static SpillCodec<String> ofString() {
+        return SortedOps.StringCodec.INSTANCE;
+    }
+
+    /**
+     * Returns a codec for non-null {@code Long} values.
+     *
+     * @return a codec for longs
+     */
+    static SpillCodec<Long> ofLong() {
+        return SortedOps.LongCodec.INSTANCE;
+    }
+}
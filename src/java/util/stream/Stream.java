@@ -391,6 +391,65 @@ public interface Stream<T> extends BaseStream<T, Stream<T>> {
      */
     Stream<T> sorted(Comparator<? super T> comparator);
 
+    /**
+     * Returns a stream consisting of the elements of this stream, sorted
+     * according to the provided {@code Comparator}, buffering at most
+     * {@code runLength} elements in memory.
+     *
+     * <p>Elements are collected into runs of up to {@code runLength}
+     * elements.  Each full run is sorted and written to a temporary file
+     * using the provided {@link SpillCodec}; the runs are then merged
+     * incrementally as the resulting stream is consumed, so the number of
+     * elements that may be sorted is limited by disk space rather than heap
+     * size.  Temporary files are deleted once the merge completes, or once
+     * the terminal operation completes if it does not consume all elements.
+     * If the elements are instead traversed using {@link #iterator()} or
+     * {@link #spliterator()}, files held by an unfinished traversal are
+     * deleted when the stream is {@linkplain #close() closed}.
+     *
+     * <p>For ordered streams, the sort is stable.  For unordered streams, no
+     * stability guarantees are made.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">stateful
+     * intermediate operation</a>.
+     *
+     * @implSpec
+     * The default implementation ignores {@code runLength} and
+     * {@code codec} and returns {@code sorted(comparator)}.
+     *
+     * @apiNote
+     * For parallel streams, runs are produced by a sequential traversal of
+     * the upstream elements.  A terminal {@code toArray} directly following
+     * this operation requires all elements to fit in memory.  If any element
+     * fails to be written or read, an {@link java.io.UncheckedIOException}
+     * is thrown from the terminal operation.
+     *
+     * <p>For example, to sort the lines of a file larger than the heap:
+     * <pre>{@code
+     *     try (Stream<String> lines = Files.lines(path)) {
+     *         lines.sorted(Comparator.naturalOrder(), 1_000_000, SpillCodec.ofString())
+     *              .forEach(out::println);
+     *     }
+     * }</pre>
+     *
+     * @param comparator a <a href="package-summary.html#NonInterference">non-interfering</a>,
+     *                   <a href="package-summary.html#Statelessness">stateless</a>
+     *                   {@code Comparator} to be used to compare stream elements
+     * @param runLength the maximum number of elements held in memory at a
+     *                  time while producing sorted runs
+     * @param codec the codec used to write elements to, and read them from,
+     *              temporary files
+     * @return the new stream
+     * @throws IllegalArgumentException if {@code runLength} is not positive
+     */
+    default Stream<T> sorted(Comparator<? super T> comparator, int runLength,
+                             SpillCodec<T> codec) {
+        if (runLength <= 0)
+            throw new IllegalArgumentException(Integer.toString(runLength));
+        Objects.requireNonNull(codec);
+        return sorted(comparator);
+    }
+
     /**
      * Returns a stream consisting of the elements of this stream, additionally
      * performing the provided action on each element as elements are consumed